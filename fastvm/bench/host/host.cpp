@@ -0,0 +1,466 @@
+#include "host.h"
+
+#include <algorithm>
+#include <cstring>
+
+// the call depth limit of the java host, Constants.MAX_CALL_DEPTH
+static const int max_call_depth = 128;
+
+address_key to_key(const evm_address &address)
+{
+    address_key key;
+    std::copy_n(address.bytes, key.size(), key.begin());
+    return key;
+}
+
+evm_address to_address(const address_key &key)
+{
+    evm_address address;
+    std::copy(key.begin(), key.end(), address.bytes);
+    return address;
+}
+
+static word_key to_word_key(const evm_word &word)
+{
+    word_key key;
+    std::copy_n(word.bytes, key.size(), key.begin());
+    return key;
+}
+
+unsigned __int128 to_u128(const evm_word &word)
+{
+    unsigned __int128 value = 0;
+    for (int i = 0; i < 16; i++) {
+        value = (value << 8) | word.bytes[i];
+    }
+    return value;
+}
+
+evm_word to_word(unsigned __int128 value)
+{
+    evm_word word;
+    for (int i = 15; i >= 0; i--) {
+        word.bytes[i] = (uint8_t) value;
+        value >>= 8;
+    }
+    return word;
+}
+
+static uint64_t mix(uint64_t x)
+{
+    // splitmix64 finalizer
+    x += 0x9e3779b97f4a7c15ULL;
+    x = (x ^ (x >> 30)) * 0xbf58476d1ce4e5b9ULL;
+    x = (x ^ (x >> 27)) * 0x94d049bb133111ebULL;
+    return x ^ (x >> 31);
+}
+
+static uint64_t fnv1a(const uint8_t *data, size_t size)
+{
+    uint64_t h = 0xcbf29ce484222325ULL;
+    for (size_t i = 0; i < size; i++) {
+        h = (h ^ data[i]) * 0x100000001b3ULL;
+    }
+    return h;
+}
+
+evm_hash code_hash(const std::vector<uint8_t> &code, uint64_t salt)
+{
+    evm_hash hash;
+    uint64_t h = fnv1a(code.data(), code.size()) ^ mix(salt);
+    for (int lane = 0; lane < 4; lane++) {
+        uint64_t v = mix(h + lane);
+        std::memcpy(hash.bytes + 8 * lane, &v, 8);
+    }
+    return hash;
+}
+
+static evm_address new_address(const evm_address &creator, uint64_t nonce)
+{
+    evm_address address;
+    uint64_t h = fnv1a(creator.bytes, sizeof(creator.bytes)) ^ mix(nonce);
+    for (int lane = 0; lane < 4; lane++) {
+        uint64_t v = mix(h + lane);
+        std::memcpy(address.bytes + 8 * lane, &v, 8);
+    }
+    address.bytes[0] = 0xA0;
+    return address;
+}
+
+static void release_buffer(const evm_result *result)
+{
+    delete static_cast<std::vector<uint8_t> *>(result->reserved.context);
+}
+
+/* The callbacks, in ctx_fn_table order. */
+struct host_callbacks {
+    static host &of(evm_context *context)
+    {
+        return *reinterpret_cast<host *>(context);
+    }
+
+    static int account_exists(evm_context *context, const evm_address *address)
+    {
+        host &h = of(context);
+        h.callbacks[0]++;
+        return h.accounts.count(to_key(*address)) != 0;
+    }
+
+    static void get_storage(
+            evm_word *result,
+            evm_context *context,
+            const evm_address *address,
+            const evm_word *key)
+    {
+        host &h = of(context);
+        h.callbacks[1]++;
+        *result = evm_word{};
+        auto acc = h.accounts.find(to_key(*address));
+        if (acc != h.accounts.end()) {
+            auto value = acc->second.storage.find(to_word_key(*key));
+            if (value != acc->second.storage.end()) {
+                *result = value->second;
+            }
+        }
+    }
+
+    static void set_storage(
+            evm_context *context,
+            const evm_address *address,
+            const evm_word *key,
+            const evm_word *value)
+    {
+        host &h = of(context);
+        h.callbacks[2]++;
+        account &acc = h.touch(*address);
+        word_key k = to_word_key(*key);
+
+        host::change c = {};
+        c.type = host::STORAGE;
+        c.address = to_key(*address);
+        c.key = k;
+        auto old = acc.storage.find(k);
+        c.existed = old != acc.storage.end();
+        if (c.existed) {
+            c.word = old->second;
+        }
+        h.journal.push_back(c);
+
+        if (to_u128(*value) == 0) {
+            acc.storage.erase(k);
+        } else {
+            acc.storage[k] = *value;
+        }
+    }
+
+    static void get_balance(evm_word *result, evm_context *context, const evm_address *address)
+    {
+        host &h = of(context);
+        h.callbacks[3]++;
+        auto acc = h.accounts.find(to_key(*address));
+        *result = to_word(acc == h.accounts.end() ? 0 : acc->second.balance);
+    }
+
+    static size_t get_code(
+            const uint8_t **result_code,
+            evm_context *context,
+            const evm_address *address)
+    {
+        host &h = of(context);
+        h.callbacks[4]++;
+        auto acc = h.accounts.find(to_key(*address));
+        if (acc == h.accounts.end()) {
+            *result_code = nullptr;
+            return 0;
+        }
+        *result_code = acc->second.code.data();
+        return acc->second.code.size();
+    }
+
+    static void selfdestruct(
+            evm_context *context,
+            const evm_address *address,
+            const evm_address *beneficiary)
+    {
+        host &h = of(context);
+        h.callbacks[5]++;
+        account &acc = h.touch(*address);
+        h.transfer(*address, *beneficiary, acc.balance);
+    }
+
+    static void call(evm_result *result, evm_context *context, const evm_message *msg)
+    {
+        host &h = of(context);
+        h.callbacks[6]++;
+        *result = h.execute(*msg);
+    }
+
+    static void get_tx_context(evm_tx_context *result, evm_context *context)
+    {
+        host &h = of(context);
+        h.callbacks[7]++;
+        *result = evm_tx_context{};
+        result->tx_gas_price = to_word(1);
+        result->tx_origin = h.origin;
+        result->block_number = 1;
+        result->block_timestamp = 1500000000;
+        result->block_gas_limit = 10000000;
+        result->block_difficulty = to_word(0x100000000ULL);
+    }
+
+    static void get_block_hash(evm_hash *result, evm_context *context, int64_t number)
+    {
+        host &h = of(context);
+        h.callbacks[8]++;
+        for (int lane = 0; lane < 4; lane++) {
+            uint64_t v = mix(number + lane);
+            std::memcpy(result->bytes + 8 * lane, &v, 8);
+        }
+    }
+
+    static void log(
+            evm_context *context,
+            const evm_address *address,
+            const uint8_t *data,
+            size_t data_size,
+            const evm_word topics[],
+            size_t topics_count)
+    {
+        host &h = of(context);
+        h.callbacks[9]++;
+        log_record record;
+        record.address = to_key(*address);
+        record.data.assign(data, data + data_size);
+        record.topics.assign(topics, topics + topics_count);
+        h.logs.push_back(std::move(record));
+
+        host::change c = {};
+        c.type = host::LOG;
+        h.journal.push_back(c);
+    }
+};
+
+static const evm_context_fn_table ctx_fn_table = {
+        host_callbacks::account_exists,
+        host_callbacks::get_storage,
+        host_callbacks::set_storage,
+        host_callbacks::get_balance,
+        host_callbacks::get_code,
+        host_callbacks::selfdestruct,
+        host_callbacks::call,
+        host_callbacks::get_tx_context,
+        host_callbacks::get_block_hash,
+        host_callbacks::log
+};
+
+host::host(evm_instance *instance, evm_revision revision)
+    : context{&ctx_fn_table}, instance(instance), revision(revision)
+{
+}
+
+account &host::touch(const evm_address &address)
+{
+    address_key key = to_key(address);
+    auto acc = accounts.find(key);
+    if (acc != accounts.end()) {
+        return acc->second;
+    }
+
+    change c = {};
+    c.type = CREATED;
+    c.address = key;
+    journal.push_back(c);
+    return accounts[key];
+}
+
+void host::add_balance(const evm_address &address, unsigned __int128 amount)
+{
+    account &acc = touch(address);
+    change c = {};
+    c.type = BALANCE;
+    c.address = to_key(address);
+    c.balance = acc.balance;
+    journal.push_back(c);
+    acc.balance += amount;
+}
+
+bool host::transfer(const evm_address &from, const evm_address &to, unsigned __int128 amount)
+{
+    if (amount == 0) {
+        return true;
+    }
+    account &source = touch(from);
+    if (source.balance < amount) {
+        return false;
+    }
+
+    change c = {};
+    c.type = BALANCE;
+    c.address = to_key(from);
+    c.balance = source.balance;
+    journal.push_back(c);
+    source.balance -= amount;
+
+    add_balance(to, amount);
+    return true;
+}
+
+void host::set_code(const evm_address &address, const std::vector<uint8_t> &code)
+{
+    account &acc = touch(address);
+    change c = {};
+    c.type = CODE;
+    c.address = to_key(address);
+    c.code = acc.code;
+    c.code_hash = acc.code_hash;
+    journal.push_back(std::move(c));
+
+    acc.code = code;
+    acc.code_hash = code_hash(code, 0);
+}
+
+void host::rollback(size_t mark)
+{
+    while (journal.size() > mark) {
+        change &c = journal.back();
+        switch (c.type) {
+            case CREATED:
+                accounts.erase(c.address);
+                break;
+            case BALANCE:
+                accounts[c.address].balance = c.balance;
+                break;
+            case NONCE:
+                accounts[c.address].nonce = c.nonce;
+                break;
+            case CODE:
+                accounts[c.address].code = std::move(c.code);
+                accounts[c.address].code_hash = c.code_hash;
+                break;
+            case STORAGE:
+                if (c.existed) {
+                    accounts[c.address].storage[c.key] = c.word;
+                } else {
+                    accounts[c.address].storage.erase(c.key);
+                }
+                break;
+            case LOG:
+                logs.pop_back();
+                break;
+        }
+        journal.pop_back();
+    }
+}
+
+evm_result host::run_code(
+        const evm_message &msg,
+        const std::vector<uint8_t> &code,
+        const evm_hash &hash)
+{
+    evm_message m = msg;
+    m.code_hash = hash;
+
+    frames.push_back(m.address);
+    evm_result r = instance->execute(instance, &context, revision, &m, code.data(), code.size());
+    frames.pop_back();
+
+    // the output of the jit is only valid until released, keep a copy
+    auto buffer = new std::vector<uint8_t>(r.output_data, r.output_data + r.output_size);
+    if (r.release) {
+        r.release(&r);
+    }
+    r.output_data = buffer->data();
+    r.output_size = buffer->size();
+    r.release = release_buffer;
+    r.reserved.context = buffer;
+    return r;
+}
+
+evm_result host::deploy(
+        const evm_address &address,
+        const evm_address &caller,
+        const std::vector<uint8_t> &init,
+        int64_t gas)
+{
+    size_t start = mark();
+    touch(address);
+
+    evm_message m = {};
+    m.address = address;
+    m.caller = caller;
+    m.gas = gas;
+    m.kind = EVM_CREATE;
+    evm_result r = run_code(m, init, code_hash(init, 0));
+    if (r.status_code == EVM_SUCCESS) {
+        set_code(address, *static_cast<std::vector<uint8_t> *>(r.reserved.context));
+    } else {
+        rollback(start);
+    }
+    return r;
+}
+
+evm_result host::execute(const evm_message &msg)
+{
+    evm_result failure = {};
+    failure.status_code = EVM_FAILURE;
+    if (msg.depth >= max_call_depth) {
+        return failure;
+    }
+
+    size_t start = mark();
+    evm_message m = msg;
+    evm_result r;
+    unsigned __int128 value = to_u128(msg.value);
+
+    if (msg.kind == EVM_CREATE) {
+        account &creator = touch(msg.caller);
+        change c = {};
+        c.type = NONCE;
+        c.address = to_key(msg.caller);
+        c.nonce = creator.nonce;
+        journal.push_back(c);
+        m.address = new_address(msg.caller, creator.nonce++);
+
+        touch(m.address);
+        if (!transfer(msg.caller, m.address, value)) {
+            rollback(start);
+            return failure;
+        }
+
+        std::vector<uint8_t> init(msg.input, msg.input + msg.input_size);
+        m.input = nullptr;
+        m.input_size = 0;
+        r = run_code(m, init, code_hash(init, 0));
+
+        if (r.status_code == EVM_SUCCESS) {
+            auto buffer = static_cast<std::vector<uint8_t> *>(r.reserved.context);
+            set_code(m.address, *buffer);
+            buffer->assign(m.address.bytes, m.address.bytes + sizeof(m.address.bytes));
+            r.output_data = buffer->data();
+            r.output_size = buffer->size();
+        }
+    } else {
+        address_key code_address = to_key(msg.address);
+        if ((msg.kind == EVM_DELEGATECALL || msg.kind == EVM_CALLCODE) && !frames.empty()) {
+            m.address = frames.back();
+        }
+        if (msg.kind == EVM_CALL && !transfer(msg.caller, msg.address, value)) {
+            rollback(start);
+            return failure;
+        }
+
+        auto acc = accounts.find(code_address);
+        if (acc == accounts.end() || acc->second.code.empty()) {
+            r = evm_result{};
+            r.status_code = EVM_SUCCESS;
+            r.gas_left = msg.gas;
+        } else {
+            r = run_code(m, acc->second.code, acc->second.code_hash);
+        }
+    }
+
+    if (r.status_code != EVM_SUCCESS) {
+        rollback(start);
+    }
+    return r;
+}
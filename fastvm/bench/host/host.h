@@ -0,0 +1,110 @@
+#ifndef BENCH_HOST_H
+#define BENCH_HOST_H
+
+#include <array>
+#include <cstdint>
+#include <map>
+#include <vector>
+
+#include <evm.h>
+
+typedef std::array<uint8_t, 32> address_key;
+typedef std::array<uint8_t, 16> word_key;
+
+struct account {
+    unsigned __int128 balance = 0;
+    uint64_t nonce = 0;
+    std::vector<uint8_t> code;
+    evm_hash code_hash = {};
+    std::map<word_key, evm_word> storage;
+};
+
+struct log_record {
+    address_key address;
+    std::vector<uint8_t> data;
+    std::vector<evm_word> topics;
+};
+
+/**
+ * An in-memory host for the jit: accounts with balances, nonces, code and
+ * storage, logs, and nested calls and creates executed on the same instance.
+ *
+ * Every state change is journaled, so that a failed nested call and a whole
+ * run can be rolled back. The context must stay the first member, the
+ * callbacks cast the evm_context back to the host.
+ */
+struct host {
+    evm_context context;
+    evm_instance *instance;
+    evm_revision revision;
+
+    std::map<address_key, account> accounts;
+    std::vector<log_record> logs;
+    evm_address origin = {};
+
+    // number of callbacks made, by ctx_fn_table slot
+    uint64_t callbacks[10] = {};
+
+    host(evm_instance *instance, evm_revision revision);
+
+    /** Stores code at an address, creating the account if needed. */
+    void set_code(const evm_address &address, const std::vector<uint8_t> &code);
+
+    /**
+     * Runs init code as a create at a fixed address and stores the code it
+     * returns there. Scenarios deploy at fixed addresses so that their input
+     * can refer to them.
+     */
+    evm_result deploy(
+            const evm_address &address,
+            const evm_address &caller,
+            const std::vector<uint8_t> &init,
+            int64_t gas);
+
+    /** Executes a message against the state, as a top-level or nested call. */
+    evm_result execute(const evm_message &msg);
+
+    /** Returns the journal position, to roll back to later. */
+    size_t mark() const { return journal.size(); }
+
+    /** Undoes the state changes made since the mark. */
+    void rollback(size_t mark);
+
+private:
+    enum change_type { CREATED, BALANCE, NONCE, CODE, STORAGE, LOG };
+
+    struct change {
+        change_type type;
+        address_key address;
+        word_key key;
+        bool existed;
+        evm_word word;
+        unsigned __int128 balance;
+        uint64_t nonce;
+        std::vector<uint8_t> code;
+        evm_hash code_hash;
+    };
+
+    std::vector<change> journal;
+    std::vector<evm_address> frames;
+
+    account &touch(const evm_address &address);
+    void add_balance(const evm_address &address, unsigned __int128 amount);
+    bool transfer(const evm_address &from, const evm_address &to, unsigned __int128 amount);
+    evm_result run_code(
+            const evm_message &msg,
+            const std::vector<uint8_t> &code,
+            const evm_hash &hash);
+
+    friend struct host_callbacks;
+};
+
+address_key to_key(const evm_address &address);
+evm_address to_address(const address_key &key);
+unsigned __int128 to_u128(const evm_word &word);
+evm_word to_word(unsigned __int128 value);
+
+/** A 32-byte digest of the code; the jit caches compiled code by it. */
+evm_hash code_hash(const std::vector<uint8_t> &code, uint64_t salt);
+
+#endif
@@ -0,0 +1,298 @@
+#include <algorithm>
+#include <chrono>
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <fstream>
+#include <sstream>
+#include <string>
+#include <vector>
+#include <inttypes.h>
+
+#include <evm.h>
+#include <evmjit.h>
+
+#include "host.h"
+
+/*
+ * Runs scenario files against the jit with an in-memory host and reports the
+ * latency percentiles of execution and compilation for each.
+ *
+ * A scenario is a text file of "key value" lines, # starts a comment:
+ *
+ *   code <hex>              runtime code of the contract, or
+ *   deploy <hex>            init code run once to deploy the contract
+ *   account <addr> <hex>    another account with code, e.g. a callee
+ *   input <hex>             call data of the measured call
+ *   gas <n>                 energy limit of the measured call
+ *
+ * The contract is at address a0 followed by 31 bytes of 11, and is called by
+ * a0 followed by 31 bytes of 22, which has a large balance. The scenarios of
+ * the compiled test contracts are written by NativeBenchCorpus in the jmh
+ * source set of modFastVM, and ScenarioBenchmark there runs the same files
+ * through the java host, so that the numbers can be compared.
+ */
+
+typedef std::chrono::steady_clock clock_type;
+
+struct scenario {
+    std::string name;
+    std::vector<uint8_t> code;
+    bool deploy = false;
+    std::vector<std::pair<evm_address, std::vector<uint8_t>>> accounts;
+    std::vector<uint8_t> input;
+    int64_t gas = 5000000;
+};
+
+static evm_address fixed_address(uint8_t fill)
+{
+    evm_address address;
+    std::memset(address.bytes, fill, sizeof(address.bytes));
+    address.bytes[0] = 0xA0;
+    return address;
+}
+
+static const evm_address contract_address = fixed_address(0x11);
+static const evm_address caller_address = fixed_address(0x22);
+
+static bool parse_hex(const std::string &hex, std::vector<uint8_t> &out)
+{
+    std::string s = hex.compare(0, 2, "0x") == 0 ? hex.substr(2) : hex;
+    if (s.size() % 2 != 0) {
+        return false;
+    }
+    out.clear();
+    for (size_t i = 0; i < s.size(); i += 2) {
+        char *end;
+        std::string byte = s.substr(i, 2);
+        long b = std::strtol(byte.c_str(), &end, 16);
+        if (*end != '\0') {
+            return false;
+        }
+        out.push_back((uint8_t) b);
+    }
+    return true;
+}
+
+static bool load(const char *path, scenario &s)
+{
+    std::ifstream in(path);
+    if (!in) {
+        fprintf(stderr, "%s: cannot open\n", path);
+        return false;
+    }
+
+    std::string name = path;
+    size_t slash = name.find_last_of('/');
+    name = slash == std::string::npos ? name : name.substr(slash + 1);
+    s.name = name.substr(0, name.find_last_of('.'));
+
+    std::string line;
+    int number = 0;
+    while (std::getline(in, line)) {
+        number++;
+        std::istringstream words(line.substr(0, line.find('#')));
+        std::string key, value;
+        if (!(words >> key)) {
+            continue;
+        }
+        words >> value;
+
+        bool ok = true;
+        if (key == "code" || key == "deploy") {
+            ok = parse_hex(value, s.code);
+            s.deploy = key == "deploy";
+        } else if (key == "input") {
+            ok = parse_hex(value, s.input);
+        } else if (key == "gas") {
+            s.gas = std::strtoll(value.c_str(), nullptr, 10);
+        } else if (key == "account") {
+            std::vector<uint8_t> address, code;
+            std::string hex;
+            words >> hex;
+            ok = parse_hex(value, address) && address.size() == sizeof(evm_address)
+                    && parse_hex(hex, code);
+            if (ok) {
+                evm_address a;
+                std::copy(address.begin(), address.end(), a.bytes);
+                s.accounts.push_back(std::make_pair(a, code));
+            }
+        } else {
+            ok = false;
+        }
+        if (!ok) {
+            fprintf(stderr, "%s:%d: bad line\n", path, number);
+            return false;
+        }
+    }
+    if (s.code.empty()) {
+        fprintf(stderr, "%s: no code\n", path);
+        return false;
+    }
+    return true;
+}
+
+static double percentile(std::vector<int64_t> &sorted, double p)
+{
+    if (sorted.empty()) {
+        return 0;
+    }
+    size_t rank = (size_t) (p * sorted.size() + 0.999999);
+    return (double) sorted[std::min(sorted.size(), std::max<size_t>(rank, 1)) - 1];
+}
+
+static int64_t drain_compile_nanos()
+{
+    evmjit_event events[64];
+    int64_t nanos = 0;
+    size_t n;
+    while ((n = evmjit_drain_events(events, 64)) > 0) {
+        for (size_t i = 0; i < n; i++) {
+            if (events[i].type == EVMJIT_EVENT_COMPILE
+                    && !(events[i].flags & EVMJIT_EVENT_CACHE_LOAD)) {
+                nanos += events[i].duration_ns;
+            }
+        }
+        if (n < 64) {
+            break;
+        }
+    }
+    return nanos;
+}
+
+static bool run(evm_instance *instance, const scenario &s, int runs, int compile_runs)
+{
+    host h(instance, EVM_AION);
+    h.origin = caller_address;
+    h.accounts[to_key(caller_address)].balance = (unsigned __int128) 1 << 100;
+
+    for (auto &a : s.accounts) {
+        h.set_code(a.first, a.second);
+    }
+    if (s.deploy) {
+        evm_result r = h.deploy(contract_address, caller_address, s.code, s.gas);
+        int status = r.status_code;
+        r.release(&r);
+        if (status != EVM_SUCCESS) {
+            printf("%-24s deploy failed with status %d\n", s.name.c_str(), status);
+            return false;
+        }
+    } else {
+        h.set_code(contract_address, s.code);
+    }
+    size_t base = h.mark();
+
+    evm_message msg = {};
+    msg.address = contract_address;
+    msg.caller = caller_address;
+    msg.input = s.input.data();
+    msg.input_size = s.input.size();
+    msg.gas = s.gas;
+    msg.kind = EVM_CALL;
+
+    account &contract = h.accounts[to_key(contract_address)];
+    evm_hash hash = contract.code_hash;
+    drain_compile_nanos();
+
+    // compilation: every run has a new code hash, so the code is compiled again
+    std::vector<int64_t> compile;
+    std::vector<int64_t> first;
+    for (int i = 0; i < compile_runs; i++) {
+        contract.code_hash = code_hash(contract.code, i + 1);
+        auto start = clock_type::now();
+        evm_result r = h.execute(msg);
+        auto end = clock_type::now();
+        r.release(&r);
+        h.rollback(base);
+        first.push_back(std::chrono::duration_cast<std::chrono::nanoseconds>(end - start).count());
+        compile.push_back(drain_compile_nanos());
+    }
+    contract.code_hash = hash;
+
+    // execution: warm up once, then every run hits the code cache
+    evm_result r = h.execute(msg);
+    int status = r.status_code;
+    int64_t energy = s.gas - r.gas_left;
+    size_t logs = h.logs.size();
+    r.release(&r);
+    h.rollback(base);
+
+    std::vector<int64_t> exec;
+    exec.reserve(runs);
+    int64_t total = 0;
+    for (int i = 0; i < runs; i++) {
+        auto start = clock_type::now();
+        r = h.execute(msg);
+        auto end = clock_type::now();
+        r.release(&r);
+        h.rollback(base);
+        int64_t nanos = std::chrono::duration_cast<std::chrono::nanoseconds>(end - start).count();
+        exec.push_back(nanos);
+        total += nanos;
+    }
+    drain_compile_nanos();
+
+    std::sort(exec.begin(), exec.end());
+    std::sort(compile.begin(), compile.end());
+    std::sort(first.begin(), first.end());
+    double ops = total > 0 ? 1e9 * runs / total : 0;
+    printf("%-24s %6d %9" PRId64 " %5zu %9.1f %9.1f %9.1f %9.1f %9.0f %11.2f %10.1f %10.1f\n",
+           s.name.c_str(),
+           status,
+           energy,
+           logs,
+           percentile(exec, 0.5) / 1e3,
+           percentile(exec, 0.9) / 1e3,
+           percentile(exec, 0.99) / 1e3,
+           exec.empty() ? 0 : exec.back() / 1e3,
+           ops,
+           ops * energy / 1e6,
+           percentile(compile, 0.5) / 1e3,
+           percentile(first, 0.5) / 1e3);
+    return status == EVM_SUCCESS;
+}
+
+static void usage()
+{
+    fprintf(stderr, "Usage: bench [-n runs] [-c compile runs] scenario...\n");
+    exit(1);
+}
+
+int main(int argc, char **argv)
+{
+    int runs = 10000;
+    int compile_runs = 20;
+    std::vector<const char *> paths;
+    for (int i = 1; i < argc; i++) {
+        if (std::strcmp(argv[i], "-n") == 0 && i + 1 < argc) {
+            runs = std::atoi(argv[++i]);
+        } else if (std::strcmp(argv[i], "-c") == 0 && i + 1 < argc) {
+            compile_runs = std::atoi(argv[++i]);
+        } else if (argv[i][0] == '-') {
+            usage();
+        } else {
+            paths.push_back(argv[i]);
+        }
+    }
+    if (paths.empty() || runs <= 0 || compile_runs < 0) {
+        usage();
+    }
+
+    evm_instance *instance = evmjit_create();
+    instance->set_option(instance, "events", "1");
+
+    printf("%-24s %6s %9s %5s %9s %9s %9s %9s %9s %11s %10s %10s\n",
+           "scenario", "status", "energy", "logs",
+           "p50 us", "p90 us", "p99 us", "max us", "ops/s", "Menergy/s",
+           "compile us", "cold us");
+    int failed = 0;
+    for (const char *path : paths) {
+        scenario s;
+        if (!load(path, s) || !run(instance, s, runs, compile_runs)) {
+            failed++;
+        }
+    }
+
+    instance->destroy(instance);
+    return failed == 0 ? 0 : 2;
+}
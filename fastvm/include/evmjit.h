@@ -22,6 +22,50 @@ extern "C" {
 /// @return  The EVMJIT instance.
 EXPORT struct evm_instance* evmjit_create(void);
 
+/// Copy the basic block profile of the code with the given hash.
+///
+/// Profiling is enabled with the "profile" option. Each block is written as
+/// 4 words: begin offset, end offset, number of executions and gas used.
+///
+/// @param code_hash  The hash of the code.
+/// @param out        The output buffer.
+/// @param capacity   The maximum number of blocks to write.
+/// @return           The number of blocks of the code, 0 if it was not profiled.
+EXPORT size_t evmjit_get_profile(struct evm_hash const* code_hash, uint64_t* out, size_t capacity);
+
+/// Drop the profiles of all code; code run afterwards is profiled from zero.
+EXPORT void evmjit_reset_profiles(void);
+
+/// Kinds of JIT activity reported by evmjit_drain_events().
+enum evmjit_event_type {
+    EVMJIT_EVENT_COMPILE = 0,       ///< Code was compiled, or loaded from the object cache.
+    EVMJIT_EVENT_ENGINE_RESET = 1   ///< The execution engine and the code map were reset.
+};
+
+/// Flags of an evmjit_event.
+enum evmjit_event_flags {
+    EVMJIT_EVENT_CACHE_LOAD = 1,    ///< The object was loaded from the cache.
+    EVMJIT_EVENT_CACHE_WRITE = 2,   ///< The object was written to the cache.
+    EVMJIT_EVENT_RESET_MEMORY = 4,  ///< The reset was caused by the memory limit.
+    EVMJIT_EVENT_RESET_COUNT = 8    ///< The reset was caused by the number of compilations.
+};
+
+/// A JIT activity of the calling thread, recorded when the "events" option is set.
+struct evmjit_event {
+    int type;                  ///< The evmjit_event_type.
+    int flags;                 ///< The evmjit_event_flags.
+    int64_t start_ns;          ///< The wall clock time it started, in nanoseconds since the epoch.
+    int64_t duration_ns;       ///< The duration in nanoseconds.
+    char code_id[72];          ///< The NUL-terminated code identifier, empty for resets.
+};
+
+/// Move the events recorded on the calling thread into a buffer.
+///
+/// @param out       The output buffer.
+/// @param capacity  The maximum number of events to move.
+/// @return          The number of events moved.
+EXPORT size_t evmjit_drain_events(struct evmjit_event* out, size_t capacity);
+
 #if __cplusplus
 }
 #endif
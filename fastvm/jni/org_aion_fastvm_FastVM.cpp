@@ -1,6 +1,10 @@
 #include <cstdlib>
 #include <cstring>
 #include <algorithm>
+#include <atomic>
+#include <chrono>
+#include <mutex>
+#include <vector>
 
 #include "org_aion_fastvm_FastVM.h"
 #include "evmjit.h"
@@ -31,6 +35,186 @@ jmethodID cb_call;
 // do you need a stack for recursive call?
 struct evm_tx_context ctx;
 
+// the jit instance, which is a singleton, created once by init
+struct evm_instance *jit;
+
+/**
+ * Callback types, in the order of the context function table.
+ */
+enum callback_type {
+    CB_ACCOUNT_EXISTS,
+    CB_GET_STORAGE,
+    CB_SET_STORAGE,
+    CB_GET_BALANCE,
+    CB_GET_CODE,
+    CB_SELFDESTRUCT,
+    CB_CALL,
+    CB_GET_TX_CONTEXT,
+    CB_GET_BLOCK_HASH,
+    CB_LOG,
+    CB_COUNT
+};
+
+// latency bucket i counts callbacks which took [2^i, 2^(i+1)) nanoseconds
+const int CB_HISTOGRAM_BUCKETS = 32;
+
+/**
+ * Callback counters of one thread. Only the owning thread writes them, other
+ * threads may read them for the process-wide stats.
+ */
+struct callback_stats {
+    std::atomic<uint64_t> count[CB_COUNT];
+    std::atomic<uint64_t> nanos[CB_COUNT];
+    std::atomic<uint64_t> histogram[CB_COUNT][CB_HISTOGRAM_BUCKETS];
+
+    callback_stats()
+    {
+        for (int i = 0; i < CB_COUNT; i++) {
+            count[i] = 0;
+            nanos[i] = 0;
+            for (int j = 0; j < CB_HISTOGRAM_BUCKETS; j++) {
+                histogram[i][j] = 0;
+            }
+        }
+    }
+};
+
+std::mutex cb_stats_mutex;
+std::vector<callback_stats *> cb_stats_live;
+callback_stats cb_stats_retired; // folded in from exited threads
+
+inline void cb_stats_add(std::atomic<uint64_t> &counter, uint64_t n)
+{
+    counter.store(counter.load(std::memory_order_relaxed) + n, std::memory_order_relaxed);
+}
+
+/**
+ * Registers the stats of a thread for the process-wide view.
+ */
+struct thread_callback_stats {
+    callback_stats stats;
+
+    thread_callback_stats()
+    {
+        std::lock_guard<std::mutex> lock(cb_stats_mutex);
+        cb_stats_live.push_back(&stats);
+    }
+
+    ~thread_callback_stats()
+    {
+        std::lock_guard<std::mutex> lock(cb_stats_mutex);
+        cb_stats_live.erase(std::find(cb_stats_live.begin(), cb_stats_live.end(), &stats));
+        for (int i = 0; i < CB_COUNT; i++) {
+            cb_stats_add(cb_stats_retired.count[i], stats.count[i]);
+            cb_stats_add(cb_stats_retired.nanos[i], stats.nanos[i]);
+            for (int j = 0; j < CB_HISTOGRAM_BUCKETS; j++) {
+                cb_stats_add(cb_stats_retired.histogram[i][j], stats.histogram[i][j]);
+            }
+        }
+    }
+};
+
+thread_local thread_callback_stats cb_thread_stats;
+
+/**
+ * Whether callbacks are counted and timed. When disabled, a callback neither
+ * touches its thread's stats nor reads the clock.
+ */
+std::atomic<bool> cb_stats_enabled(false);
+
+/**
+ * Time spent in the clocks nested in the innermost running clock of this thread.
+ */
+thread_local uint64_t cb_nested_nanos = 0;
+
+/**
+ * Measures the time from construction to stop() which was not spent in the
+ * clocks nested in it, and reports the whole time to the enclosing clock.
+ */
+struct exclusive_clock {
+    bool on;
+    uint64_t outer_nanos;
+    std::chrono::steady_clock::time_point start;
+
+    explicit exclusive_clock(bool enabled) : on(enabled), outer_nanos(0)
+    {
+        if (on) {
+            outer_nanos = cb_nested_nanos;
+            cb_nested_nanos = 0;
+            start = std::chrono::steady_clock::now();
+        }
+    }
+
+    uint64_t stop()
+    {
+        uint64_t total = std::chrono::duration_cast<std::chrono::nanoseconds>(
+                std::chrono::steady_clock::now() - start).count();
+        uint64_t exclusive = total - std::min(total, cb_nested_nanos);
+        cb_nested_nanos = outer_nanos + total;
+        on = false;
+        return exclusive;
+    }
+
+    ~exclusive_clock()
+    {
+        if (on) {
+            stop();
+        }
+    }
+};
+
+/**
+ * When stats are enabled, counts a callback and times it from construction to
+ * destruction, including the JNI marshalling. The time of a call excludes the
+ * nested execution and its callbacks.
+ */
+struct callback_timer {
+    callback_type type;
+    exclusive_clock clock;
+
+    explicit callback_timer(callback_type t)
+        : type(t), clock(cb_stats_enabled.load(std::memory_order_relaxed)) {}
+
+    ~callback_timer()
+    {
+        if (!clock.on) {
+            return;
+        }
+        uint64_t ns = clock.stop();
+        int bucket = std::min(63 - __builtin_clzll(ns | 1), CB_HISTOGRAM_BUCKETS - 1);
+        callback_stats &stats = cb_thread_stats.stats;
+        cb_stats_add(stats.count[type], 1);
+        cb_stats_add(stats.nanos[type], ns);
+        cb_stats_add(stats.histogram[type][bucket], 1);
+    }
+};
+
+/**
+ * Writes the count and total nanoseconds of each callback type.
+ */
+void snapshot_callback_counts(callback_stats &stats, jlong *out)
+{
+    for (int i = 0; i < CB_COUNT; i++) {
+        out[2 * i] = stats.count[i].load(std::memory_order_relaxed);
+        out[2 * i + 1] = stats.nanos[i].load(std::memory_order_relaxed);
+    }
+}
+
+/**
+ * Adds the count, total nanoseconds and histogram of each callback type.
+ */
+void sum_callback_stats(callback_stats &stats, jlong *out)
+{
+    const int words = 2 + CB_HISTOGRAM_BUCKETS;
+    for (int i = 0; i < CB_COUNT; i++) {
+        out[words * i] += stats.count[i].load(std::memory_order_relaxed);
+        out[words * i + 1] += stats.nanos[i].load(std::memory_order_relaxed);
+        for (int j = 0; j < CB_HISTOGRAM_BUCKETS; j++) {
+            out[words * i + 2 + j] += stats.histogram[i][j].load(std::memory_order_relaxed);
+        }
+    }
+}
+
 /* forward declaration */
 jbyteArray encode_message(JNIEnv *env, const struct evm_message *msg);
 jbyteArray encode_message(JNIEnv *env, const struct evm_message *msg);
@@ -61,6 +245,8 @@ void release_result(const struct evm_result *result)
 int account_exists(struct evm_context* context,
                    const struct evm_address* address)
 {
+    callback_timer timer(CB_ACCOUNT_EXISTS);
+
     jbyteArray addr = cb_env->NewByteArray(sizeof(evm_address));
     cb_env->SetByteArrayRegion(addr, 0, sizeof(evm_address), (const jbyte *)address->bytes);
 
@@ -77,6 +263,8 @@ void get_balance(struct evm_word* result,
                  struct evm_context* context,
                  const struct evm_address* address)
 {
+    callback_timer timer(CB_GET_BALANCE);
+
     jbyteArray addr = cb_env->NewByteArray(sizeof(evm_address));
     cb_env->SetByteArrayRegion(addr, 0, sizeof(evm_address), (const jbyte *)address->bytes);
 
@@ -98,6 +286,8 @@ size_t get_code(const uint8_t** result_code,
                 struct evm_context* context,
                 const struct evm_address* address)
 {
+    callback_timer timer(CB_GET_CODE);
+
     jbyteArray addr = cb_env->NewByteArray(sizeof(evm_address));
     cb_env->SetByteArrayRegion(addr, 0, sizeof(evm_address), (const jbyte *)address->bytes);
 
@@ -132,6 +322,8 @@ void get_storage(struct evm_word* result,
                  const struct evm_address* address,
                  const struct evm_word* key)
 {
+    callback_timer timer(CB_GET_STORAGE);
+
     jbyteArray addr = cb_env->NewByteArray(sizeof(evm_address));
     cb_env->SetByteArrayRegion(addr, 0, sizeof(evm_address), (const jbyte *)address->bytes);
     jbyteArray k = cb_env->NewByteArray(sizeof(evm_word));
@@ -155,6 +347,8 @@ void set_storage(struct evm_context* context,
                  const struct evm_word* key,
                  const struct evm_word* value)
 {
+    callback_timer timer(CB_SET_STORAGE);
+
     jbyteArray addr = cb_env->NewByteArray(sizeof(evm_address));
     cb_env->SetByteArrayRegion(addr, 0, sizeof(evm_address), (const jbyte *)address->bytes);
     jbyteArray k = cb_env->NewByteArray(sizeof(evm_word));
@@ -175,6 +369,8 @@ void set_storage(struct evm_context* context,
 void get_tx_context(struct evm_tx_context* result,
                     struct evm_context* context)
 {
+    callback_timer timer(CB_GET_TX_CONTEXT);
+
     memcpy(result, &ctx, sizeof(evm_tx_context));
 }
 
@@ -185,6 +381,8 @@ void get_block_hash(struct evm_hash* result,
                     struct evm_context* context,
                     int64_t number)
 {
+    callback_timer timer(CB_GET_BLOCK_HASH);
+
     jbyteArray block_hash = (jbyteArray)cb_env->CallStaticObjectMethod(cb_cls, cb_get_block_hash, number);
 
     jbyte *block_hash_ptr = cb_env->GetByteArrayElements(block_hash, NULL);
@@ -201,6 +399,8 @@ void selfdestruct(struct evm_context* context,
                   const struct evm_address* address,
                   const struct evm_address* beneficiary)
 {
+    callback_timer timer(CB_SELFDESTRUCT);
+
     jbyteArray addr = cb_env->NewByteArray(sizeof(evm_address));
     cb_env->SetByteArrayRegion(addr, 0, sizeof(evm_address), (const jbyte *)address->bytes);
     jbyteArray bene = cb_env->NewByteArray(sizeof(evm_address));
@@ -222,6 +422,8 @@ void log(struct evm_context* context,
          const struct evm_word topics[],
          size_t topics_count)
 {
+    callback_timer timer(CB_LOG);
+
     jbyteArray addr = cb_env->NewByteArray(sizeof(evm_address));
     cb_env->SetByteArrayRegion(addr, 0, sizeof(evm_address), (const jbyte *)address->bytes);
     jbyteArray t = cb_env->NewByteArray(sizeof(evm_word) * topics_count);
@@ -243,6 +445,8 @@ void call(struct evm_result* result,
           struct evm_context* context,
           const struct evm_message* msg)
 {
+    callback_timer timer(CB_CALL);
+
     jbyteArray m = encode_message(cb_env, msg);
 
     jbyteArray r = (jbyteArray)cb_env->CallStaticObjectMethod(cb_cls, cb_call, m);
@@ -421,6 +625,8 @@ JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_init
     cb_call = env->GetStaticMethodID(cb_cls, "call", "([B)[B");
 
     env->DeleteLocalRef(cb_cls_local);
+
+    jit = evmjit_create();
 }
 
 JNIEXPORT jlong JNICALL Java_org_aion_fastvm_FastVM_create
@@ -428,12 +634,12 @@ JNIEXPORT jlong JNICALL Java_org_aion_fastvm_FastVM_create
 {
     cb_env = env;
 
-    struct evm_instance *instance = evmjit_create();;
-    return (jlong)instance;
+    return (jlong)jit;
 }
 
 JNIEXPORT jbyteArray JNICALL Java_org_aion_fastvm_FastVM_run
-  (JNIEnv *env, jclass cls, jlong instance, jbyteArray code, jbyteArray context, jint revision)
+  (JNIEnv *env, jclass cls, jlong instance, jbyteArray code, jbyteArray context, jint revision,
+   jlongArray callback_stats)
 {
     cb_env = env;
 
@@ -448,8 +654,27 @@ JNIEXPORT jbyteArray JNICALL Java_org_aion_fastvm_FastVM_run
     dev::evmjit::keccak((const uint8_t*) code_ptr, code_size, msg.code_hash.bytes);
 
     // execute
+    jlong before[2 * CB_COUNT];
+    if (callback_stats) {
+        snapshot_callback_counts(cb_thread_stats.stats, before);
+    }
+    // keeps a nested execution out of the time of its call
+    exclusive_clock clock(cb_stats_enabled.load(std::memory_order_relaxed));
     struct evm_result result = inst->execute(inst, &vm_context, static_cast<evm_revision>(revision), &msg,
             (uint8_t *)code_ptr, code_size);
+    if (clock.on) {
+        clock.stop();
+    }
+
+    // callbacks made by this frame, including nested frames
+    if (callback_stats) {
+        jlong after[2 * CB_COUNT];
+        snapshot_callback_counts(cb_thread_stats.stats, after);
+        for (int i = 0; i < 2 * CB_COUNT; i++) {
+            after[i] -= before[i];
+        }
+        env->SetLongArrayRegion(callback_stats, 0, 2 * CB_COUNT, after);
+    }
 
     // encode execution result
     jbyteArray ret = encode_result(env, &result);
@@ -472,3 +697,110 @@ JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_destroy
     struct evm_instance *instance = (struct evm_instance *)handler;
     instance->destroy(instance);
 }
+
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_setProfiling
+  (JNIEnv *env, jclass cls, jboolean enabled)
+{
+    jit->set_option(jit, "profile", enabled ? "1" : "0");
+}
+
+JNIEXPORT jlongArray JNICALL Java_org_aion_fastvm_FastVM_getProfile
+  (JNIEnv *env, jclass cls, jbyteArray code)
+{
+    jbyte *code_ptr = env->GetByteArrayElements(code, NULL);
+    jsize code_size = env->GetArrayLength(code);
+    struct evm_hash code_hash;
+    dev::evmjit::keccak((const uint8_t*) code_ptr, code_size, code_hash.bytes);
+    env->ReleaseByteArrayElements(code, code_ptr, JNI_ABORT);
+
+    // 4 words per block: begin offset, end offset, executions, energy used
+    size_t blocks = evmjit_get_profile(&code_hash, NULL, 0);
+    uint64_t *buf = (uint64_t *)malloc(sizeof(uint64_t) * 4 * std::max<size_t>(blocks, 1));
+    evmjit_get_profile(&code_hash, buf, blocks);
+
+    jlongArray ret = env->NewLongArray(4 * blocks);
+    env->SetLongArrayRegion(ret, 0, 4 * blocks, (const jlong *)buf);
+
+    free(buf);
+    return ret;
+}
+
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_resetProfiles
+  (JNIEnv *env, jclass cls)
+{
+    evmjit_reset_profiles();
+}
+
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_setCallbackStats0
+  (JNIEnv *env, jclass cls, jboolean enabled)
+{
+    cb_stats_enabled.store(enabled, std::memory_order_relaxed);
+}
+
+JNIEXPORT jlongArray JNICALL Java_org_aion_fastvm_FastVM_getThreadCallbackStats0
+  (JNIEnv *env, jclass cls)
+{
+    const int size = CB_COUNT * (2 + CB_HISTOGRAM_BUCKETS);
+    jlong buf[size] = {0};
+    sum_callback_stats(cb_thread_stats.stats, buf);
+
+    jlongArray ret = env->NewLongArray(size);
+    env->SetLongArrayRegion(ret, 0, size, buf);
+    return ret;
+}
+
+JNIEXPORT jlongArray JNICALL Java_org_aion_fastvm_FastVM_getProcessCallbackStats0
+  (JNIEnv *env, jclass cls)
+{
+    const int size = CB_COUNT * (2 + CB_HISTOGRAM_BUCKETS);
+    jlong buf[size] = {0};
+    {
+        std::lock_guard<std::mutex> lock(cb_stats_mutex);
+        sum_callback_stats(cb_stats_retired, buf);
+        for (callback_stats *stats : cb_stats_live) {
+            sum_callback_stats(*stats, buf);
+        }
+    }
+
+    jlongArray ret = env->NewLongArray(size);
+    env->SetLongArrayRegion(ret, 0, size, buf);
+    return ret;
+}
+
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_setJitEvents
+  (JNIEnv *env, jclass cls, jboolean enabled)
+{
+    jit->set_option(jit, "events", enabled ? "1" : "0");
+}
+
+JNIEXPORT jbyteArray JNICALL Java_org_aion_fastvm_FastVM_drainJitEvents
+  (JNIEnv *env, jclass cls)
+{
+    const size_t capacity = 64;
+    struct evmjit_event events[capacity];
+    size_t count = evmjit_drain_events(events, capacity);
+
+    unsigned size = 4;
+    for (size_t i = 0; i < count; i++) {
+        size += 4 + 4 + 8 + 8 + 4 + strlen(events[i].code_id);
+    }
+    jbyte *buf = (jbyte *)malloc(size);
+
+    unsigned offset = 0;
+    write_int(buf + offset, count); offset += 4; // count
+    for (size_t i = 0; i < count; i++) {
+        unsigned id_len = strlen(events[i].code_id);
+        write_int(buf + offset, events[i].type); offset += 4; // type
+        write_int(buf + offset, events[i].flags); offset += 4; // flags
+        write_long(buf + offset, events[i].start_ns); offset += 8; // start
+        write_long(buf + offset, events[i].duration_ns); offset += 8; // duration
+        write_int(buf + offset, id_len); offset += 4; // code id length
+        memcpy(buf + offset, events[i].code_id, id_len); offset += id_len; // code id
+    }
+
+    jbyteArray ret = env->NewByteArray(size);
+    env->SetByteArrayRegion(ret, 0, size, buf);
+
+    free(buf);
+    return ret;
+}
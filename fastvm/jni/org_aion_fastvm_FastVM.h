@@ -26,10 +26,10 @@ JNIEXPORT jlong JNICALL Java_org_aion_fastvm_FastVM_create
 /*
  * Class:     org_aion_fastvm_FastVM
  * Method:    run
- * Signature: (J[B[BI)[B
+ * Signature: (J[B[BI[J)[B
  */
 JNIEXPORT jbyteArray JNICALL Java_org_aion_fastvm_FastVM_run
-  (JNIEnv *, jclass, jlong, jbyteArray, jbyteArray, jint);
+  (JNIEnv *, jclass, jlong, jbyteArray, jbyteArray, jint, jlongArray);
 
 /*
  * Class:     org_aion_fastvm_FastVM
@@ -39,6 +39,70 @@ JNIEXPORT jbyteArray JNICALL Java_org_aion_fastvm_FastVM_run
 JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_destroy
   (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    setProfiling
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_setProfiling
+  (JNIEnv *, jclass, jboolean);
+
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    setCallbackStats0
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_setCallbackStats0
+  (JNIEnv *, jclass, jboolean);
+
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    getProfile
+ * Signature: ([B)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_org_aion_fastvm_FastVM_getProfile
+  (JNIEnv *, jclass, jbyteArray);
+
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    resetProfiles
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_resetProfiles
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    getThreadCallbackStats0
+ * Signature: ()[J
+ */
+JNIEXPORT jlongArray JNICALL Java_org_aion_fastvm_FastVM_getThreadCallbackStats0
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    getProcessCallbackStats0
+ * Signature: ()[J
+ */
+JNIEXPORT jlongArray JNICALL Java_org_aion_fastvm_FastVM_getProcessCallbackStats0
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    setJitEvents
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_org_aion_fastvm_FastVM_setJitEvents
+  (JNIEnv *, jclass, jboolean);
+
+/*
+ * Class:     org_aion_fastvm_FastVM
+ * Method:    drainJitEvents
+ * Signature: ()[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_org_aion_fastvm_FastVM_drainJitEvents
+  (JNIEnv *, jclass);
+
 #ifdef __cplusplus
 }
 #endif
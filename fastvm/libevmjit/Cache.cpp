@@ -32,6 +32,7 @@ namespace
 	CacheMode g_mode;
 	std::unique_ptr<llvm::MemoryBuffer> g_lastObject;
 	JITListener* g_listener;
+	thread_local bool t_written = false;
 
 	std::string getVersionedCacheDir()
 	{
@@ -169,6 +170,14 @@ void ObjectCache::notifyObjectCompiled(llvm::Module const* _module, llvm::Memory
 	std::error_code error;
 	llvm::raw_fd_ostream cacheFile(cachePath, error, llvm::sys::fs::F_None);
 	cacheFile << _object.getBuffer();
+	t_written = !error;
+}
+
+bool Cache::consumeWritten()
+{
+	auto written = t_written;
+	t_written = false;
+	return written;
 }
 
 std::unique_ptr<llvm::MemoryBuffer> ObjectCache::getObject(llvm::Module const* _module)
@@ -52,6 +52,9 @@ public:
 	/// Clears cache storage
 	static void clear();
 
+	/// Returns whether an object has been written by the calling thread since the last call.
+	static bool consumeWritten();
+
 	/// Loads all available cached objects to ExecutionEngine
 	static void preload(llvm::ExecutionEngine& _ee, std::unordered_map<std::string, uint64_t>& _funcCache,
 						llvm::LLVMContext& _llvmContext);
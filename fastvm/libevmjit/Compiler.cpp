@@ -53,7 +53,7 @@ Compiler::Compiler(Options const& _options, evm_revision _rev, bool _staticCall,
 	Type::init(m_builder.getContext());
 }
 
-std::vector<BasicBlock> Compiler::createBasicBlocks(code_iterator _codeBegin, code_iterator _codeEnd)
+std::vector<Compiler::BlockRange> Compiler::findBasicBlocks(code_iterator _codeBegin, code_iterator _codeEnd)
 {
 	/// Helper function that skips push data and finds next iterator (can be the end)
 	auto skipPushDataAndGetNext = [](code_iterator _curr, code_iterator _end)
@@ -66,7 +66,7 @@ std::vector<BasicBlock> Compiler::createBasicBlocks(code_iterator _codeBegin, co
 		return _curr + offset;
 	};
 
-	std::vector<BasicBlock> blocks;
+	std::vector<BlockRange> blocks;
 
 	bool isDead = false;
 	auto begin = _codeBegin; // begin of current block
@@ -109,8 +109,7 @@ std::vector<BasicBlock> Compiler::createBasicBlocks(code_iterator _codeBegin, co
 
 		if (isEnd)
 		{
-			auto beginIdx = begin - _codeBegin;
-			blocks.emplace_back(beginIdx, begin, next, m_mainFunc);
+			blocks.emplace_back(begin - _codeBegin, next - _codeBegin);
 			begin = next;
 		}
 	}
@@ -118,6 +117,14 @@ std::vector<BasicBlock> Compiler::createBasicBlocks(code_iterator _codeBegin, co
 	return blocks;
 }
 
+std::vector<BasicBlock> Compiler::createBasicBlocks(code_iterator _codeBegin, code_iterator _codeEnd)
+{
+	std::vector<BasicBlock> blocks;
+	for (auto const& range: findBasicBlocks(_codeBegin, _codeEnd))
+		blocks.emplace_back(range.first, _codeBegin + range.first, _codeBegin + range.second, m_mainFunc);
+	return blocks;
+}
+
 void Compiler::resolveJumps()
 {
 	auto jumpTable = llvm::cast<llvm::SwitchInst>(m_jumpTableBB->getTerminator());
@@ -211,8 +218,8 @@ std::unique_ptr<llvm::Module> Compiler::compile(code_iterator _begin, code_itera
 	runtimeManager.setJmpBuf(jmpBuf);
 	m_builder.CreateCondBr(normalFlow, entryBB->getNextNode(), abortBB, Type::expectTrue);
 
-	for (auto& block: blocks)
-		compileBasicBlock(block, runtimeManager, arith, memory, ext, gasMeter);
+	for (size_t i = 0; i < blocks.size(); ++i)
+		compileBasicBlock(blocks[i], i, runtimeManager, arith, memory, ext, gasMeter);
 
 	// Code for special blocks:
 	m_builder.SetInsertPoint(stopBB);
@@ -251,12 +258,44 @@ llvm::Value * Compiler::popWord256(LocalStack& stack)
 	return m_builder.CreateOr(w0_15, w16_32);
 }
 
-void Compiler::compileBasicBlock(BasicBlock& _basicBlock, RuntimeManager& _runtimeManager,
+void Compiler::profileBasicBlock(size_t _blockIdx, RuntimeManager& _runtimeManager)
+{
+	auto dataType = RuntimeManager::getRuntimeDataType();
+	auto dataPtr = _runtimeManager.getDataPtr();
+	auto countersPtr = m_builder.CreateStructGEP(dataType, dataPtr, RuntimeData::ProfileCounters, "prof.counters.ptr");
+	auto prevBlockPtr = m_builder.CreateStructGEP(dataType, dataPtr, RuntimeData::ProfileBlock, "prof.block.ptr");
+	auto prevGasPtr = m_builder.CreateStructGEP(dataType, dataPtr, RuntimeData::ProfileGas, "prof.gas.ptr");
+
+	auto counters = m_builder.CreateLoad(countersPtr, "prof.counters");
+	auto prevBlock = m_builder.CreateLoad(prevBlockPtr, "prof.block");
+	auto prevGas = m_builder.CreateLoad(prevGasPtr, "prof.gas");
+	auto gas = _runtimeManager.getGas();
+
+	// Charge the gas used since the previous block was entered to that block.
+	// Counters are pairs of (executions, gas), shared by all frames running this code.
+	auto prevGasIdx = m_builder.CreateAdd(m_builder.CreateShl(prevBlock, 1), m_builder.getInt64(1));
+	auto prevGasCounter = m_builder.CreateGEP(counters, prevGasIdx);
+	m_builder.CreateAtomicRMW(llvm::AtomicRMWInst::Add, prevGasCounter, m_builder.CreateSub(prevGas, gas),
+		llvm::AtomicOrdering::Monotonic);
+
+	auto execCounter = m_builder.CreateConstGEP1_64(counters, _blockIdx * 2);
+	m_builder.CreateAtomicRMW(llvm::AtomicRMWInst::Add, execCounter, m_builder.getInt64(1),
+		llvm::AtomicOrdering::Monotonic);
+
+	m_builder.CreateStore(m_builder.getInt64(_blockIdx), prevBlockPtr);
+	m_builder.CreateStore(gas, prevGasPtr);
+}
+
+void Compiler::compileBasicBlock(BasicBlock& _basicBlock, size_t _blockIdx, RuntimeManager& _runtimeManager,
 								 Arith128& _arith, Memory& _memory, Ext& _ext, GasMeter& _gasMeter)
 {
 	m_builder.SetInsertPoint(_basicBlock.llvm());
 	LocalStack stack{m_builder, _runtimeManager};
 
+	// Must come before the first instruction, which opens the gas check of the block.
+	if (m_options.profile)
+		profileBasicBlock(_blockIdx, _runtimeManager);
+
 	for (auto it = _basicBlock.begin(); it != _basicBlock.end(); ++it)
 	{
 		auto inst = Instruction(*it);
@@ -21,17 +21,30 @@ public:
 
 		/// Dump CFG as a .dot file for graphviz
 		bool dumpCFG = false;
+
+		/// Count executions and gas used per basic block into RuntimeData::profileCounters
+		bool profile = false;
 	};
 
+	/// Bytecode offsets [begin, end) of a basic block.
+	using BlockRange = std::pair<size_t, size_t>;
+
 	Compiler(Options const& _options, evm_revision _rev, bool _staticCall, llvm::LLVMContext& _llvmContext);
 
 	std::unique_ptr<llvm::Module> compile(code_iterator _begin, code_iterator _end, std::string const& _id);
 
+	/// Splits the code into the basic blocks that compile() generates, in the same order.
+	/// Dead code between a terminating instruction and the next JUMPDEST is not part of any block.
+	static std::vector<BlockRange> findBasicBlocks(code_iterator _begin, code_iterator _end);
+
 private:
 
 	std::vector<BasicBlock> createBasicBlocks(code_iterator _begin, code_iterator _end);
 
-	void compileBasicBlock(BasicBlock& _basicBlock, class RuntimeManager& _runtimeManager, class Arith128& _arith, class Memory& _memory, class Ext& _ext, class GasMeter& _gasMeter);
+	void compileBasicBlock(BasicBlock& _basicBlock, size_t _blockIdx, class RuntimeManager& _runtimeManager, class Arith128& _arith, class Memory& _memory, class Ext& _ext, class GasMeter& _gasMeter);
+
+	/// Emits the profile counter updates at the beginning of a basic block.
+	void profileBasicBlock(size_t _blockIdx, class RuntimeManager& _runtimeManager);
 
 	void resolveJumps();
 
@@ -1,6 +1,9 @@
 #include "JIT.h"
 
+#include <atomic>
+#include <chrono>
 #include <cstddef>
+#include <memory>
 #include <mutex>
 
 #include "preprocessor/llvm_includes_start.h"
@@ -71,7 +74,7 @@ char toChar(evm_revision rev)
 }
 
 /// Combine code hash and EVM revision into a printable code identifier.
-std::string makeCodeId(evm_hash codeHash, evm_revision rev, uint32_t flags)
+std::string makeCodeId(evm_hash codeHash, evm_revision rev, uint32_t flags, bool profile)
 {
 	static const auto hexChars = "0123456789abcdef";
 	std::string str;
@@ -84,9 +87,48 @@ std::string makeCodeId(evm_hash codeHash, evm_revision rev, uint32_t flags)
 	str.push_back(toChar(rev));
 	if (flags & EVM_STATIC)
 		str.push_back('S');
+	if (profile)
+		str.push_back('P');
 	return str;
 }
 
+/// Whether JIT activity is recorded for evmjit_drain_events().
+std::atomic<bool> g_recordEvents{false};
+
+/// Bound on the events kept for a thread that does not drain them.
+constexpr size_t c_maxEvents = 1024;
+
+thread_local std::vector<evmjit_event> t_events;
+
+void recordEvent(evmjit_event_type _type, int _flags, std::string const& _codeId,
+	std::chrono::steady_clock::time_point _start)
+{
+	if (!g_recordEvents.load(std::memory_order_relaxed) || t_events.size() >= c_maxEvents)
+		return;
+
+	auto duration = std::chrono::steady_clock::now() - _start;
+	evmjit_event event{};
+	event.type = _type;
+	event.flags = _flags;
+	event.start_ns = std::chrono::duration_cast<std::chrono::nanoseconds>(
+		(std::chrono::system_clock::now() - duration).time_since_epoch()).count();
+	event.duration_ns = std::chrono::duration_cast<std::chrono::nanoseconds>(duration).count();
+	_codeId.copy(event.code_id, sizeof(event.code_id) - 1);
+	t_events.push_back(event);
+}
+
+/// Per basic block counters of profiled code, keyed by code hash.
+struct ProfileEntry
+{
+	/// Bytecode ranges of the basic blocks, in the order the compiler numbers them.
+	std::vector<Compiler::BlockRange> blocks;
+
+	/// (executions, gas) per block, followed by a sink pair charged before the first block is entered.
+	/// Running frames share them, so that dropping the profile does not free counters in use.
+	std::shared_ptr<uint64_t> counters;
+};
+
+
 void printVersion()
 {
 	std::cout << "Ethereum EVM JIT Compiler (http://github.com/ethereum/evmjit):\n"
@@ -128,6 +170,8 @@ class JITImpl: public evm_instance
 	SymbolResolver const* m_memoryMgr = nullptr;
 	mutable std::mutex x_codeMap;
 	std::unordered_map<std::string, CodeMapEntry> m_codeMap;
+	mutable std::mutex x_profiles;
+	std::unordered_map<std::string, ProfileEntry> m_profiles;
 
 	static llvm::LLVMContext& getLLVMContext()
 	{
@@ -139,6 +183,8 @@ class JITImpl: public evm_instance
 
 	void resetEngine();
 
+	void resetEngine(evmjit_event_flags _reason);
+
 public:
 	static JITImpl& instance()
 	{
@@ -157,7 +203,15 @@ public:
 	CodeMapEntry getExecFunc(std::string const& _codeIdentifier);
 	void mapExecFunc(std::string const& _codeIdentifier, ExecFunc _funcAddr);
 
-	ExecFunc compile(evm_revision _rev, bool _staticCall, byte const* _code, uint64_t _codeSize, std::string const& _codeIdentifier);
+	ExecFunc compile(evm_revision _rev, bool _staticCall, bool _profile, byte const* _code, uint64_t _codeSize, std::string const& _codeIdentifier);
+
+	/// Returns the counters of the code and its number of blocks, creating them on first use.
+	std::shared_ptr<uint64_t> getProfile(evm_hash const& _codeHash, byte const* _code, uint64_t _codeSize, int64_t& _numBlocks);
+
+	/// Copies the profile of the code into 4 words per block: begin, end, executions, gas.
+	size_t copyProfile(evm_hash const& _codeHash, uint64_t* _out, size_t _capacity);
+
+	void resetProfiles();
 
 	evm_context_fn_table const* host = nullptr;
 
@@ -165,6 +219,9 @@ public:
 	std::vector<uint8_t> returnBuffer;
 
 	size_t hitThreshold = 0;
+
+	/// Compile newly executed code with basic block profiling.
+	std::atomic<bool> profile{false};
 };
 
 int64_t call_v2(
@@ -318,24 +375,28 @@ void JITImpl::mapExecFunc(std::string const& _codeIdentifier, ExecFunc _funcAddr
     m_codeMap[_codeIdentifier].func = _funcAddr;
 }
 
-ExecFunc JITImpl::compile(evm_revision _rev, bool _staticCall, byte const* _code, uint64_t _codeSize,
+ExecFunc JITImpl::compile(evm_revision _rev, bool _staticCall, bool _profile, byte const* _code, uint64_t _codeSize,
 	std::string const& _codeIdentifier)
 {
 	// reset engine.
 	static std::atomic<long> cnt(0);
 	if (++cnt % 20000L == 0) {
-		resetEngine();
+		resetEngine(EVMJIT_EVENT_RESET_COUNT);
 	}
 
+	auto start = std::chrono::steady_clock::now();
 	clock_t t1 = clock();
 	auto module = Cache::getObject(_codeIdentifier, getLLVMContext());
+	const int cacheFlag = module ? EVMJIT_EVENT_CACHE_LOAD : 0;
 	if (!module)
 	{
 		// TODO: Listener support must be redesigned. These should be a feature of JITImpl
 		//listener->stateChanged(ExecState::Compilation);
 		assert(_code || !_codeSize);
 		//TODO: Can the Compiler be stateless?
-		module = Compiler({}, _rev, _staticCall, getLLVMContext()).compile(_code, _code + _codeSize, _codeIdentifier);
+		Compiler::Options options;
+		options.profile = _profile;
+		module = Compiler(options, _rev, _staticCall, getLLVMContext()).compile(_code, _code + _codeSize, _codeIdentifier);
 
 		if (g_optimize)
 		{
@@ -363,10 +424,55 @@ ExecFunc JITImpl::compile(evm_revision _rev, bool _staticCall, byte const* _code
 	clock_t t3 = clock();
 	DLOG(jit) << "compile: " << t2 - t1 << " " << t3 - t2 << std::endl;
 
+	const int writeFlag = Cache::consumeWritten() ? EVMJIT_EVENT_CACHE_WRITE : 0;
+	recordEvent(EVMJIT_EVENT_COMPILE, cacheFlag | writeFlag, _codeIdentifier, start);
+
 	delete m;
 	return func;
 }
 
+std::shared_ptr<uint64_t> JITImpl::getProfile(evm_hash const& _codeHash, byte const* _code, uint64_t _codeSize, int64_t& _numBlocks)
+{
+	auto key = makeCodeId(_codeHash, EVM_FRONTIER, 0, false);
+	std::lock_guard<std::mutex> lock{x_profiles};
+	auto& entry = m_profiles[key];
+	if (!entry.counters)
+	{
+		entry.blocks = Compiler::findBasicBlocks(_code, _code + _codeSize);
+		auto size = 2 * (entry.blocks.size() + 1);
+		entry.counters.reset(new uint64_t[size](), std::default_delete<uint64_t[]>());
+	}
+	_numBlocks = static_cast<int64_t>(entry.blocks.size());
+	return entry.counters;
+}
+
+size_t JITImpl::copyProfile(evm_hash const& _codeHash, uint64_t* _out, size_t _capacity)
+{
+	auto key = makeCodeId(_codeHash, EVM_FRONTIER, 0, false);
+	std::lock_guard<std::mutex> lock{x_profiles};
+	auto it = m_profiles.find(key);
+	if (it == m_profiles.end())
+		return 0;
+
+	auto& entry = it->second;
+	auto n = std::min(entry.blocks.size(), _capacity);
+	for (size_t i = 0; i < n; ++i)
+	{
+		_out[4 * i] = entry.blocks[i].first;
+		_out[4 * i + 1] = entry.blocks[i].second;
+		_out[4 * i + 2] = __atomic_load_n(&entry.counters.get()[2 * i], __ATOMIC_RELAXED);
+		_out[4 * i + 3] = __atomic_load_n(&entry.counters.get()[2 * i + 1], __ATOMIC_RELAXED);
+	}
+	return entry.blocks.size();
+}
+
+void JITImpl::resetProfiles()
+{
+	// Running frames hold their own reference to their counters, which are freed when they return.
+	std::lock_guard<std::mutex> lock{x_profiles};
+	m_profiles.clear();
+}
+
 } // anonymous namespace
 
 
@@ -434,6 +540,17 @@ static evm_result execute(evm_instance* instance, evm_context* context, evm_revi
 	std::memcpy(&rt.caller, &msg->caller, sizeof(msg->caller));
 	rt.depth = msg->depth;
 
+	const bool profile = jit.profile.load(std::memory_order_relaxed);
+	std::shared_ptr<uint64_t> profileCounters;
+	if (profile)
+	{
+		int64_t numBlocks = 0;
+		profileCounters = jit.getProfile(msg->code_hash, code, code_size, numBlocks);
+		rt.profileCounters = profileCounters.get();
+		rt.profileBlock = numBlocks;
+		rt.profileGas = rt.gas;
+	}
+
 	ExecutionContext ctx{rt, context};
 
 	evm_result result;
@@ -443,7 +560,7 @@ static evm_result execute(evm_instance* instance, evm_context* context, evm_revi
 	result.output_size = 0;
 	result.release = nullptr;
 
-    auto codeIdentifier = makeCodeId(msg->code_hash, rev, msg->flags);
+    auto codeIdentifier = makeCodeId(msg->code_hash, rev, msg->flags, profile);
     auto codeEntry = jit.getExecFunc(codeIdentifier);
     auto func = codeEntry.func;
     if (!func)
@@ -460,7 +577,7 @@ static evm_result execute(evm_instance* instance, evm_context* context, evm_revi
             std::cerr << "EVMJIT Compile " << codeIdentifier << " (" << codeEntry.hits << ")\n";
 
         const bool staticCall = (msg->flags & EVM_STATIC) != 0;
-        func = jit.compile(rev, staticCall, ctx.code(), ctx.codeSize(), codeIdentifier);
+        func = jit.compile(rev, staticCall, profile, ctx.code(), ctx.codeSize(), codeIdentifier);
         if (!func)
         {
             result.status_code = EVM_INTERNAL_ERROR;
@@ -487,6 +604,13 @@ static evm_result execute(evm_instance* instance, evm_context* context, evm_revi
 		result.gas_left = rt.gas;
 	}
 
+	if (profile)
+	{
+		// The last block entered is charged at exit, as there is no next block to do it.
+		auto gasUsed = static_cast<uint64_t>(rt.profileGas - result.gas_left);
+		__atomic_fetch_add(&rt.profileCounters[2 * rt.profileBlock + 1], gasUsed, __ATOMIC_RELAXED);
+	}
+
 	if (returnCode == ReturnCode::Return || returnCode == ReturnCode::Revert)
 	{
 		auto out = ctx.getReturnData();
@@ -512,6 +636,24 @@ static evm_result execute(evm_instance* instance, evm_context* context, evm_revi
 	return result;
 }
 
+EXPORT size_t evmjit_get_profile(evm_hash const* code_hash, uint64_t* out, size_t capacity)
+{
+	return JITImpl::instance().copyProfile(*code_hash, out, capacity);
+}
+
+EXPORT void evmjit_reset_profiles()
+{
+	JITImpl::instance().resetProfiles();
+}
+
+EXPORT size_t evmjit_drain_events(evmjit_event* out, size_t capacity)
+{
+	auto n = std::min(capacity, t_events.size());
+	std::copy_n(t_events.begin(), n, out);
+	t_events.erase(t_events.begin(), t_events.begin() + n);
+	return n;
+}
+
 static int set_option(evm_instance* instance, const char* name, const char* value) noexcept
 {
     try
@@ -522,6 +664,17 @@ static int set_option(evm_instance* instance, const char* name, const char* valu
             jit.hitThreshold = std::stoul(value);
             return 1;
         }
+        if (name == std::string{"profile"})
+        {
+            auto& jit = static_cast<JITImpl&>(*instance);
+            jit.profile = std::stoul(value) != 0;
+            return 1;
+        }
+        if (name == std::string{"events"})
+        {
+            g_recordEvents = std::stoul(value) != 0;
+            return 1;
+        }
         return 0;
     }
     catch (...)
@@ -532,6 +685,13 @@ static int set_option(evm_instance* instance, const char* name, const char* valu
 
 }  // extern "C"
 
+void JITImpl::resetEngine(evmjit_event_flags _reason)
+{
+	auto start = std::chrono::steady_clock::now();
+	resetEngine();
+	recordEvent(EVMJIT_EVENT_ENGINE_RESET, _reason, {}, start);
+}
+
 void JITImpl::resetEngine()
 {
 	std::lock_guard<std::mutex> lock{x_codeMap};
@@ -590,7 +750,7 @@ void JITImpl::checkMemorySize()
 		if (g_stats)
 			std::cerr << "EVMJIT reset!\n";
 
-		resetEngine();
+		resetEngine(EVMJIT_EVENT_RESET_MEMORY);
 	}
 }
 
@@ -30,11 +30,15 @@ struct RuntimeData
 		Address,
 		Caller,
 		Depth,
+		ProfileCounters,
+		ProfileBlock,
+		ProfileGas,
 
 		ReturnData 		   = CallData,		///< Return data pointer (set only in case of RETURN)
 		ReturnDataSize 	   = CallDataSize,	///< Return data size (set only in case of RETURN)
 	};
 
+	/// Number of elements unpacked on function entry. The profile elements are only accessed in place.
 	static size_t const numElements = Depth + 1;
 
 	int64_t 	gas = 0;
@@ -47,6 +51,9 @@ struct RuntimeData
 	byte        address[32];
 	byte        caller[32];
 	int64_t     depth;
+	uint64_t*   profileCounters = nullptr;	///< (executions, gas) per basic block, used only by profiled code.
+	int64_t     profileBlock = 0;			///< Basic block entered last.
+	int64_t     profileGas = 0;				///< Gas left when profileBlock was entered.
 };
 
 struct JITSchedule
@@ -32,6 +32,9 @@ llvm::StructType* RuntimeManager::getRuntimeDataType()
 			Type::Word256,  // adddress
 			Type::Word256,  // caller
 			Type::Size,     // depth
+			Type::Size->getPointerTo(),  // profileCounters
+			Type::Size,     // profileBlock
+			Type::Size,     // profileGas
 		};
 		type = llvm::StructType::create(elems, "RuntimeData");
 	}
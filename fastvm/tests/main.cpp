@@ -5536,6 +5536,69 @@ TEST(misc, testRevertCall) {
     ASSERT_EQ(0, call_msg.flags);
 }
 
+//======================================
+// Basic block profile
+//======================================
+
+TEST(profile, testBlockCounts) {
+    uint8_t const code[] = {
+        0x60, 0x00, // push i
+
+        0x5b,
+        0x80, // copy i
+        0x61, 0x04, 0x00, // push 1024
+        0x10, // 1024 < i
+        0x60, 0x19, 0x57, // jump if true
+
+        0x80, // copy i
+        0x60, 0xE0, 0x51, // mload sum
+        0x01, // sum += i
+        0x60, 0xE0, 0x52, // mstore sum
+        0x60, 0x01, // push 1
+        0x01, // i += 1
+        0x60, 0x02, 0x56, // jump
+
+        0x5b,
+        0x60, 0x10, 0x60, 0xE0, 0xF3 // RETURN
+    };
+    // begin, end and executions of each block
+    uint64_t const blocks[] = {
+        0x00, 0x02, 1,
+        0x02, 0x0b, 1026,
+        0x0b, 0x19, 1025,
+        0x19, 0x1f, 1
+    };
+    int64_t gas = 200000;
+
+    evmjit_reset_profiles();
+    instance->set_option(instance, "profile", "1");
+    int64_t used = 0;
+    for (int run = 1; run <= 2; run++) {
+        setup_message(code, sizeof(code), nullptr, 0, gas);
+        struct evm_result result = instance->execute(instance, &context, EVM_AION, &msg, code, sizeof(code));
+        ASSERT_EQ(EVM_SUCCESS, result.status_code);
+        used += gas - result.gas_left;
+        release_result(&result);
+
+        uint64_t profile[4 * 8] = {};
+        ASSERT_EQ(4u, evmjit_get_profile(&msg.code_hash, profile, 8));
+        uint64_t profiledGas = 0;
+        for (size_t i = 0; i < 4; i++) {
+            EXPECT_EQ(blocks[3 * i], profile[4 * i]);
+            EXPECT_EQ(blocks[3 * i + 1], profile[4 * i + 1]);
+            EXPECT_EQ(run * blocks[3 * i + 2], profile[4 * i + 2]);
+            profiledGas += profile[4 * i + 3];
+        }
+        // each unit of energy is charged to exactly one block
+        ASSERT_EQ((uint64_t) used, profiledGas);
+    }
+    instance->set_option(instance, "profile", "0");
+
+    evmjit_reset_profiles();
+    uint64_t profile[4] = {};
+    ASSERT_EQ(0u, evmjit_get_profile(&msg.code_hash, profile, 1));
+}
+
 //======================================
 // Other stuff
 //======================================
@@ -0,0 +1,188 @@
+package org.aion.fastvm;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Properties;
+import org.aion.contract.ContractUtils;
+import org.aion.crypto.ECKey;
+import org.aion.db.impl.DBVendor;
+import org.aion.db.impl.DatabaseFactory;
+import org.aion.interfaces.db.ContractDetails;
+import org.aion.interfaces.db.PruneConfig;
+import org.aion.interfaces.db.RepositoryCache;
+import org.aion.interfaces.db.RepositoryConfig;
+import org.aion.interfaces.vm.DataWord;
+import org.aion.mcf.config.CfgPrune;
+import org.aion.mcf.vm.types.DataWordImpl;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.solidity.Abi;
+import org.aion.solidity.CompilationResult;
+import org.aion.solidity.Compiler;
+import org.aion.solidity.Compiler.Options;
+import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
+import org.aion.vm.api.interfaces.KernelInterface;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.aion.zero.impl.db.AionRepositoryCache;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.ContractDetailsAion;
+import org.aion.zero.types.AionTransaction;
+
+/** Shared set up for the benchmarks: an in-memory repository and the contexts to run against it. */
+final class BenchmarkUtils {
+    static final Address COINBASE = Address.wrap(new byte[Address.SIZE]);
+    static final long BLOCK_NUMBER = 1;
+    static final long BLOCK_TIMESTAMP = 1_500_000_000L;
+    static final long BLOCK_NRG_LIMIT = 10_000_000L;
+    static final DataWord BLOCK_DIFFICULTY = new DataWordImpl(0x100000000L);
+    static final long NRG_PRICE = 10_000_000_000L;
+
+    /** The sum of 1, 2, ..., 1024 from the README. */
+    static final byte[] SUM_LOOP =
+            Hex.decode(
+                    "6000"
+                            + "5b"
+                            + "80"
+                            + "610400"
+                            + "10"
+                            + "601957"
+                            + "80"
+                            + "60e051"
+                            + "01"
+                            + "60e052"
+                            + "6001"
+                            + "01"
+                            + "600256"
+                            + "5b"
+                            + "601060e0f3");
+
+    private BenchmarkUtils() {}
+
+    /** @return a repository backed by {@link DBVendor#MOCKDB}. */
+    static AionRepositoryCache newRepository() {
+        RepositoryConfig repoConfig =
+                new RepositoryConfig() {
+                    @Override
+                    public String getDbPath() {
+                        return "";
+                    }
+
+                    @Override
+                    public PruneConfig getPruneConfig() {
+                        return new CfgPrune(false);
+                    }
+
+                    @Override
+                    public ContractDetails contractDetailsImpl() {
+                        return ContractDetailsAion.createForTesting(0, 1000000).getDetails();
+                    }
+
+                    @Override
+                    public Properties getDatabaseConfig(String db_name) {
+                        Properties props = new Properties();
+                        props.setProperty(
+                                DatabaseFactory.Props.DB_TYPE, DBVendor.MOCKDB.toValue());
+                        props.setProperty(DatabaseFactory.Props.ENABLE_HEAP_CACHE, "false");
+                        return props;
+                    }
+                };
+
+        return new AionRepositoryCache(AionRepositoryImpl.createForTesting(repoConfig));
+    }
+
+    static KernelInterfaceForFastVM wrap(RepositoryCache repo) {
+        return new KernelInterfaceForFastVM(
+                repo,
+                true,
+                false,
+                BLOCK_DIFFICULTY,
+                BLOCK_NUMBER,
+                BLOCK_TIMESTAMP,
+                BLOCK_NRG_LIMIT,
+                COINBASE);
+    }
+
+    /** Creates the context of a top-level call made directly on the {@link FastVM}. */
+    static ExecutionContext newCallContext(
+            Address caller, Address address, byte[] callData, long nrgLimit) {
+        return new ExecutionContext(
+                null,
+                new byte[32],
+                address,
+                caller,
+                caller,
+                new DataWordImpl(NRG_PRICE),
+                nrgLimit,
+                DataWordImpl.ZERO,
+                callData,
+                0,
+                ExecutionContext.CALL,
+                0,
+                COINBASE,
+                BLOCK_NUMBER,
+                BLOCK_TIMESTAMP,
+                BLOCK_NRG_LIMIT,
+                BLOCK_DIFFICULTY);
+    }
+
+    /** Creates the context of a transaction, as {@link FastVirtualMachine} does. */
+    static ExecutionContext newTransactionContext(AionTransaction tx, KernelInterface kernel) {
+        return new ExecutionContext(
+                tx,
+                tx.getTransactionHash(),
+                tx.isContractCreationTransaction()
+                        ? tx.getContractAddress()
+                        : tx.getDestinationAddress(),
+                tx.getSenderAddress(),
+                tx.getSenderAddress(),
+                new DataWordImpl(tx.getEnergyPrice()),
+                tx.getEnergyLimit() - tx.getTransactionCost(),
+                new DataWordImpl(tx.getValue() == null ? new byte[0] : tx.getValue()),
+                tx.getData() == null ? new byte[0] : tx.getData(),
+                0,
+                tx.isContractCreationTransaction()
+                        ? ExecutionContext.CREATE
+                        : ExecutionContext.CALL,
+                0,
+                kernel.getMinerAddress(),
+                kernel.getBlockNumber(),
+                kernel.getBlockTimestamp(),
+                kernel.getBlockEnergyLimit(),
+                new DataWordImpl(kernel.getBlockDifficulty()));
+    }
+
+    /** Creates and signs a transaction. */
+    static AionTransaction newTransaction(
+            ECKey sender, long nonce, Address to, byte[] data, long nrgLimit) {
+        AionTransaction tx =
+                new AionTransaction(
+                        BigInteger.valueOf(nonce).toByteArray(),
+                        to,
+                        new byte[0],
+                        data,
+                        nrgLimit,
+                        NRG_PRICE);
+        tx.sign(sender);
+        return tx;
+    }
+
+    /** Executes a transaction through the {@link TransactionExecutor}, committing into kernel. */
+    static TransactionResult execute(AionTransaction tx, KernelInterfaceForFastVM kernel) {
+        return new TransactionExecutor(tx, newTransactionContext(tx, kernel), kernel).execute();
+    }
+
+    /** Compiles a test contract. */
+    static CompilationResult.Contract compile(String fileName, String contractName) {
+        try {
+            byte[] source = ContractUtils.readContract(fileName);
+            Compiler.Result r = Compiler.getInstance().compile(source, Options.BIN, Options.ABI);
+            return CompilationResult.parse(r.output).contracts.get(contractName);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static Abi.Function findFunction(CompilationResult.Contract contract, String name) {
+        return Abi.fromJSONCached(contract.abi).findFunction(f -> f.name.equals(name));
+    }
+}
@@ -0,0 +1,120 @@
+package org.aion.fastvm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.solidity.Abi;
+import org.aion.solidity.CompilationResult;
+import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
+import org.aion.vm.api.interfaces.SimpleFuture;
+import org.aion.vm.api.interfaces.TransactionInterface;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.aion.zero.impl.db.AionRepositoryCache;
+import org.aion.zero.types.AionTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays a block recorded with a {@link BlockRecorder}. The block is read from {@link #file}, or,
+ * if none is given, recorded from a block of ERC20 transfers and round-tripped through the binary
+ * format first.
+ *
+ * <p>Record a block by setting a recorder on the {@link FastVirtualMachine} that runs it and
+ * writing {@link BlockRecorder#getBlock()} to a file, then run with: gradle :modFastVM:jmh
+ * -Pjmh.includes=BlockReplay -Pjmh.params=file=/path/to/block
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BlockReplayBenchmark {
+    private static final int SYNTHETIC_TRANSACTIONS = 64;
+
+    @Param({""})
+    public String file;
+
+    private BlockReplayer replayer;
+    private TransactionInterface[] block;
+
+    @Setup
+    public void setup() throws IOException {
+        replayer =
+                file.isEmpty()
+                        ? new BlockReplayer(recordSyntheticBlock())
+                        : BlockReplayer.load(Paths.get(file));
+        block = replayer.getTransactions();
+    }
+
+    /** Records a block of ERC20 transfers and reads it back through the binary format. */
+    private static RecordedBlock recordSyntheticBlock() throws IOException {
+        ECKey sender = ECKeyFac.inst().create();
+        AionRepositoryCache repo = BenchmarkUtils.newRepository();
+        repo.addBalance(Address.wrap(sender.getAddress()), BigInteger.TEN.pow(30));
+        KernelInterfaceForFastVM kernel = BenchmarkUtils.wrap(repo);
+
+        CompilationResult.Contract token =
+                BenchmarkUtils.compile("BenchmarkERC20.sol", "FixedSupplyToken");
+        AionTransaction deploy =
+                BenchmarkUtils.newTransaction(
+                        sender,
+                        0,
+                        null,
+                        Hex.decode(token.bin),
+                        5 * Erc20TransferBenchmark.NRG_LIMIT);
+        TransactionResult deployed = BenchmarkUtils.execute(deploy, kernel);
+        if (!deployed.getResultCode().isSuccess()) {
+            throw new IllegalStateException("Failed to deploy the token: " + deployed);
+        }
+
+        Abi.Function transfer = BenchmarkUtils.findFunction(token, "transfer");
+        TransactionInterface[] txs = new TransactionInterface[SYNTHETIC_TRANSACTIONS];
+        for (int i = 0; i < txs.length; i++) {
+            Address recipient = Address.wrap(ECKeyFac.inst().create().getAddress());
+            txs[i] =
+                    BenchmarkUtils.newTransaction(
+                            sender,
+                            i + 1,
+                            deploy.getContractAddress(),
+                            transfer.encode(recipient.toBytes(), 1),
+                            Erc20TransferBenchmark.NRG_LIMIT);
+        }
+
+        BlockRecorder recorder = new BlockRecorder();
+        FastVirtualMachine vm = new FastVirtualMachine();
+        vm.setBlockRecorder(recorder);
+        vm.run(kernel.makeChildKernelInterface(), txs);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.getBlock().writeTo(out);
+        return RecordedBlock.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Benchmark
+    public SimpleFuture<TransactionResult>[] replayBlock(EnergyCounters counters) {
+        SimpleFuture<TransactionResult>[] results = replayer.replay();
+        for (int i = 0; i < results.length; i++) {
+            TransactionResult result = results[i].get();
+            counters.energy += block[i].getEnergyLimit() - result.getEnergyRemaining();
+        }
+        counters.transactions += results.length;
+        return results;
+    }
+}
@@ -0,0 +1,108 @@
+package org.aion.fastvm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.aion.mcf.vm.types.DataWordImpl;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.vm.api.interfaces.SimpleFuture;
+import org.aion.vm.api.interfaces.TransactionInterface;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.aion.zero.types.AionTransaction;
+
+/**
+ * Replays a {@link RecordedBlock} against an in-memory repository seeded with the recorded state.
+ *
+ * <p>Run on its own, replays the block files given as arguments once each and prints the results.
+ */
+final class BlockReplayer {
+    private final RecordedBlock block;
+    private final KernelInterfaceForFastVM kernel;
+    private final TransactionInterface[] transactions;
+
+    BlockReplayer(RecordedBlock block) {
+        this.block = block;
+        this.kernel =
+                new KernelInterfaceForFastVM(
+                        BenchmarkUtils.newRepository(),
+                        true,
+                        false,
+                        new DataWordImpl(block.difficulty),
+                        block.number,
+                        block.timestamp,
+                        block.energyLimit,
+                        block.coinbase);
+        seed();
+        kernel.commit();
+
+        transactions = new TransactionInterface[block.getTransactions().size()];
+        for (int i = 0; i < transactions.length; i++) {
+            transactions[i] = new AionTransaction(block.getTransactions().get(i));
+        }
+    }
+
+    static BlockReplayer load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return new BlockReplayer(RecordedBlock.readFrom(in));
+        }
+    }
+
+    private void seed() {
+        for (RecordedBlock.Account account : block.getAccounts()) {
+            if (!account.exists) {
+                continue;
+            }
+            kernel.createAccount(account.address);
+            kernel.adjustBalance(account.address, account.balance);
+            // the kernel has no setter for the nonce
+            for (BigInteger n = BigInteger.ZERO;
+                    n.compareTo(account.nonce) < 0;
+                    n = n.add(BigInteger.ONE)) {
+                kernel.incrementNonce(account.address);
+            }
+            if (account.code.length > 0) {
+                kernel.putCode(account.address, account.code);
+                kernel.setVmType(account.address);
+            }
+        }
+        for (RecordedBlock.StorageEntry entry : block.getStorage()) {
+            if (entry.value != null) {
+                kernel.putStorage(entry.address, entry.key, entry.value);
+            }
+        }
+    }
+
+    /** @return the transactions of the block. */
+    TransactionInterface[] getTransactions() {
+        return transactions;
+    }
+
+    /** Runs the block against a fresh child of the seeded repository. */
+    SimpleFuture<TransactionResult>[] replay() {
+        return new FastVirtualMachine().run(kernel.makeChildKernelInterface(), transactions);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BlockReplayer <block file>...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            BlockReplayer replayer = load(Paths.get(arg));
+            long start = System.nanoTime();
+            SimpleFuture<TransactionResult>[] results = replayer.replay();
+            long elapsed = System.nanoTime() - start;
+
+            System.out.println(arg + ": block " + replayer.block.number + ", " + elapsed + " ns");
+            for (int i = 0; i < results.length; i++) {
+                TransactionResult result = results[i].get();
+                long energyUsed =
+                        replayer.transactions[i].getEnergyLimit() - result.getEnergyRemaining();
+                System.out.println("  " + i + ": " + result.getResultCode() + ", " + energyUsed);
+            }
+        }
+    }
+}
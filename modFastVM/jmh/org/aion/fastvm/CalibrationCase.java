@@ -0,0 +1,256 @@
+package org.aion.fastvm;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A worst-case bytecode for one opcode or host callback, used by {@link EnergyCalibration}.
+ *
+ * <p>Each case repeats a straight-line body that pushes the operands that make the operation
+ * slowest, runs it and pops the results, then stops. The pushes and pops are not free next to the
+ * cheaper operations, so every case also has a baseline, see {@link #baselineCode()}, which pushes
+ * and pops the same operands without running the operation; its energy and time are to be
+ * subtracted from those of the case. Callback cases use a distinct key or address in every
+ * repetition so that no lookup is served by a cache.
+ */
+enum CalibrationCase {
+    ADD(arith(Instruction.ADD, Words.MAX, Words.MAX)),
+    MUL(arith(Instruction.MUL, Words.MAX, Words.MAX)),
+    SUB(arith(Instruction.SUB, Words.MAX, Words.MAX)),
+    DIV(arith(Instruction.DIV, Words.MAX, Words.ONE)),
+    SDIV(arith(Instruction.SDIV, Words.MAX, Words.ONE)),
+    MOD(arith(Instruction.MOD, Words.MAX, Words.ODD)),
+    SMOD(arith(Instruction.SMOD, Words.MAX, Words.ODD)),
+    ADDMOD(arith(Instruction.ADDMOD, Words.MAX, Words.MAX, Words.ODD)),
+    MULMOD(arith(Instruction.MULMOD, Words.MAX, Words.MAX, Words.ODD)),
+    EXP(arith(Instruction.EXP, Words.MAX, Words.MAX)),
+    SIGNEXTEND(arith(Instruction.SIGNEXTEND, Words.ZERO, Words.MAX)),
+    LT(arith(Instruction.LT, Words.MAX, Words.MAX)),
+    GT(arith(Instruction.GT, Words.MAX, Words.MAX)),
+    SLT(arith(Instruction.SLT, Words.MAX, Words.MAX)),
+    SGT(arith(Instruction.SGT, Words.MAX, Words.MAX)),
+    EQ(arith(Instruction.EQ, Words.MAX, Words.MAX)),
+    ISZERO(arith(Instruction.ISZERO, Words.MAX)),
+    AND(arith(Instruction.AND, Words.MAX, Words.MAX)),
+    OR(arith(Instruction.OR, Words.MAX, Words.MAX)),
+    XOR(arith(Instruction.XOR, Words.MAX, Words.MAX)),
+    NOT(arith(Instruction.NOT, Words.MAX)),
+    BYTE(arith(Instruction.BYTE, word(15), Words.MAX)),
+
+    ADDRESS(arith(Instruction.ADDRESS)),
+    ORIGIN(arith(Instruction.ORIGIN)),
+    CALLER(arith(Instruction.CALLER)),
+    CALLVALUE(arith(Instruction.CALLVALUE)),
+    CALLDATASIZE(arith(Instruction.CALLDATASIZE)),
+    CODESIZE(arith(Instruction.CODESIZE)),
+    GASPRICE(arith(Instruction.GASPRICE)),
+    COINBASE(arith(Instruction.COINBASE)),
+    TIMESTAMP(arith(Instruction.TIMESTAMP)),
+    NUMBER(arith(Instruction.NUMBER)),
+    DIFFICULTY(arith(Instruction.DIFFICULTY)),
+    GASLIMIT(arith(Instruction.GASLIMIT)),
+    PC(arith(Instruction.PC)),
+    MSIZE(arith(Instruction.MSIZE)),
+    GAS(arith(Instruction.GAS)),
+
+    MLOAD(arith(Instruction.MLOAD, Words.ZERO)),
+    MSTORE(arith(Instruction.MSTORE, Words.ZERO, Words.MAX)),
+    MSTORE8(arith(Instruction.MSTORE8, Words.ZERO, Words.MAX)),
+
+    /** SHA3 of one word. */
+    SHA3(arith(Instruction.SHA3, Words.ZERO, word(Word128.BYTES))),
+
+    /** SHA3 of 64 KiB, after the memory has been expanded once. */
+    SHA3_LARGE(
+            expandMemory(64 * 1024), arith(Instruction.SHA3, Words.ZERO, word(64 * 1024)), 16),
+
+    /** SLOAD of keys that were never written, each a miss in the repository. */
+    SLOAD_MISS(new Body(i -> push(word(i + 1)), 1, Instruction.SLOAD, 1)),
+
+    /** SSTORE of new keys. */
+    SSTORE_NEW(
+            new Body(i -> join(push(Words.MAX), push(word(i + 1))), 2, Instruction.SSTORE, 0),
+            64),
+
+    /** BALANCE of accounts that do not exist. */
+    BALANCE_COLD(new Body(CalibrationCase::pushAddress, 2, Instruction.BALANCE, 1)),
+
+    /** EXTCODESIZE of accounts that do not exist. */
+    EXTCODESIZE_COLD(new Body(CalibrationCase::pushAddress, 2, Instruction.EXTCODESIZE, 1)),
+
+    /** BLOCKHASH of the previous block. */
+    BLOCKHASH(
+            new Body(
+                    i ->
+                            join(
+                                    op(Instruction.NUMBER),
+                                    push(Words.ONE),
+                                    op(Instruction.SWAP1),
+                                    op(Instruction.SUB)),
+                    1,
+                    Instruction.BLOCKHASH,
+                    2)),
+
+    /** LOG0 of one word. */
+    LOG0(arith(Instruction.LOG0, Words.ZERO, word(Word128.BYTES))),
+
+    /** CALL without value or energy to accounts that do not exist. */
+    CALL_COLD(
+            new Body(
+                    i ->
+                            join(
+                                    push(Words.ZERO), // out size
+                                    push(Words.ZERO), // out offset
+                                    push(Words.ZERO), // in size
+                                    push(Words.ZERO), // in offset
+                                    push(Words.ZERO), // value
+                                    pushAddress(i),
+                                    push(Words.ZERO)), // energy
+                    8,
+                    Instruction.CALL,
+                    1),
+            64);
+
+    /** The default number of repetitions of a body. */
+    static final int REPEAT = 256;
+
+    private final byte[] prologue;
+    private final Body body;
+    private final int repeat;
+
+    CalibrationCase(Body body) {
+        this(new byte[0], body, REPEAT);
+    }
+
+    CalibrationCase(Body body, int repeat) {
+        this(new byte[0], body, repeat);
+    }
+
+    CalibrationCase(byte[] prologue, Body body, int repeat) {
+        this.prologue = prologue;
+        this.body = body;
+        this.repeat = repeat;
+    }
+
+    /** @return the bytecode of the case. */
+    byte[] code() {
+        return assemble(body::code);
+    }
+
+    /**
+     * @return the bytecode of the case without the measured operation: the same prologue, operand
+     *     pushes and pops.
+     */
+    byte[] baselineCode() {
+        return assemble(body::baseline);
+    }
+
+    private byte[] assemble(IntFunction<byte[]> generator) {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(prologue, 0, prologue.length);
+        for (int i = 0; i < repeat; i++) {
+            byte[] b = generator.apply(i);
+            code.write(b, 0, b.length);
+        }
+        code.write(Instruction.STOP.code());
+        return code.toByteArray();
+    }
+
+    /** @return the number of times the measured operation runs per execution of the code. */
+    int repeat() {
+        return repeat;
+    }
+
+    /** A body: the operands, generated from the repetition index, the operation and its pops. */
+    private static final class Body {
+        private final IntFunction<byte[]> operands;
+        private final int operandWords;
+        private final Instruction op;
+        private final int results;
+
+        Body(IntFunction<byte[]> operands, int operandWords, Instruction op, int results) {
+            this.operands = operands;
+            this.operandWords = operandWords;
+            this.op = op;
+            this.results = results;
+        }
+
+        byte[] code(int i) {
+            return join(operands.apply(i), op(op), pop(results));
+        }
+
+        byte[] baseline(int i) {
+            return join(operands.apply(i), pop(operandWords));
+        }
+    }
+
+    /** Operand words, in a holder since enum constants cannot read the enum's static fields. */
+    private static final class Words {
+        static final byte[] ZERO = new byte[Word128.BYTES];
+        static final byte[] ONE = word(1);
+        static final byte[] ODD = word(0x7FFF_FFFF_FFFF_FFFFL);
+        static final byte[] MAX = filled(0xFF);
+        static final byte[] ACCOUNT_PREFIX = new byte[Word128.BYTES];
+
+        static {
+            ACCOUNT_PREFIX[0] = (byte) 0xA0;
+        }
+    }
+
+    /** A body that pushes the operands, first operand on top, runs op and pops the results. */
+    private static Body arith(Instruction op, byte[]... operands) {
+        ByteArrayOutputStream pushes = new ByteArrayOutputStream();
+        for (int i = operands.length - 1; i >= 0; i--) {
+            byte[] b = push(operands[i]);
+            pushes.write(b, 0, b.length);
+        }
+        byte[] code = pushes.toByteArray();
+        return new Body(i -> code, operands.length, op, op.ret());
+    }
+
+    /** Touches the last word below size so that later code does not pay for memory expansion. */
+    private static byte[] expandMemory(int size) {
+        return join(push(Words.ZERO), push(word(size - Word128.BYTES)), op(Instruction.MSTORE));
+    }
+
+    /** Pushes a distinct address for repetition i, as the two words the jit pops. */
+    private static byte[] pushAddress(int i) {
+        return join(push(word(i + 1)), push(Words.ACCOUNT_PREFIX));
+    }
+
+    private static byte[] push(byte[] word) {
+        byte[] code = new byte[1 + Word128.BYTES];
+        code[0] = Instruction.PUSH16.code();
+        System.arraycopy(word, 0, code, 1, Word128.BYTES);
+        return code;
+    }
+
+    private static byte[] pop(int n) {
+        byte[] code = new byte[n];
+        Arrays.fill(code, Instruction.POP.code());
+        return code;
+    }
+
+    private static byte[] op(Instruction op) {
+        return new byte[] {op.code()};
+    }
+
+    private static byte[] word(long value) {
+        return Word128.of(value).toBytes();
+    }
+
+    private static byte[] filled(int b) {
+        byte[] word = new byte[Word128.BYTES];
+        Arrays.fill(word, (byte) b);
+        return word;
+    }
+
+    private static byte[] join(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,170 @@
+package org.aion.fastvm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.types.Address;
+
+/**
+ * Measures the run time per unit of energy of each {@link CalibrationCase} on the jit and reports
+ * the cases whose ratio is far from a target. A case that runs much slower per unit of energy than
+ * the others is underpriced, and a block filled with it takes longer to run than the block energy
+ * limit is meant to allow.
+ *
+ * <p>Run with: gradle :modFastVM:energyCalibration [-Pcalibration.args="[target ns/energy]
+ * [tolerance]"]. The target defaults to the median ratio of all cases and the tolerance, the
+ * factor a ratio may differ from the target by, to 2. The suggested cost of an operation is the
+ * energy that would put its case on the target.
+ *
+ * <p>Compilation is not measured: each case is run until its code is in the jit cache first. The
+ * energy and time of the baseline of a case, see {@link CalibrationCase#baselineCode()}, are
+ * subtracted from those of the case, which leaves out the operand pushes and pops as well as the
+ * cost of entering the jit once per run.
+ */
+public final class EnergyCalibration {
+    private static final long NRG_LIMIT = 5_000_000L;
+    private static final int WARMUP_RUNS = 50;
+    private static final long MEASURE_NANOS = 500_000_000L;
+
+    private EnergyCalibration() {}
+
+    /** The measurement of one case. */
+    private static final class Measurement {
+        final CalibrationCase calibrationCase;
+        // net of the baseline
+        final long energyPerRun;
+        final double nanosPerRun;
+        final String failure;
+
+        Measurement(
+                CalibrationCase calibrationCase,
+                long energyPerRun,
+                double nanosPerRun,
+                String failure) {
+            this.calibrationCase = calibrationCase;
+            this.energyPerRun = energyPerRun;
+            this.nanosPerRun = nanosPerRun;
+            this.failure = failure;
+        }
+
+        double nanosPerEnergy() {
+            return nanosPerRun / energyPerRun;
+        }
+
+        double energyPerOp() {
+            return (double) energyPerRun / calibrationCase.repeat();
+        }
+
+        double nanosPerOp() {
+            return nanosPerRun / calibrationCase.repeat();
+        }
+    }
+
+    public static void main(String[] args) {
+        double target = args.length > 0 ? Double.parseDouble(args[0]) : Double.NaN;
+        double tolerance = args.length > 1 ? Double.parseDouble(args[1]) : 2.0;
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (CalibrationCase c : CalibrationCase.values()) {
+            measurements.add(measure(c));
+        }
+
+        if (Double.isNaN(target)) {
+            target = median(measurements);
+        }
+
+        System.out.printf(
+                "%-18s %12s %12s %12s %12s %12s%n",
+                "case", "energy/op", "ns/op", "ns/energy", "vs target", "suggested");
+        int outliers = 0;
+        for (Measurement m : measurements) {
+            if (m.failure != null) {
+                System.out.printf("%-18s FAILED: %s%n", m.calibrationCase, m.failure);
+                continue;
+            }
+            double ratio = m.nanosPerEnergy() / target;
+            String flag = "";
+            if (ratio > tolerance) {
+                flag = "  UNDERPRICED";
+                outliers++;
+            } else if (ratio < 1 / tolerance) {
+                flag = "  OVERPRICED";
+                outliers++;
+            }
+            System.out.printf(
+                    "%-18s %12.1f %12.1f %12.3f %11.2fx %12.1f%s%n",
+                    m.calibrationCase,
+                    m.energyPerOp(),
+                    m.nanosPerOp(),
+                    m.nanosPerEnergy(),
+                    ratio,
+                    m.nanosPerOp() / target,
+                    flag);
+        }
+        System.out.printf(
+                "%ntarget %.3f ns/energy, tolerance %.1fx, %d outliers%n",
+                target, tolerance, outliers);
+    }
+
+    private static Measurement measure(CalibrationCase c) {
+        Address address = Address.wrap(new byte[Address.SIZE]);
+        KernelInterfaceForFastVM kernel = BenchmarkUtils.wrap(BenchmarkUtils.newRepository());
+
+        try {
+            byte[] code = c.code();
+            byte[] baseline = c.baselineCode();
+            long netEnergy = runOnce(code, address, kernel) - runOnce(baseline, address, kernel);
+            if (netEnergy <= 0) {
+                return new Measurement(c, 0, 0, "no energy over the baseline");
+            }
+            double netNanos = time(code, address, kernel) - time(baseline, address, kernel);
+            return new Measurement(c, netEnergy, netNanos, null);
+        } catch (IllegalStateException e) {
+            return new Measurement(c, 0, 0, e.getMessage());
+        }
+    }
+
+    /** Returns the mean time of a run of the code, after warm-up. */
+    private static double time(byte[] code, Address address, KernelInterfaceForFastVM kernel) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            runOnce(code, address, kernel);
+        }
+
+        long runs = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            runOnce(code, address, kernel);
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        return (double) elapsed / runs;
+    }
+
+    /** Runs the code against a fresh child of kernel and returns the energy it used. */
+    private static long runOnce(byte[] code, Address address, KernelInterfaceForFastVM kernel) {
+        ExecutionContext ctx =
+                BenchmarkUtils.newCallContext(address, address, new byte[0], NRG_LIMIT);
+        FastVmTransactionResult result =
+                new FastVM().run(code, ctx, kernel.makeChildKernelInterface());
+        if (result.getResultCode() != FastVmResultCode.SUCCESS) {
+            throw new IllegalStateException(result.toString());
+        }
+        return NRG_LIMIT - result.getEnergyRemaining();
+    }
+
+    private static double median(List<Measurement> measurements) {
+        double[] ratios =
+                measurements.stream()
+                        .filter(m -> m.failure == null)
+                        .mapToDouble(Measurement::nanosPerEnergy)
+                        .toArray();
+        if (ratios.length == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(ratios);
+        int mid = ratios.length / 2;
+        return ratios.length % 2 == 1 ? ratios[mid] : (ratios[mid - 1] + ratios[mid]) / 2;
+    }
+}
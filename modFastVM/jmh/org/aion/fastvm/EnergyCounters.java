@@ -0,0 +1,24 @@
+package org.aion.fastvm;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results. The counters are reported as rates next to the primary ops/s, so
+ * energy is reported as energy per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class EnergyCounters {
+    public long energy;
+    public long transactions;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        energy = 0;
+        transactions = 0;
+    }
+}
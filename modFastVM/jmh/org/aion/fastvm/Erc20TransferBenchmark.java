@@ -0,0 +1,77 @@
+package org.aion.fastvm;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.solidity.CompilationResult;
+import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.aion.zero.impl.db.AionRepositoryCache;
+import org.aion.zero.types.AionTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Executes an ERC20 transfer of the token in BenchmarkERC20.sol through the {@link
+ * TransactionExecutor}.
+ *
+ * <p>Every invocation runs the same signed transaction against a fresh child of the repository in
+ * which the token was deployed, so the sender's nonce always matches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class Erc20TransferBenchmark {
+    static final long NRG_LIMIT = 1_000_000L;
+
+    private KernelInterfaceForFastVM kernel;
+    private AionTransaction transfer;
+
+    @Setup
+    public void setup() {
+        ECKey sender = ECKeyFac.inst().create();
+        AionRepositoryCache repo = BenchmarkUtils.newRepository();
+        repo.addBalance(Address.wrap(sender.getAddress()), BigInteger.TEN.pow(30));
+        kernel = BenchmarkUtils.wrap(repo);
+
+        CompilationResult.Contract token =
+                BenchmarkUtils.compile("BenchmarkERC20.sol", "FixedSupplyToken");
+        AionTransaction deploy =
+                BenchmarkUtils.newTransaction(
+                        sender, 0, null, Hex.decode(token.bin), 5 * NRG_LIMIT);
+        TransactionResult result = BenchmarkUtils.execute(deploy, kernel);
+        if (!result.getResultCode().isSuccess()) {
+            throw new IllegalStateException("Failed to deploy the token: " + result);
+        }
+
+        Address recipient = Address.wrap(ECKeyFac.inst().create().getAddress());
+        byte[] data =
+                BenchmarkUtils.findFunction(token, "transfer").encode(recipient.toBytes(), 1);
+        transfer =
+                BenchmarkUtils.newTransaction(
+                        sender, 1, deploy.getContractAddress(), data, NRG_LIMIT);
+    }
+
+    @Benchmark
+    public TransactionResult transfer(EnergyCounters counters) {
+        TransactionResult result =
+                BenchmarkUtils.execute(transfer, kernel.makeChildKernelInterface());
+        counters.energy += NRG_LIMIT - result.getEnergyRemaining();
+        counters.transactions++;
+        return result;
+    }
+}
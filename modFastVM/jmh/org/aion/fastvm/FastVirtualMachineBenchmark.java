@@ -0,0 +1,113 @@
+package org.aion.fastvm;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.solidity.Abi;
+import org.aion.solidity.CompilationResult;
+import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
+import org.aion.vm.api.interfaces.SimpleFuture;
+import org.aion.vm.api.interfaces.TransactionInterface;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.aion.zero.impl.db.AionRepositoryCache;
+import org.aion.zero.types.AionTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs synthetic blocks through {@link FastVirtualMachine#run}. A block is a mix of plain value
+ * transfers and ERC20 transfers to distinct recipients, all from one sender with consecutive
+ * nonces. Each invocation runs the whole block against a fresh child of the repository.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FastVirtualMachineBenchmark {
+    private static final long VALUE_TRANSFER_NRG_LIMIT = 21_000L;
+
+    @Param({"1", "16", "128"})
+    public int transactionsPerBlock;
+
+    /** One in every {@code valueTransferRatio} transactions is a plain value transfer. */
+    @Param({"4"})
+    public int valueTransferRatio;
+
+    private KernelInterfaceForFastVM kernel;
+    private TransactionInterface[] block;
+
+    @Setup
+    public void setup() {
+        ECKey sender = ECKeyFac.inst().create();
+        AionRepositoryCache repo = BenchmarkUtils.newRepository();
+        repo.addBalance(Address.wrap(sender.getAddress()), BigInteger.TEN.pow(30));
+        kernel = BenchmarkUtils.wrap(repo);
+
+        CompilationResult.Contract token =
+                BenchmarkUtils.compile("BenchmarkERC20.sol", "FixedSupplyToken");
+        AionTransaction deploy =
+                BenchmarkUtils.newTransaction(
+                        sender,
+                        0,
+                        null,
+                        Hex.decode(token.bin),
+                        5 * Erc20TransferBenchmark.NRG_LIMIT);
+        TransactionResult deployed = BenchmarkUtils.execute(deploy, kernel);
+        if (!deployed.getResultCode().isSuccess()) {
+            throw new IllegalStateException("Failed to deploy the token: " + deployed);
+        }
+
+        Abi.Function transfer = BenchmarkUtils.findFunction(token, "transfer");
+        block = new TransactionInterface[transactionsPerBlock];
+        for (int i = 0; i < transactionsPerBlock; i++) {
+            Address recipient = Address.wrap(ECKeyFac.inst().create().getAddress());
+            AionTransaction tx;
+            if (i % valueTransferRatio == 0) {
+                tx =
+                        new AionTransaction(
+                                BigInteger.valueOf(i + 1).toByteArray(),
+                                recipient,
+                                BigInteger.ONE.toByteArray(),
+                                new byte[0],
+                                VALUE_TRANSFER_NRG_LIMIT,
+                                BenchmarkUtils.NRG_PRICE);
+                tx.sign(sender);
+            } else {
+                tx =
+                        BenchmarkUtils.newTransaction(
+                                sender,
+                                i + 1,
+                                deploy.getContractAddress(),
+                                transfer.encode(recipient.toBytes(), 1),
+                                Erc20TransferBenchmark.NRG_LIMIT);
+            }
+            block[i] = tx;
+        }
+    }
+
+    @Benchmark
+    public SimpleFuture<TransactionResult>[] runBlock(EnergyCounters counters) {
+        SimpleFuture<TransactionResult>[] results =
+                new FastVirtualMachine().run(kernel.makeChildKernelInterface(), block);
+        for (int i = 0; i < results.length; i++) {
+            TransactionResult result = results[i].get();
+            counters.energy += block[i].getEnergyLimit() - result.getEnergyRemaining();
+        }
+        counters.transactions += results.length;
+        return results;
+    }
+}
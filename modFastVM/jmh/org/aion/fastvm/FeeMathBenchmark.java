@@ -0,0 +1,57 @@
+package org.aion.fastvm;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The per-transaction value and fee arithmetic: the balance check of performChecks, the energy
+ * charge, the refund and the mining fee. Compares the former {@link BigInteger} arithmetic with
+ * {@link Word128}; run with {@code -prof gc} to see the garbage per transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FeeMathBenchmark {
+    public long energyLimit = 1_000_000L;
+    public long energyUsed = 51_234L;
+    public long energyPrice = BenchmarkUtils.NRG_PRICE;
+    public byte[] value = BigInteger.TEN.pow(18).toByteArray();
+
+    @Benchmark
+    public void bigInteger(Blackhole bh) {
+        BigInteger price = BigInteger.valueOf(energyPrice);
+        BigInteger limit = BigInteger.valueOf(energyLimit);
+        BigInteger txValue = new BigInteger(1, value);
+        bh.consume(price.multiply(limit).add(txValue));
+        bh.consume(limit.multiply(price));
+        bh.consume(txValue.negate());
+
+        BigInteger used = BigInteger.valueOf(energyUsed);
+        bh.consume(limit.subtract(used).multiply(price));
+        bh.consume(used.multiply(price));
+    }
+
+    @Benchmark
+    public void word128(Blackhole bh) {
+        Word128 txValue = Word128.fromBytes(value);
+        bh.consume(Word128.multiply(energyPrice, energyLimit).add(txValue).toBigInteger());
+        bh.consume(Word128.multiply(energyLimit, energyPrice).toBigInteger());
+        bh.consume(txValue.toBigInteger().negate());
+
+        bh.consume(Word128.multiply(energyLimit - energyUsed, energyPrice).toBigInteger());
+        bh.consume(Word128.multiply(energyUsed, energyPrice).toBigInteger());
+    }
+}
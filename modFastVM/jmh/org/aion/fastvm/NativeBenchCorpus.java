@@ -0,0 +1,84 @@
+package org.aion.fastvm;
+
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.aion.solidity.CompilationResult;
+import org.aion.util.conversions.Hex;
+
+/**
+ * Compiles test contracts and writes a scenario for each into the corpus of the native benchmark,
+ * so that both hosts run the same code. Run with: gradle :modFastVM:nativeBenchCorpus
+ */
+public final class NativeBenchCorpus {
+    private static final long NRG_LIMIT = 1_000_000L;
+
+    private NativeBenchCorpus() {}
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : Scenario.CORPUS);
+        Files.createDirectories(dir);
+
+        CompilationResult.Contract token =
+                BenchmarkUtils.compile("BenchmarkERC20.sol", "FixedSupplyToken");
+        write(
+                dir.resolve("erc20_transfer.scn"),
+                "An ERC20 transfer of the token in BenchmarkERC20.sol to a new holder.",
+                token,
+                BenchmarkUtils.findFunction(token, "transfer")
+                        .encode(Hex.decode("a0" + repeat("44", 31)), 1));
+
+        CompilationResult.Contract fib = BenchmarkUtils.compile("Fibonacci.sol", "Fibonacci");
+        write(
+                dir.resolve("fibonacci_loop.scn"),
+                "Fibonacci.fibonacci(100), a loop of arithmetic.",
+                fib,
+                BenchmarkUtils.findFunction(fib, "fibonacci").encode(100));
+        write(
+                dir.resolve("fibonacci_array.scn"),
+                "Fibonacci.fibonacciArray(100), a loop over a memory array.",
+                fib,
+                BenchmarkUtils.findFunction(fib, "fibonacciArray").encode(100));
+        write(
+                dir.resolve("fibonacci_recursive.scn"),
+                "Fibonacci.fibonacciRecursive(12), internal function calls.",
+                fib,
+                BenchmarkUtils.findFunction(fib, "fibonacciRecursive").encode(12));
+
+        CompilationResult.Contract rec = BenchmarkUtils.compile("Recursive.sol", "Recursive");
+        write(
+                dir.resolve("recursive_call.scn"),
+                "Recursive.f(self, 16), 16 nested calls that each emit a log.",
+                rec,
+                BenchmarkUtils.findFunction(rec, "f").encode(Scenario.CONTRACT.toBytes(), 16));
+
+        CompilationResult.Contract ticker = BenchmarkUtils.compile("Ticker.sol", "Ticker");
+        write(
+                dir.resolve("ticker.scn"),
+                "Ticker.ticking(), a storage read and write.",
+                ticker,
+                BenchmarkUtils.findFunction(ticker, "ticking").encode());
+
+        CompilationResult.Contract map = BenchmarkUtils.compile("ByteArrayMap.sol", "ByteArrayMap");
+        write(
+                dir.resolve("byte_array_map.scn"),
+                "ByteArrayMap.f(), a 1 KiB memory array copied into storage.",
+                map,
+                BenchmarkUtils.findFunction(map, "f").encode());
+    }
+
+    private static void write(
+            Path file, String comment, CompilationResult.Contract contract, byte[] input)
+            throws IOException {
+        Scenario scenario = new Scenario();
+        scenario.code = Hex.decode(contract.bin);
+        scenario.deploy = true;
+        scenario.input = input;
+        scenario.energyLimit = NRG_LIMIT;
+        scenario.write(file, comment);
+        System.out.println("Wrote " + file);
+    }
+}
@@ -0,0 +1,94 @@
+package org.aion.fastvm;
+
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+import java.util.concurrent.TimeUnit;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.solidity.CompilationResult;
+import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
+import org.aion.zero.impl.db.AionRepositoryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs Fibonacci.sol and Recursive.sol on the {@link FastVM}. fibonacciRecursive recurses through
+ * internal jumps; Recursive.f calls itself through the callback layer {@code depth} times, emitting
+ * a log in each frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NestedCallBenchmark {
+    private static final long NRG_LIMIT = 5_000_000L;
+
+    @Param({"2", "16", "64"})
+    public int depth;
+
+    private final Address caller = Address.wrap(new byte[Address.SIZE]);
+    private final Address fibonacci = Address.wrap(Hex.decode("a0" + repeat("11", 31)));
+    private final Address recursive = Address.wrap(Hex.decode("a0" + repeat("22", 31)));
+
+    private KernelInterfaceForFastVM kernel;
+    private byte[] fibonacciCode;
+    private byte[] fibonacciCall;
+    private byte[] recursiveCode;
+    private byte[] recursiveCall;
+
+    @Setup
+    public void setup() {
+        AionRepositoryCache repo = BenchmarkUtils.newRepository();
+
+        CompilationResult.Contract fib = BenchmarkUtils.compile("Fibonacci.sol", "Fibonacci");
+        fibonacciCode = body(fib);
+        repo.createAccount(fibonacci);
+        repo.saveCode(fibonacci, fibonacciCode);
+        // the recursion is exponential, keep it to a fixed size
+        fibonacciCall =
+                BenchmarkUtils.findFunction(fib, "fibonacciRecursive").encode(Math.min(depth, 12));
+
+        CompilationResult.Contract rec = BenchmarkUtils.compile("Recursive.sol", "Recursive");
+        recursiveCode = body(rec);
+        repo.createAccount(recursive);
+        repo.saveCode(recursive, recursiveCode);
+        recursiveCall = BenchmarkUtils.findFunction(rec, "f").encode(recursive.toBytes(), depth);
+
+        kernel = BenchmarkUtils.wrap(repo);
+    }
+
+    @Benchmark
+    public FastVmTransactionResult fibonacciRecursive(EnergyCounters counters) {
+        return run(fibonacciCode, fibonacci, fibonacciCall, counters);
+    }
+
+    @Benchmark
+    public FastVmTransactionResult recursiveCall(EnergyCounters counters) {
+        return run(recursiveCode, recursive, recursiveCall, counters);
+    }
+
+    private FastVmTransactionResult run(
+            byte[] code, Address address, byte[] callData, EnergyCounters counters) {
+        ExecutionContext ctx = BenchmarkUtils.newCallContext(caller, address, callData, NRG_LIMIT);
+        FastVmTransactionResult result =
+                new FastVM().run(code, ctx, kernel.makeChildKernelInterface());
+        counters.energy += NRG_LIMIT - result.getEnergyRemaining();
+        return result;
+    }
+
+    /** Strips the deployer, assuming the constructor is empty. */
+    private static byte[] body(CompilationResult.Contract contract) {
+        return Hex.decode(contract.bin.substring(contract.bin.indexOf("60506040", 1)));
+    }
+}
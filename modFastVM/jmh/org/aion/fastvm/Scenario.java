@@ -0,0 +1,93 @@
+package org.aion.fastvm;
+
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
+
+/**
+ * A scenario of the native benchmark in fastvm/bench/host, see its main.cpp for the format. The
+ * same files are run through the java host by {@link ScenarioBenchmark}.
+ */
+final class Scenario {
+    /** The directory of the scenarios, relative to the module directory. */
+    static final String CORPUS = "../fastvm/bench/host/corpus";
+
+    static final Address CONTRACT = Address.wrap(Hex.decode("a0" + repeat("11", 31)));
+    static final Address CALLER = Address.wrap(Hex.decode("a0" + repeat("22", 31)));
+
+    /** Another account with code. */
+    static final class Account {
+        final Address address;
+        final byte[] code;
+
+        Account(Address address, byte[] code) {
+            this.address = address;
+            this.code = code;
+        }
+    }
+
+    final List<Account> accounts = new ArrayList<>();
+    byte[] code = new byte[0];
+    boolean deploy;
+    byte[] input = new byte[0];
+    long energyLimit = 5_000_000L;
+
+    static Scenario load(Path file) throws IOException {
+        Scenario scenario = new Scenario();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            String[] words = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            switch (words[0]) {
+                case "code":
+                case "deploy":
+                    scenario.code = Hex.decode(words[1]);
+                    scenario.deploy = words[0].equals("deploy");
+                    break;
+                case "input":
+                    scenario.input = Hex.decode(words[1]);
+                    break;
+                case "gas":
+                    scenario.energyLimit = Long.parseLong(words[1]);
+                    break;
+                case "account":
+                    scenario.accounts.add(
+                            new Account(
+                                    Address.wrap(Hex.decode(words[1])), Hex.decode(words[2])));
+                    break;
+                default:
+                    throw new IOException(file + ":" + (i + 1) + ": bad line");
+            }
+        }
+        return scenario;
+    }
+
+    /** Writes the scenario, with a comment line first. */
+    void write(Path file, String comment) throws IOException {
+        StringBuilder text = new StringBuilder("# ").append(comment).append('\n');
+        for (Account account : accounts) {
+            text.append("account ")
+                    .append(Hex.toHexString(account.address.toBytes()))
+                    .append(' ')
+                    .append(Hex.toHexString(account.code))
+                    .append('\n');
+        }
+        text.append(deploy ? "deploy " : "code ").append(Hex.toHexString(code)).append('\n');
+        if (input.length > 0) {
+            text.append("input ").append(Hex.toHexString(input)).append('\n');
+        }
+        text.append("gas ").append(energyLimit).append('\n');
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,99 @@
+package org.aion.fastvm;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.aion.mcf.vm.types.DataWordImpl;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.zero.impl.db.AionRepositoryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the scenarios of the native benchmark in fastvm/bench/host through the java host, for
+ * comparison with its ops/s and energy/s. The hand-written scenarios are in the corpus already; the
+ * ones of the compiled test contracts are written by {@link NativeBenchCorpus}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ScenarioBenchmark {
+
+    @Param({"sum_loop", "storage", "memory", "logs", "nested_call", "erc20_transfer"})
+    public String scenario;
+
+    private KernelInterfaceForFastVM kernel;
+    private Scenario loaded;
+    private byte[] code;
+
+    @Setup
+    public void setup() throws IOException {
+        loaded = Scenario.load(Paths.get(Scenario.CORPUS, scenario + ".scn"));
+
+        AionRepositoryCache repo = BenchmarkUtils.newRepository();
+        repo.addBalance(Scenario.CALLER, BigInteger.ONE.shiftLeft(100));
+        for (Scenario.Account account : loaded.accounts) {
+            repo.createAccount(account.address);
+            repo.saveCode(account.address, account.code);
+        }
+        kernel = BenchmarkUtils.wrap(repo);
+
+        if (loaded.deploy) {
+            ExecutionContext ctx =
+                    new ExecutionContext(
+                            null,
+                            new byte[32],
+                            Scenario.CONTRACT,
+                            Scenario.CALLER,
+                            Scenario.CALLER,
+                            new DataWordImpl(BenchmarkUtils.NRG_PRICE),
+                            loaded.energyLimit,
+                            DataWordImpl.ZERO,
+                            new byte[0],
+                            0,
+                            ExecutionContext.CREATE,
+                            0,
+                            BenchmarkUtils.COINBASE,
+                            BenchmarkUtils.BLOCK_NUMBER,
+                            BenchmarkUtils.BLOCK_TIMESTAMP,
+                            BenchmarkUtils.BLOCK_NRG_LIMIT,
+                            BenchmarkUtils.BLOCK_DIFFICULTY);
+            kernel.createAccount(Scenario.CONTRACT);
+            FastVmTransactionResult result = new FastVM().run(loaded.code, ctx, kernel);
+            if (result.getResultCode() != FastVmResultCode.SUCCESS) {
+                throw new IllegalStateException("Failed to deploy " + scenario + ": " + result);
+            }
+            code = result.getReturnData();
+            kernel.putCode(Scenario.CONTRACT, code);
+            kernel.commit();
+        } else {
+            code = loaded.code;
+            repo.createAccount(Scenario.CONTRACT);
+            repo.saveCode(Scenario.CONTRACT, code);
+        }
+    }
+
+    @Benchmark
+    public FastVmTransactionResult run(EnergyCounters counters) {
+        ExecutionContext ctx =
+                BenchmarkUtils.newCallContext(
+                        Scenario.CALLER, Scenario.CONTRACT, loaded.input, loaded.energyLimit);
+        FastVmTransactionResult result =
+                new FastVM().run(code, ctx, kernel.makeChildKernelInterface());
+        counters.energy += loaded.energyLimit - result.getEnergyRemaining();
+        return result;
+    }
+}
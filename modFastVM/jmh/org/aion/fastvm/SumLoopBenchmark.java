@@ -0,0 +1,43 @@
+package org.aion.fastvm;
+
+import java.util.concurrent.TimeUnit;
+import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
+import org.aion.types.Address;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Runs the README sum-loop bytecode directly on the {@link FastVM}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SumLoopBenchmark {
+    private static final long NRG_LIMIT = 1_000_000L;
+
+    private final Address address = Address.wrap(new byte[Address.SIZE]);
+    private KernelInterfaceForFastVM kernel;
+
+    @Setup
+    public void setup() {
+        kernel = BenchmarkUtils.wrap(BenchmarkUtils.newRepository());
+    }
+
+    @Benchmark
+    public FastVmTransactionResult run(EnergyCounters counters) {
+        ExecutionContext ctx =
+                BenchmarkUtils.newCallContext(address, address, new byte[0], NRG_LIMIT);
+        FastVmTransactionResult result = new FastVM().run(BenchmarkUtils.SUM_LOOP, ctx, kernel);
+        counters.energy += NRG_LIMIT - result.getEnergyRemaining();
+        return result;
+    }
+}
@@ -9,8 +9,11 @@ module aion.fastvm {
     requires commons.collections4;
     requires aion.util;
     requires org.json;
+    // optional, see org.aion.fastvm.EventSettings
+    requires static jdk.jfr;
 
 
     exports org.aion.solidity;
     exports org.aion.fastvm;
+    exports org.aion.fastvm.analysis;
 }
@@ -0,0 +1,116 @@
+package org.aion.fastvm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The execution profile of one basic block of a contract, as counted by the jit library when
+ * profiling is enabled with {@link FastVM#setProfiling(boolean)}.
+ *
+ * <p>The energy used by a block is counted from entering it until entering the next block, so it
+ * includes the energy passed to and used by any calls the block makes.
+ */
+public final class BlockProfile {
+    private static final int WORDS_PER_BLOCK = 4;
+    private static final int PUSH1 = Instruction.PUSH1.code() & 0xFF;
+    private static final int PUSH32 = Instruction.PUSH32.code() & 0xFF;
+
+    private final int startOffset;
+    private final int endOffset;
+    private final long executions;
+    private final long energyUsed;
+    private final List<Instruction> instructions;
+
+    BlockProfile(
+            int startOffset,
+            int endOffset,
+            long executions,
+            long energyUsed,
+            List<Instruction> instructions) {
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.executions = executions;
+        this.energyUsed = energyUsed;
+        this.instructions = Collections.unmodifiableList(instructions);
+    }
+
+    /**
+     * Decodes the profile returned by the jit library, four words per block: start offset, end
+     * offset, number of executions and energy used.
+     *
+     * @param code The code that was profiled.
+     * @param words The profile.
+     * @return the blocks in bytecode order.
+     */
+    static List<BlockProfile> decode(byte[] code, long[] words) {
+        List<BlockProfile> blocks = new ArrayList<>(words.length / WORDS_PER_BLOCK);
+        for (int i = 0; i + WORDS_PER_BLOCK <= words.length; i += WORDS_PER_BLOCK) {
+            int start = (int) words[i];
+            int end = (int) words[i + 1];
+            List<Instruction> instructions = instructions(code, start, end);
+            blocks.add(new BlockProfile(start, end, words[i + 2], words[i + 3], instructions));
+        }
+        return blocks;
+    }
+
+    /** Lists the instructions in code[start, end), skipping push data and undefined opcodes. */
+    private static List<Instruction> instructions(byte[] code, int start, int end) {
+        List<Instruction> list = new ArrayList<>();
+        int pc = start;
+        while (pc < end) {
+            Instruction inst = Instruction.of(code[pc]);
+            pc++;
+            if (inst == null) {
+                continue;
+            }
+            list.add(inst);
+            int op = inst.code() & 0xFF;
+            if (op >= PUSH1 && op <= PUSH32) {
+                pc += op - PUSH1 + 1;
+            }
+        }
+        return list;
+    }
+
+    /** @return the bytecode offset of the first instruction of the block. */
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    /** @return the bytecode offset just past the last instruction of the block. */
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    /** @return the number of times the block was entered. */
+    public long getExecutions() {
+        return executions;
+    }
+
+    /** @return the total energy used by all executions of the block. */
+    public long getEnergyUsed() {
+        return energyUsed;
+    }
+
+    /** @return the instructions of the block, in order. */
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockProfile{"
+                + "offsets=["
+                + startOffset
+                + ", "
+                + endOffset
+                + "), executions="
+                + executions
+                + ", energyUsed="
+                + energyUsed
+                + ", instructions="
+                + instructions
+                + '}';
+    }
+}
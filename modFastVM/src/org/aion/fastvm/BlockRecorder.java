@@ -0,0 +1,104 @@
+package org.aion.fastvm;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.KernelInterface;
+import org.aion.vm.api.interfaces.TransactionInterface;
+import org.aion.zero.types.AionTransaction;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Records what a {@link FastVirtualMachine} run consumes so that the block can be replayed offline,
+ * see {@link FastVirtualMachine#setBlockRecorder(BlockRecorder)}.
+ *
+ * <p>Accounts and storage are recorded the first time the block reads them, with their value from
+ * the kernel the block was run against. That kernel is not modified by the run, so the recorded
+ * state is the state before the block even when a read comes after a write. State read by
+ * precompiled contracts and block hashes are not recorded.
+ *
+ * <p>A recorder is not thread-safe and records one block; use a new one for each block.
+ */
+public final class BlockRecorder {
+    private KernelInterface blockKernel;
+    private final List<byte[]> transactions = new ArrayList<>();
+    private final Map<Address, RecordedBlock.Account> accounts = new LinkedHashMap<>();
+    private final Map<Pair<Address, ByteBuffer>, RecordedBlock.StorageEntry> storage =
+            new LinkedHashMap<>();
+
+    /**
+     * Starts recording a block.
+     *
+     * @param kernel The kernel the block is run against.
+     * @param txs The transactions of the block.
+     * @throws IllegalStateException if a block has already been recorded.
+     */
+    void startBlock(KernelInterface kernel, TransactionInterface[] txs) {
+        if (blockKernel != null) {
+            throw new IllegalStateException("A recorder records a single block.");
+        }
+        blockKernel = kernel;
+
+        recordAccount(kernel.getMinerAddress());
+        for (TransactionInterface tx : txs) {
+            transactions.add(((AionTransaction) tx).getEncoded());
+            recordAccount(tx.getSenderAddress());
+            recordAccount(
+                    tx.isContractCreationTransaction()
+                            ? tx.getContractAddress()
+                            : tx.getDestinationAddress());
+        }
+    }
+
+    /** Records the state of an account before the block, unless already recorded. */
+    void recordAccount(Address address) {
+        if (address == null || accounts.containsKey(address)) {
+            return;
+        }
+        accounts.put(
+                address,
+                new RecordedBlock.Account(
+                        address,
+                        blockKernel.hasAccountState(address),
+                        blockKernel.getBalance(address),
+                        blockKernel.getNonce(address),
+                        blockKernel.getCode(address)));
+    }
+
+    /** Records a storage value before the block, unless already recorded. */
+    void recordStorage(Address address, byte[] key) {
+        recordAccount(address);
+        Pair<Address, ByteBuffer> id = Pair.of(address, ByteBuffer.wrap(key));
+        if (!storage.containsKey(id)) {
+            byte[] copy = key.clone();
+            storage.put(
+                    Pair.of(address, ByteBuffer.wrap(copy)),
+                    new RecordedBlock.StorageEntry(
+                            address, copy, blockKernel.getStorage(address, copy)));
+        }
+    }
+
+    /**
+     * Returns the recorded block.
+     *
+     * @return the block.
+     * @throws IllegalStateException if no block has been run.
+     */
+    public RecordedBlock getBlock() {
+        if (blockKernel == null) {
+            throw new IllegalStateException("No block has been recorded.");
+        }
+        return new RecordedBlock(
+                blockKernel.getMinerAddress(),
+                blockKernel.getBlockNumber(),
+                blockKernel.getBlockTimestamp(),
+                blockKernel.getBlockEnergyLimit(),
+                blockKernel.getBlockDifficulty(),
+                new ArrayList<>(transactions),
+                new ArrayList<>(accounts.values()),
+                new ArrayList<>(storage.values()));
+    }
+}
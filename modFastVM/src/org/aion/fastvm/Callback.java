@@ -20,7 +20,7 @@ import org.aion.precompiled.ContractFactory;
 import org.aion.precompiled.type.PrecompiledContract;
 import org.aion.vm.api.interfaces.TransactionContext;
 import org.aion.vm.api.interfaces.TransactionResult;
-import org.aion.zero.types.AionInternalTx;
+import org.aion.vm.api.interfaces.TransactionSideEffects;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -87,6 +87,7 @@ public class Callback {
      * @return
      */
     public static byte[] getCode(byte[] address) {
+        recordAccount(address);
         byte[] code = kernelRepo().getCode(Address.wrap(address));
         return code == null ? new byte[0] : code;
     }
@@ -98,8 +99,11 @@ public class Callback {
      * @return
      */
     public static byte[] getBalance(byte[] address) {
+        recordAccount(address);
         BigInteger balance = kernelRepo().getBalance(Address.wrap(address));
-        return balance == null ? DataWordImpl.ZERO.getData() : new DataWordImpl(balance).getData();
+        return balance == null
+                ? new byte[Word128.BYTES]
+                : Word128.fromBigInteger(balance).toBytes();
     }
 
     /**
@@ -109,6 +113,7 @@ public class Callback {
      * @return
      */
     public static boolean exists(byte[] address) {
+        recordAccount(address);
         return kernelRepo().hasAccountState(Address.wrap(address));
     }
 
@@ -124,6 +129,10 @@ public class Callback {
         // Hex.toHexString(key) + ", value = " + (value == null ?
         // "":Hex.toHexString(value.getData())));
 
+        BlockRecorder recorder = blockRecorder();
+        if (recorder != null) {
+            recorder.recordStorage(Address.wrap(address), key);
+        }
         return kernelRepo().getStorage(Address.wrap(address), key);
     }
 
@@ -139,23 +148,13 @@ public class Callback {
         // System.err.println("PUT_STORAGE: address = " + Hex.toHexString(address) + ", key = " +
         // Hex.toHexString(key) + ", value = " + Hex.toHexString(value));
 
-        if (value == null || value.length == 0 || isZero(value)) {
+        if (value == null || value.length == 0 || Word128.isZero(value)) {
             kernelRepo().removeStorage(Address.wrap(address), key);
         } else {
             kernelRepo().putStorage(Address.wrap(address), key, value);
         }
     }
 
-    private static boolean isZero(byte[] value) {
-        int length = value.length;
-        for (int i = 0; i < length; i++) {
-            if (value[length - 1 - i] != 0) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     /**
      * Processes SELFDESTRUCT opcode.
      *
@@ -163,18 +162,22 @@ public class Callback {
      * @param beneficiary
      */
     public static void selfDestruct(byte[] owner, byte[] beneficiary) {
+        recordAccount(owner);
+        recordAccount(beneficiary);
         BigInteger balance = kernelRepo().getBalance(Address.wrap(owner));
 
         // add internal transaction
-        AionInternalTx internalTx =
-                newInternalTx(
-                        Address.wrap(owner),
-                        Address.wrap(beneficiary),
-                        kernelRepo().getNonce(Address.wrap(owner)),
-                        new DataWordImpl(balance),
-                        ByteUtil.EMPTY_BYTE_ARRAY,
-                        "selfdestruct");
-        context().getSideEffects().addInternalTransaction(internalTx);
+        if (internalTxRecording() != InternalTransactionRecording.OFF) {
+            InternalTransactionRecord internalTx =
+                    newInternalTx(
+                            Address.wrap(owner),
+                            Address.wrap(beneficiary),
+                            kernelRepo().getNonce(Address.wrap(owner)),
+                            Word128.fromBigInteger(balance),
+                            ByteUtil.EMPTY_BYTE_ARRAY,
+                            "selfdestruct");
+            addInternalTx(context().getSideEffects(), internalTx);
+        }
 
         // transfer
         kernelRepo().adjustBalance(Address.wrap(owner), balance.negate());
@@ -193,6 +196,13 @@ public class Callback {
      * @param data
      */
     public static void log(byte[] address, byte[] topics, byte[] data) {
+        TransactionSideEffects sideEffects = context().getSideEffects();
+        if (sideEffects instanceof SideEffects) {
+            // copied into the log arena, the log is only built when read
+            ((SideEffects) sideEffects).addLog(address, topics, data);
+            return;
+        }
+
         List<byte[]> list = new ArrayList<>();
 
         for (int i = 0; i < topics.length; i += 32) {
@@ -200,27 +210,56 @@ public class Callback {
             list.add(t);
         }
 
-        context().getSideEffects().addLog(new Log(Address.wrap(address), list, data));
+        sideEffects.addLog(new Log(Address.wrap(address), list, data));
     }
 
     /**
      * This method only exists so that FastVM and ContractFactory can be mocked for testing. This
-     * method was formerly called call and now the call method simply invokes this method with new
-     * instances of the fast vm and contract factory.
+     * method was formerly called call and now the call method simply invokes this method with a
+     * new instance of the fast vm and a null factory, so that precompiled contracts are looked up
+     * through the {@link PrecompiledRegistry}.
      */
     static byte[] performCall(byte[] message, FastVM vm, ContractFactory factory) {
         ExecutionContext ctx = parseMessage(message);
 
+        EnergyRecorder energyRecorder = ctx.getEnergyRecorder();
+        if (energyRecorder == null) {
+            return dispatchCall(ctx, vm, factory).toBytes();
+        }
+        boolean hasStipend =
+                (ctx.getTransactionKind() == ExecutionContext.CALL
+                                || ctx.getTransactionKind() == ExecutionContext.CALLCODE)
+                        && !ctx.getTransferValueWord().isZero();
+        energyRecorder.enter(
+                ctx.getTransactionEnergy(), hasStipend ? EnergyRecorder.CALL_STIPEND : 0);
+        TransactionResult result = dispatchCall(ctx, vm, factory);
+        energyRecorder.exit(
+                result.getEnergyRemaining(), !result.getResultCode().isSuccess());
+        return result.toBytes();
+    }
+
+    /** Checks and runs the call or create of a parsed message, and merges its side effects. */
+    private static TransactionResult dispatchCall(
+            ExecutionContext ctx, FastVM vm, ContractFactory factory) {
+        BlockRecorder recorder = ctx.getBlockRecorder();
+        if (recorder != null) {
+            // the destination is the code address until doCall resolves it
+            recorder.recordAccount(ctx.getSenderAddress());
+            recorder.recordAccount(ctx.getDestinationAddress());
+        }
+
         // check call stack depth
         if (ctx.getTransactionStackDepth() >= Constants.MAX_CALL_DEPTH) {
-            return new FastVmTransactionResult(FastVmResultCode.FAILURE, 0).toBytes();
+            return new FastVmTransactionResult(FastVmResultCode.FAILURE, 0);
         }
 
         // check value
-        BigInteger endowment = ctx.getTransferValue();
-        BigInteger callersBalance = kernelRepo().getBalance(ctx.getSenderAddress());
-        if (callersBalance.compareTo(endowment) < 0) {
-            return new FastVmTransactionResult(FastVmResultCode.FAILURE, 0).toBytes();
+        Word128 endowment = ctx.getTransferValueWord();
+        if (!endowment.isZero()) {
+            BigInteger callersBalance = kernelRepo().getBalance(ctx.getSenderAddress());
+            if (Word128.fromBigInteger(callersBalance).compareTo(endowment) < 0) {
+                return new FastVmTransactionResult(FastVmResultCode.FAILURE, 0);
+            }
         }
 
         // call sub-routine
@@ -231,7 +270,7 @@ public class Callback {
             result = doCall(ctx, vm, factory);
         }
 
-        // merge the effects
+        // merge the effects; O(1) when ctx holds a nested frame of the caller's side effects
         if (result.getResultCode().toInt() == FastVmResultCode.SUCCESS.toInt()) {
             context().getSideEffects().merge(ctx.getSideEffects());
         } else {
@@ -240,7 +279,7 @@ public class Callback {
                     .addInternalTransactions(ctx.getSideEffects().getInternalTransactions());
         }
 
-        return result.toBytes();
+        return result;
     }
 
     /**
@@ -250,7 +289,7 @@ public class Callback {
      * @return
      */
     public static byte[] call(byte[] message) {
-        return performCall(message, new FastVM(), new ContractFactory());
+        return performCall(message, new FastVM(), null);
     }
 
     /**
@@ -260,7 +299,7 @@ public class Callback {
      * @return
      */
     private static TransactionResult doCall(
-            TransactionContext ctx, FastVM jit, ContractFactory factory) {
+            ExecutionContext ctx, FastVM jit, ContractFactory factory) {
         Address codeAddress = ctx.getDestinationAddress();
         if (ctx.getTransactionKind() == ExecutionContext.CALLCODE
                 || ctx.getTransactionKind() == ExecutionContext.DELEGATECALL) {
@@ -278,28 +317,38 @@ public class Callback {
                 new FastVmTransactionResult(FastVmResultCode.SUCCESS, ctx.getTransactionEnergy());
 
         // add internal transaction
-        AionInternalTx internalTx =
+        InternalTransactionRecord internalTx =
                 newInternalTx(
                         ctx.getSenderAddress(),
                         ctx.getDestinationAddress(),
                         track.getNonce(ctx.getSenderAddress()),
-                        new DataWordImpl(ctx.getTransferValue()),
+                        ctx.getTransferValueWord(),
                         ctx.getTransactionData(),
                         "call");
-        context().getSideEffects().addInternalTransaction(internalTx);
-        ctx.setTransactionHash(internalTx.getTransactionHash());
+        recordInternalTx(context().getSideEffects(), internalTx, ctx);
+        openNestedFrame(ctx);
 
         // transfer balance
         if (ctx.getTransactionKind() != ExecutionContext.DELEGATECALL
                 && ctx.getTransactionKind() != ExecutionContext.CALLCODE) {
-            BigInteger transferAmount = ctx.getTransferValue();
-            track.adjustBalance(ctx.getSenderAddress(), transferAmount.negate());
-            track.adjustBalance(ctx.getDestinationAddress(), transferAmount);
+            transfer(
+                    track,
+                    ctx.getSenderAddress(),
+                    ctx.getDestinationAddress(),
+                    ctx.getTransferValueWord());
         }
 
-        PrecompiledContract pc = factory.getPrecompiledContract(ctx, track);
+        PrecompiledContract pc =
+                factory == null
+                        ? PrecompiledRegistry.get(ctx, track)
+                        : factory.getPrecompiledContract(ctx, track);
         if (pc != null) {
-            result = pc.execute(ctx.getTransactionData(), ctx.getTransactionEnergy());
+            result =
+                    PrecompiledCache.execute(
+                            ctx.getDestinationAddress(),
+                            pc,
+                            ctx.getTransactionData(),
+                            ctx.getTransactionEnergy());
         } else {
             // get the code
             byte[] code =
@@ -342,19 +391,22 @@ public class Callback {
         Address newAddress =
                 Address.wrap(HashUtil.calcNewAddr(ctx.getSenderAddress().toBytes(), nonce));
         ctx.setDestinationAddress(newAddress);
+        if (ctx.getBlockRecorder() != null) {
+            ctx.getBlockRecorder().recordAccount(newAddress);
+        }
 
         // add internal transaction
         // TODO: should the `to` address be null?
-        AionInternalTx internalTx =
+        InternalTransactionRecord internalTx =
                 newInternalTx(
                         ctx.getSenderAddress(),
                         ctx.getDestinationAddress(),
                         track.getNonce(ctx.getSenderAddress()),
-                        new DataWordImpl(ctx.getTransferValue()),
+                        ctx.getTransferValueWord(),
                         ctx.getTransactionData(),
                         "create");
-        context().getSideEffects().addInternalTransaction(internalTx);
-        ctx.setTransactionHash(internalTx.getTransactionHash());
+        recordInternalTx(context().getSideEffects(), internalTx, ctx);
+        openNestedFrame(ctx);
 
         // in case of hashing collisions
         boolean alreadyExsits = track.hasAccountState(newAddress);
@@ -364,23 +416,23 @@ public class Callback {
         track.adjustBalance(newAddress, oldBalance);
 
         // transfer balance
-        BigInteger transferAmount = ctx.getTransferValue();
-        track.adjustBalance(ctx.getSenderAddress(), transferAmount.negate());
-        track.adjustBalance(newAddress, transferAmount);
+        transfer(track, ctx.getSenderAddress(), newAddress, ctx.getTransferValueWord());
 
         // update nonce
         track.incrementNonce(ctx.getSenderAddress());
 
-        // add internal transaction
-        internalTx =
-                newInternalTx(
-                        ctx.getSenderAddress(),
-                        null,
-                        track.getNonce(ctx.getSenderAddress()),
-                        new DataWordImpl(ctx.getTransferValue()),
-                        ctx.getTransactionData(),
-                        "create");
-        ctx.getSideEffects().addInternalTransaction(internalTx);
+        // add internal transaction; when none are kept, rejections below go to the unrecorded one
+        if (internalTxRecording() != InternalTransactionRecording.OFF) {
+            internalTx =
+                    newInternalTx(
+                            ctx.getSenderAddress(),
+                            null,
+                            track.getNonce(ctx.getSenderAddress()),
+                            ctx.getTransferValueWord(),
+                            ctx.getTransactionData(),
+                            "create");
+            addInternalTx(ctx.getSideEffects(), internalTx);
+        }
 
         // execute transaction
         if (alreadyExsits) {
@@ -430,7 +482,9 @@ public class Callback {
         ByteBuffer buffer = ByteBuffer.wrap(message);
         buffer.order(ByteOrder.BIG_ENDIAN);
 
-        byte[] txHash = prev.getTransactionHash();
+        // the hash of an internal transaction is only computed if it is read
+        boolean inherit = prev instanceof ExecutionContext;
+        byte[] txHash = inherit ? null : prev.getTransactionHash();
 
         byte[] address = new byte[Address.SIZE];
         buffer.get(address);
@@ -457,42 +511,139 @@ public class Callback {
         DataWord blockDifficulty = new DataWordImpl(prev.getBlockDifficulty());
 
         // TODO: properly construct a transaction first
-        return new ExecutionContext(
-                null,
-                txHash,
-                Address.wrap(address),
-                origin,
-                Address.wrap(caller),
-                nrgPrice,
-                nrgLimit,
-                callValue,
-                callData,
-                depth,
-                kind,
-                flags,
-                blockCoinbase,
-                blockNumber,
-                blockTimestamp,
-                blockNrgLimit,
-                blockDifficulty);
+        ExecutionContext ctx =
+                new ExecutionContext(
+                        null,
+                        txHash,
+                        Address.wrap(address),
+                        origin,
+                        Address.wrap(caller),
+                        nrgPrice,
+                        nrgLimit,
+                        callValue,
+                        callData,
+                        depth,
+                        kind,
+                        flags,
+                        blockCoinbase,
+                        blockNumber,
+                        blockTimestamp,
+                        blockNrgLimit,
+                        blockDifficulty);
+        if (inherit) {
+            ctx.inheritTransactionHash((ExecutionContext) prev);
+        }
+        ctx.setInternalTransactionRecording(internalTxRecording());
+        ctx.setBlockRecorder(blockRecorder());
+        ctx.setEnergyRecorder(energyRecorder());
+        return ctx;
     }
 
-    /** Creates a new internal transaction. */
-    private static AionInternalTx newInternalTx(
-            Address from, Address to, BigInteger nonce, DataWord value, byte[] data, String note) {
-        byte[] parentHash = context().getTransactionHash();
-        int depth = context().getTransactionStackDepth();
-        int index = context().getSideEffects().getInternalTransactions().size();
-
-        return new AionInternalTx(
-                parentHash,
-                depth,
-                index,
-                new DataWordImpl(nonce).getData(),
-                from,
-                to,
-                value.getData(),
-                data,
-                note);
+    /**
+     * Makes the side effects of ctx a nested frame of the current context's side effects, so that
+     * they can be merged or rejected in constant time. This must happen after the internal
+     * transaction of the call has been added to the current context.
+     */
+    private static void openNestedFrame(ExecutionContext ctx) {
+        TransactionSideEffects sideEffects = context().getSideEffects();
+        if (sideEffects instanceof SideEffects) {
+            ctx.setSideEffects(((SideEffects) sideEffects).newNestedFrame());
+        }
+    }
+
+    /**
+     * Returns how internal transactions are recorded for the current context. Defaults to {@link
+     * InternalTransactionRecording#FULL} if the context does not specify it.
+     */
+    private static InternalTransactionRecording internalTxRecording() {
+        TransactionContext ctx = context();
+        InternalTransactionRecording recording =
+                (ctx instanceof ExecutionContext)
+                        ? ((ExecutionContext) ctx).getInternalTransactionRecording()
+                        : null;
+        return recording == null ? InternalTransactionRecording.FULL : recording;
+    }
+
+    /** Returns the block recorder of the current context, or null if none. */
+    private static BlockRecorder blockRecorder() {
+        TransactionContext ctx = context();
+        return (ctx instanceof ExecutionContext)
+                ? ((ExecutionContext) ctx).getBlockRecorder()
+                : null;
+    }
+
+    /** Returns the energy recorder of the current context, or null if none. */
+    private static EnergyRecorder energyRecorder() {
+        TransactionContext ctx = context();
+        return (ctx instanceof ExecutionContext)
+                ? ((ExecutionContext) ctx).getEnergyRecorder()
+                : null;
+    }
+
+    /** Records the state of an account before the block, if the block is being recorded. */
+    private static void recordAccount(byte[] address) {
+        BlockRecorder recorder = blockRecorder();
+        if (recorder != null) {
+            recorder.recordAccount(Address.wrap(address));
+        }
+    }
+
+    /**
+     * Records the internal transaction of a nested call into sideEffects, according to the current
+     * recording level, and makes its hash the transaction hash of the nested context.
+     *
+     * <p>Unless the recording level is {@link InternalTransactionRecording#FULL}, the hash is only
+     * computed if the nested context's transaction hash is ever read.
+     */
+    private static void recordInternalTx(
+            TransactionSideEffects sideEffects,
+            InternalTransactionRecord internalTx,
+            ExecutionContext ctx) {
+        InternalTransactionRecording recording = internalTxRecording();
+        if (recording != InternalTransactionRecording.OFF) {
+            addInternalTx(sideEffects, internalTx);
+        }
+
+        if (recording == InternalTransactionRecording.FULL) {
+            ctx.setTransactionHash(internalTx.getTransactionHash());
+        } else {
+            ctx.deferTransactionHash(internalTx);
+        }
+    }
+
+    /**
+     * Adds the internal transaction to sideEffects. It is only materialized if the recording level
+     * is {@link InternalTransactionRecording#FULL} or sideEffects is not a {@link SideEffects}.
+     */
+    private static void addInternalTx(
+            TransactionSideEffects sideEffects, InternalTransactionRecord internalTx) {
+        if (internalTxRecording() == InternalTransactionRecording.FULL) {
+            internalTx.materialize();
+        }
+
+        if (sideEffects instanceof SideEffects) {
+            ((SideEffects) sideEffects).addInternalTransaction(internalTx);
+        } else {
+            sideEffects.addInternalTransaction(internalTx.materialize());
+        }
+    }
+
+    /** Moves value between two accounts; the kernel is only handed a BigInteger at the end. */
+    private static void transfer(
+            KernelInterfaceForFastVM track, Address from, Address to, Word128 value) {
+        BigInteger amount = value.toBigInteger();
+        track.adjustBalance(from, value.isZero() ? amount : amount.negate());
+        track.adjustBalance(to, amount);
+    }
+
+    /** Creates a new internal transaction record. */
+    private static InternalTransactionRecord newInternalTx(
+            Address from, Address to, BigInteger nonce, Word128 value, byte[] data, String note) {
+        TransactionContext parent = context();
+        int depth = parent.getTransactionStackDepth();
+        int index = parent.getSideEffects().getInternalTransactions().size();
+
+        return new InternalTransactionRecord(
+                parent, depth, index, nonce, from, to, value, data, note);
     }
 }
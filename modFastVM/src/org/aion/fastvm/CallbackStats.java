@@ -0,0 +1,135 @@
+package org.aion.fastvm;
+
+import java.util.Arrays;
+
+/**
+ * Counts and latencies of the callbacks the jit library makes into the host, per {@link
+ * CallbackType}. Callbacks are only counted and timed while {@link
+ * FastVM#setCallbackStats(boolean)} is enabled; latencies are taken on the native side, include the
+ * JNI marshalling and exclude the time spent in nested executions and their callbacks.
+ *
+ * <p>The stats of a transaction, see {@link FastVmTransactionResult#getCallbackStats()}, only
+ * carry counts and total time. The stats of a thread or of the process, see {@link
+ * FastVM#getThreadCallbackStats()} and {@link FastVM#getProcessCallbackStats()}, also carry a
+ * latency histogram.
+ */
+public final class CallbackStats {
+    /** Bucket i of a histogram counts the callbacks which took [2^i, 2^(i+1)) nanoseconds. */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    static final int TYPES = CallbackType.values().length;
+
+    /** The length of the array filled in by a run: count and nanoseconds per type. */
+    static final int FRAME_WORDS = 2 * TYPES;
+
+    private static final int HISTOGRAM_WORDS = 2 + HISTOGRAM_BUCKETS;
+
+    public static final CallbackStats EMPTY = new CallbackStats(new long[FRAME_WORDS], null);
+
+    private final long[] counts;
+    private final long[] histograms;
+
+    private CallbackStats(long[] counts, long[] histograms) {
+        this.counts = counts;
+        this.histograms = histograms;
+    }
+
+    /**
+     * Returns the stats of a single run, from an array of count and nanoseconds per type.
+     *
+     * @param words The array filled in by the run.
+     * @return the stats.
+     */
+    static CallbackStats ofFrame(long[] words) {
+        if (words.length != FRAME_WORDS) {
+            throw new IllegalArgumentException("Expected " + FRAME_WORDS + " words.");
+        }
+        return new CallbackStats(words, null);
+    }
+
+    /**
+     * Returns stats with histograms, from an array of count, nanoseconds and histogram buckets per
+     * type.
+     *
+     * @param words The array returned by the jit library.
+     * @return the stats.
+     */
+    static CallbackStats withHistograms(long[] words) {
+        if (words.length != TYPES * HISTOGRAM_WORDS) {
+            throw new IllegalArgumentException("Expected " + TYPES * HISTOGRAM_WORDS + " words.");
+        }
+        long[] counts = new long[FRAME_WORDS];
+        for (int i = 0; i < TYPES; i++) {
+            counts[2 * i] = words[HISTOGRAM_WORDS * i];
+            counts[2 * i + 1] = words[HISTOGRAM_WORDS * i + 1];
+        }
+        return new CallbackStats(counts, words);
+    }
+
+    /** @return the number of callbacks of the given type. */
+    public long getCount(CallbackType type) {
+        return counts[2 * type.ordinal()];
+    }
+
+    /** @return the total time spent in callbacks of the given type, in nanoseconds. */
+    public long getNanos(CallbackType type) {
+        return counts[2 * type.ordinal() + 1];
+    }
+
+    /** @return the number of callbacks of all types. */
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < TYPES; i++) {
+            total += counts[2 * i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total time spent in callbacks of all types, in nanoseconds. The time of a nested
+     * call is counted once, either in the {@link CallbackType#CALL} or in the callbacks it makes.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (int i = 0; i < TYPES; i++) {
+            total += counts[2 * i + 1];
+        }
+        return total;
+    }
+
+    /** @return true if these stats carry latency histograms. */
+    public boolean hasHistograms() {
+        return histograms != null;
+    }
+
+    /**
+     * Returns the latency histogram of the given type.
+     *
+     * @param type The callback type.
+     * @return the {@link #HISTOGRAM_BUCKETS} buckets, or an empty array if there are no histograms.
+     */
+    public long[] getLatencyHistogram(CallbackType type) {
+        if (histograms == null) {
+            return new long[0];
+        }
+        int from = HISTOGRAM_WORDS * type.ordinal() + 2;
+        return Arrays.copyOfRange(histograms, from, from + HISTOGRAM_BUCKETS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CallbackStats {");
+        for (CallbackType type : CallbackType.values()) {
+            if (getCount(type) > 0) {
+                sb.append(' ')
+                        .append(type)
+                        .append(" = ")
+                        .append(getCount(type))
+                        .append(" / ")
+                        .append(getNanos(type))
+                        .append("ns");
+            }
+        }
+        return sb.append(" }").toString();
+    }
+}
@@ -0,0 +1,26 @@
+package org.aion.fastvm;
+
+/** The host callbacks the jit library makes, in the order of its context function table. */
+public enum CallbackType {
+    ACCOUNT_EXISTS,
+
+    GET_STORAGE,
+
+    SET_STORAGE,
+
+    GET_BALANCE,
+
+    GET_CODE,
+
+    SELFDESTRUCT,
+
+    /** A nested call or create, timed including the nested execution. */
+    CALL,
+
+    /** Served from the native side, without crossing into Java. */
+    GET_TX_CONTEXT,
+
+    GET_BLOCK_HASH,
+
+    LOG
+}
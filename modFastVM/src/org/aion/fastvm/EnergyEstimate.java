@@ -0,0 +1,62 @@
+package org.aion.fastvm;
+
+import org.aion.vm.api.interfaces.ResultCode;
+
+/** The energy limit a transaction needs, see {@link FastVirtualMachine#estimateEnergy}. */
+public final class EnergyEstimate {
+    private final ResultCode resultCode;
+    private final long energyLimit;
+    private final long energyUsed;
+    private final long staticEnergy;
+
+    EnergyEstimate(ResultCode resultCode, long energyLimit, long energyUsed, long staticEnergy) {
+        this.resultCode = resultCode;
+        this.energyLimit = energyLimit;
+        this.energyUsed = energyUsed;
+        this.staticEnergy = staticEnergy;
+    }
+
+    /** @return the result of the execution the estimate was made from. */
+    public ResultCode getResultCode() {
+        return resultCode;
+    }
+
+    /**
+     * Returns the least energy limit with which the transaction runs as it did when estimated,
+     * energy kept back for nested calls included. If the transaction did not run because even
+     * its cheapest path needs more than the limit it was estimated with, this is the energy of
+     * that path.
+     *
+     * @return the energy limit, or {@link Long#MAX_VALUE} if no execution of the code can succeed.
+     */
+    public long getEnergyLimit() {
+        return energyLimit;
+    }
+
+    /** @return the energy the transaction used when estimated, transaction cost included. */
+    public long getEnergyUsed() {
+        return energyUsed;
+    }
+
+    /**
+     * @return the fixed energy of the cheapest path through the code of the transaction, see
+     *     {@link org.aion.fastvm.analysis.CodeAnalysis#getMinimumEnergy()}.
+     */
+    public long getStaticEnergy() {
+        return staticEnergy;
+    }
+
+    @Override
+    public String toString() {
+        return "EnergyEstimate{"
+                + "resultCode="
+                + resultCode
+                + ", energyLimit="
+                + energyLimit
+                + ", energyUsed="
+                + energyUsed
+                + ", staticEnergy="
+                + staticEnergy
+                + '}';
+    }
+}
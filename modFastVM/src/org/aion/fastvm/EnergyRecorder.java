@@ -0,0 +1,141 @@
+package org.aion.fastvm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Records the energy each frame of a transaction is given and uses, to work out from a single
+ * execution the least energy the transaction needs to run as it did, see {@link
+ * FastVirtualMachine#estimateEnergy}.
+ *
+ * <p>The energy a transaction uses is not always enough for it to succeed: at a CALL or CREATE the
+ * jit keeps back a 64th of the energy the caller has left, so a caller needs more than its callee
+ * uses. Each frame is given all it needs when its caller, at the point of the call, has at least
+ * enough for the callee's share after that 64th is kept back.
+ *
+ * <p>A call that fails, because it is rejected or runs out of energy, does not need what it was
+ * given: with less it still fails, and the caller loses only what it passed on. The caller then
+ * needs just enough at the call that the 64th kept back covers what it uses after the call, or
+ * enough to run the call as it did, whichever is less. Each frame therefore keeps its calls and
+ * works out what it needs when it ends, from its last call back to its first.
+ *
+ * <p>The energy the caller has left at a call is taken as the least that gives the callee what it
+ * was given, which is exact when the caller passes all its energy on, as Solidity does by default.
+ * When the caller passes on less, the caller is taken to have used more before the call than it
+ * did, so the estimate is never too low.
+ *
+ * <p>A recorder is not thread-safe and records one transaction.
+ */
+final class EnergyRecorder {
+    /** The energy the jit adds to a call that transfers value, which the caller does not pay. */
+    static final long CALL_STIPEND = 2300;
+
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    private static final class Frame {
+        private final long energy;
+        private final long stipend;
+        private final List<Call> calls = new ArrayList<>();
+
+        private Frame(long energy, long stipend) {
+            this.energy = energy;
+            this.stipend = stipend;
+        }
+
+        /** Returns the least energy the frame must be given to run as it did. */
+        private long need(long energyRemaining) {
+            // the least the frame has left at a point, and the least it must have there
+            long left = energyRemaining;
+            long needed = 0;
+            for (int i = calls.size() - 1; i >= 0; i--) {
+                Call call = calls.get(i);
+                long leftAtCall = Math.max(energyBefore(call.passedOn), left + call.cost);
+                long neededAfter = leftAtCall - call.cost - left + needed;
+                long enough = call.cost + neededAfter;
+                long mostAtCall = energyBefore(call.passedOn + 1) - 1;
+                if (left + call.cost <= mostAtCall) {
+                    // passing all it can, the caller keeps at least the 64th held back whatever
+                    // the callee uses, which may be less than the callee cost in this execution
+                    long mostNeededAfter = mostAtCall - call.cost - left + needed;
+                    enough = Math.min(enough, mostNeededAfter << 6);
+                }
+                // a failed callee fails with any energy, so it does not need what it was given
+                needed = call.failed ? enough : Math.max(energyBefore(call.need), enough);
+                left = leftAtCall;
+            }
+            return Math.max(energy - left, 0) + needed;
+        }
+    }
+
+    private static final class Call {
+        private final long passedOn;
+        private final long cost;
+        private final long need;
+        private final boolean failed;
+
+        private Call(long passedOn, long cost, long need, boolean failed) {
+            this.passedOn = passedOn;
+            this.cost = cost;
+            this.need = need;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * Starts recording a frame.
+     *
+     * @param energy The energy the frame is given.
+     * @param stipend The part of the energy that the caller did not pay.
+     */
+    void enter(long energy, long stipend) {
+        frames.push(new Frame(energy, stipend));
+    }
+
+    /**
+     * Ends the innermost frame.
+     *
+     * @param energyRemaining The energy the frame has left.
+     * @param failed Whether the frame failed, or was rejected before it ran.
+     * @return the least energy the frame must be given to run as it did.
+     * @throws IllegalStateException if no frame is being recorded.
+     */
+    long exit(long energyRemaining, boolean failed) {
+        Frame frame = frames.poll();
+        if (frame == null) {
+            throw new IllegalStateException("No frame to exit.");
+        }
+        long need = frame.need(energyRemaining);
+
+        Frame caller = frames.peek();
+        if (caller != null) {
+            long passedOn = frame.energy - frame.stipend;
+            caller.calls.add(
+                    new Call(
+                            passedOn,
+                            passedOn - energyRemaining,
+                            Math.max(need - frame.stipend, 0),
+                            failed));
+        }
+        return need;
+    }
+
+    /**
+     * Returns the least energy a caller must have left so that, once a 64th of it is kept back,
+     * the rest covers the energy passed on.
+     *
+     * @param passedOn The energy passed on to the callee.
+     * @return the energy the caller must have.
+     */
+    static long energyBefore(long passedOn) {
+        long energy = passedOn + passedOn / 63;
+        while (energy - (energy >>> 6) < passedOn) {
+            energy++;
+        }
+        while (energy > 0 && energy - 1 - ((energy - 1) >>> 6) >= passedOn) {
+            energy--;
+        }
+        return energy;
+    }
+}
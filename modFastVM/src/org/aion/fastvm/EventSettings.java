@@ -0,0 +1,43 @@
+package org.aion.fastvm;
+
+/**
+ * Whether the Flight Recorder events of this module are emitted. They are opt-in: the JVM must be
+ * started with -Daion.fastvm.events=true, and jdk.jfr, an optional dependency, must be resolved.
+ *
+ * <p>jdk.jfr is resolved by default when running from the class path on a JDK which ships it (e.g.
+ * Oracle JDK 10 or OpenJDK 11 and later). When running from the module path, start the JVM with
+ * --add-modules jdk.jfr as well.
+ *
+ * <p>This holds no reference to jdk.jfr nor to the native library, so that reading the setting is
+ * free of both.
+ */
+final class EventSettings {
+    /** The system property which enables the events. */
+    static final String PROPERTY = "aion.fastvm.events";
+
+    /** Whether the events are emitted. */
+    static final boolean ENABLED =
+            isEnabled(
+                    Boolean.getBoolean(PROPERTY),
+                    ModuleLayer.boot().findModule("jdk.jfr").isPresent());
+
+    private EventSettings() {}
+
+    /**
+     * Returns whether the events are emitted.
+     *
+     * @param requested Whether the system property enables the events.
+     * @param jfrPresent Whether jdk.jfr is resolved.
+     * @return true only if the events were requested and jdk.jfr is present.
+     */
+    static boolean isEnabled(boolean requested, boolean jfrPresent) {
+        if (requested && !jfrPresent) {
+            System.err.println(
+                    "Flight Recorder events are disabled: "
+                            + PROPERTY
+                            + " is set but module jdk.jfr is not resolved, add --add-modules"
+                            + " jdk.jfr to the JVM options.");
+        }
+        return requested && jfrPresent;
+    }
+}
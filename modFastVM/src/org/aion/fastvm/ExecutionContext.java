@@ -60,6 +60,7 @@ public class ExecutionContext implements TransactionContext {
     private Address blockCoinbase;
     private DataWord nrgPrice;
     private DataWord callValue;
+    private Word128 transferValue;
     private DataWord blockDifficulty;
     private byte[] callData;
     private byte[] txHash;
@@ -70,6 +71,11 @@ public class ExecutionContext implements TransactionContext {
     private int depth;
     private int kind;
     private int flags;
+    private InternalTransactionRecording internalTxRecording = InternalTransactionRecording.FULL;
+    private InternalTransactionRecord deferredTxHash;
+    private InternalTransactionRecord deferredOriginalTxHash;
+    private BlockRecorder blockRecorder;
+    private EnergyRecorder energyRecorder;
 
     /**
      * Creates a VM execution context.
@@ -130,8 +136,6 @@ public class ExecutionContext implements TransactionContext {
         this.blockNrgLimit = blockNrgLimit;
         this.txHash = txHash;
         this.originalTxHash = txHash;
-
-        this.sideEffects = new SideEffects();
     }
 
     /**
@@ -177,6 +181,10 @@ public class ExecutionContext implements TransactionContext {
     /** @return the transaction hash. */
     @Override
     public byte[] getTransactionHash() {
+        if (deferredTxHash != null) {
+            txHash = deferredTxHash.getTransactionHash();
+            deferredTxHash = null;
+        }
         return txHash;
     }
 
@@ -228,6 +236,14 @@ public class ExecutionContext implements TransactionContext {
         return callValue.value();
     }
 
+    /** @return the deposited value by instruction/transaction, without going through BigInteger. */
+    public Word128 getTransferValueWord() {
+        if (transferValue == null) {
+            transferValue = Word128.fromBytes(callValue.getData());
+        }
+        return transferValue;
+    }
+
     /** @return the call data. */
     @Override
     public byte[] getTransactionData() {
@@ -286,12 +302,29 @@ public class ExecutionContext implements TransactionContext {
         }
     }
 
-    /** @return the transaction helper. */
+    /**
+     * Returns the transaction helper. It is created on first use, as a nested call is given a frame
+     * of its caller's helper instead.
+     *
+     * @return the transaction helper.
+     */
     @Override
     public TransactionSideEffects getSideEffects() {
+        if (sideEffects == null) {
+            sideEffects = new SideEffects();
+        }
         return sideEffects;
     }
 
+    /**
+     * Sets the transaction helper, e.g. to a nested frame of the caller's helper.
+     *
+     * @param sideEffects The transaction helper.
+     */
+    void setSideEffects(SideEffects sideEffects) {
+        this.sideEffects = sideEffects;
+    }
+
     /**
      * Sets the transaction hash to txHash.
      *
@@ -300,6 +333,88 @@ public class ExecutionContext implements TransactionContext {
     @Override
     public void setTransactionHash(byte[] txHash) {
         this.txHash = txHash;
+        this.deferredTxHash = null;
+    }
+
+    /**
+     * Sets the transaction hash to the hash of the given internal transaction. The hash is only
+     * computed when it is first requested.
+     *
+     * @param internalTx The internal transaction whose hash becomes the transaction hash.
+     */
+    void deferTransactionHash(InternalTransactionRecord internalTx) {
+        this.txHash = null;
+        this.deferredTxHash = internalTx;
+    }
+
+    /**
+     * Makes the transaction hash of parent the transaction hash and the original transaction hash
+     * of this context, without computing it if it has been deferred.
+     *
+     * @param parent The context this context was called from.
+     */
+    void inheritTransactionHash(ExecutionContext parent) {
+        InternalTransactionRecord deferred = parent.getDeferredTransactionHash();
+        if (deferred == null) {
+            this.txHash = parent.getTransactionHash();
+            this.originalTxHash = this.txHash;
+        } else {
+            this.txHash = null;
+            this.originalTxHash = null;
+        }
+        this.deferredTxHash = deferred;
+        this.deferredOriginalTxHash = deferred;
+    }
+
+    /** @return the internal transaction whose hash is the transaction hash, if not yet computed. */
+    InternalTransactionRecord getDeferredTransactionHash() {
+        return deferredTxHash;
+    }
+
+    /** @return how internal transactions are recorded for this context. */
+    public InternalTransactionRecording getInternalTransactionRecording() {
+        return internalTxRecording;
+    }
+
+    /**
+     * Sets how internal transactions are recorded for this context and the contexts of its nested
+     * calls.
+     *
+     * @param recording The internal transaction recording level.
+     */
+    public void setInternalTransactionRecording(InternalTransactionRecording recording) {
+        if (recording == null) {
+            throw new NullPointerException("Cannot set null internal transaction recording.");
+        }
+        this.internalTxRecording = recording;
+    }
+
+    /** @return the recorder of the state read by this context, or null if none. */
+    public BlockRecorder getBlockRecorder() {
+        return blockRecorder;
+    }
+
+    /**
+     * Sets the recorder of the state read by this context and the contexts of its nested calls.
+     *
+     * @param recorder The recorder, or null to record nothing.
+     */
+    public void setBlockRecorder(BlockRecorder recorder) {
+        this.blockRecorder = recorder;
+    }
+
+    /** @return the recorder of the energy used by this context, or null if none. */
+    EnergyRecorder getEnergyRecorder() {
+        return energyRecorder;
+    }
+
+    /**
+     * Sets the recorder of the energy used by this context and the contexts of its nested calls.
+     *
+     * @param recorder The recorder, or null to record nothing.
+     */
+    void setEnergyRecorder(EnergyRecorder recorder) {
+        this.energyRecorder = recorder;
     }
 
     /**
@@ -314,6 +429,10 @@ public class ExecutionContext implements TransactionContext {
     /** @return the original transaction hash. */
     @Override
     public byte[] getHashOfOriginTransaction() {
+        if (deferredOriginalTxHash != null) {
+            originalTxHash = deferredOriginalTxHash.getTransactionHash();
+            deferredOriginalTxHash = null;
+        }
         return originalTxHash;
     }
 
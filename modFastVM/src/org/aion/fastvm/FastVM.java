@@ -1,5 +1,8 @@
 package org.aion.fastvm;
 
+import java.util.List;
+import org.aion.crypto.HashUtil;
+import org.aion.util.conversions.Hex;
 import org.aion.util.file.NativeLoader;
 import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
 import org.aion.vm.api.interfaces.KernelInterface;
@@ -23,9 +26,15 @@ public class FastVM {
 
     public static int FLAG_STATIC = 1;
 
+    /** Whether callbacks are counted and timed, see {@link #setCallbackStats(boolean)}. */
+    private static volatile boolean callbackStats = false;
+
     static {
         NativeLoader.loadLibrary("fastvm");
         init();
+        if (EventSettings.ENABLED) {
+            FastVmEvents.init();
+        }
     }
 
     /** Creates a FastVM instance. */
@@ -41,41 +50,128 @@ public class FastVM {
      */
     private static native long create();
 
-    /** Executes the given code and returns the execution results. */
-    private static native byte[] run(long instance, byte[] code, byte[] context, int revision);
+    /**
+     * Executes the given code and returns the execution results. The count and nanoseconds of the
+     * callbacks made, per {@link CallbackType}, are written into callbackStats unless it is null.
+     */
+    private static native byte[] run(
+            long instance, byte[] code, byte[] context, int revision, long[] callbackStats);
 
     /** Destroys the given VM instance. */
     private static native void destroy(long instance);
 
-    @SuppressWarnings("unchecked")
-    public FastVmTransactionResult run(byte[] code, TransactionContext ctx, KernelInterface repo) {
-        if (!(repo instanceof KernelInterfaceForFastVM)) {
-            throw new IllegalArgumentException("repo must be type KernelInterfaceForFastVM!");
-        }
+    /**
+     * Enables or disables basic block profiling. Code executed while profiling is enabled is
+     * compiled separately, with a counter update at the entry of every block, and so runs slower.
+     *
+     * @param enabled whether to profile
+     */
+    public static native void setProfiling(boolean enabled);
 
-        KernelInterfaceForFastVM kernelRepo = (KernelInterfaceForFastVM) repo;
-        Callback.push(Pair.of(ctx, kernelRepo));
-        long instance = create();
-        byte[] result = run(instance, code, ctx.toBytes(), REVISION_AION);
-        destroy(instance);
-        Callback.pop();
+    private static native void setCallbackStats0(boolean enabled);
+
+    /**
+     * Enables or disables the counting and timing of callbacks, which is disabled by default, as
+     * reading the clock around every callback is not free. While disabled, results carry {@link
+     * CallbackStats#EMPTY} and the thread and process stats are left as they are.
+     *
+     * @param enabled whether to count and time callbacks
+     */
+    public static void setCallbackStats(boolean enabled) {
+        callbackStats = enabled;
+        setCallbackStats0(enabled);
+    }
+
+    /** Returns the raw profile of the code, 4 words per block. */
+    private static native long[] getProfile(byte[] code);
+
+    /** Drops the profiles of all code, so that code run afterwards is profiled from zero. */
+    public static native void resetProfiles();
+
+    /**
+     * Returns the execution profile of the given code, aggregated over every execution made while
+     * profiling was enabled.
+     *
+     * @param code the contract code
+     * @return the basic blocks in bytecode order, or an empty list if the code was not profiled
+     */
+    public static List<BlockProfile> getBlockProfiles(byte[] code) {
+        return BlockProfile.decode(code, getProfile(code));
+    }
+
+    /** Enables or disables the recording of JIT activity, see {@link FastVmEvents}. */
+    static native void setJitEvents(boolean enabled);
+
+    /** Moves the JIT activity recorded on the calling thread out of the library. */
+    static native byte[] drainJitEvents();
+
+    private static native long[] getThreadCallbackStats0();
+
+    private static native long[] getProcessCallbackStats0();
+
+    /** Returns the callback stats of every execution on the calling thread. */
+    public static CallbackStats getThreadCallbackStats() {
+        return CallbackStats.withHistograms(getThreadCallbackStats0());
+    }
+
+    /** Returns the callback stats of every execution in the process. */
+    public static CallbackStats getProcessCallbackStats() {
+        return CallbackStats.withHistograms(getProcessCallbackStats0());
+    }
 
-        return FastVmTransactionResult.fromBytes(result);
+    public FastVmTransactionResult run(byte[] code, TransactionContext ctx, KernelInterface repo) {
+        return run(code, ctx, repo, REVISION_AION);
     }
 
-    @SuppressWarnings("unchecked")
     public FastVmTransactionResult run_v1(byte[] code, TransactionContext ctx, KernelInterface repo) {
+        return run(code, ctx, repo, REVISION_AION_V1);
+    }
+
+    private FastVmTransactionResult run(
+            byte[] code, TransactionContext ctx, KernelInterface repo, int revision) {
         if (!(repo instanceof KernelInterfaceForFastVM)) {
             throw new IllegalArgumentException("repo must be type KernelInterfaceForFastVM!");
         }
 
-        KernelInterfaceForFastVM kernelRepo = (KernelInterfaceForFastVM) repo;
-        Callback.push(Pair.of(ctx, kernelRepo));
+        if (!EventSettings.ENABLED) {
+            return execute(code, ctx, (KernelInterfaceForFastVM) repo, revision);
+        }
+
+        FrameExecutionEvent event = new FrameExecutionEvent();
+        event.begin();
+
+        FastVmTransactionResult txResult =
+                execute(code, ctx, (KernelInterfaceForFastVM) repo, revision);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = ctx.getTransactionStackDepth();
+            event.kind = ctx.getTransactionKind();
+            event.address = String.valueOf(ctx.getDestinationAddress());
+            event.codeHash = Hex.toHexString(HashUtil.h256(code));
+            event.codeSize = code.length;
+            event.resultCode = txResult.getResultCode().name();
+            event.energyUsed = ctx.getTransactionEnergy() - txResult.getEnergyRemaining();
+            event.commit();
+        }
+        FastVmEvents.commitJitEvents(ctx.getDestinationAddress());
+
+        return txResult;
+    }
+
+    private FastVmTransactionResult execute(
+            byte[] code, TransactionContext ctx, KernelInterfaceForFastVM repo, int revision) {
+        Callback.push(Pair.of(ctx, repo));
         long instance = create();
-        byte[] result = run(instance, code, ctx.toBytes(), REVISION_AION_V1);
+        long[] frameStats = callbackStats ? new long[CallbackStats.FRAME_WORDS] : null;
+        byte[] result = run(instance, code, ctx.toBytes(), revision, frameStats);
         destroy(instance);
         Callback.pop();
 
-        return FastVmTransactionResult.fromBytes(result);
+        FastVmTransactionResult txResult = FastVmTransactionResult.fromBytes(result);
+        if (frameStats != null) {
+            txResult.setCallbackStats(CallbackStats.ofFrame(frameStats));
+        }
+        return txResult;
     }
 }
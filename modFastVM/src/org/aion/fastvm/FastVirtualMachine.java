@@ -2,6 +2,7 @@ package org.aion.fastvm;
 
 import java.math.BigInteger;
 import java.util.List;
+import org.aion.fastvm.analysis.CodeAnalysis;
 import org.aion.interfaces.db.RepositoryCache;
 import org.aion.interfaces.tx.Transaction;
 import org.aion.mcf.vm.types.DataWordImpl;
@@ -23,6 +24,10 @@ public class FastVirtualMachine implements VirtualMachine {
     // updates in each separately returned KernelInterface and must flushTo its intended repository.
     private KernelInterface kernelSnapshot;
 
+    private InternalTransactionRecording internalTxRecording = InternalTransactionRecording.FULL;
+
+    private BlockRecorder blockRecorder;
+
     @Override
     public void start() {
         throw new UnsupportedOperationException("The FastVirtualMachine is not long-lived.");
@@ -33,6 +38,29 @@ public class FastVirtualMachine implements VirtualMachine {
         throw new UnsupportedOperationException("The FastVirtualMachine is not long-lived.");
     }
 
+    /**
+     * Sets how internal transactions are recorded for the transactions run by this virtual
+     * machine. Defaults to {@link InternalTransactionRecording#FULL}.
+     *
+     * @param recording The internal transaction recording level.
+     */
+    public void setInternalTransactionRecording(InternalTransactionRecording recording) {
+        if (recording == null) {
+            throw new NullPointerException("Cannot set null internal transaction recording.");
+        }
+        this.internalTxRecording = recording;
+    }
+
+    /**
+     * Sets a recorder of the inputs of the next block run by this virtual machine, so that the
+     * block can be replayed without the repository it was run against.
+     *
+     * @param recorder The recorder, or null to record nothing.
+     */
+    public void setBlockRecorder(BlockRecorder recorder) {
+        this.blockRecorder = recorder;
+    }
+
     /**
      * Runs the transactions provided by the contexts and returns the results. Each result is
      * guaranteed to contain a {@link KernelInterface} such that its state changes are historical
@@ -45,6 +73,9 @@ public class FastVirtualMachine implements VirtualMachine {
         if (kernel == null) {
             throw new NullPointerException("Cannot set null KernelInterface.");
         }
+        if (blockRecorder != null) {
+            blockRecorder.startBlock(kernel, transactions);
+        }
 
         TransactionContext[] contexts = new TransactionContext[transactions.length];
         for (int i = 0; i < transactions.length; i++) {
@@ -85,12 +116,73 @@ public class FastVirtualMachine implements VirtualMachine {
             List<Address> accountsToDelete = contexts[i].getSideEffects().getAddressesToBeDeleted();
 
             updateSnapshot(txResult, transaction, miner, accountsToDelete);
-            txResult.getSideEffects().merge(contexts[i].getSideEffects());
+            if (txResult instanceof FastVmTransactionResult) {
+                ((FastVmTransactionResult) txResult).addSideEffects(contexts[i].getSideEffects());
+            } else {
+                txResult.getSideEffects().merge(contexts[i].getSideEffects());
+            }
         }
 
         return transactionResults;
     }
 
+    /**
+     * Estimates the energy limit a transaction needs, from a single execution against a child of
+     * the kernel that is thrown away afterwards.
+     *
+     * <p>The transaction is run with its own energy limit, which should be high enough for it to
+     * complete, such as the block energy limit. The estimate is the energy it used, raised where
+     * a nested call needed its caller to have more left than it used, because the jit keeps back
+     * a 64th of the caller's energy at each call, see {@link EnergyRecorder}. If the fixed
+     * energy of the cheapest path through the code is above the limit, the transaction is not
+     * run at all.
+     *
+     * @param kernel The kernel to run against, which is not modified.
+     * @param transaction The transaction.
+     * @return the estimate.
+     */
+    public EnergyEstimate estimateEnergy(KernelInterface kernel, TransactionInterface transaction) {
+        if (kernel == null) {
+            throw new NullPointerException("Cannot set null KernelInterface.");
+        }
+        ExecutionContext ctx = constructTransactionContext(transaction, kernel);
+        ctx.setInternalTransactionRecording(InternalTransactionRecording.OFF);
+        ctx.setBlockRecorder(null);
+
+        byte[] code =
+                transaction.isContractCreationTransaction()
+                        ? transaction.getData()
+                        : kernel.getCode(transaction.getDestinationAddress());
+        long staticEnergy = CodeAnalysis.of(ArrayUtils.nullToEmpty(code)).getMinimumEnergy();
+        long transactionCost = transaction.getTransactionCost();
+        if (staticEnergy > ctx.getTransactionEnergy()) {
+            long limit =
+                    staticEnergy == Long.MAX_VALUE
+                            ? Long.MAX_VALUE
+                            : transactionCost + staticEnergy;
+            return new EnergyEstimate(
+                    FastVmResultCode.OUT_OF_NRG, limit, transaction.getEnergyLimit(), staticEnergy);
+        }
+
+        EnergyRecorder recorder = new EnergyRecorder();
+        ctx.setEnergyRecorder(recorder);
+        recorder.enter(ctx.getTransactionEnergy(), 0);
+        TransactionExecutor executor =
+                new TransactionExecutor(
+                        (Transaction) transaction,
+                        ctx,
+                        kernel.makeChildKernelInterface(),
+                        ((KernelInterfaceForFastVM) kernel).isFork040Enable());
+        TransactionResult result = executor.execute();
+        long need = Math.max(recorder.exit(result.getEnergyRemaining(), false), staticEnergy);
+
+        return new EnergyEstimate(
+                result.getResultCode(),
+                transactionCost + need,
+                transaction.getEnergyLimit() - result.getEnergyRemaining(),
+                staticEnergy);
+    }
+
     private void updateSnapshot(
             TransactionResult txResult,
             AionTransaction tx,
@@ -125,16 +217,12 @@ public class FastVirtualMachine implements VirtualMachine {
     }
 
     private BigInteger computeRefundForSender(AionTransaction transaction, long energyUsed) {
-        BigInteger energyLimit = BigInteger.valueOf(transaction.getEnergyLimit());
-        BigInteger energyConsumed = BigInteger.valueOf(energyUsed);
-        BigInteger energyPrice = BigInteger.valueOf(transaction.getEnergyPrice());
-        return energyLimit.subtract(energyConsumed).multiply(energyPrice);
+        long energyLeft = transaction.getEnergyLimit() - energyUsed;
+        return Word128.multiply(energyLeft, transaction.getEnergyPrice()).toBigInteger();
     }
 
     private BigInteger computeMiningFee(AionTransaction transaction, long energyUsed) {
-        BigInteger energyPrice = BigInteger.valueOf(transaction.getEnergyPrice());
-        BigInteger energyConsumed = BigInteger.valueOf(energyUsed);
-        return energyConsumed.multiply(energyPrice);
+        return Word128.multiply(energyUsed, transaction.getEnergyPrice()).toBigInteger();
     }
 
     private ExecutionContext constructTransactionContext(
@@ -165,24 +253,28 @@ public class FastVirtualMachine implements VirtualMachine {
         long blockNrgLimit = kernel.getBlockEnergyLimit();
         DataWordImpl blockDifficulty = new DataWordImpl(kernel.getBlockDifficulty());
 
-        return new ExecutionContext(
-                transaction,
-                txHash,
-                address,
-                origin,
-                caller,
-                nrgPrice,
-                nrg,
-                callValue,
-                callData,
-                depth,
-                kind,
-                flags,
-                blockCoinbase,
-                blockNumber,
-                blockTimestamp,
-                blockNrgLimit,
-                blockDifficulty);
+        ExecutionContext ctx =
+                new ExecutionContext(
+                        transaction,
+                        txHash,
+                        address,
+                        origin,
+                        caller,
+                        nrgPrice,
+                        nrg,
+                        callValue,
+                        callData,
+                        depth,
+                        kind,
+                        flags,
+                        blockCoinbase,
+                        blockNumber,
+                        blockTimestamp,
+                        blockNrgLimit,
+                        blockDifficulty);
+        ctx.setInternalTransactionRecording(internalTxRecording);
+        ctx.setBlockRecorder(blockRecorder);
+        return ctx;
     }
 
     private class FastVmSimpleFuture<R> implements SimpleFuture {
@@ -0,0 +1,96 @@
+package org.aion.fastvm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import org.aion.types.Address;
+
+/**
+ * Bridges the activity of the jit library to Flight Recorder events. The library only records its
+ * activity while a recording has the JIT events enabled, so they cost nothing otherwise.
+ */
+final class FastVmEvents {
+    private static final int EVENT_COMPILE = 0;
+    private static final int EVENT_ENGINE_RESET = 1;
+
+    private static final int FLAG_CACHE_LOAD = 1;
+    private static final int FLAG_CACHE_WRITE = 2;
+    private static final int FLAG_RESET_MEMORY = 4;
+
+    private static volatile boolean jitEventsEnabled = false;
+
+    private FastVmEvents() {}
+
+    /**
+     * Follows the state of recordings. Must be called once the native library is loaded, and only
+     * if the events are enabled, see {@link EventSettings}.
+     */
+    static void init() {
+        FlightRecorder.addListener(
+                new FlightRecorderListener() {
+                    @Override
+                    public void recordingStateChanged(Recording recording) {
+                        update();
+                    }
+                });
+        update();
+    }
+
+    private static synchronized void update() {
+        boolean enabled =
+                FlightRecorder.isInitialized()
+                        && (EventType.getEventType(JitCompileEvent.class).isEnabled()
+                                || EventType.getEventType(JitEngineResetEvent.class).isEnabled());
+        if (enabled != jitEventsEnabled) {
+            FastVM.setJitEvents(enabled);
+            jitEventsEnabled = enabled;
+        }
+    }
+
+    /**
+     * Commits the events the jit library recorded on this thread.
+     *
+     * @param address The address of the frame that just ran.
+     */
+    static void commitJitEvents(Address address) {
+        if (!jitEventsEnabled) {
+            return;
+        }
+
+        // the library hands out a bounded number of events per call
+        for (int count = -1; count != 0; ) {
+            ByteBuffer buffer =
+                    ByteBuffer.wrap(FastVM.drainJitEvents()).order(ByteOrder.BIG_ENDIAN);
+            count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                int type = buffer.getInt();
+                int flags = buffer.getInt();
+                long startNanos = buffer.getLong();
+                long durationNanos = buffer.getLong();
+                byte[] codeId = new byte[buffer.getInt()];
+                buffer.get(codeId);
+
+                if (type == EVENT_COMPILE) {
+                    JitCompileEvent event = new JitCompileEvent();
+                    event.codeId = new String(codeId, StandardCharsets.US_ASCII);
+                    event.address = address == null ? null : address.toString();
+                    event.cacheLoad = (flags & FLAG_CACHE_LOAD) != 0;
+                    event.cacheWrite = (flags & FLAG_CACHE_WRITE) != 0;
+                    event.compileStart = startNanos / 1_000_000;
+                    event.compileTime = durationNanos;
+                    event.commit();
+                } else if (type == EVENT_ENGINE_RESET) {
+                    JitEngineResetEvent event = new JitEngineResetEvent();
+                    event.reason = (flags & FLAG_RESET_MEMORY) != 0 ? "MEMORY" : "COMPILATIONS";
+                    event.resetStart = startNanos / 1_000_000;
+                    event.resetTime = durationNanos;
+                    event.commit();
+                }
+            }
+        }
+    }
+}
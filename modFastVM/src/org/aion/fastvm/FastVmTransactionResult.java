@@ -2,6 +2,7 @@ package org.aion.fastvm;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import org.aion.mcf.vm.types.Bloom;
 import org.aion.vm.api.interfaces.KernelInterface;
 import org.aion.vm.api.interfaces.ResultCode;
 import org.aion.vm.api.interfaces.TransactionResult;
@@ -13,6 +14,7 @@ public final class FastVmTransactionResult implements TransactionResult {
     private byte[] output;
     private long energyRemaining;
     private SideEffects sideEffects;
+    private CallbackStats callbackStats = CallbackStats.EMPTY;
 
     /**
      * Constructs a new {@code TransactionResult} with no side-effects, with zero energy remaining,
@@ -158,6 +160,21 @@ public final class FastVmTransactionResult implements TransactionResult {
         return this.kernel;
     }
 
+    /**
+     * Returns the host callbacks made while executing, including those of nested calls. Results not
+     * produced by the {@link FastVM}, e.g. rejected transactions, and results produced while {@link
+     * FastVM#setCallbackStats(boolean)} is disabled have no callbacks.
+     *
+     * @return the callback stats.
+     */
+    public CallbackStats getCallbackStats() {
+        return this.callbackStats;
+    }
+
+    public void setCallbackStats(CallbackStats callbackStats) {
+        this.callbackStats = (callbackStats == null) ? CallbackStats.EMPTY : callbackStats;
+    }
+
     @Override
     public String toString() {
         return "TransactionResult { code = " + this.code
@@ -170,6 +187,29 @@ public final class FastVmTransactionResult implements TransactionResult {
         return sideEffects;
     }
 
+    /**
+     * Returns the bloom filter of the logs of this result.
+     *
+     * @return the bloom filter.
+     */
+    public Bloom getLogsBloom() {
+        return sideEffects.getLogsBloom();
+    }
+
+    /**
+     * Adds the side effects of a transaction to this result. If this result has none of its own,
+     * it takes them over as they are, so that the logs in their arena are neither copied nor built.
+     *
+     * @param other The side effects of the transaction.
+     */
+    void addSideEffects(TransactionSideEffects other) {
+        if (other instanceof SideEffects && sideEffects.isEmpty()) {
+            sideEffects = (SideEffects) other;
+        } else {
+            sideEffects.merge(other);
+        }
+    }
+
     public String toStringWithSideEffects() {
         return "TransactionResult { code = " + this.code
             + ", energy remaining = " + this.energyRemaining + "}";
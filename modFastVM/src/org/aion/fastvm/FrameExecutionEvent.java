@@ -0,0 +1,36 @@
+package org.aion.fastvm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A Flight Recorder event spanning a {@link FastVM} run, one per call frame. */
+@Name("org.aion.fastvm.FrameExecution")
+@Label("Frame Execution")
+@Category({"Aion", "FastVM"})
+@Description("Execution of one call frame by the jit library, including its nested frames")
+final class FrameExecutionEvent extends jdk.jfr.Event {
+    @Label("Depth")
+    int depth;
+
+    @Label("Kind")
+    @Description("The ExecutionContext call kind")
+    int kind;
+
+    @Label("Address")
+    String address;
+
+    @Label("Code Hash")
+    @Description("The hash of the code, as stored in the repository")
+    String codeHash;
+
+    @Label("Code Size")
+    int codeSize;
+
+    @Label("Result Code")
+    String resultCode;
+
+    @Label("Energy Used")
+    long energyUsed;
+}
@@ -0,0 +1,130 @@
+package org.aion.fastvm;
+
+import java.math.BigInteger;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.InternalTransactionInterface;
+import org.aion.vm.api.interfaces.TransactionContext;
+import org.aion.zero.types.AionInternalTx;
+
+/**
+ * A compact record of an internal transaction.
+ *
+ * <p>The {@link AionInternalTx} described by a record, and therefore its RLP encoding and hash, is
+ * only built the first time it is requested. Rejections are tracked on the record until then.
+ */
+final class InternalTransactionRecord {
+
+    private final TransactionContext parent;
+    private final int depth;
+    private final int index;
+    private final BigInteger nonce;
+    private final Address from;
+    private final Address to;
+    private final Word128 value;
+    private final byte[] data;
+    private final String note;
+
+    private InternalTransactionInterface transaction;
+    private boolean rejected;
+
+    /**
+     * Creates a new record.
+     *
+     * @param parent The context whose transaction hash is the parent hash of the record.
+     * @param depth The stack depth of the parent context.
+     * @param index The index of the internal transaction.
+     * @param nonce The nonce of the sender.
+     * @param from The sender.
+     * @param to The recipient, or null for a contract creation.
+     * @param value The transferred value.
+     * @param data The call data.
+     * @param note The note, e.g. "call", "create" or "selfdestruct".
+     */
+    InternalTransactionRecord(
+            TransactionContext parent,
+            int depth,
+            int index,
+            BigInteger nonce,
+            Address from,
+            Address to,
+            Word128 value,
+            byte[] data,
+            String note) {
+        this.parent = parent;
+        this.depth = depth;
+        this.index = index;
+        this.nonce = nonce;
+        this.from = from;
+        this.to = to;
+        this.value = value;
+        this.data = data;
+        this.note = note;
+    }
+
+    private InternalTransactionRecord(InternalTransactionInterface transaction) {
+        this(null, 0, 0, null, null, null, null, null, null);
+        this.transaction = transaction;
+    }
+
+    /**
+     * Wraps an already built internal transaction.
+     *
+     * @param transaction The internal transaction.
+     * @return a record whose materialized transaction is the given one.
+     */
+    static InternalTransactionRecord wrap(InternalTransactionInterface transaction) {
+        return new InternalTransactionRecord(transaction);
+    }
+
+    /**
+     * Returns the internal transaction described by this record, building it on first access.
+     *
+     * @return the internal transaction.
+     */
+    InternalTransactionInterface materialize() {
+        if (transaction == null) {
+            transaction =
+                    new AionInternalTx(
+                            parent.getTransactionHash(),
+                            depth,
+                            index,
+                            Word128.fromBigInteger(nonce).toBytes(),
+                            from,
+                            to,
+                            value.toBytes(),
+                            data,
+                            note);
+            if (rejected) {
+                transaction.markAsRejected();
+            }
+        }
+        return transaction;
+    }
+
+    /**
+     * Returns the hash of the internal transaction. This materializes the record.
+     *
+     * @return the transaction hash.
+     */
+    byte[] getTransactionHash() {
+        return materialize().getTransactionHash();
+    }
+
+    /** Marks the internal transaction as rejected. */
+    void markAsRejected() {
+        if (transaction == null) {
+            rejected = true;
+        } else {
+            transaction.markAsRejected();
+        }
+    }
+
+    /**
+     * Returns whether the internal transaction was rejected.
+     *
+     * @return true if rejected.
+     */
+    boolean isRejected() {
+        return transaction == null ? rejected : transaction.isRejected();
+    }
+}
@@ -0,0 +1,22 @@
+package org.aion.fastvm;
+
+/**
+ * How much of the internal transactions (nested CALL/CREATE and SELFDESTRUCT) are recorded into
+ * the side effects of a transaction.
+ *
+ * @see InternalTransactionRecord
+ */
+public enum InternalTransactionRecording {
+
+    /** Internal transactions are not recorded. */
+    OFF,
+
+    /**
+     * Internal transactions are recorded as compact records. Their RLP encoding and hash are only
+     * computed the first time they are read.
+     */
+    METADATA,
+
+    /** Internal transactions are fully built and hashed as soon as they are created. */
+    FULL
+}
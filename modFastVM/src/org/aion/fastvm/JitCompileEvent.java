@@ -0,0 +1,43 @@
+package org.aion.fastvm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * A Flight Recorder event for code made executable by the jit library, either compiled or loaded
+ * from its object cache. It is committed after the frame that needed the code returns, so its
+ * own time stamp is not the time of the compilation; the library records that as {@link
+ * #compileStart}.
+ */
+@Name("org.aion.fastvm.JitCompile")
+@Label("JIT Compile")
+@Category({"Aion", "FastVM", "JIT"})
+@Description("Compilation of contract code, or loading of it from the object cache")
+final class JitCompileEvent extends jdk.jfr.Event {
+    @Label("Code Id")
+    @Description("Keccak hash of the code followed by the revision and flags")
+    String codeId;
+
+    @Label("Address")
+    @Description("The address of the frame that needed the code")
+    String address;
+
+    @Label("Loaded From Cache")
+    boolean cacheLoad;
+
+    @Label("Written To Cache")
+    boolean cacheWrite;
+
+    @Label("Compile Start")
+    @Description("When the jit library started compiling or loading the code")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long compileStart;
+
+    @Label("Compile Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long compileTime;
+}
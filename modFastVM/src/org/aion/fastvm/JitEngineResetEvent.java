@@ -0,0 +1,32 @@
+package org.aion.fastvm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * A Flight Recorder event for a reset of the jit library's execution engine, which drops all
+ * compiled code. Like {@link JitCompileEvent} it is committed after the frame that caused it, so
+ * the time of the reset is recorded as {@link #resetStart}.
+ */
+@Name("org.aion.fastvm.JitEngineReset")
+@Label("JIT Engine Reset")
+@Category({"Aion", "FastVM", "JIT"})
+@Description("Reset of the execution engine, dropping all compiled code")
+final class JitEngineResetEvent extends jdk.jfr.Event {
+    @Label("Reason")
+    @Description("MEMORY when the code memory limit was hit, COMPILATIONS after many compilations")
+    String reason;
+
+    @Label("Reset Start")
+    @Description("When the jit library started resetting the engine")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long resetStart;
+
+    @Label("Reset Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long resetTime;
+}
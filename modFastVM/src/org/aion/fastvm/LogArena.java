@@ -0,0 +1,176 @@
+package org.aion.fastvm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.aion.crypto.HashUtil;
+import org.aion.mcf.vm.types.Bloom;
+import org.aion.mcf.vm.types.Log;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.IExecutionLog;
+
+/**
+ * An append-only store of execution logs.
+ *
+ * <p>Logs emitted by the LOG opcodes are copied into one flat byte array as |32b - address|32b *
+ * n - topics|?b - data|, with their offset, topic count and data length kept in an index. The
+ * {@link IExecutionLog} object of such a log is only built the first time it is read. Logs which
+ * are already objects are stored as they are.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class LogArena {
+    private static final int ADDRESS_SIZE = Address.SIZE;
+    private static final int TOPIC_SIZE = 32;
+
+    // index entries: | offset | number of topics | data length |
+    private static final int ENTRY_INTS = 3;
+
+    private byte[] arena = new byte[0];
+    private int arenaSize;
+    private int[] index = new int[0];
+    private IExecutionLog[] logs = new IExecutionLog[0];
+    private int size;
+
+    /** @return the number of logs. */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Appends a log by copying its fields into the arena.
+     *
+     * @param address The address of the contract that emitted the log.
+     * @param topics The concatenated 32-byte topics.
+     * @param data The log data.
+     */
+    void add(byte[] address, byte[] topics, byte[] data) {
+        int length = ADDRESS_SIZE + topics.length + data.length;
+        ensureArenaCapacity(arenaSize + length);
+        ensureIndexCapacity(size + 1);
+
+        int offset = arenaSize;
+        System.arraycopy(address, 0, arena, offset, ADDRESS_SIZE);
+        System.arraycopy(topics, 0, arena, offset + ADDRESS_SIZE, topics.length);
+        System.arraycopy(data, 0, arena, offset + ADDRESS_SIZE + topics.length, data.length);
+        arenaSize += length;
+
+        int entry = size * ENTRY_INTS;
+        index[entry] = offset;
+        index[entry + 1] = topics.length / TOPIC_SIZE;
+        index[entry + 2] = data.length;
+        logs[size] = null;
+        size++;
+    }
+
+    /**
+     * Appends a log object as it is.
+     *
+     * @param log The log.
+     */
+    void add(IExecutionLog log) {
+        ensureIndexCapacity(size + 1);
+
+        int entry = size * ENTRY_INTS;
+        index[entry] = arenaSize;
+        index[entry + 1] = 0;
+        index[entry + 2] = 0;
+        logs[size] = log;
+        size++;
+    }
+
+    /**
+     * Returns the i'th log, building it from the arena on first access.
+     *
+     * @param i The index of the log.
+     * @return the log.
+     */
+    IExecutionLog get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+
+        IExecutionLog log = logs[i];
+        if (log == null) {
+            int entry = i * ENTRY_INTS;
+            int offset = index[entry];
+            int numTopics = index[entry + 1];
+            int dataLength = index[entry + 2];
+
+            Address address =
+                    Address.wrap(Arrays.copyOfRange(arena, offset, offset + ADDRESS_SIZE));
+            offset += ADDRESS_SIZE;
+            List<byte[]> topics = new ArrayList<>(numTopics);
+            for (int t = 0; t < numTopics; t++, offset += TOPIC_SIZE) {
+                topics.add(Arrays.copyOfRange(arena, offset, offset + TOPIC_SIZE));
+            }
+            byte[] data = Arrays.copyOfRange(arena, offset, offset + dataLength);
+
+            log = new Log(address, topics, data);
+            logs[i] = log;
+        }
+        return log;
+    }
+
+    /**
+     * Adds the addresses and topics of a range of logs to a bloom filter. Logs that have not been
+     * read are hashed from the arena, without building their objects.
+     *
+     * @param from The index of the first log, inclusive.
+     * @param to The index of the last log, exclusive.
+     * @param bloom The bloom filter to add to.
+     */
+    void addToBloom(int from, int to, Bloom bloom) {
+        for (int i = from; i < to; i++) {
+            IExecutionLog log = logs[i];
+            if (log != null) {
+                bloom.or(Bloom.create(HashUtil.h256(log.getSourceAddress().toBytes())));
+                for (byte[] topic : log.getTopics()) {
+                    bloom.or(Bloom.create(HashUtil.h256(topic)));
+                }
+                continue;
+            }
+
+            int entry = i * ENTRY_INTS;
+            int offset = index[entry];
+            int numTopics = index[entry + 1];
+            bloom.or(Bloom.create(hash(offset, ADDRESS_SIZE)));
+            offset += ADDRESS_SIZE;
+            for (int t = 0; t < numTopics; t++, offset += TOPIC_SIZE) {
+                bloom.or(Bloom.create(hash(offset, TOPIC_SIZE)));
+            }
+        }
+    }
+
+    /**
+     * Drops all the logs from the given index onwards.
+     *
+     * @param newSize The number of logs to keep.
+     */
+    void truncate(int newSize) {
+        if (newSize >= size) {
+            return;
+        }
+        arenaSize = index[newSize * ENTRY_INTS];
+        Arrays.fill(logs, newSize, size, null);
+        size = newSize;
+    }
+
+    private byte[] hash(int offset, int length) {
+        return HashUtil.h256(Arrays.copyOfRange(arena, offset, offset + length));
+    }
+
+    private void ensureArenaCapacity(int capacity) {
+        if (capacity > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(capacity, Math.max(256, arena.length * 2)));
+        }
+    }
+
+    private void ensureIndexCapacity(int capacity) {
+        if (capacity > logs.length) {
+            int grown = Math.max(capacity, Math.max(8, logs.length * 2));
+            logs = Arrays.copyOf(logs, grown);
+            index = Arrays.copyOf(index, grown * ENTRY_INTS);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.aion.fastvm;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.aion.precompiled.type.PrecompiledContract;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * An opt-in, process-wide cache of the results of the precompiled contracts that {@link
+ * PrecompiledRegistry#isPure(Address)} marks as pure: their output and energy depend on their input
+ * only, so a repeated input, within a block or when the pending pool is validated again, is served
+ * without running the contract.
+ *
+ * <p>Only successful results are cached, as the energy used and the output. A cached result is
+ * returned for any energy limit that covers the energy used. Entries are keyed by the address and
+ * the input itself rather than by a hash of the input, which would cost as much as some of the
+ * contracts; inputs over {@value #MAX_INPUT_LENGTH} bytes are not cached.
+ */
+public final class PrecompiledCache {
+    static final int MAX_INPUT_LENGTH = 4096;
+
+    private static volatile Map<ByteBuffer, CachedResult> entries;
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private static final class CachedResult {
+        private final long energyUsed;
+        private final byte[] output;
+
+        private CachedResult(long energyUsed, byte[] output) {
+            this.energyUsed = energyUsed;
+            this.output = output;
+        }
+    }
+
+    private PrecompiledCache() {}
+
+    /**
+     * Enables the cache, emptied, and resets its statistics.
+     *
+     * @param maxEntries The number of results kept; the least recently used are dropped.
+     * @throws IllegalArgumentException if maxEntries is not positive.
+     */
+    public static synchronized void enable(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Non-positive cache size: " + maxEntries);
+        }
+        entries =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<ByteBuffer, CachedResult> eldest) {
+                        return size() > maxEntries;
+                    }
+                };
+        resetStats();
+    }
+
+    /** Disables the cache and drops its entries. */
+    public static synchronized void disable() {
+        entries = null;
+    }
+
+    public static boolean isEnabled() {
+        return entries != null;
+    }
+
+    /** @return the number of results served from the cache. */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /** @return the number of executions of pure contracts that were not served from the cache. */
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return the fraction of executions of pure contracts served from the cache, or 0. */
+    public static double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** @return the number of results in the cache. */
+    public static int size() {
+        Map<ByteBuffer, CachedResult> map = entries;
+        if (map == null) {
+            return 0;
+        }
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public static void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Executes a precompiled contract, or returns its cached result.
+     *
+     * @param address The address the contract was found at.
+     * @param contract The contract.
+     * @param input The input.
+     * @param energyLimit The energy limit of the execution.
+     * @return the result.
+     */
+    static TransactionResult execute(
+            Address address, PrecompiledContract contract, byte[] input, long energyLimit) {
+        Map<ByteBuffer, CachedResult> map = entries;
+        if (map == null
+                || input == null
+                || input.length > MAX_INPUT_LENGTH
+                || !PrecompiledRegistry.isPure(address)) {
+            return contract.execute(input, energyLimit);
+        }
+
+        ByteBuffer key =
+                ByteBuffer.allocate(Address.SIZE + input.length).put(address.toBytes()).put(input);
+        key.flip();
+        CachedResult entry;
+        synchronized (map) {
+            entry = map.get(key);
+        }
+        if (entry != null && entry.energyUsed <= energyLimit) {
+            hits.increment();
+            return new FastVmTransactionResult(
+                    FastVmResultCode.SUCCESS, energyLimit - entry.energyUsed, entry.output.clone());
+        }
+
+        misses.increment();
+        TransactionResult result = contract.execute(input, energyLimit);
+        if (result.getResultCode().toInt() == FastVmResultCode.SUCCESS.toInt()) {
+            byte[] output = ArrayUtils.nullToEmpty(result.getReturnData()).clone();
+            synchronized (map) {
+                map.put(key, new CachedResult(energyLimit - result.getEnergyRemaining(), output));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+package org.aion.fastvm;
+
+import org.aion.precompiled.ContractFactory;
+import org.aion.precompiled.type.PrecompiledContract;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.KernelInterface;
+import org.aion.vm.api.interfaces.TransactionContext;
+
+/**
+ * The process-wide lookup of precompiled contracts by destination address.
+ *
+ * <p>Every precompiled contract lives at an address below 2^16, which no ordinary account can
+ * have, so most destinations are rejected by looking at their leading bytes, without going
+ * through the {@link ContractFactory}. The remaining few go to a single shared factory, which
+ * decides whether the contract is active at the block of the context.
+ */
+final class PrecompiledRegistry {
+    /** The number of trailing bytes that a precompiled address may have non-zero. */
+    private static final int ADDRESS_RANGE_BYTES = 2;
+
+    /**
+     * The last bytes of the addresses of the contracts whose result depends on their input only:
+     * the ed25519 signature verification and the blake2b hash. The transaction hash contract at
+     * 0x12 reads its context, so it is not one of them.
+     */
+    private static final int[] PURE_ADDRESSES = {0x10, 0x11};
+
+    private static final ContractFactory FACTORY = new ContractFactory();
+
+    private PrecompiledRegistry() {}
+
+    /**
+     * Returns the precompiled contract at the destination of a context.
+     *
+     * @param ctx The context.
+     * @param track The kernel the contract runs against.
+     * @return the contract, or null if the destination is not a precompiled contract.
+     */
+    static PrecompiledContract get(TransactionContext ctx, KernelInterface track) {
+        return mayBePrecompiled(ctx.getDestinationAddress())
+                ? FACTORY.getPrecompiledContract(ctx, track)
+                : null;
+    }
+
+    /**
+     * Returns whether an address is in the range of precompiled contracts. An address out of the
+     * range is never a precompiled contract; one in the range may not be one either.
+     *
+     * @param address The address.
+     * @return whether the address is in the range.
+     */
+    static boolean mayBePrecompiled(Address address) {
+        if (address == null) {
+            return false;
+        }
+        byte[] bytes = address.toBytes();
+        for (int i = 0; i < bytes.length - ADDRESS_RANGE_BYTES; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether an address is that of a precompiled contract whose output and energy depend
+     * on its input only, so that its results may be reused, see {@link PrecompiledCache}.
+     *
+     * @param address The address.
+     * @return whether the contract at the address is pure.
+     */
+    static boolean isPure(Address address) {
+        if (!mayBePrecompiled(address)) {
+            return false;
+        }
+        byte[] bytes = address.toBytes();
+        if (bytes[bytes.length - 2] != 0) {
+            return false;
+        }
+        int last = bytes[bytes.length - 1] & 0xFF;
+        for (int pure : PURE_ADDRESSES) {
+            if (last == pure) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
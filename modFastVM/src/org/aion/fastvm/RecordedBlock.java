@@ -0,0 +1,231 @@
+package org.aion.fastvm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.aion.types.Address;
+
+/**
+ * Everything a {@link FastVirtualMachine} run consumed for a block: the block context, the
+ * transactions and the state they read, as it was before the block. See {@link BlockRecorder}.
+ *
+ * <p>The binary form is a gzipped stream of big-endian fields, versioned by {@link #VERSION}.
+ */
+public final class RecordedBlock {
+    private static final int MAGIC = 0x46564252; // "FVBR"
+    public static final int VERSION = 1;
+
+    /** The state of an account before the block. */
+    public static final class Account {
+        public final Address address;
+        public final boolean exists;
+        public final BigInteger balance;
+        public final BigInteger nonce;
+        public final byte[] code;
+
+        public Account(
+                Address address,
+                boolean exists,
+                BigInteger balance,
+                BigInteger nonce,
+                byte[] code) {
+            this.address = address;
+            this.exists = exists;
+            this.balance = balance == null ? BigInteger.ZERO : balance;
+            this.nonce = nonce == null ? BigInteger.ZERO : nonce;
+            this.code = code == null ? new byte[0] : code;
+        }
+    }
+
+    /** A storage value before the block; a null value means the key was unset. */
+    public static final class StorageEntry {
+        public final Address address;
+        public final byte[] key;
+        public final byte[] value;
+
+        public StorageEntry(Address address, byte[] key, byte[] value) {
+            this.address = address;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    public final Address coinbase;
+    public final long number;
+    public final long timestamp;
+    public final long energyLimit;
+    public final long difficulty;
+
+    private final List<byte[]> transactions;
+    private final List<Account> accounts;
+    private final List<StorageEntry> storage;
+
+    public RecordedBlock(
+            Address coinbase,
+            long number,
+            long timestamp,
+            long energyLimit,
+            long difficulty,
+            List<byte[]> transactions,
+            List<Account> accounts,
+            List<StorageEntry> storage) {
+        this.coinbase = coinbase;
+        this.number = number;
+        this.timestamp = timestamp;
+        this.energyLimit = energyLimit;
+        this.difficulty = difficulty;
+        this.transactions = Collections.unmodifiableList(transactions);
+        this.accounts = Collections.unmodifiableList(accounts);
+        this.storage = Collections.unmodifiableList(storage);
+    }
+
+    /** @return the RLP encoded transactions, in execution order. */
+    public List<byte[]> getTransactions() {
+        return transactions;
+    }
+
+    /** @return the accounts read by the block. */
+    public List<Account> getAccounts() {
+        return accounts;
+    }
+
+    /** @return the storage values read by the block. */
+    public List<StorageEntry> getStorage() {
+        return storage;
+    }
+
+    /**
+     * Writes the binary form of this block.
+     *
+     * @param out The stream, which is not closed.
+     * @throws IOException if the stream fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        DataOutputStream data = new DataOutputStream(gzip);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+
+        data.write(coinbase.toBytes());
+        data.writeLong(number);
+        data.writeLong(timestamp);
+        data.writeLong(energyLimit);
+        data.writeLong(difficulty);
+
+        data.writeInt(transactions.size());
+        for (byte[] tx : transactions) {
+            writeBytes(data, tx);
+        }
+
+        data.writeInt(accounts.size());
+        for (Account account : accounts) {
+            data.write(account.address.toBytes());
+            data.writeBoolean(account.exists);
+            writeBytes(data, account.balance.toByteArray());
+            writeBytes(data, account.nonce.toByteArray());
+            writeBytes(data, account.code);
+        }
+
+        data.writeInt(storage.size());
+        for (StorageEntry entry : storage) {
+            data.write(entry.address.toBytes());
+            writeBytes(data, entry.key);
+            writeBytes(data, entry.value);
+        }
+
+        data.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Reads the binary form of a block.
+     *
+     * @param in The stream, which is not closed.
+     * @return the block.
+     * @throws IOException if the stream fails or does not hold a block of this version.
+     */
+    public static RecordedBlock readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a recorded block.");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported recorded block version: " + version);
+        }
+
+        Address coinbase = readAddress(data);
+        long number = data.readLong();
+        long timestamp = data.readLong();
+        long energyLimit = data.readLong();
+        long difficulty = data.readLong();
+
+        int txCount = data.readInt();
+        List<byte[]> transactions = new ArrayList<>(txCount);
+        for (int i = 0; i < txCount; i++) {
+            transactions.add(readBytes(data));
+        }
+
+        int accountCount = data.readInt();
+        List<Account> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            Address address = readAddress(data);
+            boolean exists = data.readBoolean();
+            BigInteger balance = new BigInteger(readBytes(data));
+            BigInteger nonce = new BigInteger(readBytes(data));
+            accounts.add(new Account(address, exists, balance, nonce, readBytes(data)));
+        }
+
+        int storageCount = data.readInt();
+        List<StorageEntry> storage = new ArrayList<>(storageCount);
+        for (int i = 0; i < storageCount; i++) {
+            Address address = readAddress(data);
+            byte[] key = readBytes(data);
+            storage.add(new StorageEntry(address, key, readBytes(data)));
+        }
+
+        return new RecordedBlock(
+                coinbase,
+                number,
+                timestamp,
+                energyLimit,
+                difficulty,
+                transactions,
+                accounts,
+                storage);
+    }
+
+    /** Writes a length-prefixed array; null is written as length -1. */
+    private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            data.writeInt(-1);
+        } else {
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return bytes;
+    }
+
+    private static Address readAddress(DataInputStream data) throws IOException {
+        byte[] address = new byte[Address.SIZE];
+        data.readFully(address);
+        return Address.wrap(address);
+    }
+}
@@ -22,11 +22,14 @@
  */
 package org.aion.fastvm;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import org.aion.mcf.vm.types.Bloom;
 import org.aion.types.Address;
 import org.aion.vm.api.interfaces.IExecutionLog;
 import org.aion.vm.api.interfaces.InternalTransactionInterface;
@@ -43,13 +46,40 @@ import org.aion.vm.api.interfaces.TransactionSideEffects;
  *   <li>account deleted
  *       <p>
  *
+ * <p>The frames of a transaction share one backing {@link Store}: a nested frame, created via
+ * {@link #newNestedFrame()}, appends to the same lists as its parent and owns the range of entries
+ * that were appended while it was the innermost frame. Merging a nested frame into its parent and
+ * rejecting all of the internal transactions of a frame are therefore constant-time range
+ * operations, and the lists returned by the getters are views that do not copy. Logs are kept in a
+ * {@link LogArena}.
+ *
+ * <p>Entries must only be added to the innermost frame of a store, and a nested frame must be
+ * merged (via {@link #merge} or {@link #addInternalTransactions}) into its parent before the
+ * parent is modified again. Entries of a nested frame which are not merged are discarded. Merging
+ * can leave an account in the deleted accounts of a frame twice; the duplicates are removed when
+ * the deleted accounts of the outermost frame are read after all of its nested frames are merged.
+ *
  * @author yulong
  */
 public class SideEffects implements TransactionSideEffects {
 
-    private Set<Address> deleteAccounts = new HashSet<>();
-    private List<InternalTransactionInterface> internalTxs = new ArrayList<>();
-    private List<IExecutionLog> logs = new ArrayList<>();
+    private static final int OPEN = -1;
+
+    private final Store store;
+    private final SideEffects parent;
+
+    private final int internalTxStart;
+    private final int logStart;
+    private final int deleteAccountStart;
+    private int internalTxEnd = OPEN;
+    private int logEnd = OPEN;
+    private int deleteAccountEnd = OPEN;
+    private boolean mayHaveDuplicateDeletes;
+    private Set<Address> deleted;
+
+    private final List<InternalTransactionInterface> internalTxs = new InternalTransactionList();
+    private final List<IExecutionLog> logs = new LogList();
+    private final List<Address> deleteAccounts = new DeleteAccountList();
     private List<Call> calls = new ArrayList<>();
 
     public static class Call {
@@ -77,9 +107,34 @@ public class SideEffects implements TransactionSideEffects {
         }
     }
 
+    public SideEffects() {
+        this(new Store(), null);
+    }
+
+    private SideEffects(Store store, SideEffects parent) {
+        this.store = store;
+        this.parent = parent;
+        this.internalTxStart = store.internalTxs.size();
+        this.logStart = store.logs.size();
+        this.deleteAccountStart = store.deleteAccounts.size();
+    }
+
+    /**
+     * Returns a new frame which shares the backing store of this one. Everything added to the new
+     * frame becomes part of this frame once it is merged.
+     *
+     * @return a nested frame.
+     */
+    SideEffects newNestedFrame() {
+        store.openFrames++;
+        return new SideEffects(store, this);
+    }
+
     @Override
     public void addToDeletedAddresses(Address address) {
-        deleteAccounts.add(address);
+        if (deleted().add(address)) {
+            store.deleteAccounts.add(address);
+        }
     }
 
     /**
@@ -91,7 +146,7 @@ public class SideEffects implements TransactionSideEffects {
     public void addAllToDeletedAddresses(Collection<Address> addresses) {
         for (Address addr : addresses) {
             if (addr != null) {
-                deleteAccounts.add(addr);
+                addToDeletedAddresses(addr);
             }
         }
     }
@@ -103,7 +158,19 @@ public class SideEffects implements TransactionSideEffects {
      */
     @Override
     public void addLog(IExecutionLog log) {
-        logs.add(log);
+        store.logs.add(log);
+    }
+
+    /**
+     * Adds a log, emitted by the LOG opcode, to the execution logs. The fields are copied into the
+     * log arena and the log object is only built when it is read.
+     *
+     * @param address The address of the contract that emitted the log.
+     * @param topics The concatenated 32-byte topics.
+     * @param data The log data.
+     */
+    void addLog(byte[] address, byte[] topics, byte[] data) {
+        store.logs.add(address, topics, data);
     }
 
     /**
@@ -115,7 +182,7 @@ public class SideEffects implements TransactionSideEffects {
     public void addLogs(Collection<IExecutionLog> logs) {
         for (IExecutionLog log : logs) {
             if (log != null) {
-                this.logs.add(log);
+                addLog(log);
             }
         }
     }
@@ -138,32 +205,70 @@ public class SideEffects implements TransactionSideEffects {
      */
     @Override
     public void addInternalTransaction(InternalTransactionInterface tx) {
-        internalTxs.add(tx);
+        store.internalTxs.add(InternalTransactionRecord.wrap(tx));
+    }
+
+    /**
+     * Adds an internal transaction record, tx, to the internal transactions list. The record is
+     * not materialized.
+     *
+     * @param tx The internal transaction record to add.
+     */
+    void addInternalTransaction(InternalTransactionRecord tx) {
+        store.internalTxs.add(tx);
     }
 
     /**
      * Adds a collection of internal transactions, txs, to the internal transactions list.
      *
+     * <p>If txs are the internal transactions of a nested frame of this one, they are merged in
+     * place and the remaining effects of that frame are discarded.
+     *
      * @param txs The collection of internal transactions to add.
      */
     @Override
     public void addInternalTransactions(List<InternalTransactionInterface> txs) {
+        if (txs instanceof InternalTransactionList) {
+            SideEffects other = ((InternalTransactionList) txs).frame();
+            if (other.parent == this) {
+                other.discardLogsAndDeletes();
+                other.close();
+                return;
+            }
+            other.store.resolveRejections();
+            store.internalTxs.addAll(
+                    other.store.internalTxs.subList(other.internalTxStart, other.internalTxEnd()));
+            return;
+        }
+
         for (InternalTransactionInterface tx : txs) {
             if (tx != null) {
-                this.internalTxs.add(tx);
+                store.internalTxs.add(InternalTransactionRecord.wrap(tx));
             }
         }
     }
 
     @Override
     public void markAllInternalTransactionsAsRejected() {
-        for (InternalTransactionInterface tx : getInternalTransactions()) {
-            tx.markAsRejected();
-        }
+        store.reject(internalTxStart, internalTxEnd());
     }
 
     @Override
     public void merge(TransactionSideEffects other) {
+        if (other instanceof SideEffects && ((SideEffects) other).parent == this) {
+            SideEffects nested = (SideEffects) other;
+            if (nested.deleted != null) {
+                Set<Address> deleted = deleted();
+                for (Address address : nested.deleted) {
+                    mayHaveDuplicateDeletes |= !deleted.add(address);
+                }
+            }
+            // duplicates among the deletes of frames nested deeper are only known to the nested frame
+            mayHaveDuplicateDeletes |= nested.mayHaveDuplicateDeletes;
+            nested.close();
+            return;
+        }
+
         addInternalTransactions(other.getInternalTransactions());
         addAllToDeletedAddresses(other.getAddressesToBeDeleted());
         addLogs(other.getExecutionLogs());
@@ -171,7 +276,7 @@ public class SideEffects implements TransactionSideEffects {
 
     @Override
     public List<Address> getAddressesToBeDeleted() {
-        return new ArrayList<>(deleteAccounts);
+        return deleteAccounts;
     }
 
     @Override
@@ -179,6 +284,30 @@ public class SideEffects implements TransactionSideEffects {
         return logs;
     }
 
+    /**
+     * Returns the bloom filter of the execution logs. It is computed when called, and the logs
+     * emitted by the LOG opcode are read from the log arena without building their objects.
+     *
+     * @return the bloom filter of the logs.
+     */
+    public Bloom getLogsBloom() {
+        Bloom bloom = new Bloom();
+        store.logs.addToBloom(logStart, logEnd(), bloom);
+        return bloom;
+    }
+
+    /**
+     * Returns whether no effects have been added to this frame.
+     *
+     * @return true if there are no internal transactions, logs, deleted accounts or calls.
+     */
+    boolean isEmpty() {
+        return internalTxEnd() == internalTxStart
+                && logEnd() == logStart
+                && deleteAccountEnd() == deleteAccountStart
+                && calls.isEmpty();
+    }
+
     /**
      * Returns the calls.
      *
@@ -189,7 +318,8 @@ public class SideEffects implements TransactionSideEffects {
     }
 
     /**
-     * Returns the internal transactions.
+     * Returns the internal transactions. The returned list is a read-only view; each record is
+     * materialized when it is first read through the view.
      *
      * @return the internal transactions.
      */
@@ -197,4 +327,158 @@ public class SideEffects implements TransactionSideEffects {
     public List<InternalTransactionInterface> getInternalTransactions() {
         return internalTxs;
     }
+
+    private int internalTxEnd() {
+        return internalTxEnd == OPEN ? store.internalTxs.size() : internalTxEnd;
+    }
+
+    private int logEnd() {
+        return logEnd == OPEN ? store.logs.size() : logEnd;
+    }
+
+    private int deleteAccountEnd() {
+        return deleteAccountEnd == OPEN ? store.deleteAccounts.size() : deleteAccountEnd;
+    }
+
+    /** Returns the accounts deleted by this frame and the nested frames merged into it. */
+    private Set<Address> deleted() {
+        if (deleted == null) {
+            deleted = new HashSet<>();
+        }
+        return deleted;
+    }
+
+    /**
+     * Removes the duplicates that merging nested frames may have introduced. Only the outermost
+     * frame is compacted, once no nested frame is open, as compacting moves the entries of the
+     * frames nested in it.
+     */
+    private void removeDuplicateDeletes() {
+        if (mayHaveDuplicateDeletes && parent == null && store.openFrames == 0) {
+            store.removeDuplicateDeletes();
+            mayHaveDuplicateDeletes = false;
+        }
+    }
+
+    /** Fixes the range of this frame; it stops growing with the store. */
+    private void close() {
+        if (internalTxEnd == OPEN && parent != null) {
+            store.openFrames--;
+        }
+        internalTxEnd = internalTxEnd();
+        logEnd = logEnd();
+        deleteAccountEnd = deleteAccountEnd();
+    }
+
+    /** Drops the logs and deleted accounts of this frame, which must be the innermost one. */
+    private void discardLogsAndDeletes() {
+        store.logs.truncate(logStart);
+        store.truncate(store.deleteAccounts, deleteAccountStart);
+    }
+
+    /** The backing lists shared by all the frames of a transaction. */
+    private static final class Store {
+        private final List<InternalTransactionRecord> internalTxs = new ArrayList<>();
+        private final LogArena logs = new LogArena();
+        private final List<Address> deleteAccounts = new ArrayList<>();
+
+        // the number of nested frames that have not been merged
+        private int openFrames;
+
+        // pending rejected ranges of internalTxs, as consecutive [start, end) pairs
+        private int[] rejected = new int[8];
+        private int rejectedSize;
+
+        void reject(int start, int end) {
+            if (start == end) {
+                return;
+            }
+            if (rejectedSize == rejected.length) {
+                int[] grown = new int[rejected.length * 2];
+                System.arraycopy(rejected, 0, grown, 0, rejectedSize);
+                rejected = grown;
+            }
+            rejected[rejectedSize++] = start;
+            rejected[rejectedSize++] = end;
+        }
+
+        /** Applies the pending rejected ranges to the records. */
+        void resolveRejections() {
+            for (int i = 0; i < rejectedSize; i += 2) {
+                for (int j = rejected[i]; j < rejected[i + 1]; j++) {
+                    internalTxs.get(j).markAsRejected();
+                }
+            }
+            rejectedSize = 0;
+        }
+
+        void removeDuplicateDeletes() {
+            Set<Address> seen = new HashSet<>();
+            int kept = 0;
+            for (int i = 0; i < deleteAccounts.size(); i++) {
+                Address address = deleteAccounts.get(i);
+                if (seen.add(address)) {
+                    deleteAccounts.set(kept++, address);
+                }
+            }
+            truncate(deleteAccounts, kept);
+        }
+
+        <T> void truncate(List<T> list, int size) {
+            if (size < list.size()) {
+                list.subList(size, list.size()).clear();
+            }
+        }
+    }
+
+    /** A read-only view of the internal transactions of this frame. */
+    private final class InternalTransactionList extends AbstractList<InternalTransactionInterface> {
+
+        @Override
+        public InternalTransactionInterface get(int index) {
+            store.resolveRejections();
+            int i = internalTxStart + Objects.checkIndex(index, size());
+            return store.internalTxs.get(i).materialize();
+        }
+
+        @Override
+        public int size() {
+            return internalTxEnd() - internalTxStart;
+        }
+
+        private SideEffects frame() {
+            return SideEffects.this;
+        }
+    }
+
+    /** A read-only view of the logs of this frame. */
+    private final class LogList extends AbstractList<IExecutionLog> {
+
+        @Override
+        public IExecutionLog get(int index) {
+            return store.logs.get(logStart + Objects.checkIndex(index, size()));
+        }
+
+        @Override
+        public int size() {
+            return logEnd() - logStart;
+        }
+    }
+
+    /** A read-only view of the accounts deleted by this frame. */
+    private final class DeleteAccountList extends AbstractList<Address> {
+
+        @Override
+        public Address get(int index) {
+            removeDuplicateDeletes();
+            int i = deleteAccountStart + Objects.checkIndex(index, size());
+            return store.deleteAccounts.get(i);
+        }
+
+        @Override
+        public int size() {
+            removeDuplicateDeletes();
+            return deleteAccountEnd() - deleteAccountStart;
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package org.aion.fastvm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A Flight Recorder event spanning {@link TransactionExecutor#execute()}. */
+@Name("org.aion.fastvm.TransactionExecution")
+@Label("Transaction Execution")
+@Category({"Aion", "FastVM"})
+@Description("Execution of a transaction by the FastVM transaction executor")
+final class TransactionExecutionEvent extends jdk.jfr.Event {
+    @Label("Transaction Hash")
+    String transactionHash;
+
+    @Label("Destination")
+    @Description("The called contract, or the created contract for a contract creation")
+    String destination;
+
+    @Label("Contract Creation")
+    boolean contractCreation;
+
+    @Label("Result Code")
+    String resultCode;
+
+    @Label("Energy Limit")
+    long energyLimit;
+
+    @Label("Energy Used")
+    long energyUsed;
+}
@@ -24,9 +24,9 @@ package org.aion.fastvm;
 
 import java.math.BigInteger;
 import org.aion.mcf.vm.types.KernelInterfaceForFastVM;
-import org.aion.precompiled.ContractFactory;
 import org.aion.precompiled.type.PrecompiledContract;
 import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
 import org.aion.interfaces.tx.Transaction;
 import org.aion.vm.api.interfaces.KernelInterface;
 import org.aion.vm.api.interfaces.TransactionContext;
@@ -50,6 +50,7 @@ public class TransactionExecutor {
     private TransactionResult transactionResult;
     private TransactionContext context;
     private Transaction transaction;
+    private Word128 value;
 
     private boolean fork040Enable;
 
@@ -87,13 +88,32 @@ public class TransactionExecutor {
      * KernelInterface} without any checks or conditional logic to satisfy.
      */
     public TransactionResult execute() {
-        return performChecksAndExecute();
+        if (!EventSettings.ENABLED) {
+            return performChecksAndExecute();
+        }
+
+        TransactionExecutionEvent event = new TransactionExecutionEvent();
+        event.begin();
+
+        TransactionResult result = performChecksAndExecute();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.transactionHash = Hex.toHexString(context.getTransactionHash());
+            event.contractCreation = transaction.isContractCreationTransaction();
+            event.destination = String.valueOf(context.getDestinationAddress());
+            event.resultCode = String.valueOf(result.getResultCode());
+            event.energyLimit = transaction.getEnergyLimit();
+            event.energyUsed = transaction.getEnergyLimit() - result.getEnergyRemaining();
+            event.commit();
+        }
+        return result;
     }
 
     private TransactionResult performChecksAndExecute() {
         synchronized (LOCK) {
             // prepare, preliminary check
-            if (performChecks()) {
+            if (checkValue() && performChecks()) {
 
                 KernelInterface track = this.kernelChild.makeChildKernelInterface();
 
@@ -104,10 +124,12 @@ public class TransactionExecutor {
                 // Note: if the tx is a inpool tx, it will temp charge more balance for the
                 // account
                 // once the block info been updated. the balance in pendingPool will correct.
-                BigInteger nrgLimit = BigInteger.valueOf(this.transaction.getEnergyLimit());
-                BigInteger nrgPrice = BigInteger.valueOf(this.transaction.getEnergyPrice());
-                BigInteger txNrgCost = nrgLimit.multiply(nrgPrice);
-                track.deductEnergyCost(this.transaction.getSenderAddress(), txNrgCost);
+                Word128 txNrgCost =
+                        Word128.multiply(
+                                this.transaction.getEnergyLimit(),
+                                this.transaction.getEnergyPrice());
+                track.deductEnergyCost(
+                        this.transaction.getSenderAddress(), txNrgCost.toBigInteger());
                 track.commit();
 
                 // run the logic
@@ -134,6 +156,23 @@ public class TransactionExecutor {
         }
     }
 
+    /**
+     * Checks that the transaction value is a 128-bit amount, which is what is transferred. A wider
+     * value can never be covered, so the transaction is rejected as for an insufficient balance.
+     *
+     * @return true if the value fits in 128 bits.
+     */
+    private boolean checkValue() {
+        try {
+            value = Word128.fromBytes(this.transaction.getValue());
+            return true;
+        } catch (ArithmeticException e) {
+            transactionResult.setResultCode(FastVmResultCode.INSUFFICIENT_BALANCE);
+            transactionResult.setEnergyRemaining(0);
+            return false;
+        }
+    }
+
     /**
      * Checks that the transaction passes the basic validation criteria. These criteria are: 1. the
      * transaction energy limit is within the acceptable limit range and is larger than the
@@ -148,7 +187,7 @@ public class TransactionExecutor {
      * @return true if call is local or if all criteria listed above are met.
      */
     private boolean performChecks() {
-        BigInteger txNrgPrice = BigInteger.valueOf(this.transaction.getEnergyPrice());
+        long txNrgPrice = this.transaction.getEnergyPrice();
         long txNrgLimit = this.transaction.getEnergyLimit();
 
         if (this.transaction.isContractCreationTransaction()) {
@@ -173,11 +212,16 @@ public class TransactionExecutor {
             return false;
         }
 
-        // check balance
-        BigInteger txValue = new BigInteger(1, this.transaction.getValue());
-        BigInteger txTotal = txNrgPrice.multiply(BigInteger.valueOf(txNrgLimit)).add(txValue);
-        if (!this.kernelChild.accountBalanceIsAtLeast(
-                this.transaction.getSenderAddress(), txTotal)) {
+        // check balance; a total that is not a 128-bit amount can never be covered
+        Word128 txTotal;
+        try {
+            txTotal = Word128.multiply(txNrgPrice, txNrgLimit).add(value);
+        } catch (ArithmeticException e) {
+            txTotal = null;
+        }
+        if (txTotal == null
+                || !this.kernelChild.accountBalanceIsAtLeast(
+                        this.transaction.getSenderAddress(), txTotal.toBigInteger())) {
             transactionResult.setResultCode(FastVmResultCode.INSUFFICIENT_BALANCE);
             transactionResult.setEnergyRemaining(0);
             return false;
@@ -190,11 +234,14 @@ public class TransactionExecutor {
 
     /** Prepares contract call. */
     private void executeNonContractCreationTransaction() {
-        ContractFactory precompiledFactory = new ContractFactory();
-        PrecompiledContract pc =
-                precompiledFactory.getPrecompiledContract(this.context, this.kernelGrandChild);
+        PrecompiledContract pc = PrecompiledRegistry.get(this.context, this.kernelGrandChild);
         if (pc != null) {
-            transactionResult = pc.execute(transaction.getData(), context.getTransactionEnergy());
+            transactionResult =
+                    PrecompiledCache.execute(
+                            context.getDestinationAddress(),
+                            pc,
+                            transaction.getData(),
+                            context.getTransactionEnergy());
         } else {
             // execute code
             byte[] code = this.kernelGrandChild.getCode(transaction.getDestinationAddress());
@@ -210,9 +257,7 @@ public class TransactionExecutor {
         }
 
         // transfer value
-        BigInteger txValue = new BigInteger(1, transaction.getValue());
-        this.kernelGrandChild.adjustBalance(transaction.getSenderAddress(), txValue.negate());
-        this.kernelGrandChild.adjustBalance(transaction.getDestinationAddress(), txValue);
+        transferValue(transaction.getDestinationAddress());
     }
 
     /** Prepares contract create. */
@@ -249,9 +294,15 @@ public class TransactionExecutor {
         }
 
         // transfer value
-        BigInteger txValue = new BigInteger(1, transaction.getValue());
-        this.kernelGrandChild.adjustBalance(transaction.getSenderAddress(), txValue.negate());
-        this.kernelGrandChild.adjustBalance(contractAddress, txValue);
+        transferValue(contractAddress);
+    }
+
+    /** Moves the transaction value from the sender to the given account. */
+    private void transferValue(Address to) {
+        BigInteger txValue = value.toBigInteger();
+        this.kernelGrandChild.adjustBalance(
+                transaction.getSenderAddress(), value.isZero() ? txValue : txValue.negate());
+        this.kernelGrandChild.adjustBalance(to, txValue);
     }
 
     public void enableFork040() {
@@ -0,0 +1,228 @@
+package org.aion.fastvm;
+
+import java.math.BigInteger;
+
+/**
+ * An unsigned 128-bit integer held in two longs, the size of an Aion data word and of an account
+ * balance.
+ *
+ * <p>Word128 is used for values and fees on the execution path so that they need not go through
+ * {@link BigInteger}. Instances are immutable; arithmetic that does not fit in 128 bits throws an
+ * {@link ArithmeticException}.
+ */
+public final class Word128 implements Comparable<Word128> {
+    public static final int BYTES = 16;
+
+    public static final Word128 ZERO = new Word128(0, 0);
+
+    private final long hi;
+    private final long lo;
+
+    private Word128(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    /**
+     * Returns the word of a non-negative long.
+     *
+     * @param value The value.
+     * @return the word.
+     * @throws IllegalArgumentException if value is negative.
+     */
+    public static Word128 of(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        return value == 0 ? ZERO : new Word128(0, value);
+    }
+
+    /**
+     * Returns the word of an unsigned big-endian byte array. The array may be longer than 16 bytes
+     * as long as the extra leading bytes are zero.
+     *
+     * @param bytes The bytes; null or empty is zero.
+     * @return the word.
+     * @throws ArithmeticException if the value does not fit in 128 bits.
+     */
+    public static Word128 fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            return ZERO;
+        }
+
+        int start = bytes.length - BYTES;
+        for (int i = 0; i < start; i++) {
+            if (bytes[i] != 0) {
+                throw new ArithmeticException("Value does not fit in 128 bits.");
+            }
+        }
+
+        long hi = 0;
+        long lo = 0;
+        for (int i = Math.max(start, 0); i < bytes.length; i++) {
+            hi = (hi << 8) | (lo >>> 56);
+            lo = (lo << 8) | (bytes[i] & 0xFF);
+        }
+        return (hi == 0 && lo == 0) ? ZERO : new Word128(hi, lo);
+    }
+
+    /**
+     * Returns the word of a BigInteger.
+     *
+     * @param value The value.
+     * @return the word.
+     * @throws ArithmeticException if value is negative or does not fit in 128 bits.
+     */
+    public static Word128 fromBigInteger(BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 128) {
+            throw new ArithmeticException("Value does not fit in 128 bits: " + value);
+        }
+        if (value.bitLength() < 64) {
+            return of(value.longValue());
+        }
+        return new Word128(value.shiftRight(64).longValue(), value.longValue());
+    }
+
+    /**
+     * Returns the full product of two non-negative longs, e.g. an energy amount and its price.
+     *
+     * @param a The first factor.
+     * @param b The second factor.
+     * @return a * b.
+     * @throws ArithmeticException if a factor is negative.
+     */
+    public static Word128 multiply(long a, long b) {
+        if (a < 0 || b < 0) {
+            throw new ArithmeticException("Negative factor: " + a + " * " + b);
+        }
+        // both factors are below 2^63 so the signed high half is the unsigned one
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        return (hi == 0 && lo == 0) ? ZERO : new Word128(hi, lo);
+    }
+
+    /**
+     * Returns whether an unsigned big-endian byte array is zero.
+     *
+     * @param bytes The bytes.
+     * @return true if every byte is zero.
+     */
+    public static boolean isZero(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns this + other.
+     *
+     * @throws ArithmeticException if the sum does not fit in 128 bits.
+     */
+    public Word128 add(Word128 other) {
+        long sumLo = lo + other.lo;
+        long carry = Long.compareUnsigned(sumLo, lo) < 0 ? 1 : 0;
+        long sumHi = hi + other.hi;
+        boolean overflow = Long.compareUnsigned(sumHi, hi) < 0;
+        sumHi += carry;
+        if (overflow || (carry == 1 && sumHi == 0)) {
+            throw new ArithmeticException("128-bit overflow.");
+        }
+        return new Word128(sumHi, sumLo);
+    }
+
+    /**
+     * Returns this - other.
+     *
+     * @throws ArithmeticException if other is greater than this.
+     */
+    public Word128 subtract(Word128 other) {
+        if (compareTo(other) < 0) {
+            throw new ArithmeticException("128-bit underflow.");
+        }
+        long diffLo = lo - other.lo;
+        long borrow = Long.compareUnsigned(lo, other.lo) < 0 ? 1 : 0;
+        long diffHi = hi - other.hi - borrow;
+        return (diffHi == 0 && diffLo == 0) ? ZERO : new Word128(diffHi, diffLo);
+    }
+
+    /** @return true if this word is zero. */
+    public boolean isZero() {
+        return hi == 0 && lo == 0;
+    }
+
+    /** @return true if this word fits in a non-negative long. */
+    public boolean fitsInLong() {
+        return hi == 0 && lo >= 0;
+    }
+
+    /**
+     * Returns the value as a long.
+     *
+     * @throws ArithmeticException if the value does not fit in a non-negative long.
+     */
+    public long longValueExact() {
+        if (!fitsInLong()) {
+            throw new ArithmeticException("Value does not fit in a long.");
+        }
+        return lo;
+    }
+
+    /** @return the 16-byte unsigned big-endian encoding. */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BYTES];
+        writeTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Writes the 16-byte unsigned big-endian encoding into an array.
+     *
+     * @param dest The destination.
+     * @param offset The offset in dest.
+     */
+    public void writeTo(byte[] dest, int offset) {
+        for (int i = 0; i < 8; i++) {
+            dest[offset + i] = (byte) (hi >>> (56 - 8 * i));
+            dest[offset + 8 + i] = (byte) (lo >>> (56 - 8 * i));
+        }
+    }
+
+    /** @return the value as a BigInteger, for interfaces that require one. */
+    public BigInteger toBigInteger() {
+        if (fitsInLong()) {
+            return BigInteger.valueOf(lo);
+        }
+        return new BigInteger(1, toBytes());
+    }
+
+    @Override
+    public int compareTo(Word128 other) {
+        int cmp = Long.compareUnsigned(hi, other.hi);
+        return cmp != 0 ? cmp : Long.compareUnsigned(lo, other.lo);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Word128)) {
+            return false;
+        }
+        Word128 word = (Word128) other;
+        return hi == word.hi && lo == word.lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hi) * 31 + Long.hashCode(lo);
+    }
+
+    @Override
+    public String toString() {
+        return toBigInteger().toString();
+    }
+}
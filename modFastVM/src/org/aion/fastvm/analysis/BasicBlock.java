@@ -0,0 +1,160 @@
+package org.aion.fastvm.analysis;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A basic block of a contract, split as the jit library splits code: a block ends at JUMP, JUMPI,
+ * RETURN, REVERT, STOP or SELFDESTRUCT, or before a JUMPDEST. Code after a block that cannot fall
+ * through is dead until the next JUMPDEST and is not part of any block.
+ */
+public final class BasicBlock {
+
+    /** How control leaves a block. */
+    public enum Exit {
+        /** Into the next block, or to the end of the code. */
+        FALL_THROUGH,
+
+        JUMP,
+
+        /** To the jump destination, or into the next block. */
+        JUMPI,
+
+        /** RETURN, REVERT, STOP or SELFDESTRUCT. */
+        HALT,
+
+        /** An undefined instruction, which fails the execution. */
+        INVALID
+    }
+
+    /** The jump target of a block whose target is not a pushed constant. */
+    public static final int DYNAMIC_TARGET = -1;
+
+    /** The jump target of a block whose pushed target is not a jump destination. */
+    public static final int INVALID_TARGET = -2;
+
+    private final int index;
+    private final int startOffset;
+    private final int endOffset;
+    private final int instructionCount;
+    private final long staticEnergy;
+    private final int stackRequired;
+    private final int stackChange;
+    private final int stackMaxGrowth;
+    private final Exit exit;
+    private final int jumpTarget;
+    private final List<Integer> successors;
+
+    BasicBlock(
+            int index,
+            int startOffset,
+            int endOffset,
+            int instructionCount,
+            long staticEnergy,
+            int stackRequired,
+            int stackChange,
+            int stackMaxGrowth,
+            Exit exit,
+            int jumpTarget,
+            List<Integer> successors) {
+        this.index = index;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.instructionCount = instructionCount;
+        this.staticEnergy = staticEnergy;
+        this.stackRequired = stackRequired;
+        this.stackChange = stackChange;
+        this.stackMaxGrowth = stackMaxGrowth;
+        this.exit = exit;
+        this.jumpTarget = jumpTarget;
+        this.successors = Collections.unmodifiableList(successors);
+    }
+
+    /** @return the position of the block in {@link CodeAnalysis#getBlocks()}. */
+    public int getIndex() {
+        return index;
+    }
+
+    /** @return the bytecode offset of the first instruction of the block. */
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    /** @return the bytecode offset just past the last instruction of the block. */
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    /** @return the number of instructions in the block, push data not counted. */
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
+    /** @return the sum of the {@link StepCost} of the instructions of the block. */
+    public long getStaticEnergy() {
+        return staticEnergy;
+    }
+
+    /** @return the number of stack items the block needs on entry not to underflow. */
+    public int getStackRequired() {
+        return stackRequired;
+    }
+
+    /** @return the difference between the stack height on exit and on entry. */
+    public int getStackChange() {
+        return stackChange;
+    }
+
+    /** @return the largest amount by which the stack grows above its height on entry. */
+    public int getStackMaxGrowth() {
+        return stackMaxGrowth;
+    }
+
+    public Exit getExit() {
+        return exit;
+    }
+
+    /**
+     * Returns where a JUMP or JUMPI of the block goes, when the target is pushed by the
+     * instruction before it.
+     *
+     * @return the target offset, {@link #INVALID_TARGET} if it is not a jump destination, or
+     *     {@link #DYNAMIC_TARGET} if it is not pushed or the block does not jump.
+     */
+    public int getJumpTarget() {
+        return jumpTarget;
+    }
+
+    /** @return whether the block jumps to a target that is only known at run time. */
+    public boolean hasDynamicJump() {
+        return (exit == Exit.JUMP || exit == Exit.JUMPI) && jumpTarget == DYNAMIC_TARGET;
+    }
+
+    /**
+     * Returns the blocks control can go to from this block, as indexes in {@link
+     * CodeAnalysis#getBlocks()}. A dynamic jump may go to any jump destination and adds none.
+     *
+     * @return the indexes of the successors, in ascending order.
+     */
+    public List<Integer> getSuccessors() {
+        return successors;
+    }
+
+    @Override
+    public String toString() {
+        return "BasicBlock{"
+                + "index="
+                + index
+                + ", offsets=["
+                + startOffset
+                + ", "
+                + endOffset
+                + "), staticEnergy="
+                + staticEnergy
+                + ", exit="
+                + exit
+                + ", successors="
+                + successors
+                + '}';
+    }
+}
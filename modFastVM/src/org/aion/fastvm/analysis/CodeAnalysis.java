@@ -0,0 +1,285 @@
+package org.aion.fastvm.analysis;
+
+import static org.aion.crypto.HashUtil.h256;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The static analysis of the code of a contract: its basic blocks, the control flow between them,
+ * the valid jump destinations and the fixed energy of each block, read from the code without
+ * executing it.
+ *
+ * <p>Jumps whose target is pushed by the instruction just before them are resolved; other jumps
+ * are dynamic and may go to any jump destination. Analyses are immutable and cached by code hash,
+ * so callers should get them through {@link #of(byte[])}.
+ */
+public final class CodeAnalysis {
+    private static final int CACHE_SIZE = 1024;
+
+    private static final Map<ByteBuffer, CodeAnalysis> CACHE =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, CodeAnalysis> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private final byte[] codeHash;
+    private final int codeLength;
+    private final long[] jumpDests;
+    private final List<BasicBlock> blocks;
+    private final int[] startOffsets;
+
+    private volatile List<BasicBlock> loopHeaders;
+    private volatile long minimumEnergy = -1;
+
+    CodeAnalysis(byte[] codeHash, int codeLength, long[] jumpDests, List<BasicBlock> blocks) {
+        this.codeHash = codeHash;
+        this.codeLength = codeLength;
+        this.jumpDests = jumpDests;
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.startOffsets = new int[blocks.size()];
+        for (int i = 0; i < startOffsets.length; i++) {
+            startOffsets[i] = blocks.get(i).getStartOffset();
+        }
+    }
+
+    /**
+     * Returns the analysis of the code, from the cache when code with the same hash was analyzed
+     * before.
+     *
+     * @param code The code.
+     * @return the analysis.
+     */
+    public static CodeAnalysis of(byte[] code) {
+        byte[] hash = h256(code);
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        CodeAnalysis analysis;
+        synchronized (CACHE) {
+            analysis = CACHE.get(key);
+        }
+        if (analysis == null) {
+            analysis = new CodeAnalyzer(code).analyze(hash);
+            synchronized (CACHE) {
+                CodeAnalysis cached = CACHE.putIfAbsent(key, analysis);
+                analysis = cached == null ? analysis : cached;
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * Analyzes the code without going through the cache.
+     *
+     * @param code The code.
+     * @return the analysis.
+     */
+    public static CodeAnalysis analyze(byte[] code) {
+        return new CodeAnalyzer(code).analyze(h256(code));
+    }
+
+    /** @return the hash of the analyzed code. */
+    public byte[] getCodeHash() {
+        return codeHash.clone();
+    }
+
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    /**
+     * Returns whether an offset is a valid jump destination: a JUMPDEST that is an instruction
+     * rather than push data.
+     *
+     * @param offset The offset.
+     * @return whether a jump to the offset succeeds.
+     */
+    public boolean isJumpDest(int offset) {
+        return offset >= 0
+                && offset < codeLength
+                && (jumpDests[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    /** @return the blocks, in bytecode order. */
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Returns the block an offset is in.
+     *
+     * @param offset The offset.
+     * @return the block, or null if the offset is in dead code or outside the code.
+     */
+    public BasicBlock blockAt(int offset) {
+        int i = Arrays.binarySearch(startOffsets, offset);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        if (i < 0) {
+            return null;
+        }
+        BasicBlock block = blocks.get(i);
+        return offset < block.getEndOffset() ? block : null;
+    }
+
+    /** @return the blocks control can go to from a block. */
+    public List<BasicBlock> getSuccessors(BasicBlock block) {
+        List<BasicBlock> successors = new ArrayList<>(block.getSuccessors().size());
+        for (int index : block.getSuccessors()) {
+            successors.add(blocks.get(index));
+        }
+        return successors;
+    }
+
+    /** @return whether any block jumps to a target that is only known at run time. */
+    public boolean hasDynamicJumps() {
+        for (BasicBlock block : blocks) {
+            if (block.hasDynamicJump()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the headers of the loops reachable from the start of the code through resolved
+     * edges: the blocks that are the target of an edge from a block they can reach. Loops closed
+     * only by dynamic jumps, such as returns from internal functions, are not found.
+     *
+     * @return the loop headers, in bytecode order.
+     */
+    public List<BasicBlock> getLoopHeaders() {
+        List<BasicBlock> headers = loopHeaders;
+        if (headers == null) {
+            headers = Collections.unmodifiableList(findLoopHeaders());
+            loopHeaders = headers;
+        }
+        return headers;
+    }
+
+    /** Finds the targets of back edges in a depth-first walk, without recursion. */
+    private List<BasicBlock> findLoopHeaders() {
+        List<BasicBlock> headers = new ArrayList<>();
+        if (blocks.isEmpty()) {
+            return headers;
+        }
+        // 0: not visited, 1: on the current path, 2: done
+        byte[] state = new byte[blocks.size()];
+        boolean[] header = new boolean[blocks.size()];
+        Deque<int[]> path = new ArrayDeque<>();
+        path.push(new int[] {0, 0});
+        state[0] = 1;
+        while (!path.isEmpty()) {
+            int[] frame = path.peek();
+            List<Integer> successors = blocks.get(frame[0]).getSuccessors();
+            if (frame[1] == successors.size()) {
+                state[frame[0]] = 2;
+                path.pop();
+                continue;
+            }
+            int successor = successors.get(frame[1]++);
+            if (state[successor] == 1) {
+                header[successor] = true;
+            } else if (state[successor] == 0) {
+                state[successor] = 1;
+                path.push(new int[] {successor, 0});
+            }
+        }
+        for (int i = 0; i < header.length; i++) {
+            if (header[i]) {
+                headers.add(blocks.get(i));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Returns a lower bound of the energy of any execution of the code that does not fail: the
+     * least {@link BasicBlock#getStaticEnergy()} summed along a path from the first block to a
+     * block that halts or runs off the end of the code. A dynamic jump is taken to go to any jump
+     * destination.
+     *
+     * @return the bound, or {@link Long#MAX_VALUE} if every execution fails.
+     */
+    public long getMinimumEnergy() {
+        long energy = minimumEnergy;
+        if (energy < 0) {
+            energy = findMinimumEnergy();
+            minimumEnergy = energy;
+        }
+        return energy;
+    }
+
+    /** Finds the cheapest path with Dijkstra's algorithm over the blocks. */
+    private long findMinimumEnergy() {
+        if (blocks.isEmpty()) {
+            return 0;
+        }
+        long[] distance = new long[blocks.size()];
+        Arrays.fill(distance, Long.MAX_VALUE);
+        boolean[] settled = new boolean[blocks.size()];
+        boolean jumpDestsReached = false;
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        distance[0] = blocks.get(0).getStaticEnergy();
+        queue.add(new long[] {distance[0], 0});
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int index = (int) entry[1];
+            if (settled[index]) {
+                continue;
+            }
+            settled[index] = true;
+            BasicBlock block = blocks.get(index);
+            boolean fallsThrough =
+                    block.getExit() == BasicBlock.Exit.FALL_THROUGH
+                            || block.getExit() == BasicBlock.Exit.JUMPI;
+            if (block.getExit() == BasicBlock.Exit.HALT
+                    || (fallsThrough && block.getEndOffset() == codeLength)) {
+                return entry[0];
+            }
+
+            List<Integer> successors = block.getSuccessors();
+            if (block.hasDynamicJump() && !jumpDestsReached) {
+                // blocks are settled in order of distance, so the first dynamic jump is the
+                // cheapest way to every jump destination
+                jumpDestsReached = true;
+                successors = new ArrayList<>(successors);
+                for (BasicBlock target : blocks) {
+                    if (isJumpDest(target.getStartOffset())) {
+                        successors.add(target.getIndex());
+                    }
+                }
+            }
+            for (int successor : successors) {
+                long d = entry[0] + blocks.get(successor).getStaticEnergy();
+                if (d < distance[successor]) {
+                    distance[successor] = d;
+                    queue.add(new long[] {d, successor});
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "CodeAnalysis{"
+                + "codeLength="
+                + codeLength
+                + ", blocks="
+                + blocks.size()
+                + ", dynamicJumps="
+                + hasDynamicJumps()
+                + '}';
+    }
+}
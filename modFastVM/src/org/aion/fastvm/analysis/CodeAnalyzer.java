@@ -0,0 +1,208 @@
+package org.aion.fastvm.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.aion.fastvm.Instruction;
+
+/** Splits code into basic blocks and links them, as described in {@link CodeAnalysis}. */
+final class CodeAnalyzer {
+    private static final int PUSH1 = Instruction.PUSH1.code() & 0xFF;
+    private static final int PUSH16 = Instruction.PUSH16.code() & 0xFF;
+    private static final int PUSH32 = Instruction.PUSH32.code() & 0xFF;
+    private static final int JUMP = Instruction.JUMP.code() & 0xFF;
+    private static final int JUMPI = Instruction.JUMPI.code() & 0xFF;
+    private static final int JUMPDEST = Instruction.JUMPDEST.code() & 0xFF;
+
+    private final byte[] code;
+    private final long[] jumpDests;
+
+    CodeAnalyzer(byte[] code) {
+        this.code = code;
+        this.jumpDests = new long[(code.length + 63) >>> 6];
+    }
+
+    CodeAnalysis analyze(byte[] codeHash) {
+        markJumpDests();
+
+        List<int[]> ranges = findBlocks();
+        List<BasicBlock> blocks = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            int[] range = ranges.get(i);
+            int next = i + 1 < ranges.size() ? ranges.get(i + 1)[0] : -1;
+            blocks.add(buildBlock(i, range[0], range[1], next, ranges));
+        }
+        return new CodeAnalysis(codeHash, code.length, jumpDests, blocks);
+    }
+
+    /** Sets the bit of each JUMPDEST that is an instruction rather than push data. */
+    private void markJumpDests() {
+        for (int pc = 0; pc < code.length; pc = next(pc)) {
+            if ((code[pc] & 0xFF) == JUMPDEST) {
+                jumpDests[pc >>> 6] |= 1L << pc;
+            }
+        }
+    }
+
+    /** Finds the [start, end) offsets of the blocks, as the jit's Compiler::findBasicBlocks. */
+    private List<int[]> findBlocks() {
+        List<int[]> ranges = new ArrayList<>();
+        boolean dead = false;
+        int begin = 0;
+        for (int pc = 0, next; pc < code.length; pc = next) {
+            next = next(pc);
+            int op = code[pc] & 0xFF;
+            if (dead) {
+                if (op != JUMPDEST) {
+                    continue;
+                }
+                dead = false;
+                begin = pc;
+            }
+
+            boolean end = op == JUMPI;
+            if (isHalt(op) || op == JUMP) {
+                dead = true;
+                end = true;
+            }
+            if (next == code.length || (code[next] & 0xFF) == JUMPDEST) {
+                end = true;
+            }
+            if (end) {
+                ranges.add(new int[] {begin, next});
+                begin = next;
+            }
+        }
+        return ranges;
+    }
+
+    private BasicBlock buildBlock(int index, int start, int end, int next, List<int[]> ranges) {
+        int count = 0;
+        long energy = 0;
+        int height = 0;
+        int required = 0;
+        int growth = 0;
+        int last = start;
+        int previous = -1;
+        boolean undefined = false;
+        for (int pc = start; pc < end; pc = next(pc)) {
+            Instruction inst = Instruction.of(code[pc]);
+            count++;
+            previous = last;
+            last = pc;
+            if (inst == null) {
+                undefined = true;
+                continue;
+            }
+            energy += StepCost.of(inst);
+            required = Math.max(required, inst.req() - height);
+            height += inst.ret() - inst.req();
+            growth = Math.max(growth, height);
+        }
+
+        int op = code[last] & 0xFF;
+        BasicBlock.Exit exit;
+        if (undefined) {
+            exit = BasicBlock.Exit.INVALID;
+        } else if (op == JUMP) {
+            exit = BasicBlock.Exit.JUMP;
+        } else if (op == JUMPI) {
+            exit = BasicBlock.Exit.JUMPI;
+        } else if (isHalt(op)) {
+            exit = BasicBlock.Exit.HALT;
+        } else {
+            exit = BasicBlock.Exit.FALL_THROUGH;
+        }
+
+        int target = BasicBlock.DYNAMIC_TARGET;
+        if ((exit == BasicBlock.Exit.JUMP || exit == BasicBlock.Exit.JUMPI) && previous != last) {
+            target = pushedTarget(previous);
+        }
+
+        List<Integer> successors = new ArrayList<>(2);
+        boolean fallsThrough =
+                exit == BasicBlock.Exit.FALL_THROUGH || exit == BasicBlock.Exit.JUMPI;
+        if (fallsThrough && next == end) {
+            successors.add(index + 1);
+        }
+        if (target >= 0) {
+            int targetIndex = indexOf(ranges, target);
+            if (!successors.contains(targetIndex)) {
+                successors.add(targetIndex);
+                successors.sort(null);
+            }
+        }
+        return new BasicBlock(
+                index,
+                start,
+                end,
+                count,
+                energy,
+                required,
+                height,
+                growth,
+                exit,
+                target,
+                successors);
+    }
+
+    /**
+     * Reads the jump target pushed by the instruction at pc. Only a push of one stack item, PUSH1
+     * to PUSH16, is read; wider pushes take two items and are left as dynamic.
+     */
+    private int pushedTarget(int pc) {
+        int op = code[pc] & 0xFF;
+        if (op < PUSH1 || op > PUSH16) {
+            return BasicBlock.DYNAMIC_TARGET;
+        }
+        long target = 0;
+        for (int i = pc + 1; i <= pc + op - PUSH1 + 1; i++) {
+            if ((target >>> 31) != 0) {
+                return BasicBlock.INVALID_TARGET;
+            }
+            // bytes past the end of the code read as zero
+            target = (target << 8) | (i < code.length ? code[i] & 0xFF : 0);
+        }
+        return target < code.length && isJumpDest((int) target)
+                ? (int) target
+                : BasicBlock.INVALID_TARGET;
+    }
+
+    private boolean isJumpDest(int offset) {
+        return (jumpDests[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    /** @return the index of the block that starts at offset, which must be a jump destination. */
+    private static int indexOf(List<int[]> ranges, int offset) {
+        int low = 0;
+        int high = ranges.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = ranges.get(mid)[0];
+            if (start < offset) {
+                low = mid + 1;
+            } else if (start > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        throw new IllegalStateException("No block at jump destination " + offset);
+    }
+
+    /** @return the offset of the instruction after the one at pc, past any push data. */
+    private int next(int pc) {
+        int op = code[pc] & 0xFF;
+        int length = 1;
+        if (op >= PUSH1 && op <= PUSH32) {
+            length += Math.min(op - PUSH1 + 1, code.length - pc - 1);
+        }
+        return pc + length;
+    }
+
+    private static boolean isHalt(int op) {
+        return op == (Instruction.STOP.code() & 0xFF)
+                || op == (Instruction.RETURN.code() & 0xFF)
+                || op == (Instruction.REVERT.code() & 0xFF)
+                || op == (Instruction.SELFDESTRUCT.code() & 0xFF);
+    }
+}
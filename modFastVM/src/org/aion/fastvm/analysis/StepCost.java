@@ -0,0 +1,80 @@
+package org.aion.fastvm.analysis;
+
+import org.aion.fastvm.FastVM;
+import org.aion.fastvm.Instruction;
+
+/**
+ * The fixed energy the jit library charges for each instruction at {@link FastVM#REVISION_AION}
+ * and later, as in its GasMeter::getStepCost.
+ *
+ * <p>This is not {@link Instruction.Tier#cost()}: the tiers are the Ethereum schedule, while the
+ * jit charges one unit for most instructions. Costs that depend on operands or state, such as
+ * memory expansion, copied words, SSTORE, the bytes of an EXP exponent, the data of a LOG and the
+ * energy passed to a call, are not included, so the cost of an instruction here is a lower bound.
+ */
+public final class StepCost {
+    private static final long[] COSTS = new long[256];
+
+    static {
+        for (Instruction inst : Instruction.values()) {
+            COSTS[inst.code() & 0xFF] = cost(inst);
+        }
+    }
+
+    private StepCost() {}
+
+    /**
+     * Returns the fixed cost of an opcode.
+     *
+     * @param opcode The opcode.
+     * @return the cost, 0 for an undefined opcode.
+     */
+    public static long of(int opcode) {
+        return COSTS[opcode & 0xFF];
+    }
+
+    /**
+     * Returns the fixed cost of an instruction.
+     *
+     * @param inst The instruction.
+     * @return the cost.
+     */
+    public static long of(Instruction inst) {
+        return COSTS[inst.code() & 0xFF];
+    }
+
+    private static long cost(Instruction inst) {
+        switch (inst) {
+            case STOP:
+            case RETURN:
+            case REVERT:
+            case SSTORE:
+                return 0;
+            case BALANCE:
+            case EXTCODESIZE:
+            case EXTCODECOPY:
+            case SLOAD:
+            case CALL:
+            case CALLCODE:
+            case DELEGATECALL:
+            case STATICCALL:
+                return 1000;
+            case BLOCKHASH:
+                return 20;
+            case SHA3:
+                return 30;
+            case LOG0:
+            case LOG1:
+            case LOG2:
+            case LOG3:
+            case LOG4:
+                return 500 + 500 * (inst.code() - Instruction.LOG0.code());
+            case CREATE:
+                return 200000;
+            case SELFDESTRUCT:
+                return 5000;
+            default:
+                return 1;
+        }
+    }
+}
@@ -3,23 +3,42 @@ package org.aion.solidity;
 import static java.lang.String.format;
 import static org.aion.crypto.HashUtil.h256;
 import static org.aion.solidity.SolidityType.IntType.decodeInt;
-import static org.aion.solidity.SolidityType.IntType.encodeInt;
 import static org.apache.commons.collections4.ListUtils.select;
 import static org.apache.commons.lang3.ArrayUtils.subarray;
 import static org.apache.commons.lang3.StringUtils.join;
-import static org.apache.commons.lang3.StringUtils.stripEnd;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.aion.util.bytes.ByteUtil;
+import org.aion.vm.api.interfaces.IExecutionLog;
 import org.apache.commons.collections4.Predicate;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 public final class Abi {
 
+    private static final int SELECTOR_LENGTH = 4;
+    private static final int CACHE_SIZE = 1024;
+
+    private static final Map<String, Abi> CACHE =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Abi> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
     private List<Entry> entries = new ArrayList<>();
 
+    private volatile Map<Integer, Function> functionsBySelector;
+    private volatile Map<ByteBuffer, Event> eventsByTopic;
+
     public static Abi fromJSON(String json) {
         Abi abi = new Abi();
 
@@ -28,9 +47,62 @@ public final class Abi {
             JSONObject obj = arr.getJSONObject(i);
             abi.entries.add(Entry.fromJSON(obj));
         }
+        abi.entries = Collections.unmodifiableList(abi.entries);
         return abi;
     }
 
+    /**
+     * Returns the ABI of a description from a bounded cache of the most recently used ones, and
+     * parses it only when it is not there. Each caller gets its own copy of the cached ABI, with
+     * the selector and topic indexes already built, so changes to its entries do not reach other
+     * callers.
+     *
+     * @param json The JSON description, which is the key of the cache.
+     * @return the ABI.
+     */
+    public static Abi fromJSONCached(String json) {
+        Abi abi;
+        synchronized (CACHE) {
+            abi = CACHE.get(json);
+        }
+        if (abi == null) {
+            abi = fromJSON(json);
+            abi.functionsBySelector();
+            abi.eventsByTopic();
+            synchronized (CACHE) {
+                Abi cached = CACHE.putIfAbsent(json, abi);
+                abi = cached == null ? abi : cached;
+            }
+        }
+        return abi.copy();
+    }
+
+    /** Returns a copy with copies of the entries, and the indexes built so far. */
+    private Abi copy() {
+        Abi copy = new Abi();
+        Map<Entry, Entry> copies = new IdentityHashMap<>();
+        for (Entry entry : entries) {
+            Entry entryCopy = entry.copy();
+            copies.put(entry, entryCopy);
+            copy.entries.add(entryCopy);
+        }
+        copy.entries = Collections.unmodifiableList(copy.entries);
+
+        Map<Integer, Function> functions = functionsBySelector;
+        if (functions != null) {
+            Map<Integer, Function> index = new HashMap<>();
+            functions.forEach((selector, f) -> index.put(selector, (Function) copies.get(f)));
+            copy.functionsBySelector = Collections.unmodifiableMap(index);
+        }
+        Map<ByteBuffer, Event> events = eventsByTopic;
+        if (events != null) {
+            Map<ByteBuffer, Event> index = new HashMap<>();
+            events.forEach((topic, e) -> index.put(topic, (Event) copies.get(e)));
+            copy.eventsByTopic = Collections.unmodifiableMap(index);
+        }
+        return copy;
+    }
+
     public String toJSON() {
         JSONArray arr = new JSONArray();
         for (Entry entry : entries) {
@@ -58,6 +130,103 @@ public final class Abi {
         return find(Event.class, Entry.Type.event, searchPredicate);
     }
 
+    /**
+     * Finds the function called by call data, by its selector.
+     *
+     * @param callData The call data, or just its first 4 bytes.
+     * @return the function, or null if there is none or callData is shorter than a selector.
+     */
+    public Function findFunctionBySelector(byte[] callData) {
+        if (callData == null || callData.length < SELECTOR_LENGTH) {
+            return null;
+        }
+        return functionsBySelector().get(selector(callData));
+    }
+
+    /**
+     * Finds the event of a log by its first topic. Anonymous events have no such topic and are
+     * never found.
+     *
+     * @param topic The first topic of the log.
+     * @return the event, or null if there is none.
+     */
+    public Event findEventByTopic(byte[] topic) {
+        return topic == null ? null : eventsByTopic().get(ByteBuffer.wrap(topic));
+    }
+
+    /**
+     * Decodes the arguments of many calls to functions of this ABI.
+     *
+     * @param calls The call data of each call.
+     * @return the arguments of each call, in order; null for a call to no function of this ABI.
+     */
+    public List<List<?>> decodeCalls(List<byte[]> calls) {
+        List<List<?>> decoded = new ArrayList<>(calls.size());
+        for (byte[] callData : calls) {
+            Function function = findFunctionBySelector(callData);
+            decoded.add(function == null ? null : function.decode(callData));
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes the arguments of many logs of events of this ABI.
+     *
+     * @param logs The logs.
+     * @return the arguments of each log, in order; null for a log of no event of this ABI.
+     */
+    public List<List<?>> decodeLogs(List<? extends IExecutionLog> logs) {
+        List<List<?>> decoded = new ArrayList<>(logs.size());
+        for (IExecutionLog log : logs) {
+            List<byte[]> topics = log.getTopics();
+            Event event = topics.isEmpty() ? null : findEventByTopic(topics.get(0));
+            decoded.add(
+                    event == null
+                            ? null
+                            : event.decode(log.getData(), topics.toArray(new byte[0][])));
+        }
+        return decoded;
+    }
+
+    private Map<Integer, Function> functionsBySelector() {
+        Map<Integer, Function> index = functionsBySelector;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                if (entry.type == Entry.Type.function) {
+                    // the first of two functions with the same selector wins, as in a linear scan
+                    index.putIfAbsent(selector(entry.encodeSignature()), (Function) entry);
+                }
+            }
+            index = Collections.unmodifiableMap(index);
+            functionsBySelector = index;
+        }
+        return index;
+    }
+
+    private Map<ByteBuffer, Event> eventsByTopic() {
+        Map<ByteBuffer, Event> index = eventsByTopic;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                if (entry.type == Entry.Type.event && !Boolean.TRUE.equals(entry.anonymous)) {
+                    index.putIfAbsent(
+                            ByteBuffer.wrap(entry.fingerprintSignature()), (Event) entry);
+                }
+            }
+            index = Collections.unmodifiableMap(index);
+            eventsByTopic = index;
+        }
+        return index;
+    }
+
+    private static int selector(byte[] bytes) {
+        return ((bytes[0] & 0xFF) << 24)
+                | ((bytes[1] & 0xFF) << 16)
+                | ((bytes[2] & 0xFF) << 8)
+                | (bytes[3] & 0xFF);
+    }
+
     public Abi.Constructor findConstructor() {
         return find(
                 Constructor.class,
@@ -103,6 +272,18 @@ public final class Abi {
                 return p;
             }
 
+            private static List<Param> copyList(List<Param> params) {
+                List<Param> copies = new ArrayList<>(params.size());
+                for (Param param : params) {
+                    Param p = new Param();
+                    p.indexed = param.indexed;
+                    p.name = param.name;
+                    p.type = param.type;
+                    copies.add(p);
+                }
+                return copies;
+            }
+
             public JSONObject toJSON() {
                 JSONObject o = new JSONObject();
                 o.put("indexed", indexed);
@@ -147,6 +328,9 @@ public final class Abi {
         public final List<Param> outputs;
         public final Type type;
 
+        private volatile String signature;
+        private volatile byte[] fingerprint;
+
         public Entry(
                 Boolean anonymous,
                 Boolean constant,
@@ -221,22 +405,50 @@ public final class Abi {
         }
 
         public String formatSignature() {
-            StringBuilder paramsTypes = new StringBuilder();
-            for (Entry.Param param : inputs) {
-                paramsTypes.append(param.type.getCanonicalName()).append(",");
+            String signature = this.signature;
+            if (signature == null) {
+                StringBuilder builder = new StringBuilder(name).append('(');
+                for (int i = 0; i < inputs.size(); i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(inputs.get(i).type.getCanonicalName());
+                }
+                signature = builder.append(')').toString();
+                this.signature = signature;
             }
-
-            return format("%s(%s)", name, stripEnd(paramsTypes.toString(), ","));
+            return signature;
         }
 
         public byte[] fingerprintSignature() {
-            return h256(formatSignature().getBytes());
+            byte[] fingerprint = this.fingerprint;
+            if (fingerprint == null) {
+                fingerprint = h256(formatSignature().getBytes());
+                this.fingerprint = fingerprint;
+            }
+            return fingerprint.clone();
         }
 
         public byte[] encodeSignature() {
             return fingerprintSignature();
         }
 
+        /** Returns a copy with copies of the parameters, and the signature already formatted. */
+        private Entry copy() {
+            Entry copy =
+                    create(
+                            Boolean.TRUE.equals(anonymous),
+                            Boolean.TRUE.equals(constant),
+                            Boolean.TRUE.equals(payable),
+                            name,
+                            Param.copyList(inputs),
+                            Param.copyList(outputs),
+                            type);
+            copy.signature = signature;
+            copy.fingerprint = fingerprint;
+            return copy;
+        }
+
         public static Entry create(
                 boolean anonymous,
                 boolean constant,
@@ -291,6 +503,8 @@ public final class Abi {
 
         private static final int ENCODED_SIGN_LENGTH = 4;
 
+        private volatile FunctionCodec codec;
+
         public Function(
                 boolean constant,
                 boolean payable,
@@ -301,45 +515,24 @@ public final class Abi {
         }
 
         public byte[] encode(Object... args) {
-            return ByteUtil.merge(encodeSignature(), encodeArguments(args));
+            return codec().encode(args);
         }
 
-        private byte[] encodeArguments(Object... args) {
-            if (args.length > inputs.size())
-                throw new RuntimeException(
-                        "Too many arguments: " + args.length + " > " + inputs.size());
-
-            int staticSize = 0;
-            int dynamicCnt = 0;
-            // calculating static size and number of dynamic params
-            for (int i = 0; i < args.length; i++) {
-                SolidityType type = inputs.get(i).type;
-                if (type.isDynamicType()) {
-                    dynamicCnt++;
-                }
-                staticSize += type.getFixedSize();
+        /**
+         * Returns the codec of this function, which is built on first use. The signature and
+         * inputs must not change afterwards.
+         */
+        public FunctionCodec codec() {
+            FunctionCodec codec = this.codec;
+            if (codec == null) {
+                codec = new FunctionCodec(this);
+                this.codec = codec;
             }
-
-            byte[][] bb = new byte[args.length + dynamicCnt][];
-            for (int curDynamicPtr = staticSize, curDynamicCnt = 0, i = 0; i < args.length; i++) {
-                SolidityType type = inputs.get(i).type;
-                if (type.isDynamicType()) {
-                    byte[] dynBB = type.encode(args[i]);
-                    bb[i] = encodeInt(curDynamicPtr);
-                    bb[args.length + curDynamicCnt] = dynBB;
-                    curDynamicCnt++;
-                    curDynamicPtr += dynBB.length;
-                } else {
-                    bb[i] = type.encode(args[i]);
-                }
-            }
-
-            return ByteUtil.merge(bb);
+            return codec;
         }
 
         public byte[] encodeSignatureLong() {
-            String signature = formatSignature();
-            return h256(signature.getBytes());
+            return fingerprintSignature();
         }
 
         public List<?> decode(byte[] encoded) {
@@ -350,6 +543,18 @@ public final class Abi {
             return Param.decodeList(outputs, encoded);
         }
 
+        /** Decodes the arguments of call data without copying them, see {@link AbiValue}. */
+        public List<AbiValue> decodeValues(ByteBuffer callData) {
+            ByteBuffer arguments = callData.duplicate();
+            arguments.position(arguments.position() + ENCODED_SIGN_LENGTH);
+            return AbiValue.decodeList(inputs, arguments);
+        }
+
+        /** Decodes return data without copying it, see {@link AbiValue}. */
+        public List<AbiValue> decodeResultValues(ByteBuffer encoded) {
+            return AbiValue.decodeList(outputs, encoded);
+        }
+
         @Override
         public byte[] encodeSignature() {
             return extractSignature(super.encodeSignature());
@@ -362,6 +567,9 @@ public final class Abi {
 
     public static class Event extends Entry {
 
+        private volatile List<Param> indexedInputs;
+        private volatile List<Param> notIndexedInputs;
+
         public Event(boolean anonymous, String name, List<Param> inputs, List<Param> outputs) {
             super(anonymous, null, null, name, inputs, outputs, Type.event);
         }
@@ -380,7 +588,28 @@ public final class Abi {
             return result;
         }
 
+        /**
+         * Decodes the non-indexed arguments in the data of a log without copying them, see {@link
+         * AbiValue}.
+         */
+        public List<AbiValue> decodeDataValues(ByteBuffer data) {
+            return AbiValue.decodeList(filteredInputs(false), data);
+        }
+
         private List<Param> filteredInputs(final boolean indexed) {
+            List<Param> filtered = indexed ? indexedInputs : notIndexedInputs;
+            if (filtered == null) {
+                filtered = selectInputs(indexed);
+                if (indexed) {
+                    indexedInputs = filtered;
+                } else {
+                    notIndexedInputs = filtered;
+                }
+            }
+            return filtered;
+        }
+
+        private List<Param> selectInputs(final boolean indexed) {
             return select(
                     inputs,
                     new Predicate<Param>() {
@@ -0,0 +1,199 @@
+package org.aion.solidity;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A value in ABI-encoded data, read from the buffer only when it is asked for and in the form it
+ * is asked for.
+ *
+ * <p>Nothing is copied when values are decoded. Integers are read as a primitive long when they
+ * fit, and bytes, strings and addresses as read-only slices of the buffer. The elements of an
+ * array are decoded one at a time as they are iterated, so a large array is never decoded at
+ * once. Values read the buffer they were decoded from, which must not change while they are used.
+ */
+public final class AbiValue {
+    private static final int WORD = 16;
+
+    private final SolidityType type;
+    private final ByteBuffer buffer;
+    /** The absolute index of the value in buffer, past the pointer of a dynamic type. */
+    private final int offset;
+
+    private AbiValue(SolidityType type, ByteBuffer buffer, int offset) {
+        this.type = type;
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    /**
+     * Decodes a list of parameters, as {@link Abi.Entry.Param#decodeList} does.
+     *
+     * @param params The parameters.
+     * @param encoded The encoding, from its position to its limit. The position is not changed.
+     * @return a value per parameter.
+     */
+    public static List<AbiValue> decodeList(List<Abi.Entry.Param> params, ByteBuffer encoded) {
+        ByteBuffer buffer = encoded.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int base = buffer.position();
+        int head = base;
+        List<AbiValue> values = new ArrayList<>(params.size());
+        for (Abi.Entry.Param param : params) {
+            values.add(at(param.type, buffer, base, head));
+            head += param.type.getFixedSize();
+        }
+        return values;
+    }
+
+    /**
+     * Returns the value whose head is at an index. The head of a dynamic type is a pointer to
+     * the value relative to base.
+     */
+    private static AbiValue at(SolidityType type, ByteBuffer buffer, int base, int head) {
+        int offset = type.isDynamicType() ? base + intAt(buffer, head) : head;
+        return new AbiValue(type, buffer, offset);
+    }
+
+    private static int intAt(ByteBuffer buffer, int index) {
+        long hi = buffer.getLong(index);
+        long lo = buffer.getLong(index + 8);
+        if (hi != 0 || lo < 0 || lo > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid length or offset at " + index);
+        }
+        return (int) lo;
+    }
+
+    public SolidityType getType() {
+        return type;
+    }
+
+    /** @return true if this integer fits in a long. */
+    public boolean fitsInLong() {
+        requireType(SolidityType.IntType.class);
+        return buffer.getLong(offset) == buffer.getLong(offset + 8) >> 63;
+    }
+
+    /**
+     * Returns this integer as a long.
+     *
+     * @throws ArithmeticException if it does not fit in a long.
+     */
+    public long longValue() {
+        if (!fitsInLong()) {
+            throw new ArithmeticException("Value does not fit in a long.");
+        }
+        return buffer.getLong(offset + 8);
+    }
+
+    /** @return this integer, read as signed as {@link SolidityType.IntType#decodeInt} does. */
+    public BigInteger bigIntegerValue() {
+        if (fitsInLong()) {
+            return BigInteger.valueOf(buffer.getLong(offset + 8));
+        }
+        byte[] bytes = new byte[WORD];
+        for (int i = 0; i < WORD; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new BigInteger(bytes);
+    }
+
+    public boolean booleanValue() {
+        requireType(SolidityType.BoolType.class);
+        return buffer.getLong(offset) != 0 || buffer.getLong(offset + 8) != 0;
+    }
+
+    /**
+     * Returns the bytes of a bytes, string, fixed bytes or address value.
+     *
+     * @return a read-only slice of the encoding.
+     */
+    public ByteBuffer bytesValue() {
+        if (type instanceof SolidityType.BytesType) {
+            return slice(offset + WORD, intAt(buffer, offset));
+        } else if (type instanceof SolidityType.Bytes32Type) {
+            return slice(offset, ((SolidityType.Bytes32Type) type).bytes());
+        } else if (type instanceof SolidityType.AddressType) {
+            return slice(offset, type.getFixedSize());
+        }
+        throw new IllegalStateException("Not a bytes type: " + type);
+    }
+
+    public String stringValue() {
+        requireType(SolidityType.StringType.class);
+        return StandardCharsets.UTF_8.decode(bytesValue()).toString();
+    }
+
+    private ByteBuffer slice(int start, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(start + length);
+        slice.position(start);
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    /** @return the number of elements of this array. */
+    public int size() {
+        requireType(SolidityType.ArrayType.class);
+        if (type instanceof SolidityType.StaticArrayType) {
+            return ((SolidityType.StaticArrayType) type).size;
+        }
+        return intAt(buffer, offset);
+    }
+
+    /**
+     * Returns an element of this array.
+     *
+     * @param index The index of the element.
+     * @return the element.
+     * @throws IndexOutOfBoundsException if there is no such element.
+     */
+    public AbiValue get(int index) {
+        int size = size();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        }
+        SolidityType elementType = ((SolidityType.ArrayType) type).getElementType();
+        if (type instanceof SolidityType.StaticArrayType) {
+            return new AbiValue(elementType, buffer, offset + index * elementType.getFixedSize());
+        }
+        int base = offset + WORD;
+        return at(elementType, buffer, base, base + index * elementType.getFixedSize());
+    }
+
+    /** @return an iterator that decodes the elements of this array as it goes. */
+    public Iterator<AbiValue> elements() {
+        int size = size();
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public AbiValue next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    private void requireType(Class<? extends SolidityType> expected) {
+        if (!expected.isInstance(type)) {
+            throw new IllegalStateException("Value of type " + type + " is not " + expected);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + "@" + offset;
+    }
+}
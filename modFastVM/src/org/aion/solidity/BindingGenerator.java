@@ -0,0 +1,564 @@
+package org.aion.solidity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.aion.util.conversions.Hex;
+
+/**
+ * Writes typed Java bindings for the functions of a contract, to be run at build time.
+ *
+ * <p>A binding is a class with the selector of each function as an int constant, an encoder per
+ * function whose parameters are Java types, and a decoder of its return data. Integers of at most
+ * 64 bits are longs, wider ones BigIntegers, addresses and bytes byte arrays, and strings Strings.
+ * The layout of the call is worked out here, so the generated code writes each argument at a
+ * constant offset through {@link BindingSupport}, without boxing or parsing types at run time.
+ * Functions with array parameters or results fall back to the {@link Abi} of the contract, which
+ * the binding embeds.
+ *
+ * <p>Usage: {@code BindingGenerator <package> <output dir> <file>...}, where each file is either a
+ * Solidity source, which is compiled, or the combined JSON output of solc.
+ */
+public final class BindingGenerator {
+    private static final int SELECTOR_LENGTH = 4;
+
+    /** Java keywords that are not reserved in Solidity, and the names of generated locals. */
+    private static final Set<String> RESERVED =
+            new HashSet<>(
+                    Arrays.asList(
+                            ("abstract assert boolean break byte case catch char class const "
+                                            + "continue default do double else enum extends final "
+                                            + "finally float for goto if implements import "
+                                            + "instanceof int interface long native new package "
+                                            + "private protected public return short static "
+                                            + "strictfp super switch synchronized this throw "
+                                            + "throws transient try void volatile while call data "
+                                            + "tail")
+                                    .split(" ")));
+
+    private BindingGenerator() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BindingGenerator <package> <output dir> <file>...");
+            System.exit(1);
+        }
+        String packageName = args[0];
+        Path dir = Paths.get(args[1]).resolve(packageName.replace('.', '/'));
+        Files.createDirectories(dir);
+
+        for (int i = 2; i < args.length; i++) {
+            Path file = Paths.get(args[i]);
+            CompilationResult result;
+            if (file.toString().endsWith(".sol")) {
+                Compiler.Result r =
+                        Compiler.getInstance()
+                                .compile(
+                                        Files.readAllBytes(file),
+                                        Compiler.Options.ABI,
+                                        Compiler.Options.BIN);
+                if (r.isFailed()) {
+                    throw new IOException("Failed to compile " + file + ":\n" + r.errors);
+                }
+                result = CompilationResult.parse(r.output);
+            } else {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    result = CompilationResult.parse(reader);
+                }
+            }
+
+            for (Map.Entry<String, CompilationResult.Contract> e : result.contracts.entrySet()) {
+                String className = className(e.getKey());
+                String source = generate(packageName, className, e.getValue().abi);
+                Files.write(
+                        dir.resolve(className + ".java"),
+                        source.getBytes(StandardCharsets.UTF_8));
+                System.out.println("Wrote " + packageName + "." + className);
+            }
+        }
+    }
+
+    /** @return the class name of a contract named in combined JSON, e.g. "file.sol:Token". */
+    static String className(String contractName) {
+        String name = contractName.substring(contractName.lastIndexOf(':') + 1);
+        return capitalize(identifier(name, "Contract"));
+    }
+
+    /**
+     * Generates the binding of a contract.
+     *
+     * @param packageName The package of the binding.
+     * @param className The name of the binding class.
+     * @param abiJson The ABI of the contract.
+     * @return the source of the binding.
+     */
+    public static String generate(String packageName, String className, String abiJson) {
+        return new Writer(packageName, className, abiJson).write();
+    }
+
+    /** How a Solidity type is represented, encoded and decoded in a binding. */
+    private enum Kind {
+        LONG("long", false),
+        BIG_INTEGER("BigInteger", false),
+        BOOL("boolean", false),
+        ADDRESS("byte[]", false),
+        FIXED_BYTES("byte[]", false),
+        BYTES("byte[]", true),
+        STRING("String", true),
+        OTHER("Object", false);
+
+        final String javaType;
+        final boolean dynamic;
+
+        Kind(String javaType, boolean dynamic) {
+            this.javaType = javaType;
+            this.dynamic = dynamic;
+        }
+
+        static Kind of(SolidityType type) {
+            if (type instanceof SolidityType.ArrayType) {
+                return OTHER;
+            } else if (type instanceof SolidityType.BoolType) {
+                return BOOL;
+            } else if (type instanceof SolidityType.IntType) {
+                String name = type.getCanonicalName();
+                boolean signed = name.startsWith("int");
+                int bits = Integer.parseInt(name.substring(signed ? 3 : 4));
+                return (signed ? bits <= 64 : bits < 64) ? LONG : BIG_INTEGER;
+            } else if (type instanceof SolidityType.AddressType) {
+                return ADDRESS;
+            } else if (type instanceof SolidityType.StringType) {
+                return STRING;
+            } else if (type instanceof SolidityType.BytesType) {
+                return BYTES;
+            } else if (type instanceof SolidityType.Bytes32Type) {
+                return FIXED_BYTES;
+            }
+            return OTHER;
+        }
+    }
+
+    private static final class Writer {
+        private final String packageName;
+        private final String className;
+        private final String abiJson;
+        private final Abi abi;
+        private final StringBuilder body = new StringBuilder();
+        private boolean usesAbi;
+
+        Writer(String packageName, String className, String abiJson) {
+            this.packageName = packageName;
+            this.className = className;
+            this.abiJson = abiJson;
+            this.abi = Abi.fromJSON(abiJson);
+        }
+
+        String write() {
+            List<Abi.Function> functions = new ArrayList<>();
+            Map<String, Integer> overloads = new HashMap<>();
+            for (Abi.Entry entry : abi.getEntries()) {
+                if (entry.type == Abi.Entry.Type.function) {
+                    functions.add((Abi.Function) entry);
+                    overloads.merge(entry.name, 1, Integer::sum);
+                }
+            }
+
+            for (Abi.Function function : functions) {
+                String name = identifier(function.name, "function");
+                if (overloads.get(function.name) > 1) {
+                    name += "_" + Hex.toHexString(function.encodeSignature());
+                }
+                line(1, "/** The selector of {@code " + function.formatSignature() + "}. */");
+                line(
+                        1,
+                        "public static final int "
+                                + constant(name)
+                                + " = 0x"
+                                + Hex.toHexString(function.encodeSignature())
+                                + ";");
+                line(0, "");
+            }
+            List<Abi.Entry> events = new ArrayList<>();
+            Map<String, Integer> eventOverloads = new HashMap<>();
+            for (Abi.Entry entry : abi.getEntries()) {
+                if (entry.type == Abi.Entry.Type.event && !Boolean.TRUE.equals(entry.anonymous)) {
+                    events.add(entry);
+                    eventOverloads.merge(entry.name, 1, Integer::sum);
+                }
+            }
+            for (Abi.Entry event : events) {
+                String name = identifier(event.name, "event");
+                if (eventOverloads.get(event.name) > 1) {
+                    byte[] topic = event.fingerprintSignature();
+                    name += "_" + Hex.toHexString(Arrays.copyOf(topic, SELECTOR_LENGTH));
+                }
+                line(
+                        1,
+                        "/** The first topic of the logs of {@code "
+                                + event.formatSignature()
+                                + "}, in hex. */");
+                line(
+                        1,
+                        "public static final String "
+                                + constant(name)
+                                + "_TOPIC = \""
+                                + Hex.toHexString(event.fingerprintSignature())
+                                + "\";");
+                line(0, "");
+            }
+            int constants = body.length();
+
+            line(1, "private " + className + "() {}");
+            for (Abi.Function function : functions) {
+                String name = identifier(function.name, "function");
+                if (overloads.get(function.name) > 1) {
+                    name += "_" + Hex.toHexString(function.encodeSignature());
+                }
+                writeEncoder(function, name);
+                if (!function.outputs.isEmpty()) {
+                    writeDecoder(function, name);
+                }
+            }
+            if (usesAbi) {
+                writeAbi(constants);
+            }
+            boolean usesBigInteger = body.indexOf("BigInteger") >= 0;
+
+            StringBuilder source = new StringBuilder();
+            source.append("// Generated by ")
+                    .append(BindingGenerator.class.getName())
+                    .append(". Do not edit.\n");
+            source.append("package ").append(packageName).append(";\n\n");
+            if (usesBigInteger) {
+                source.append("import java.math.BigInteger;\n");
+            }
+            if (usesAbi) {
+                source.append("import java.util.List;\n");
+                source.append("import org.aion.solidity.Abi;\n");
+            }
+            source.append("import org.aion.solidity.BindingSupport;\n\n");
+            source.append("/** Typed calls of the contract {@code ")
+                    .append(className)
+                    .append("}. */\n");
+            source.append("public final class ").append(className).append(" {\n");
+            source.append(body);
+            source.append("}\n");
+            return source.toString();
+        }
+
+        private void writeEncoder(Abi.Function function, String name) {
+            List<String> params = parameterNames(function.inputs, "arg");
+            List<Kind> kinds = kinds(function.inputs);
+
+            // the encoded form of each dynamic argument, in a local for strings
+            List<String> bytes = new ArrayList<>(params);
+            Set<String> names = new HashSet<>(params);
+            for (int i = 0; i < params.size(); i++) {
+                if (kinds.get(i) == Kind.STRING) {
+                    String local = params.get(i) + "Bytes";
+                    while (!names.add(local)) {
+                        local += "_";
+                    }
+                    bytes.set(i, local);
+                }
+            }
+
+            StringBuilder signature = new StringBuilder();
+            for (int i = 0; i < params.size(); i++) {
+                signature.append(i > 0 ? ", " : "");
+                signature.append(kinds.get(i).javaType).append(' ').append(params.get(i));
+            }
+
+            line(0, "");
+            line(1, "/** Encodes a call of {@code " + function.formatSignature() + "}. */");
+            line(1, "public static byte[] encode" + capitalize(name) + "(" + signature + ") {");
+            if (kinds.contains(Kind.OTHER)) {
+                usesAbi = true;
+                line(
+                        2,
+                        "return function("
+                                + constant(name)
+                                + ").encode("
+                                + String.join(", ", params)
+                                + ");");
+                line(1, "}");
+                return;
+            }
+
+            if (params.isEmpty()) {
+                line(2, "return BindingSupport.call(" + constant(name) + ", 0, 0);");
+                line(1, "}");
+                return;
+            }
+
+            int headSize = 0;
+            List<String> tailSizes = new ArrayList<>();
+            for (int i = 0; i < params.size(); i++) {
+                headSize += function.inputs.get(i).type.getFixedSize();
+                if (kinds.get(i) == Kind.STRING) {
+                    line(
+                            2,
+                            "byte[] "
+                                    + bytes.get(i)
+                                    + " = BindingSupport.utf8("
+                                    + params.get(i)
+                                    + ");");
+                }
+                if (kinds.get(i).dynamic) {
+                    tailSizes.add("BindingSupport.tailSize(" + bytes.get(i) + ")");
+                }
+            }
+            line(
+                    2,
+                    "byte[] call = BindingSupport.call("
+                            + constant(name)
+                            + ", "
+                            + headSize
+                            + ", "
+                            + (tailSizes.isEmpty() ? "0" : String.join(" + ", tailSizes))
+                            + ");");
+            if (!tailSizes.isEmpty()) {
+                line(2, "int tail = " + headSize + ";");
+            }
+
+            int head = 0;
+            for (int i = 0; i < params.size(); i++) {
+                SolidityType type = function.inputs.get(i).type;
+                String param = params.get(i);
+                int at = SELECTOR_LENGTH + head;
+                switch (kinds.get(i)) {
+                    case LONG:
+                        line(2, "BindingSupport.putLong(call, " + at + ", " + param + ");");
+                        break;
+                    case BIG_INTEGER:
+                        line(2, "BindingSupport.putBigInteger(call, " + at + ", " + param + ");");
+                        break;
+                    case BOOL:
+                        line(2, "BindingSupport.putBool(call, " + at + ", " + param + ");");
+                        break;
+                    case ADDRESS:
+                        line(2, "BindingSupport.putAddress(call, " + at + ", " + param + ");");
+                        break;
+                    case FIXED_BYTES:
+                        line(
+                                2,
+                                "BindingSupport.putFixedBytes(call, "
+                                        + at
+                                        + ", "
+                                        + param
+                                        + ", "
+                                        + ((SolidityType.Bytes32Type) type).bytes()
+                                        + ");");
+                        break;
+                    default:
+                        line(
+                                2,
+                                "tail = BindingSupport.putBytes(call, "
+                                        + SELECTOR_LENGTH
+                                        + ", "
+                                        + head
+                                        + ", tail, "
+                                        + bytes.get(i)
+                                        + ");");
+                        break;
+                }
+                head += type.getFixedSize();
+            }
+            line(2, "return call;");
+            line(1, "}");
+        }
+
+        private void writeDecoder(Abi.Function function, String name) {
+            List<Kind> kinds = kinds(function.outputs);
+            String method = "decode" + capitalize(name) + "Result";
+
+            line(0, "");
+            String comment = "/** Decodes the return data of {@code " + function.formatSignature();
+            line(1, comment + "}. */");
+            if (kinds.contains(Kind.OTHER)) {
+                usesAbi = true;
+                line(1, "public static List<?> " + method + "(byte[] data) {");
+                line(2, "return function(" + constant(name) + ").decodeResult(data);");
+                line(1, "}");
+                return;
+            }
+
+            List<String> values = new ArrayList<>();
+            int head = 0;
+            for (int i = 0; i < kinds.size(); i++) {
+                values.add(decodeExpression(kinds.get(i), function.outputs.get(i).type, head));
+                head += function.outputs.get(i).type.getFixedSize();
+            }
+
+            if (kinds.size() == 1) {
+                String type = kinds.get(0).javaType;
+                line(1, "public static " + type + " " + method + "(byte[] data) {");
+                line(2, "return " + values.get(0) + ";");
+                line(1, "}");
+                return;
+            }
+
+            String resultClass = capitalize(name) + "Result";
+            List<String> fields = parameterNames(function.outputs, "value");
+            line(1, "public static " + resultClass + " " + method + "(byte[] data) {");
+            line(2, "return new " + resultClass + "(");
+            for (int i = 0; i < values.size(); i++) {
+                line(4, values.get(i) + (i + 1 < values.size() ? "," : ");"));
+            }
+            line(1, "}");
+
+            line(0, "");
+            line(1, "/** The values returned by {@code " + function.formatSignature() + "}. */");
+            line(1, "public static final class " + resultClass + " {");
+            for (int i = 0; i < fields.size(); i++) {
+                line(2, "public final " + kinds.get(i).javaType + " " + fields.get(i) + ";");
+            }
+            line(0, "");
+            StringBuilder constructor = new StringBuilder();
+            for (int i = 0; i < fields.size(); i++) {
+                constructor.append(i > 0 ? ", " : "");
+                constructor.append(kinds.get(i).javaType).append(' ').append(fields.get(i));
+            }
+            line(2, "private " + resultClass + "(" + constructor + ") {");
+            for (String field : fields) {
+                line(3, "this." + field + " = " + field + ";");
+            }
+            line(2, "}");
+            line(1, "}");
+        }
+
+        private String decodeExpression(Kind kind, SolidityType type, int head) {
+            switch (kind) {
+                case LONG:
+                    return "BindingSupport.getLong(data, " + head + ")";
+                case BIG_INTEGER:
+                    return "BindingSupport.getBigInteger(data, " + head + ")";
+                case BOOL:
+                    return "BindingSupport.getBool(data, " + head + ")";
+                case ADDRESS:
+                    return "BindingSupport.getFixedBytes(data, "
+                            + head
+                            + ", "
+                            + type.getFixedSize()
+                            + ")";
+                case FIXED_BYTES:
+                    return "BindingSupport.getFixedBytes(data, "
+                            + head
+                            + ", "
+                            + ((SolidityType.Bytes32Type) type).bytes()
+                            + ")";
+                case BYTES:
+                    return "BindingSupport.getBytes(data, 0, " + head + ")";
+                case STRING:
+                    return "BindingSupport.getString(data, 0, " + head + ")";
+                default:
+                    throw new IllegalArgumentException("No typed decoding of " + type);
+            }
+        }
+
+        /** Writes the embedded ABI used by the functions without typed bindings. */
+        private void writeAbi(int at) {
+            StringBuilder abiSource = new StringBuilder();
+            abiSource.append("    private static final String ABI =\n            \"");
+            abiSource.append(javaString(abiJson));
+            abiSource.append("\";\n\n");
+            body.insert(at, abiSource);
+
+            line(0, "");
+            line(1, "private static Abi.Function function(int selector) {");
+            line(2, "byte[] call = BindingSupport.call(selector, 0, 0);");
+            line(2, "return Abi.fromJSONCached(ABI).findFunctionBySelector(call);");
+            line(1, "}");
+        }
+
+        private void line(int indent, String text) {
+            if (!text.isEmpty()) {
+                for (int i = 0; i < indent; i++) {
+                    body.append("    ");
+                }
+            }
+            body.append(text).append('\n');
+        }
+    }
+
+    /** @return the body of a Java string literal of s. */
+    private static String javaString(String s) {
+        StringBuilder literal = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == '"') {
+                literal.append('\\').append(c);
+            } else if (c == '\n') {
+                literal.append("\\n");
+            } else if (c < 0x20 || c == 0x7f) {
+                // an octal escape, as a unicode one would be translated before the literal is read
+                literal.append(String.format("\\%03o", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+
+    private static List<Kind> kinds(List<Abi.Entry.Param> params) {
+        List<Kind> kinds = new ArrayList<>(params.size());
+        for (Abi.Entry.Param param : params) {
+            kinds.add(Kind.of(param.type));
+        }
+        return kinds;
+    }
+
+    /** @return Java names for parameters, numbered after prefix where a name is missing. */
+    private static List<String> parameterNames(List<Abi.Entry.Param> params, String prefix) {
+        List<String> names = new ArrayList<>(params.size());
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < params.size(); i++) {
+            String name = identifier(params.get(i).name, prefix + i);
+            while (!used.add(name)) {
+                name += "_";
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    /** @return name if it can be used as a Java identifier, made so if it is a keyword. */
+    private static String identifier(String name, String otherwise) {
+        if (name == null || name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return otherwise;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return otherwise;
+            }
+        }
+        return RESERVED.contains(name) ? name + "_" : name;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /** @return the constant name of an identifier, e.g. BALANCE_OF for balanceOf. */
+    private static String constant(String name) {
+        StringBuilder constant = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(name.charAt(i - 1))) {
+                constant.append('_');
+            }
+            constant.append(Character.toUpperCase(c));
+        }
+        return constant.toString();
+    }
+}
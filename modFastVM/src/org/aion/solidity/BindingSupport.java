@@ -0,0 +1,170 @@
+package org.aion.solidity;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The encoding and decoding of single ABI values that the bindings written by {@link
+ * BindingGenerator} are built from. Offsets are in bytes from the start of the array; the
+ * pointers of dynamic values are relative to the start of their argument list, as in {@link
+ * SolidityType}.
+ */
+public final class BindingSupport {
+    private static final int WORD = 16;
+    private static final int SELECTOR_LENGTH = 4;
+    private static final int ADDRESS_LENGTH = 32;
+
+    private BindingSupport() {}
+
+    /**
+     * Allocates a call and writes its selector.
+     *
+     * @param selector The selector.
+     * @param headSize The size of the head of the arguments.
+     * @param tailSize The size of the dynamic arguments.
+     * @return the call, with the arguments still to be written after the selector.
+     */
+    public static byte[] call(int selector, int headSize, int tailSize) {
+        byte[] call = new byte[SELECTOR_LENGTH + headSize + tailSize];
+        call[0] = (byte) (selector >>> 24);
+        call[1] = (byte) (selector >>> 16);
+        call[2] = (byte) (selector >>> 8);
+        call[3] = (byte) selector;
+        return call;
+    }
+
+    /** @return the size of a bytes or string value in the tail, length word included. */
+    public static int tailSize(byte[] value) {
+        // SolidityType.BytesType pads the empty value to a word
+        return WORD + ((value.length - 1) / WORD + 1) * WORD;
+    }
+
+    public static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Writes a long as a sign-extended word. */
+    public static void putLong(byte[] dest, int at, long value) {
+        byte sign = (byte) (value >> 63);
+        for (int i = 0; i < 8; i++) {
+            dest[at + i] = sign;
+            dest[at + 8 + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    /**
+     * Writes a BigInteger as a word, two's complement if it is negative.
+     *
+     * @throws IllegalArgumentException if it does not fit in a word.
+     */
+    public static void putBigInteger(byte[] dest, int at, BigInteger value) {
+        int maxBits = value.signum() < 0 ? WORD * 8 - 1 : WORD * 8;
+        if (value.bitLength() > maxBits) {
+            throw new IllegalArgumentException("Value does not fit in 128 bits: " + value);
+        }
+        // a 128-bit positive value has a leading zero byte
+        byte[] bytes = value.toByteArray();
+        int length = Math.min(bytes.length, WORD);
+        Arrays.fill(dest, at, at + WORD - length, (byte) (value.signum() < 0 ? 0xFF : 0));
+        System.arraycopy(bytes, bytes.length - length, dest, at + WORD - length, length);
+    }
+
+    public static void putBool(byte[] dest, int at, boolean value) {
+        putLong(dest, at, value ? 1 : 0);
+    }
+
+    /**
+     * Writes an address.
+     *
+     * @throws IllegalArgumentException if it is not 32 bytes.
+     */
+    public static void putAddress(byte[] dest, int at, byte[] address) {
+        if (address.length != ADDRESS_LENGTH) {
+            throw new IllegalArgumentException("Invalid address: length = " + address.length);
+        }
+        System.arraycopy(address, 0, dest, at, ADDRESS_LENGTH);
+    }
+
+    /**
+     * Writes fixed-size bytes, padded with zeros to the size of the type.
+     *
+     * @throws IllegalArgumentException if value is longer than the type.
+     */
+    public static void putFixedBytes(byte[] dest, int at, byte[] value, int length) {
+        if (value.length > length) {
+            throw new IllegalArgumentException("Invalid fixed bytes: length = " + value.length);
+        }
+        System.arraycopy(value, 0, dest, at, value.length);
+    }
+
+    /**
+     * Writes a bytes or string value into the tail and its pointer into the head.
+     *
+     * @param dest The call.
+     * @param base The offset of the argument list in dest.
+     * @param head The offset of the pointer in the argument list.
+     * @param tail The offset of the value in the argument list.
+     * @param value The value.
+     * @return the offset in the argument list past the value.
+     */
+    public static int putBytes(byte[] dest, int base, int head, int tail, byte[] value) {
+        putLong(dest, base + head, tail);
+        putLong(dest, base + tail, value.length);
+        System.arraycopy(value, 0, dest, base + tail + WORD, value.length);
+        return tail + tailSize(value);
+    }
+
+    /**
+     * Reads a word as a long.
+     *
+     * @throws ArithmeticException if it does not fit in a long.
+     */
+    public static long getLong(byte[] data, int at) {
+        long hi = readLong(data, at);
+        long lo = readLong(data, at + 8);
+        if (hi != lo >> 63) {
+            throw new ArithmeticException("Value does not fit in a long.");
+        }
+        return lo;
+    }
+
+    /** Reads a word as a signed BigInteger, as {@link SolidityType.IntType#decodeInt} does. */
+    public static BigInteger getBigInteger(byte[] data, int at) {
+        return new BigInteger(Arrays.copyOfRange(data, at, at + WORD));
+    }
+
+    public static boolean getBool(byte[] data, int at) {
+        return readLong(data, at) != 0 || readLong(data, at + 8) != 0;
+    }
+
+    public static byte[] getFixedBytes(byte[] data, int at, int length) {
+        return Arrays.copyOfRange(data, at, at + length);
+    }
+
+    /**
+     * Reads a bytes or string value through its pointer.
+     *
+     * @param data The encoded list.
+     * @param base The offset of the list in data.
+     * @param head The offset of the pointer in the list.
+     * @return the value.
+     */
+    public static byte[] getBytes(byte[] data, int base, int head) {
+        int at = base + (int) getLong(data, base + head);
+        int length = (int) getLong(data, at);
+        return Arrays.copyOfRange(data, at + WORD, at + WORD + length);
+    }
+
+    public static String getString(byte[] data, int base, int head) {
+        return new String(getBytes(data, base, head), StandardCharsets.UTF_8);
+    }
+
+    private static long readLong(byte[] data, int at) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[at + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,263 @@
+package org.aion.solidity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.BiConsumer;
+
+/**
+ * A streaming reader of the combined JSON output of solc. Contracts are read one at a time and
+ * handed to a consumer as soon as each is complete, so the output as a whole is never held in
+ * memory. Members other than the contracts and the version are skipped without being kept.
+ *
+ * <p>Values of contract fields that are not strings, such as the ABI as an array in later
+ * versions of solc, are returned as their JSON text.
+ */
+final class CombinedJsonReader {
+    private final Reader reader;
+    private int next = -2;
+    private long position;
+
+    CombinedJsonReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the output to its end.
+     *
+     * @param consumer The consumer of each contract and its name.
+     * @return the version of the compiler, null if there is none, or the empty string if the
+     *     output is empty.
+     * @throws IOException if the underlying reader fails.
+     * @throws IllegalArgumentException if the output is not well-formed.
+     */
+    String read(BiConsumer<String, CompilationResult.Contract> consumer) throws IOException {
+        if (peek() == -1) {
+            return "";
+        }
+
+        String version = null;
+        expect('{');
+        if (!consume('}')) {
+            do {
+                String key = readString();
+                expect(':');
+                if (key.equals("contracts")) {
+                    readContracts(consumer);
+                } else if (key.equals("version")) {
+                    version = readValue();
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        if (peek() != -1) {
+            throw malformed("end of output");
+        }
+        return version;
+    }
+
+    private void readContracts(BiConsumer<String, CompilationResult.Contract> consumer)
+            throws IOException {
+        expect('{');
+        if (consume('}')) {
+            return;
+        }
+        do {
+            String name = readString();
+            expect(':');
+            consumer.accept(name, readContract());
+        } while (consume(','));
+        expect('}');
+    }
+
+    private CompilationResult.Contract readContract() throws IOException {
+        CompilationResult.Contract contract = new CompilationResult.Contract();
+        expect('{');
+        if (consume('}')) {
+            return contract;
+        }
+        do {
+            String key = readString();
+            expect(':');
+            switch (key) {
+                case "abi":
+                    contract.abi = readValue();
+                    break;
+                case "bin":
+                    contract.bin = readValue();
+                    break;
+                case "interface":
+                    contract.interface0 = readValue();
+                    break;
+                case "metadata":
+                    contract.metadata = readValue();
+                    break;
+                default:
+                    skipValue();
+                    break;
+            }
+        } while (consume(','));
+        expect('}');
+        return contract;
+    }
+
+    /** Reads a string as its content, null as null, and any other value as its JSON text. */
+    private String readValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        StringBuilder raw = new StringBuilder();
+        copyValue(raw);
+        String text = raw.toString();
+        return text.equals("null") ? null : text;
+    }
+
+    private void skipValue() throws IOException {
+        copyValue(null);
+    }
+
+    /** Reads a value, appending its JSON text to out unless out is null. */
+    private void copyValue(StringBuilder out) throws IOException {
+        int c = peek();
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            boolean inString = false;
+            do {
+                c = take();
+                append(out, c);
+                if (inString) {
+                    if (c == '\\') {
+                        append(out, take());
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else if (c == '"') {
+            take();
+            append(out, c);
+            while ((c = take()) != '"') {
+                append(out, c);
+                if (c == '\\') {
+                    append(out, take());
+                }
+            }
+            append(out, c);
+        } else {
+            // a number, true, false or null
+            while ((c = peekRaw()) != -1 && ",}] \t\r\n".indexOf(c) < 0) {
+                append(out, take());
+            }
+        }
+    }
+
+    private static void append(StringBuilder out, int c) {
+        if (out != null) {
+            out.append((char) c);
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder string = new StringBuilder();
+        int c;
+        while ((c = take()) != '"') {
+            if (c != '\\') {
+                string.append((char) c);
+                continue;
+            }
+            c = take();
+            switch (c) {
+                case 'b':
+                    string.append('\b');
+                    break;
+                case 'f':
+                    string.append('\f');
+                    break;
+                case 'n':
+                    string.append('\n');
+                    break;
+                case 'r':
+                    string.append('\r');
+                    break;
+                case 't':
+                    string.append('\t');
+                    break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < hex.length; i++) {
+                        hex[i] = (char) take();
+                    }
+                    try {
+                        string.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (NumberFormatException e) {
+                        throw malformed("unicode escape");
+                    }
+                    break;
+                default:
+                    string.append((char) c);
+                    break;
+            }
+        }
+        return string.toString();
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peek() != expected) {
+            throw malformed("'" + expected + "'");
+        }
+        take();
+    }
+
+    private boolean consume(char expected) throws IOException {
+        if (peek() == expected) {
+            take();
+            return true;
+        }
+        return false;
+    }
+
+    /** @return the next character that is not whitespace, without taking it, or -1 at the end. */
+    private int peek() throws IOException {
+        while (Character.isWhitespace(peekRaw())) {
+            take();
+        }
+        return peekRaw();
+    }
+
+    private int peekRaw() throws IOException {
+        if (next == -2) {
+            next = reader.read();
+        }
+        return next;
+    }
+
+    private int take() throws IOException {
+        int c = peekRaw();
+        if (c == -1) {
+            throw malformed("more output");
+        }
+        next = -2;
+        position++;
+        return c;
+    }
+
+    private IllegalArgumentException malformed(String expected) throws IOException {
+        String found = peekRaw() == -1 ? "the end" : "'" + (char) peekRaw() + "'";
+        return new IllegalArgumentException(
+                "Malformed combined JSON: expected "
+                        + expected
+                        + " at "
+                        + position
+                        + " but found "
+                        + found);
+    }
+}
@@ -0,0 +1,318 @@
+package org.aion.solidity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.aion.util.conversions.Hex;
+
+/**
+ * A cache of compilation results, keyed by a hash of the source, the compiler options and the solc
+ * version. Results are kept in memory, up to a number of entries, and optionally in a directory
+ * that several processes may share, up to a number of bytes. Both evict the least recently used
+ * results first; on disk, recency is the modification time of the file, which a hit updates.
+ *
+ * <p>Files are written to a temporary name and moved into place, so a reader never sees a partial
+ * result. A cache is thread-safe.
+ *
+ * <p>The key does not cover files that solc reads from disk to resolve imports, so compilations
+ * that import such files must not be cached, see {@link #importsOtherFiles(Map)}.
+ */
+public final class CompilationCache {
+    private static final int MAGIC = 0x534f4c32; // "SOL2"
+    private static final int FLAG_FAILED = 1;
+    private static final int FLAG_BY_SEVERITY = 2;
+    private static final String SUFFIX = ".result";
+
+    /** The path of an import directive, in any of its forms. */
+    private static final Pattern IMPORT =
+            Pattern.compile("\\bimport\\b[^;\"']*[\"']([^\"']+)[\"']");
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final Map<String, Compiler.Result> memory;
+    private long diskBytes;
+
+    /**
+     * Creates a cache.
+     *
+     * @param directory The directory of the on-disk cache, created if needed, or null for a memory
+     *     only cache.
+     * @param maxDiskBytes The size the on-disk cache is trimmed to.
+     * @param maxMemoryEntries The number of results kept in memory.
+     * @throws IOException if the directory cannot be created or read.
+     */
+    public CompilationCache(Path directory, long maxDiskBytes, int maxMemoryEntries)
+            throws IOException {
+        if (maxDiskBytes < 0 || maxMemoryEntries < 0) {
+            throw new IllegalArgumentException("Negative cache size.");
+        }
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Compiler.Result> eldest) {
+                        return size() > maxMemoryEntries;
+                    }
+                };
+        if (directory != null) {
+            Files.createDirectories(directory);
+            diskBytes = listFiles().stream().mapToLong(CompilationCache::sizeOf).sum();
+        }
+    }
+
+    /**
+     * Creates a cache that is kept in memory only.
+     *
+     * @param maxEntries The number of results kept.
+     * @return the cache.
+     */
+    public static CompilationCache inMemory(int maxEntries) {
+        try {
+            return new CompilationCache(null, 0, maxEntries);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // there is no directory to fail on
+        }
+    }
+
+    /**
+     * Returns the key of a compilation.
+     *
+     * @param source The source.
+     * @param version The output of solc --version.
+     * @param flags The flags of the compilation, such as whether it is optimized, in a fixed order.
+     * @param options The requested outputs.
+     * @return the hex encoded SHA-256 of all of the above.
+     */
+    static String key(byte[] source, String version, boolean[] flags, Compiler.Options[] options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(version.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        for (boolean flag : flags) {
+            digest.update((byte) (flag ? 1 : 0));
+        }
+        for (Compiler.Options option : options) {
+            digest.update(option.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        digest.update(source);
+        return Hex.toHexString(digest.digest());
+    }
+
+    /**
+     * Returns whether one of the files imports a file which is not among them, and which solc would
+     * therefore read from disk. Imports are matched without parsing, so one in a comment counts as
+     * well.
+     *
+     * @param files The contents of the files by their names, as in the standard JSON input.
+     * @return true if the files import another file.
+     */
+    static boolean importsOtherFiles(Map<String, byte[]> files) {
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Matcher matcher = IMPORT.matcher(new String(file.getValue(), StandardCharsets.UTF_8));
+            while (matcher.find()) {
+                String path = matcher.group(1);
+                if (path.startsWith(".")) {
+                    // relative to the importing file
+                    Path parent = Paths.get(file.getKey()).getParent();
+                    Path resolved = parent == null ? Paths.get(path) : parent.resolve(path);
+                    path = resolved.normalize().toString();
+                }
+                if (!files.containsKey(path)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a cached result.
+     *
+     * @param key The key.
+     * @return a copy of the result, or null if it is not cached.
+     */
+    public Compiler.Result get(String key) {
+        Compiler.Result result;
+        synchronized (memory) {
+            result = memory.get(key);
+        }
+        if (result == null && directory != null) {
+            result = read(key);
+            if (result != null) {
+                synchronized (memory) {
+                    memory.put(key, result);
+                }
+            }
+        }
+        return result == null ? null : result.copy();
+    }
+
+    /**
+     * Caches a result.
+     *
+     * @param key The key.
+     * @param result The result, which is copied.
+     */
+    public void put(String key, Compiler.Result result) {
+        Compiler.Result copy = result.copy();
+        synchronized (memory) {
+            memory.put(key, copy);
+        }
+        if (directory != null) {
+            write(key, copy);
+        }
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private Compiler.Result read(String key) {
+        Path file = fileOf(key);
+        try (InputStream in = Files.newInputStream(file)) {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a cached result.");
+            }
+            int flags = data.readByte();
+            Compiler.Result result =
+                    new Compiler.Result(
+                            readString(data), readString(data), (flags & FLAG_FAILED) != 0);
+            result.bySeverity = (flags & FLAG_BY_SEVERITY) != 0;
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (IOException e) {
+            // a missing or corrupt entry is a miss, the next put replaces it
+            return null;
+        }
+    }
+
+    private void write(String key, Compiler.Result result) {
+        Path tmp = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(MAGIC);
+            data.writeByte(
+                    (result.isFailed ? FLAG_FAILED : 0)
+                            | (result.bySeverity ? FLAG_BY_SEVERITY : 0));
+            writeString(data, result.errors);
+            writeString(data, result.output);
+            data.flush();
+
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            long replaced = Files.exists(fileOf(key)) ? sizeOf(fileOf(key)) : 0;
+            try {
+                Files.move(tmp, fileOf(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, fileOf(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+
+            boolean trim;
+            synchronized (this) {
+                diskBytes += bytes.size() - replaced;
+                trim = diskBytes > maxDiskBytes;
+            }
+            if (trim) {
+                trim();
+            }
+        } catch (IOException e) {
+            // the disk cache is best effort
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // nothing left to do
+                }
+            }
+        }
+    }
+
+    /** Deletes the least recently used files until the cache is within its size. */
+    private synchronized void trim() throws IOException {
+        List<Path> files = listFiles();
+        files.sort(Comparator.comparingLong(CompilationCache::lastModified));
+        long total = files.stream().mapToLong(CompilationCache::sizeOf).sum();
+        for (Path file : files) {
+            if (total <= maxDiskBytes) {
+                break;
+            }
+            long size = sizeOf(file);
+            Files.deleteIfExists(file);
+            total -= size;
+        }
+        diskBytes = total;
+    }
+
+    private List<Path> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        if (s == null) {
+            data.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,8 +1,13 @@
 package org.aion.solidity;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import org.json.JSONObject;
 
 public class CompilationResult {
@@ -18,26 +23,48 @@ public class CompilationResult {
      * @return
      */
     public static CompilationResult parse(String json) {
-        if (json == null || json.isEmpty()) {
-            CompilationResult empty = new CompilationResult();
-            empty.contracts = Collections.emptyMap();
-            empty.version = "";
-            return empty;
-        } else {
-            CompilationResult result = new CompilationResult();
-            JSONObject obj = new JSONObject(json);
-            result.version = obj.has("version") ? obj.getString("version") : null;
-            if (obj.has("contracts")) {
-                JSONObject c = obj.getJSONObject("contracts");
-                for (String k : c.keySet()) {
-                    result.contracts.put(
-                            k.replace("<stdin>:", ""), Contract.fromJSON(c.getJSONObject(k)));
-                }
-            }
-            return result;
+        try {
+            return parse(new StringReader(json == null ? "" : json));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * Parses the compilation results as they are read, e.g. from the output of solc, without
+     * holding the whole output in memory.
+     *
+     * @param json The combined JSON output.
+     * @return the results.
+     * @throws IOException if reading fails.
+     */
+    public static CompilationResult parse(Reader json) throws IOException {
+        CompilationResult result = new CompilationResult();
+        result.version =
+                parse(json, (name, contract) -> result.contracts.put(name, contract));
+        if ("".equals(result.version) && result.contracts.isEmpty()) {
+            result.contracts = Collections.emptyMap();
+        }
+        return result;
+    }
+
+    /**
+     * Parses the compilation results as they are read, and passes each contract to a consumer
+     * as soon as it is read, so that only one contract is held in memory at a time.
+     *
+     * @param json The combined JSON output.
+     * @param consumer The consumer of each contract and its name.
+     * @return the version of the compiler, null if the output has none, or the empty string if
+     *     the output is empty.
+     * @throws IOException if reading fails.
+     * @throws IllegalArgumentException if the output is not well-formed.
+     */
+    public static String parse(Reader json, BiConsumer<String, Contract> consumer)
+            throws IOException {
+        return new CombinedJsonReader(json)
+                .read((name, contract) -> consumer.accept(name.replace("<stdin>:", ""), contract));
+    }
+
     /** Represents a compiled contract. */
     public static class Contract {
         public String abi;
@@ -10,19 +10,50 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
+import org.json.JSONObject;
 
 public class Compiler {
 
     private final File solc;
 
+    private volatile String version;
+
+    private volatile CompilationCache cache;
+
+    private ExecutorService batchExecutor;
+
+    /** A directory to cache compilation results in, shared by processes that set it. */
+    private static final String CACHE_DIR_PROPERTY = "aion.solidity.cache.dir";
+
+    private static final long CACHE_DISK_BYTES = 256L * 1024 * 1024;
+
+    private static final int CACHE_MEMORY_ENTRIES = 256;
+
+    private static final String STDIN = "<stdin>";
+
     private static Compiler instance;
 
     private static String helloAion =
@@ -31,6 +62,29 @@ public class Compiler {
     private Compiler() {
         solc = Paths.get("native", "linux", "solidity", "solc").toFile();
         solc.setExecutable(true);
+
+        String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (cacheDir != null) {
+            try {
+                cache =
+                        new CompilationCache(
+                                Paths.get(cacheDir), CACHE_DISK_BYTES, CACHE_MEMORY_ENTRIES);
+            } catch (IOException e) {
+                cache = null;
+            }
+        }
+    }
+
+    /**
+     * Sets the cache of compilation results. By default results are not cached, unless the
+     * aion.solidity.cache.dir system property names a directory to cache them in. Sources which
+     * import files that solc reads from disk are never cached, as their results depend on those
+     * files.
+     *
+     * @param cache The cache, or null to always compile.
+     */
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
     }
 
     public static synchronized Compiler getInstance() {
@@ -47,11 +101,237 @@ public class Compiler {
     public Result compile(byte[] source, boolean optimize, boolean combinedJson, Options... options)
             throws IOException {
 
+        CompilationCache cache = this.cache;
+        if (cache != null
+                && CompilationCache.importsOtherFiles(Collections.singletonMap(STDIN, source))) {
+            cache = null;
+        }
+        String key = null;
+        if (cache != null) {
+            boolean[] flags = {optimize, combinedJson};
+            key = CompilationCache.key(source, getVersion(), flags, options);
+            Result cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         List<String> commandParts = prepareCommands(optimize, combinedJson, options);
 
         ProcessBuilder processBuilder =
                 new ProcessBuilder(commandParts).directory(solc.getParentFile());
-        return runCompileProcess(source, processBuilder);
+        Result result = runCompileProcess(source, processBuilder);
+
+        // solc exiting without reporting an error is not a property of the source
+        boolean crashed = result.isFailed && !result.isFailed();
+        if (cache != null && !crashed) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Compiles a source and parses the combined JSON output of solc as it is written, passing each
+     * contract to a consumer as soon as it is read. The output is never held in memory as a whole,
+     * which keeps the memory used by large projects to about that of their largest contract. The
+     * result is not cached.
+     *
+     * @param source The source.
+     * @param optimize Whether to optimize.
+     * @param consumer The consumer of each contract and its name, as in {@link
+     *     CompilationResult#contracts}.
+     * @param options The outputs to include.
+     * @return the errors and status of the compilation, with an empty output.
+     * @throws IOException if solc cannot be run.
+     */
+    public Result compile(
+            byte[] source,
+            boolean optimize,
+            BiConsumer<String, CompilationResult.Contract> consumer,
+            Options... options)
+            throws IOException {
+        ProcessBuilder processBuilder =
+                new ProcessBuilder(prepareCommands(optimize, true, options))
+                        .directory(solc.getParentFile());
+        processBuilder
+                .environment()
+                .put("LD_LIBRARY_PATH", solc.getParentFile().getCanonicalPath());
+
+        Process process = processBuilder.start();
+        try (BufferedOutputStream stream = new BufferedOutputStream(process.getOutputStream())) {
+            stream.write(source);
+        }
+
+        ParallelReader error = new ParallelReader(process.getErrorStream());
+        error.start();
+        try (Reader output =
+                new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            CompilationResult.parse(output, consumer);
+        } catch (IOException | RuntimeException e) {
+            process.destroy();
+            throw e;
+        }
+
+        try {
+            boolean isFailed = process.waitFor() != 0;
+            return new Result(error.getContent(), "", isFailed);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Compiles sources concurrently on a shared executor with a thread per core, see {@link
+     * #compileAll(Collection, Executor, boolean, Options...)}.
+     */
+    public List<CompletableFuture<Result>> compileAll(
+            Collection<Source> sources, Options... options) {
+        return compileAll(sources, batchExecutor(), false, options);
+    }
+
+    /**
+     * Compiles sources in batches. The sources of a batch are compiled together by one solc
+     * process in standard JSON mode, with their imports passed in memory, so imports they share are
+     * compiled once. Sources that are equal, imports included, are compiled once. A source goes to
+     * a separate batch only if one of its files conflicts with a file of the same name in the
+     * others; batches are compiled concurrently.
+     *
+     * <p>solc produces no output for any source of a batch once one of them has errors, so the
+     * sources of a batch with errors that are not their own are compiled again without the failed
+     * ones.
+     *
+     * <p>The futures are in the order of the sources and complete as the batch of each finishes, so
+     * results can be handled as they arrive with {@link CompletableFuture#thenAccept}. A future
+     * completes exceptionally with an {@link UncheckedIOException} if solc cannot be run.
+     *
+     * @param sources The sources.
+     * @param executor The executor to compile the batches on.
+     * @param optimize Whether to optimize.
+     * @param options The outputs to include.
+     * @return the results, in the combined JSON form read by {@link CompilationResult#parse}. The
+     *     result of a source only has the contracts of its own file and of its imports.
+     */
+    public List<CompletableFuture<Result>> compileAll(
+            Collection<Source> sources, Executor executor, boolean optimize, Options... options) {
+        Map<String, CompletableFuture<Result>> compiling = new HashMap<>();
+        List<Batch> batches = new ArrayList<>();
+        List<CompletableFuture<Result>> results = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            Map<String, byte[]> files = new HashMap<>(source.imports);
+            files.put(source.name, source.content);
+            String input = StandardJson.input(files, optimize, options);
+
+            CompletableFuture<Result> result = compiling.get(input);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                compiling.put(input, result);
+                BatchEntry entry = new BatchEntry(files, input, result);
+                Batch batch =
+                        batches.stream().filter(b -> b.accepts(files)).findFirst().orElse(null);
+                if (batch == null) {
+                    batch = new Batch();
+                    batches.add(batch);
+                }
+                batch.add(entry);
+            }
+            // each caller gets its own copy of a shared result
+            results.add(result.thenApply(Result::copy));
+        }
+        for (Batch batch : batches) {
+            executor.execute(() -> compileBatch(batch, optimize, options, true));
+        }
+        return results;
+    }
+
+    private void compileBatch(Batch batch, boolean optimize, Options[] options, boolean retry) {
+        try {
+            CompilationCache cache = this.cache;
+            Batch pending = new Batch();
+            for (BatchEntry entry : batch.entries) {
+                if (cache != null && !CompilationCache.importsOtherFiles(entry.files)) {
+                    byte[] bytes = entry.input.getBytes(StandardCharsets.UTF_8);
+                    entry.key = CompilationCache.key(bytes, getVersion(), new boolean[0], options);
+                    Result cached = cache.get(entry.key);
+                    if (cached != null) {
+                        entry.result.complete(cached);
+                        continue;
+                    }
+                }
+                pending.add(entry);
+            }
+            if (pending.entries.isEmpty()) {
+                return;
+            }
+
+            String input = StandardJson.input(pending.files, optimize, options);
+            List<String> commandParts = new ArrayList<>();
+            commandParts.add(solc.getCanonicalPath());
+            commandParts.add("--standard-json");
+            ProcessBuilder processBuilder =
+                    new ProcessBuilder(commandParts).directory(solc.getParentFile());
+            Result output =
+                    runCompileProcess(input.getBytes(StandardCharsets.UTF_8), processBuilder);
+            if (output.isFailed || output.output.trim().isEmpty()) {
+                for (BatchEntry entry : pending.entries) {
+                    entry.result.complete(output.copy());
+                }
+                return;
+            }
+
+            JSONObject json = new JSONObject(output.output);
+            List<Result> results = new ArrayList<>(pending.entries.size());
+            boolean anyFailed = false;
+            for (BatchEntry entry : pending.entries) {
+                Result result = StandardJson.toResult(json, options, entry.files.keySet());
+                results.add(result);
+                anyFailed |= result.isFailed();
+            }
+
+            Batch again = new Batch();
+            for (int i = 0; i < results.size(); i++) {
+                BatchEntry entry = pending.entries.get(i);
+                Result result = results.get(i);
+                if (!anyFailed || result.isFailed()) {
+                    // a failure is a property of the source, the output of a clean batch too
+                    if (cache != null && entry.key != null) {
+                        cache.put(entry.key, result);
+                    }
+                    entry.result.complete(result);
+                } else if (retry) {
+                    again.add(entry);
+                } else {
+                    entry.result.complete(result);
+                }
+            }
+            if (!again.entries.isEmpty()) {
+                compileBatch(again, optimize, options, false);
+            }
+        } catch (IOException e) {
+            fail(batch, new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            fail(batch, e);
+        }
+    }
+
+    private static void fail(Batch batch, RuntimeException e) {
+        for (BatchEntry entry : batch.entries) {
+            entry.result.completeExceptionally(e);
+        }
+    }
+
+    private synchronized Executor batchExecutor() {
+        if (batchExecutor == null) {
+            batchExecutor =
+                    Executors.newFixedThreadPool(
+                            Runtime.getRuntime().availableProcessors(),
+                            r -> {
+                                Thread thread = new Thread(r, "solc-batch");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+        }
+        return batchExecutor;
     }
 
     public Result compileZip(byte[] source, String entryPoint, Options... options)
@@ -69,17 +349,31 @@ public class Compiler {
 
         if (source == null) return new Result("Missing source Zip file", "", true);
 
+        // solc resolves the imports of the entry point from the extracted files, which the
+        // standard JSON input cannot do without compiling every file of the zip
         Path unzipped = createTempDirectory("temp");
-        extractZip(source, unzipped);
+        try {
+            extractZip(source, unzipped);
 
-        if (unzipped == null) return new Result("Couldn't extract zip file", "", true);
+            List<String> commandParts = prepareCommands(optimize, combinedJson, options);
+            commandParts.add(entryPoint);
 
-        List<String> commandParts = prepareCommands(optimize, combinedJson, options);
-        commandParts.add(entryPoint);
+            ProcessBuilder processBuilder =
+                    new ProcessBuilder(commandParts).directory(unzipped.toFile());
+            return runCompileProcess(null, processBuilder);
+        } finally {
+            deleteRecursively(unzipped);
+        }
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder(commandParts).directory(unzipped.toFile());
-        Result res = runCompileProcess(null, processBuilder);
-        return res;
+    private static void deleteRecursively(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
     }
 
     private List<String> prepareCommands(boolean optimize, boolean combinedJson, Options[] options)
@@ -150,11 +444,35 @@ public class Compiler {
         zipStream.close();
     }
 
+    /**
+     * Creates a pool of long-lived solc processes, for compiling many sources without starting a
+     * process for each, see {@link SolcPool}. If solc does not support --standard-json-server, the
+     * pool still bounds and times out compilations but starts a process for each.
+     *
+     * @param size The maximum number of processes, and of concurrent compilations.
+     * @param timeoutMillis The time a compilation may take before its process is killed.
+     * @param maxRequestsPerWorker The number of compilations after which a process is replaced.
+     * @return the pool, which the caller must close.
+     */
+    public SolcPool newPool(int size, long timeoutMillis, int maxRequestsPerWorker) {
+        return new SolcPool(solc, size, timeoutMillis, maxRequestsPerWorker);
+    }
+
     public Result compileHelloAion() throws IOException {
         return compile(helloAion.getBytes(), Compiler.Options.ABI, Compiler.Options.BIN);
     }
 
+    /** Returns the output of solc --version, which is only run once. */
     public String getVersion() throws IOException {
+        String v = version;
+        if (v == null) {
+            v = runVersion();
+            version = v;
+        }
+        return v;
+    }
+
+    private String runVersion() throws IOException {
         List<String> commandParts = new ArrayList<>();
         commandParts.add(solc.getCanonicalPath());
         commandParts.add("--version");
@@ -179,6 +497,72 @@ public class Compiler {
         return output.getContent();
     }
 
+    /** Sources compiled by one solc process, whose files agree on the content of each name. */
+    private static final class Batch {
+        private final Map<String, byte[]> files = new HashMap<>();
+        private final List<BatchEntry> entries = new ArrayList<>();
+
+        boolean accepts(Map<String, byte[]> other) {
+            for (Map.Entry<String, byte[]> file : other.entrySet()) {
+                byte[] content = files.get(file.getKey());
+                if (content != null
+                        && content != file.getValue()
+                        && !Arrays.equals(content, file.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(BatchEntry entry) {
+            files.putAll(entry.files);
+            entries.add(entry);
+        }
+    }
+
+    /** A distinct source of a batch, with its imports. */
+    private static final class BatchEntry {
+        private final Map<String, byte[]> files;
+        private final String input;
+        private final CompletableFuture<Result> result;
+        private String key;
+
+        BatchEntry(Map<String, byte[]> files, String input, CompletableFuture<Result> result) {
+            this.files = files;
+            this.input = input;
+            this.result = result;
+        }
+    }
+
+    /** A source for {@link #compileAll}, with the sources it imports. */
+    public static final class Source {
+        private final String name;
+        private final byte[] content;
+        private final Map<String, byte[]> imports;
+
+        public Source(String name, byte[] content) {
+            this(name, content, Collections.emptyMap());
+        }
+
+        /**
+         * Creates a source.
+         *
+         * @param name The name of the source, which imports are resolved relative to.
+         * @param content The source code.
+         * @param imports The sources it imports, by the path they are imported by. The map is not
+         *     copied, so many sources can share one map of common imports.
+         */
+        public Source(String name, byte[] content, Map<String, byte[]> imports) {
+            this.name = name;
+            this.content = content;
+            this.imports = imports;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
     public enum Options {
         AST("ast"),
         BIN("bin"),
@@ -206,8 +590,10 @@ public class Compiler {
         public String errors;
         public String output;
 
-        @SuppressWarnings("unused")
-        private boolean isFailed;
+        boolean isFailed;
+
+        // set when isFailed was decided by the severity of each message in a standard JSON output
+        boolean bySeverity;
 
         public Result(String errors, String output) {
             this.errors = errors;
@@ -220,9 +606,25 @@ public class Compiler {
             this.isFailed = isFailed;
         }
 
+        static Result ofStandardJson(String errors, String output, boolean isFailed) {
+            Result result = new Result(errors, output, isFailed);
+            result.bySeverity = true;
+            return result;
+        }
+
         public boolean isFailed() {
+            if (bySeverity) {
+                return isFailed;
+            }
             return (errors != null && errors.contains("Error"));
         }
+
+        /** Returns a copy of the result, including how its failure is decided. */
+        Result copy() {
+            Result copy = new Result(errors, output, isFailed);
+            copy.bySeverity = bySeverity;
+            return copy;
+        }
     }
 
     private static class ParallelReader extends Thread {
@@ -0,0 +1,235 @@
+package org.aion.solidity;
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import org.aion.util.bytes.ByteUtil;
+
+/**
+ * The encoder of the calls to one {@link Abi.Function}, built once from its signature.
+ *
+ * <p>The selector and the offset of every argument in the head of the call data are computed when
+ * the codec is built, so encoding a call only writes the arguments. Integer, bool and address
+ * arguments of the common Java types are written directly into the destination; other arguments
+ * are encoded by their {@link SolidityType}. A static argument whose encoding is larger than its
+ * type is rejected with an {@link IllegalArgumentException}. Codecs are immutable and may be shared
+ * by threads.
+ */
+public final class FunctionCodec {
+    private static final int WORD = 16;
+    private static final int SELECTOR_LENGTH = 4;
+
+    private static final int GENERIC = 0;
+    private static final int INT = 1;
+    private static final int BOOL = 2;
+    private static final int ADDRESS = 3;
+
+    private final byte[] selector;
+    private final SolidityType[] types;
+    private final int[] kinds;
+    /** The offset of each argument in the head, and the size of the head last. */
+    private final int[] offsets;
+
+    private final boolean hasDynamic;
+
+    FunctionCodec(Abi.Function function) {
+        List<Abi.Entry.Param> inputs = function.inputs;
+        this.selector = function.encodeSignature();
+        this.types = new SolidityType[inputs.size()];
+        this.kinds = new int[inputs.size()];
+        this.offsets = new int[inputs.size() + 1];
+
+        boolean dynamic = false;
+        for (int i = 0; i < types.length; i++) {
+            SolidityType type = inputs.get(i).type;
+            types[i] = type;
+            kinds[i] = kindOf(type);
+            offsets[i + 1] = offsets[i] + type.getFixedSize();
+            dynamic |= type.isDynamicType();
+        }
+        this.hasDynamic = dynamic;
+    }
+
+    private static int kindOf(SolidityType type) {
+        if (type instanceof SolidityType.BoolType) {
+            return BOOL;
+        } else if (type instanceof SolidityType.IntType) {
+            return INT;
+        } else if (type instanceof SolidityType.AddressType) {
+            return ADDRESS;
+        } else {
+            return GENERIC;
+        }
+    }
+
+    /** @return the 4-byte selector of the function. */
+    public byte[] getSelector() {
+        return selector.clone();
+    }
+
+    /**
+     * Encodes a call. Trailing arguments may be omitted, as with {@link Abi.Function#encode}.
+     *
+     * @param args The arguments.
+     * @return the selector followed by the encoded arguments.
+     */
+    public byte[] encode(Object... args) {
+        byte[][] tails = encodeTails(args);
+        byte[] dest = new byte[size(args, tails)];
+        write(dest, 0, args, tails);
+        return dest;
+    }
+
+    /**
+     * Encodes a call into an array.
+     *
+     * @param dest The destination.
+     * @param offset The offset in dest to encode at.
+     * @param args The arguments.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if the call does not fit in dest.
+     */
+    public int encodeInto(byte[] dest, int offset, Object... args) {
+        byte[][] tails = encodeTails(args);
+        int size = size(args, tails);
+        if (offset < 0 || size > dest.length - offset) {
+            throw new IndexOutOfBoundsException(
+                    "Call of " + size + " bytes does not fit at offset " + offset);
+        }
+        write(dest, offset, args, tails);
+        return size;
+    }
+
+    /**
+     * Encodes a call at the position of a buffer, and advances the position past it.
+     *
+     * @param dest The destination.
+     * @param args The arguments.
+     * @throws BufferOverflowException if the call does not fit in the remaining bytes.
+     */
+    public void encodeInto(ByteBuffer dest, Object... args) {
+        byte[][] tails = encodeTails(args);
+        int size = size(args, tails);
+        if (size > dest.remaining()) {
+            throw new BufferOverflowException();
+        }
+        if (dest.hasArray()) {
+            write(dest.array(), dest.arrayOffset() + dest.position(), args, tails);
+            dest.position(dest.position() + size);
+        } else {
+            byte[] bytes = new byte[size];
+            write(bytes, 0, args, tails);
+            dest.put(bytes);
+        }
+    }
+
+    /** Encodes the dynamic arguments, which must be sized before anything is written. */
+    private byte[][] encodeTails(Object[] args) {
+        if (args.length > types.length) {
+            throw new RuntimeException(
+                    "Too many arguments: " + args.length + " > " + types.length);
+        }
+        if (!hasDynamic) {
+            return null;
+        }
+
+        byte[][] tails = new byte[args.length][];
+        for (int i = 0; i < args.length; i++) {
+            if (types[i].isDynamicType()) {
+                tails[i] = types[i].encode(args[i]);
+            }
+        }
+        return tails;
+    }
+
+    private int size(Object[] args, byte[][] tails) {
+        int size = SELECTOR_LENGTH + offsets[args.length];
+        if (tails != null) {
+            for (byte[] tail : tails) {
+                size += tail == null ? 0 : tail.length;
+            }
+        }
+        return size;
+    }
+
+    private void write(byte[] dest, int offset, Object[] args, byte[][] tails) {
+        System.arraycopy(selector, 0, dest, offset, SELECTOR_LENGTH);
+        int base = offset + SELECTOR_LENGTH;
+        int tailOffset = offsets[args.length];
+        for (int i = 0; i < args.length; i++) {
+            int at = base + offsets[i];
+            if (tails != null && tails[i] != null) {
+                writeLong(dest, at, tailOffset);
+                System.arraycopy(tails[i], 0, dest, base + tailOffset, tails[i].length);
+                tailOffset += tails[i].length;
+            } else {
+                writeStatic(i, args[i], dest, at);
+            }
+        }
+    }
+
+    private void writeStatic(int i, Object value, byte[] dest, int at) {
+        switch (kinds[i]) {
+            case INT:
+                if (value instanceof Long
+                        || value instanceof Integer
+                        || value instanceof Short
+                        || value instanceof Byte) {
+                    writeLong(dest, at, ((Number) value).longValue());
+                    return;
+                } else if (value instanceof BigInteger) {
+                    copy(ByteUtil.bigIntegerToBytesSigned((BigInteger) value, WORD), dest, at, i);
+                    return;
+                }
+                break;
+            case BOOL:
+                if (value instanceof Boolean) {
+                    writeLong(dest, at, (Boolean) value ? 1 : 0);
+                    return;
+                }
+                break;
+            case ADDRESS:
+                if (value instanceof byte[] && ((byte[]) value).length == types[i].getFixedSize()) {
+                    System.arraycopy(value, 0, dest, at, ((byte[]) value).length);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        copy(types[i].encode(value), dest, at, i);
+    }
+
+    /**
+     * Copies an encoded argument into its slot, zeroing what it does not cover.
+     *
+     * @throws IllegalArgumentException if the encoding is larger than the slot.
+     */
+    private void copy(byte[] encoded, byte[] dest, int at, int i) {
+        int size = types[i].getFixedSize();
+        if (encoded.length > size) {
+            throw new IllegalArgumentException(
+                    "Argument "
+                            + i
+                            + " of type "
+                            + types[i].getName()
+                            + " encodes to "
+                            + encoded.length
+                            + " bytes, more than its "
+                            + size);
+        }
+        System.arraycopy(encoded, 0, dest, at, encoded.length);
+        Arrays.fill(dest, at + encoded.length, at + size, (byte) 0);
+    }
+
+    /** Writes a long as a sign-extended 16-byte word. */
+    private static void writeLong(byte[] dest, int at, long value) {
+        byte sign = (byte) (value >> 63);
+        for (int i = 0; i < 8; i++) {
+            dest[at + i] = sign;
+            dest[at + 8 + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+}
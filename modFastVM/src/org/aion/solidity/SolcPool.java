@@ -0,0 +1,284 @@
+package org.aion.solidity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of long-lived solc processes that compile in standard JSON mode, for callers that compile
+ * many sources and would otherwise spend most of their time starting solc.
+ *
+ * <p>The workers run solc with --standard-json-server, which reads any number of standard JSON
+ * inputs from stdin, each terminated by a NUL byte, and writes each output followed by a NUL byte.
+ * That mode needs a patched solc; the pool checks the help of solc for it when created, and with a
+ * solc without it, such as the bundled one, runs a solc --standard-json process per request
+ * instead, see {@link #isServerMode()}. At most {@code size} requests are compiled at once, and
+ * other callers wait for a worker. A worker that takes longer than the timeout is killed, and a
+ * worker is replaced after it has served a number of requests, so that memory held by solc does
+ * not grow without bound.
+ *
+ * <p>A pool is thread-safe. Create one with {@link Compiler#newPool(int, long, int)} and close it
+ * when done.
+ */
+public final class SolcPool implements AutoCloseable {
+    private static final String STDIN = "<stdin>";
+
+    private static final String SERVER_OPTION = "--standard-json-server";
+
+    private static final long PROBE_TIMEOUT_MILLIS = 10_000;
+
+    private final File solc;
+    private final boolean serverMode;
+    private final long timeoutMillis;
+    private final int maxRequestsPerWorker;
+    private final Semaphore permits;
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final List<Worker> workers = new ArrayList<>();
+    private boolean closed;
+
+    SolcPool(File solc, int size, long timeoutMillis, int maxRequestsPerWorker) {
+        if (size < 1 || timeoutMillis < 1 || maxRequestsPerWorker < 1) {
+            throw new IllegalArgumentException(
+                    "Pool size, timeout and requests per worker must be positive.");
+        }
+        this.solc = solc;
+        this.serverMode = supportsServerMode(solc);
+        this.timeoutMillis = timeoutMillis;
+        this.maxRequestsPerWorker = maxRequestsPerWorker;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Returns whether the workers are long-lived, that is whether solc supports
+     * --standard-json-server. Otherwise every request starts a solc process.
+     *
+     * @return true if solc supports --standard-json-server.
+     */
+    public boolean isServerMode() {
+        return serverMode;
+    }
+
+    /** Returns whether the help of solc lists --standard-json-server. */
+    private static boolean supportsServerMode(File solc) {
+        try {
+            ProcessBuilder builder =
+                    new ProcessBuilder(solc.getCanonicalPath(), "--help")
+                            .directory(solc.getParentFile())
+                            .redirectErrorStream(true);
+            builder.environment()
+                    .put("LD_LIBRARY_PATH", solc.getParentFile().getCanonicalPath());
+            Process process = builder.start();
+            process.getOutputStream().close();
+            // the help fits in the pipe, so solc exits before it is read
+            if (!process.waitFor(PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            byte[] help = process.getInputStream().readAllBytes();
+            return new String(help, StandardCharsets.UTF_8).contains(SERVER_OPTION);
+        } catch (IOException e) {
+            // solc cannot be run, which the first request reports
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Compiles a standard JSON input.
+     *
+     * @param input The standard JSON input.
+     * @return the standard JSON output.
+     * @throws IOException if solc fails or times out.
+     */
+    public String compileStandardJson(String input) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a solc worker.", e);
+        }
+
+        Worker worker = null;
+        try {
+            worker = borrow();
+            String output = worker.request(input, timeoutMillis);
+            if (serverMode && worker.requests < maxRequestsPerWorker) {
+                idle.add(worker);
+                worker = null;
+            }
+            return output;
+        } finally {
+            if (worker != null) {
+                retire(worker);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Compiles a source, with the result in the form of {@link Compiler#compile(byte[],
+     * Compiler.Options...)} so that it can be read by {@link CompilationResult#parse(String)}.
+     * The version of the compiler is not part of the result.
+     *
+     * @param source The source.
+     * @param optimize Whether to optimize.
+     * @param options The outputs to include.
+     * @return the result.
+     * @throws IOException if solc fails or times out.
+     */
+    public Compiler.Result compile(byte[] source, boolean optimize, Compiler.Options... options)
+            throws IOException {
+        Map<String, byte[]> sources = Collections.singletonMap(STDIN, source);
+        String input = StandardJson.input(sources, optimize, options);
+        return StandardJson.toResult(compileStandardJson(input), options);
+    }
+
+    /** Takes an idle worker, or starts one; the caller holds a permit. */
+    private Worker borrow() throws IOException {
+        Worker worker = idle.poll();
+        if (worker != null && worker.process.isAlive()) {
+            return worker;
+        }
+        if (worker != null) {
+            retire(worker);
+        }
+
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("The solc pool is closed.");
+            }
+            worker = new Worker(solc, serverMode);
+            workers.add(worker);
+            return worker;
+        }
+    }
+
+    private void retire(Worker worker) {
+        synchronized (this) {
+            workers.remove(worker);
+        }
+        worker.destroy();
+    }
+
+    /** Stops all workers. Requests in progress fail. */
+    @Override
+    public void close() {
+        List<Worker> running;
+        synchronized (this) {
+            closed = true;
+            running = new ArrayList<>(workers);
+            workers.clear();
+        }
+        idle.clear();
+        for (Worker worker : running) {
+            worker.destroy();
+        }
+    }
+
+    /**
+     * A solc process serving one request at a time, or in standard JSON mode a single request,
+     * whose output is all solc writes.
+     */
+    private static final class Worker {
+        /** Put in place of a response when solc closes its output. */
+        private static final Object EOF = new Object();
+
+        private final Process process;
+        private final boolean serverMode;
+        private final OutputStream stdin;
+        private final BlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+        private int requests;
+
+        Worker(File solc, boolean serverMode) throws IOException {
+            this.serverMode = serverMode;
+            ProcessBuilder builder =
+                    new ProcessBuilder(
+                                    solc.getCanonicalPath(),
+                                    serverMode ? SERVER_OPTION : "--standard-json")
+                            .directory(solc.getParentFile())
+                            .redirectError(ProcessBuilder.Redirect.DISCARD);
+            builder.environment()
+                    .put("LD_LIBRARY_PATH", solc.getParentFile().getCanonicalPath());
+            process = builder.start();
+            stdin = process.getOutputStream();
+
+            Thread reader = new Thread(this::readResponses, "solc-worker-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        String request(String input, long timeoutMillis) throws IOException {
+            requests++;
+            try {
+                stdin.write(input.getBytes(StandardCharsets.UTF_8));
+                if (serverMode) {
+                    stdin.write(0);
+                    stdin.flush();
+                } else {
+                    stdin.close();
+                }
+            } catch (IOException e) {
+                throw new IOException("solc exited before reading the input.", e);
+            }
+
+            Object response;
+            try {
+                response = responses.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for solc.", e);
+            }
+            if (response == null) {
+                throw new IOException("solc did not respond within " + timeoutMillis + " ms.");
+            }
+            if (response == EOF) {
+                throw new IOException("solc exited without an output.");
+            }
+            return (String) response;
+        }
+
+        private void readResponses() {
+            try (InputStream out = process.getInputStream()) {
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = out.read(buffer)) > 0) {
+                    int start = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (buffer[i] == 0) {
+                            response.write(buffer, start, i - start);
+                            responses.add(response.toString(StandardCharsets.UTF_8));
+                            response.reset();
+                            start = i + 1;
+                        }
+                    }
+                    response.write(buffer, start, n - start);
+                }
+                if (!serverMode && response.size() > 0) {
+                    responses.add(response.toString(StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                // the process was destroyed
+            } finally {
+                responses.add(EOF);
+            }
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -6,10 +6,16 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.aion.util.bytes.ByteUtil;
 import org.aion.util.conversions.Hex;
 
 public abstract class SolidityType {
+    /** The most types that are interned; more could only come from malformed descriptions. */
+    private static final int MAX_INTERNED = 4096;
+
+    private static final Map<String, SolidityType> TYPES = new ConcurrentHashMap<>();
 
     protected String name;
 
@@ -30,7 +36,27 @@ public abstract class SolidityType {
         return getName();
     }
 
+    /**
+     * Returns the type of a name. Types have no state beyond their name, so one instance of each
+     * type is shared.
+     *
+     * @param typeName The name of the type, as in an ABI description.
+     * @return the type.
+     */
     public static SolidityType getType(String typeName) {
+        SolidityType type = TYPES.get(typeName);
+        if (type == null) {
+            // not computeIfAbsent, since creating an array type gets its element type
+            type = newType(typeName);
+            if (TYPES.size() < MAX_INTERNED) {
+                SolidityType interned = TYPES.putIfAbsent(typeName, type);
+                type = interned == null ? type : interned;
+            }
+        }
+        return type;
+    }
+
+    private static SolidityType newType(String typeName) {
         if (typeName.contains("[")) return ArrayType.getType(typeName);
         if ("bool".equals(typeName)) return new BoolType();
         if (typeName.startsWith("int") || typeName.startsWith("uint")) return new IntType(typeName);
@@ -320,7 +346,7 @@ public abstract class SolidityType {
             return bytes() > 16 ? 32 : 16;
         }
 
-        private int bytes() {
+        int bytes() {
             String x = name.substring(5);
             return Integer.parseInt(x);
         }
@@ -427,7 +453,7 @@ public abstract class SolidityType {
         }
 
         public static byte[] encodeInt(int i) {
-            return encodeInt(new BigInteger("" + i));
+            return encodeInt(BigInteger.valueOf(i));
         }
 
         public static byte[] encodeInt(BigInteger bigInt) {
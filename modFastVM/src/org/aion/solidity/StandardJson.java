@@ -0,0 +1,141 @@
+package org.aion.solidity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Conversions between the options and results of the solc command line and its standard JSON
+ * input and output.
+ */
+final class StandardJson {
+
+    private StandardJson() {}
+
+    /**
+     * Builds a standard JSON input.
+     *
+     * @param sources The sources by name, including any they import.
+     * @param optimize Whether to optimize.
+     * @param options The outputs to select for every contract.
+     * @return the input.
+     */
+    static String input(Map<String, byte[]> sources, boolean optimize, Compiler.Options[] options) {
+        JSONArray selection = new JSONArray();
+        for (Compiler.Options option : options) {
+            switch (option) {
+                case ABI:
+                case INTERFACE:
+                    selection.put("abi");
+                    break;
+                case BIN:
+                    selection.put("evm.bytecode.object");
+                    break;
+                case AST:
+                    // per source, not per contract, and not part of the combined result
+                    break;
+            }
+        }
+
+        JSONObject sourcesJson = new JSONObject();
+        for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+            String content = new String(source.getValue(), StandardCharsets.UTF_8);
+            sourcesJson.put(source.getKey(), new JSONObject().put("content", content));
+        }
+        JSONObject settings =
+                new JSONObject()
+                        .put("optimizer", new JSONObject().put("enabled", optimize))
+                        .put(
+                                "outputSelection",
+                                new JSONObject().put("*", new JSONObject().put("*", selection)));
+        return new JSONObject()
+                .put("language", "Solidity")
+                .put("sources", sourcesJson)
+                .put("settings", settings)
+                .toString();
+    }
+
+    /**
+     * Converts a standard JSON output into the combined JSON form of the command line, which {@link
+     * CompilationResult#parse(String)} reads. The version of the compiler is not part of it. The
+     * result has failed if any message has the severity "error"; warnings are kept in the errors.
+     *
+     * @param output The standard JSON output.
+     * @param options The outputs that were selected.
+     * @return the result.
+     */
+    static Compiler.Result toResult(String output, Compiler.Options[] options) {
+        return toResult(new JSONObject(output), options, null);
+    }
+
+    /**
+     * Converts the part of a standard JSON output that concerns some of its sources, as {@link
+     * #toResult(String, Compiler.Options[])} does. Messages without a source location concern
+     * every source.
+     *
+     * @param json The parsed standard JSON output.
+     * @param options The outputs that were selected.
+     * @param files The names of the sources, or null for all of them.
+     * @return the result.
+     */
+    static Compiler.Result toResult(
+            JSONObject json, Compiler.Options[] options, Set<String> files) {
+        StringBuilder errors = new StringBuilder();
+        boolean failed = false;
+        JSONArray messages = json.optJSONArray("errors");
+        if (messages != null) {
+            for (int i = 0; i < messages.length(); i++) {
+                JSONObject message = messages.getJSONObject(i);
+                JSONObject location = message.optJSONObject("sourceLocation");
+                if (files != null
+                        && location != null
+                        && !files.contains(location.optString("file"))) {
+                    continue;
+                }
+                errors.append(message.optString("formattedMessage")).append('\n');
+                failed |= "error".equals(message.optString("severity"));
+            }
+        }
+
+        JSONObject contracts = new JSONObject();
+        JSONObject compiled = json.optJSONObject("contracts");
+        if (compiled != null) {
+            for (String file : compiled.keySet()) {
+                if (files != null && !files.contains(file)) {
+                    continue;
+                }
+                JSONObject named = compiled.getJSONObject(file);
+                for (String name : named.keySet()) {
+                    JSONObject contract = toContract(named.getJSONObject(name), options);
+                    contracts.put(file + ":" + name, contract);
+                }
+            }
+        }
+
+        String combined = new JSONObject().put("contracts", contracts).toString();
+        return Compiler.Result.ofStandardJson(errors.toString(), combined, failed);
+    }
+
+    private static JSONObject toContract(JSONObject contract, Compiler.Options[] options) {
+        JSONObject combined = new JSONObject();
+        for (Compiler.Options option : options) {
+            switch (option) {
+                case ABI:
+                case INTERFACE:
+                    JSONArray abi = contract.optJSONArray("abi");
+                    combined.put(option.getName(), abi == null ? "[]" : abi.toString());
+                    break;
+                case BIN:
+                    JSONObject evm = contract.optJSONObject("evm");
+                    JSONObject bytecode = evm == null ? null : evm.optJSONObject("bytecode");
+                    combined.put("bin", bytecode == null ? "" : bytecode.optString("object"));
+                    break;
+                case AST:
+                    break;
+            }
+        }
+        return combined;
+    }
+}
@@ -0,0 +1,42 @@
+package org.aion.fastvm;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.aion.util.conversions.Hex;
+import org.junit.Test;
+
+public class BlockProfileUnitTest {
+
+    @Test
+    public void testDecode() {
+        // PUSH2 0x5b5b, JUMP | JUMPDEST, undefined 0x0c, STOP
+        byte[] code = Hex.decode("615b5b56" + "5b0c00");
+        long[] words = {0, 4, 1, 11, 4, 7, 3, 5};
+
+        List<BlockProfile> blocks = BlockProfile.decode(code, words);
+        assertEquals(2, blocks.size());
+
+        BlockProfile first = blocks.get(0);
+        assertEquals(0, first.getStartOffset());
+        assertEquals(4, first.getEndOffset());
+        assertEquals(1, first.getExecutions());
+        assertEquals(11, first.getEnergyUsed());
+        assertThat(first.getInstructions())
+                .containsExactly(Instruction.PUSH2, Instruction.JUMP)
+                .inOrder();
+
+        BlockProfile second = blocks.get(1);
+        assertEquals(3, second.getExecutions());
+        assertEquals(5, second.getEnergyUsed());
+        assertThat(second.getInstructions())
+                .containsExactly(Instruction.JUMPDEST, Instruction.STOP)
+                .inOrder();
+    }
+
+    @Test
+    public void testDecodeUnprofiledCode() {
+        assertThat(BlockProfile.decode(new byte[] {0}, new long[0])).isEmpty();
+    }
+}
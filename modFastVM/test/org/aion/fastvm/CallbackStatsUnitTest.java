@@ -0,0 +1,53 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CallbackStatsUnitTest {
+
+    @Test
+    public void testOfFrame() {
+        long[] words = new long[CallbackStats.FRAME_WORDS];
+        words[2 * CallbackType.GET_STORAGE.ordinal()] = 3;
+        words[2 * CallbackType.GET_STORAGE.ordinal() + 1] = 300;
+        words[2 * CallbackType.LOG.ordinal()] = 1;
+        words[2 * CallbackType.LOG.ordinal() + 1] = 50;
+
+        CallbackStats stats = CallbackStats.ofFrame(words);
+        assertEquals(3, stats.getCount(CallbackType.GET_STORAGE));
+        assertEquals(300, stats.getNanos(CallbackType.GET_STORAGE));
+        assertEquals(4, stats.getTotalCount());
+        assertEquals(350, stats.getTotalNanos());
+        assertFalse(stats.hasHistograms());
+        assertEquals(0, stats.getLatencyHistogram(CallbackType.LOG).length);
+    }
+
+    @Test
+    public void testWithHistograms() {
+        int words = 2 + CallbackStats.HISTOGRAM_BUCKETS;
+        long[] raw = new long[CallbackType.values().length * words];
+        int call = CallbackType.CALL.ordinal() * words;
+        raw[call] = 2;
+        raw[call + 1] = 3000;
+        raw[call + 2 + 10] = 2;
+
+        CallbackStats stats = CallbackStats.withHistograms(raw);
+        assertEquals(2, stats.getCount(CallbackType.CALL));
+        assertEquals(3000, stats.getNanos(CallbackType.CALL));
+        assertTrue(stats.hasHistograms());
+
+        long[] expected = new long[CallbackStats.HISTOGRAM_BUCKETS];
+        expected[10] = 2;
+        assertArrayEquals(expected, stats.getLatencyHistogram(CallbackType.CALL));
+        assertEquals(0, stats.getLatencyHistogram(CallbackType.LOG)[10]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfFrameWrongLength() {
+        CallbackStats.ofFrame(new long[1]);
+    }
+}
@@ -555,6 +555,50 @@ public class CallbackUnitTest {
         checkSelfDestruct(owner, ownerBalance, ownerNonce, beneficiary, benBalance);
     }
 
+    @Test
+    public void testSelfDestructWithInternalTransactionRecordingOff() {
+        BigInteger ownerBalance = new BigInteger("2385234");
+        BigInteger ownerNonce = new BigInteger("353245");
+        Address owner = getNewAddressInRepo(ownerBalance, ownerNonce);
+        SideEffects helper = new SideEffects();
+        ExecutionContext ctx = mockContext();
+        when(ctx.getSideEffects()).thenReturn(helper);
+        when(ctx.getInternalTransactionRecording()).thenReturn(InternalTransactionRecording.OFF);
+        Pair pair = mockEmptyPair();
+        when(pair.getLeft()).thenReturn(ctx);
+        when(pair.getRight()).thenReturn(wrapInKernelInterface(dummyRepo));
+        Callback.push(pair);
+
+        Callback.selfDestruct(owner.toBytes(), owner.toBytes());
+        assertEquals(BigInteger.ZERO, Callback.kernelRepo().getBalance(owner));
+        assertEquals(1, helper.getAddressesToBeDeleted().size());
+        assertTrue(helper.getInternalTransactions().isEmpty());
+    }
+
+    @Test
+    public void testSelfDestructWithInternalTransactionRecordingMetadata() {
+        BigInteger ownerBalance = new BigInteger("32542345634");
+        BigInteger ownerNonce = new BigInteger("32565378");
+        BigInteger benBalance = new BigInteger("3252323");
+        BigInteger benNonce = new BigInteger("4334342355");
+        Address owner = getNewAddressInRepo(ownerBalance, ownerNonce);
+        Address beneficiary = getNewAddressInRepo(benBalance, benNonce);
+        SideEffects helper = new SideEffects();
+        ExecutionContext ctx = mockContext();
+        when(ctx.getSideEffects()).thenReturn(helper);
+        when(ctx.getInternalTransactionRecording())
+                .thenReturn(InternalTransactionRecording.METADATA);
+        Pair pair = mockEmptyPair();
+        when(pair.getLeft()).thenReturn(ctx);
+        when(pair.getRight()).thenReturn(wrapInKernelInterface(dummyRepo));
+        Callback.push(pair);
+
+        Callback.selfDestruct(owner.toBytes(), beneficiary.toBytes());
+        helper.markAllInternalTransactionsAsRejected();
+        checkSelfDestruct(owner, ownerBalance, ownerNonce, beneficiary, benBalance);
+        checkHelperForRejections(helper);
+    }
+
     @Test
     public void testSelfDestructOnMultipleStackDepths() {
         int depths = RandomUtils.nextInt(3, 10);
@@ -673,6 +717,64 @@ public class CallbackUnitTest {
         compareContexts(expectedContext, Callback.parseMessage(message));
     }
 
+    @Test
+    public void testParseMessageKeepsDeferredTransactionHash() {
+        long nrgLimit = RandomUtils.nextLong(0, 10_000);
+        ExecutionContext origin =
+                newExecutionContext(
+                        getNewAddress(),
+                        getNewAddress(),
+                        new DataWordImpl(RandomUtils.nextBytes(DataWordImpl.BYTES)),
+                        false,
+                        false,
+                        ExecutionContext.CALL,
+                        nrgLimit);
+        ExecutionContext context =
+                newExecutionContext(
+                        getNewAddress(),
+                        getNewAddress(),
+                        new DataWordImpl(RandomUtils.nextBytes(DataWordImpl.BYTES)),
+                        false,
+                        false,
+                        ExecutionContext.CALL,
+                        nrgLimit);
+        InternalTransactionRecord internalTx =
+                new InternalTransactionRecord(
+                        origin,
+                        0,
+                        0,
+                        BigInteger.ZERO,
+                        context.getSenderAddress(),
+                        context.getDestinationAddress(),
+                        Word128.ZERO,
+                        context.getTransactionData(),
+                        "call");
+        context.deferTransactionHash(internalTx);
+        Pair pair = mockEmptyPair();
+        when(pair.getLeft()).thenReturn(context);
+        when(pair.getRight()).thenReturn(wrapInKernelInterface(dummyRepo));
+        Callback.push(pair);
+
+        byte[] message =
+                generateContextMessage(
+                        getNewAddress(),
+                        context.getDestinationAddress(),
+                        nrgLimit,
+                        new DataWordImpl(RandomUtils.nextBytes(DataWordImpl.BYTES)),
+                        new byte[0],
+                        context.getTransactionStackDepth() + 1,
+                        ExecutionContext.CALL,
+                        0);
+        ExecutionContext parsed = Callback.parseMessage(message);
+
+        // parsing does not compute the hash of the caller's internal transaction
+        assertEquals(internalTx, context.getDeferredTransactionHash());
+        assertEquals(internalTx, parsed.getDeferredTransactionHash());
+        assertArrayEquals(internalTx.getTransactionHash(), parsed.getTransactionHash());
+        assertArrayEquals(internalTx.getTransactionHash(), parsed.getHashOfOriginTransaction());
+        assertArrayEquals(context.getTransactionHash(), parsed.getTransactionHash());
+    }
+
     @Test
     public void testParseMessageAtMultipleStackDepths() {
         long nrgLimit = RandomUtils.nextLong(0, 10_000);
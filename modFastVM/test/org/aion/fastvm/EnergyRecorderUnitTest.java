@@ -0,0 +1,271 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class EnergyRecorderUnitTest {
+
+    @Test
+    public void testWithoutCalls() {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(1000, 0);
+        assertEquals(600, recorder.exit(400, false));
+    }
+
+    @Test
+    public void testCallPassingAllEnergy() {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(1_000_000, 0);
+
+        // 100 used before the call, then 999_900 - 999_900 / 64 passed on
+        recorder.enter(984_277, 0);
+        assertEquals(6300, recorder.exit(984_277 - 6300, false));
+
+        // 50 used after the call; the caller needs 6399 left at the call to pass 6300 on
+        assertEquals(100 + 6399, recorder.exit(1_000_000 - 100 - 6300 - 50, false));
+    }
+
+    @Test
+    public void testCallUsingLittle() {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(1_000_000, 0);
+        recorder.enter(984_277, 0);
+        recorder.exit(984_277 - 10, false);
+
+        // what is kept back at the call is less than what the caller uses after it
+        assertEquals(100 + 10 + 5000, recorder.exit(1_000_000 - 100 - 10 - 5000, false));
+    }
+
+    @Test
+    public void testCallWithStipend() {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(1_000_000, 0);
+        recorder.enter(984_277 + EnergyRecorder.CALL_STIPEND, EnergyRecorder.CALL_STIPEND);
+        recorder.exit(984_277 + EnergyRecorder.CALL_STIPEND - 8600, false);
+
+        // only 6300 of what the callee used has to come from the caller
+        assertEquals(100 + 6399, recorder.exit(1_000_000 - 100 - 6300, false));
+    }
+
+    @Test
+    public void testNestedCalls() {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(64_000, 0);
+        recorder.enter(63_000, 0);
+        recorder.enter(62_016, 0);
+        assertEquals(6300, recorder.exit(62_016 - 6300, false));
+        long middle = recorder.exit(63_000 - 6300, false);
+
+        // the middle frame used nothing before its call
+        assertEquals(6399, middle);
+        // the outer frame has 57_700 left after a call that cost it 6300, so it used none before
+        assertEquals(EnergyRecorder.energyBefore(middle), recorder.exit(64_000 - 6300, false));
+    }
+
+    @Test
+    public void testFailedCallLosesAllItIsGiven() {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(1_000_000, 0);
+        recorder.enter(984_277, 0);
+        assertEquals(984_277, recorder.exit(0, true));
+
+        // the caller keeps a 64th at the call, which must cover the 5000 it uses after it
+        assertEquals(100 + 5000 * 64, recorder.exit(1_000_000 - 100 - 984_277 - 5000, false));
+    }
+
+    @Test
+    public void testFailedCallThatCostsLittle() {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(1_000_000, 0);
+        recorder.enter(984_277, 0);
+        recorder.exit(984_277 - 10, true);
+
+        // running the call as it did is cheaper than letting it lose all it is given
+        assertEquals(100 + 10 + 5000, recorder.exit(1_000_000 - 100 - 10 - 5000, false));
+    }
+
+    @Test
+    public void testCallerOfRejectedCall() {
+        Code code = new Code().use(100).rejectedCall().use(5000);
+        assertEquals(binarySearch(code), estimate(code));
+    }
+
+    @Test
+    public void testCallerOfCallRunningOutOfEnergy() {
+        Code code = new Code().use(100).call(new Code().use(Long.MAX_VALUE), false).use(5000);
+        assertEquals(binarySearch(code), estimate(code));
+    }
+
+    @Test
+    public void testFailedCallBetweenCalls() {
+        Code callee = new Code().use(300).call(new Code().use(6300), true).use(20);
+        Code failing = new Code().use(40).call(callee, true).use(Long.MAX_VALUE);
+        Code code =
+                new Code()
+                        .use(100)
+                        .call(callee, true)
+                        .use(70)
+                        .call(failing, false)
+                        .use(200)
+                        .call(callee, true)
+                        .use(50)
+                        .rejectedCall()
+                        .use(30);
+        assertEquals(binarySearch(code), estimate(code));
+    }
+
+    @Test
+    public void testRandomCallsAgainstBinarySearch() {
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            Code code = randomCode(random, 3);
+            if (run(code, LIMIT, null).succeeded) {
+                long estimate = estimate(code);
+                assertTrue(run(code, estimate, null).succeeded);
+                assertTrue(estimate >= binarySearch(code));
+            }
+        }
+    }
+
+    @Test
+    public void testEnergyBefore() {
+        assertEquals(0, EnergyRecorder.energyBefore(0));
+        assertEquals(6399, EnergyRecorder.energyBefore(6300));
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long passedOn = random.nextInt(Integer.MAX_VALUE);
+            long energy = EnergyRecorder.energyBefore(passedOn);
+            assertTrue(energy - (energy >>> 6) >= passedOn);
+            assertTrue(energy - 1 - ((energy - 1) >>> 6) < passedOn);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExitWithoutFrame() {
+        new EnergyRecorder().exit(0, false);
+    }
+
+    private static final long LIMIT = 10_000_000;
+
+    /** The estimate the recorder makes from a run of the code with a high energy limit. */
+    private static long estimate(Code code) {
+        EnergyRecorder recorder = new EnergyRecorder();
+        recorder.enter(LIMIT, 0);
+        Outcome outcome = run(code, LIMIT, recorder);
+        assertTrue(outcome.succeeded);
+        return recorder.exit(outcome.remaining, false);
+    }
+
+    /** The least energy limit the code succeeds with, found the way a client would. */
+    private static long binarySearch(Code code) {
+        long low = 0;
+        long high = LIMIT;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (run(code, mid, null).succeeded) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static Code randomCode(Random random, int depth) {
+        Code code = new Code().use(random.nextInt(1000));
+        int calls = depth == 0 ? 0 : random.nextInt(3);
+        for (int i = 0; i < calls; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    code.rejectedCall();
+                    break;
+                case 1:
+                    code.call(new Code().use(Long.MAX_VALUE), false);
+                    break;
+                default:
+                    code.call(randomCode(random, depth - 1), true);
+            }
+            code.use(random.nextInt(10_000));
+        }
+        return code;
+    }
+
+    /**
+     * Runs code the way the jit would, passing all but a 64th of the energy left on at each call.
+     */
+    private static Outcome run(Code code, long energy, EnergyRecorder recorder) {
+        long left = energy;
+        for (Step step : code.steps) {
+            if (step.callee == null && !step.rejected) {
+                if (left < step.energy) {
+                    return new Outcome(false, 0);
+                }
+                left -= step.energy;
+                continue;
+            }
+            long passedOn = left - (left >>> 6);
+            if (recorder != null) {
+                recorder.enter(passedOn, 0);
+            }
+            Outcome outcome =
+                    step.rejected ? new Outcome(false, 0) : run(step.callee, passedOn, recorder);
+            if (recorder != null) {
+                recorder.exit(outcome.remaining, !outcome.succeeded);
+            }
+            if (step.required && !outcome.succeeded) {
+                return new Outcome(false, 0);
+            }
+            left = left - passedOn + outcome.remaining;
+        }
+        return new Outcome(true, left);
+    }
+
+    /** Code that uses energy and makes calls, which the caller may require to succeed. */
+    private static final class Code {
+        private final List<Step> steps = new ArrayList<>();
+
+        private Code use(long energy) {
+            steps.add(new Step(energy, null, false, false));
+            return this;
+        }
+
+        private Code call(Code callee, boolean required) {
+            steps.add(new Step(0, callee, required, false));
+            return this;
+        }
+
+        private Code rejectedCall() {
+            steps.add(new Step(0, null, false, true));
+            return this;
+        }
+    }
+
+    private static final class Step {
+        private final long energy;
+        private final Code callee;
+        private final boolean required;
+        private final boolean rejected;
+
+        private Step(long energy, Code callee, boolean required, boolean rejected) {
+            this.energy = energy;
+            this.callee = callee;
+            this.required = required;
+            this.rejected = rejected;
+        }
+    }
+
+    private static final class Outcome {
+        private final boolean succeeded;
+        private final long remaining;
+
+        private Outcome(boolean succeeded, long remaining) {
+            this.succeeded = succeeded;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EventSettingsUnitTest {
+
+    @Test
+    public void testEventsAreOptIn() {
+        assertFalse(EventSettings.isEnabled(false, true));
+        assertFalse(EventSettings.isEnabled(false, false));
+    }
+
+    @Test
+    public void testEventsNeedJfr() {
+        assertFalse(EventSettings.isEnabled(true, false));
+        assertTrue(EventSettings.isEnabled(true, true));
+    }
+}
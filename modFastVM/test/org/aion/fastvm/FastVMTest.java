@@ -3,12 +3,20 @@ package org.aion.fastvm;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.aion.db.impl.DBVendor;
 import org.aion.db.impl.DatabaseFactory;
 import org.aion.interfaces.db.ContractDetails;
@@ -121,6 +129,152 @@ public class FastVMTest {
         assertEquals(16, result.getReturnData().length);
     }
 
+    @Test
+    public void testBlockProfile() {
+        ExecutionContext ctx = newExecutionContext();
+        FastVM vm = new FastVM();
+
+        // sum of 0..10, with the loop condition at [2, 10) and the loop body at [10, 24)
+        byte[] code =
+                Hex.decode(
+                        "60005b80600a10601857"
+                                + "8060e0510160e052600101600256"
+                                + "5b601060e0f3");
+
+        FastVmTransactionResult result;
+        FastVM.setProfiling(true);
+        try {
+            FastVM.resetProfiles();
+            result = vm.run(code, ctx, wrapInKernelInterface(repo));
+        } finally {
+            FastVM.setProfiling(false);
+        }
+        assertEquals(FastVmResultCode.SUCCESS, result.getResultCode());
+
+        List<BlockProfile> blocks = FastVM.getBlockProfiles(code);
+        assertEquals(4, blocks.size());
+        assertEquals(2, blocks.get(1).getStartOffset());
+        assertEquals(10, blocks.get(1).getEndOffset());
+        assertEquals(12, blocks.get(1).getExecutions());
+        assertEquals(11, blocks.get(2).getExecutions());
+        assertEquals(Instruction.JUMPDEST, blocks.get(3).getInstructions().get(0));
+
+        long energyUsed = 0;
+        for (BlockProfile block : blocks) {
+            energyUsed += block.getEnergyUsed();
+        }
+        assertEquals(ctx.getTransactionEnergy() - result.getEnergyRemaining(), energyUsed);
+
+        // resetting drops the profile rather than keeping it zeroed
+        FastVM.resetProfiles();
+        assertTrue(FastVM.getBlockProfiles(code).isEmpty());
+    }
+
+    @Test
+    public void testCallbackStats() {
+        ExecutionContext ctx = newExecutionContext();
+        FastVM vm = new FastVM();
+
+        // EXTCODECOPY of an empty account
+        byte[] code =
+                Hex.decode(
+                        "6020600060E06F111111111111111111111111111111116F000000000000000000000000111111113C602060E0F3");
+
+        // stats are disabled by default
+        CallbackStats before = FastVM.getThreadCallbackStats();
+        FastVmTransactionResult result = vm.run(code, ctx, wrapInKernelInterface(repo));
+        assertEquals(FastVmResultCode.SUCCESS, result.getResultCode());
+        assertSame(CallbackStats.EMPTY, result.getCallbackStats());
+        assertEquals(
+                before.getCount(CallbackType.GET_CODE),
+                FastVM.getThreadCallbackStats().getCount(CallbackType.GET_CODE));
+
+        FastVM.setCallbackStats(true);
+        try {
+            result = vm.run(code, newExecutionContext(), wrapInKernelInterface(repo));
+        } finally {
+            FastVM.setCallbackStats(false);
+        }
+        assertEquals(FastVmResultCode.SUCCESS, result.getResultCode());
+
+        CallbackStats txStats = result.getCallbackStats();
+        assertThat(txStats.getCount(CallbackType.GET_CODE)).isAtLeast(1L);
+        assertEquals(0, txStats.getCount(CallbackType.CALL));
+        assertThat(txStats.hasHistograms()).isFalse();
+
+        CallbackStats threadStats = FastVM.getThreadCallbackStats();
+        CallbackStats processStats = FastVM.getProcessCallbackStats();
+        assertEquals(
+                before.getCount(CallbackType.GET_CODE) + txStats.getCount(CallbackType.GET_CODE),
+                threadStats.getCount(CallbackType.GET_CODE));
+        assertThat(processStats.getCount(CallbackType.GET_CODE))
+                .isAtLeast(threadStats.getCount(CallbackType.GET_CODE));
+
+        // every counted callback lands in the histogram
+        long histogramTotal = 0;
+        long[] histogram = threadStats.getLatencyHistogram(CallbackType.GET_CODE);
+        long[] histogramBefore = before.getLatencyHistogram(CallbackType.GET_CODE);
+        for (int i = 0; i < histogram.length; i++) {
+            histogramTotal += histogram[i] - histogramBefore[i];
+        }
+        assertEquals(txStats.getCount(CallbackType.GET_CODE), histogramTotal);
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws IOException {
+        assumeTrue(
+                "Flight Recorder events are disabled, run with -D"
+                        + EventSettings.PROPERTY
+                        + "=true on a JDK with jdk.jfr",
+                EventSettings.ENABLED);
+
+        ExecutionContext ctx = newExecutionContext();
+        FastVM vm = new FastVM();
+
+        // a code hash never run before, so that it must be compiled
+        byte[] code =
+                Hex.decode(
+                        "6F"
+                                + Hex.toHexString(RandomUtils.nextBytes(16))
+                                + "60020160E052601060E0F3");
+
+        Path file = Files.createTempFile("fastvm", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.aion.fastvm.FrameExecution");
+            recording.enable("org.aion.fastvm.JitCompile");
+            recording.start();
+            FastVmTransactionResult result = vm.run(code, ctx, wrapInKernelInterface(repo));
+            assertEquals(FastVmResultCode.SUCCESS, result.getResultCode());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        RecordedEvent frame = findEvent(events, "org.aion.fastvm.FrameExecution");
+        assertEquals(depth, frame.getInt("depth"));
+        assertEquals(address.toString(), frame.getString("address"));
+        assertEquals("SUCCESS", frame.getString("resultCode"));
+        assertEquals(15, frame.getLong("energyUsed"));
+
+        RecordedEvent compile = findEvent(events, "org.aion.fastvm.JitCompile");
+        assertEquals(address.toString(), compile.getString("address"));
+        assertThat(compile.getString("codeId").length()).isGreaterThan(64);
+        // committed after the frame, but started within it
+        assertThat(compile.getStartTime()).isAtLeast(frame.getEndTime());
+        assertThat(compile.getInstant("compileStart")).isAtMost(frame.getEndTime());
+    }
+
+    private static RecordedEvent findEvent(List<RecordedEvent> events, String name) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + name + " event recorded");
+    }
+
     @Test
     public void testGetCodeByAddress1() {
         ExecutionContext ctx = newExecutionContext();
@@ -0,0 +1,263 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.aion.mcf.vm.types.Bloom;
+import org.aion.mcf.vm.types.Log;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.IExecutionLog;
+import org.aion.vm.api.interfaces.InternalTransactionInterface;
+import org.aion.zero.types.AionInternalTx;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for the nested frames of {@link SideEffects}. */
+public class NestedSideEffectsUnitTest {
+    private SideEffects parent;
+
+    @Before
+    public void setup() {
+        parent = new SideEffects();
+        parent.addInternalTransaction(getNewInternalTx());
+        parent.addLog(getNewLog());
+        parent.addToDeletedAddresses(getNewAddress());
+    }
+
+    @Test
+    public void testNestedFrameStartsEmpty() {
+        SideEffects nested = parent.newNestedFrame();
+        assertTrue(nested.getInternalTransactions().isEmpty());
+        assertTrue(nested.getExecutionLogs().isEmpty());
+        assertTrue(nested.getAddressesToBeDeleted().isEmpty());
+    }
+
+    @Test
+    public void testMergeNestedFrame() {
+        SideEffects nested = parent.newNestedFrame();
+        InternalTransactionInterface tx = getNewInternalTx();
+        nested.addInternalTransaction(tx);
+        nested.addLog(getNewLog());
+        nested.addToDeletedAddresses(getNewAddress());
+        assertEquals(1, nested.getInternalTransactions().size());
+
+        parent.merge(nested);
+        assertEquals(2, parent.getInternalTransactions().size());
+        assertSame(tx, parent.getInternalTransactions().get(1));
+        assertEquals(2, parent.getExecutionLogs().size());
+        assertEquals(2, parent.getAddressesToBeDeleted().size());
+
+        // the merged frame no longer grows with its parent
+        parent.addLog(getNewLog());
+        assertEquals(1, nested.getExecutionLogs().size());
+        assertEquals(3, parent.getExecutionLogs().size());
+    }
+
+    @Test
+    public void testMergeNestedFrameRemovesDuplicateDeletes() {
+        Address address = getNewAddress();
+        parent.addToDeletedAddresses(address);
+        SideEffects nested = parent.newNestedFrame();
+        nested.addToDeletedAddresses(address);
+        assertEquals(1, nested.getAddressesToBeDeleted().size());
+
+        parent.merge(nested);
+        assertEquals(2, parent.getAddressesToBeDeleted().size());
+        assertEquals(
+                new ArrayList<>(parent.getAddressesToBeDeleted()).indexOf(address),
+                new ArrayList<>(parent.getAddressesToBeDeleted()).lastIndexOf(address));
+    }
+
+    @Test
+    public void testDuplicateDeletesAreKeptWhileNestedFramesAreOpen() {
+        Address address = getNewAddress();
+        SideEffects nested = parent.newNestedFrame();
+        nested.addToDeletedAddresses(address);
+        parent.merge(nested);
+
+        SideEffects second = parent.newNestedFrame();
+        second.addToDeletedAddresses(address);
+        SideEffects third = second.newNestedFrame();
+        third.addToDeletedAddresses(address);
+        Address other = getNewAddress();
+        third.addToDeletedAddresses(other);
+        second.merge(third);
+
+        // the frames are still open, so their entries are not moved
+        assertEquals(3, second.getAddressesToBeDeleted().size());
+        assertEquals(5, parent.getAddressesToBeDeleted().size());
+        assertEquals(other, second.getAddressesToBeDeleted().get(2));
+
+        parent.merge(second);
+        assertEquals(3, parent.getAddressesToBeDeleted().size());
+        assertEquals(address, parent.getAddressesToBeDeleted().get(1));
+        assertEquals(other, parent.getAddressesToBeDeleted().get(2));
+    }
+
+    @Test
+    public void testDuplicateDeletesOfLowerFramesAreRemoved() {
+        Address address = getNewAddress();
+        SideEffects nested = parent.newNestedFrame();
+        nested.addToDeletedAddresses(address);
+        SideEffects deeper = nested.newNestedFrame();
+        deeper.addToDeletedAddresses(address);
+        nested.merge(deeper);
+        parent.merge(nested);
+
+        // only the two lower frames deleted the account
+        assertEquals(2, parent.getAddressesToBeDeleted().size());
+        assertEquals(address, parent.getAddressesToBeDeleted().get(1));
+    }
+
+    @Test
+    public void testDeleteOfAccountDeletedByMergedFrameIsNotAdded() {
+        Address address = getNewAddress();
+        SideEffects nested = parent.newNestedFrame();
+        nested.addToDeletedAddresses(address);
+        parent.merge(nested);
+
+        parent.addToDeletedAddresses(address);
+        assertEquals(2, parent.getAddressesToBeDeleted().size());
+    }
+
+    @Test
+    public void testAddInternalTransactionsOfNestedFrameDiscardsTheRest() {
+        SideEffects nested = parent.newNestedFrame();
+        nested.addInternalTransaction(getNewInternalTx());
+        nested.addInternalTransaction(getNewInternalTx());
+        nested.addLog(getNewLog());
+        nested.addToDeletedAddresses(getNewAddress());
+        nested.markAllInternalTransactionsAsRejected();
+
+        parent.addInternalTransactions(nested.getInternalTransactions());
+        assertEquals(3, parent.getInternalTransactions().size());
+        assertEquals(1, parent.getExecutionLogs().size());
+        assertEquals(1, parent.getAddressesToBeDeleted().size());
+        assertFalse(parent.getInternalTransactions().get(0).isRejected());
+        assertTrue(parent.getInternalTransactions().get(1).isRejected());
+        assertTrue(parent.getInternalTransactions().get(2).isRejected());
+    }
+
+    @Test
+    public void testRejectNestedFrameOnlyRejectsItsRange() {
+        SideEffects nested = parent.newNestedFrame();
+        SideEffects deeper = nested.newNestedFrame();
+        deeper.addInternalTransaction(getNewInternalTx());
+        nested.merge(deeper);
+        nested.addInternalTransaction(getNewInternalTx());
+        nested.markAllInternalTransactionsAsRejected();
+        parent.merge(nested);
+
+        assertEquals(3, parent.getInternalTransactions().size());
+        assertFalse(parent.getInternalTransactions().get(0).isRejected());
+        assertTrue(parent.getInternalTransactions().get(1).isRejected());
+        assertTrue(parent.getInternalTransactions().get(2).isRejected());
+    }
+
+    @Test
+    public void testMergeIntoUnrelatedSideEffectsCopies() {
+        SideEffects other = new SideEffects();
+        other.merge(parent);
+        assertEquals(1, other.getInternalTransactions().size());
+        assertEquals(1, other.getExecutionLogs().size());
+        assertEquals(1, other.getAddressesToBeDeleted().size());
+
+        parent.addLog(getNewLog());
+        assertEquals(1, other.getExecutionLogs().size());
+    }
+
+    @Test
+    public void testAddLogFromArena() {
+        byte[] address = getNewAddress().toBytes();
+        byte[] topics = RandomUtils.nextBytes(64);
+        byte[] data = RandomUtils.nextBytes(10);
+        parent.addLog(address, topics, data);
+
+        IExecutionLog log = parent.getExecutionLogs().get(1);
+        assertArrayEquals(address, log.getSourceAddress().toBytes());
+        assertEquals(2, log.getTopics().size());
+        assertArrayEquals(Arrays.copyOfRange(topics, 0, 32), log.getTopics().get(0));
+        assertArrayEquals(Arrays.copyOfRange(topics, 32, 64), log.getTopics().get(1));
+        assertArrayEquals(data, log.getData());
+        assertSame(log, parent.getExecutionLogs().get(1));
+        assertArrayEquals(bloomOf(parent).getData(), parent.getLogsBloom().getData());
+    }
+
+    @Test
+    public void testLogsBloomOfMergedAndDiscardedFrames() {
+        SideEffects merged = parent.newNestedFrame();
+        merged.addLog(getNewAddress().toBytes(), RandomUtils.nextBytes(32), new byte[0]);
+        parent.merge(merged);
+
+        SideEffects discarded = parent.newNestedFrame();
+        discarded.addInternalTransaction(getNewInternalTx());
+        discarded.addLog(getNewAddress().toBytes(), RandomUtils.nextBytes(32), new byte[0]);
+        discarded.markAllInternalTransactionsAsRejected();
+        parent.addInternalTransactions(discarded.getInternalTransactions());
+
+        assertEquals(2, parent.getExecutionLogs().size());
+        assertArrayEquals(bloomOf(parent).getData(), parent.getLogsBloom().getData());
+
+        // a log added after the discarded one reuses its space in the arena
+        parent.addLog(getNewAddress().toBytes(), RandomUtils.nextBytes(32), new byte[] {1});
+        assertEquals(3, parent.getExecutionLogs().size());
+        assertArrayEquals(new byte[] {1}, parent.getExecutionLogs().get(2).getData());
+        assertArrayEquals(bloomOf(parent).getData(), parent.getLogsBloom().getData());
+    }
+
+    @Test
+    public void testResultTakesOverSideEffects() {
+        parent.addLog(getNewAddress().toBytes(), RandomUtils.nextBytes(64), new byte[0]);
+        FastVmTransactionResult result = new FastVmTransactionResult();
+        result.addSideEffects(parent);
+        assertSame(parent, result.getSideEffects());
+
+        // computed from the arena before the logs are read
+        Bloom bloom = result.getLogsBloom();
+        assertArrayEquals(bloomOf(parent).getData(), bloom.getData());
+
+        SideEffects other = new SideEffects();
+        other.addLog(getNewLog());
+        result.addSideEffects(other);
+        assertSame(parent, result.getSideEffects());
+        assertEquals(3, parent.getExecutionLogs().size());
+        assertArrayEquals(bloomOf(parent).getData(), result.getLogsBloom().getData());
+    }
+
+    private Bloom bloomOf(SideEffects sideEffects) {
+        Bloom bloom = new Bloom();
+        for (IExecutionLog log : sideEffects.getExecutionLogs()) {
+            bloom.or(((Log) log).getBloomFilterForLog());
+        }
+        return bloom;
+    }
+
+    private Address getNewAddress() {
+        return new Address(RandomUtils.nextBytes(Address.SIZE));
+    }
+
+    private Log getNewLog() {
+        ArrayList<byte[]> topics = new ArrayList<>();
+        topics.add(RandomUtils.nextBytes(32));
+        return new Log(getNewAddress(), topics, RandomUtils.nextBytes(10));
+    }
+
+    private AionInternalTx getNewInternalTx() {
+        return new AionInternalTx(
+                RandomUtils.nextBytes(32),
+                0,
+                0,
+                RandomUtils.nextBytes(16),
+                getNewAddress(),
+                getNewAddress(),
+                RandomUtils.nextBytes(16),
+                RandomUtils.nextBytes(20),
+                "call");
+    }
+}
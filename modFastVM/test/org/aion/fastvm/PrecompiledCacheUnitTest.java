@@ -0,0 +1,139 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.aion.precompiled.type.PrecompiledContract;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrecompiledCacheUnitTest {
+    private static final Address BLAKE2B = lowAddress(0x11);
+    private static final Address TX_HASH = lowAddress(0x12);
+    private static final byte[] INPUT = {1, 2, 3};
+    private static final byte[] OUTPUT = {4, 5, 6, 7};
+
+    private PrecompiledContract contract;
+
+    @Before
+    public void setup() {
+        PrecompiledCache.enable(2);
+        contract = mock(PrecompiledContract.class);
+        when(contract.execute(any(), anyLong()))
+                .thenAnswer(
+                        invocation -> {
+                            long energy = invocation.getArgument(1);
+                            return energy < 100
+                                    ? new FastVmTransactionResult(FastVmResultCode.OUT_OF_NRG, 0)
+                                    : new FastVmTransactionResult(
+                                            FastVmResultCode.SUCCESS, energy - 100, OUTPUT);
+                        });
+    }
+
+    @After
+    public void tearDown() {
+        PrecompiledCache.disable();
+    }
+
+    @Test
+    public void testHit() {
+        TransactionResult first = PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000);
+        TransactionResult second = PrecompiledCache.execute(BLAKE2B, contract, INPUT.clone(), 500);
+
+        verify(contract, times(1)).execute(any(), anyLong());
+        assertEquals(900, first.getEnergyRemaining());
+        assertEquals(FastVmResultCode.SUCCESS.toInt(), second.getResultCode().toInt());
+        assertEquals(400, second.getEnergyRemaining());
+        assertArrayEquals(OUTPUT, second.getReturnData());
+        assertEquals(1, PrecompiledCache.getHits());
+        assertEquals(1, PrecompiledCache.getMisses());
+        assertEquals(0.5, PrecompiledCache.getHitRate(), 0);
+    }
+
+    @Test
+    public void testLimitBelowEnergyUsed() {
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000);
+        TransactionResult result = PrecompiledCache.execute(BLAKE2B, contract, INPUT, 50);
+
+        verify(contract, times(2)).execute(any(), anyLong());
+        assertEquals(FastVmResultCode.OUT_OF_NRG.toInt(), result.getResultCode().toInt());
+        assertEquals(0, PrecompiledCache.getHits());
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 50);
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 50);
+
+        verify(contract, times(2)).execute(any(), anyLong());
+        assertEquals(0, PrecompiledCache.size());
+    }
+
+    @Test
+    public void testImpureNotCached() {
+        PrecompiledCache.execute(TX_HASH, contract, INPUT, 1000);
+        PrecompiledCache.execute(TX_HASH, contract, INPUT, 1000);
+
+        verify(contract, times(2)).execute(any(), anyLong());
+        assertEquals(0, PrecompiledCache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDropped() {
+        byte[] other = {8};
+        byte[] third = {9};
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000);
+        PrecompiledCache.execute(BLAKE2B, contract, other, 1000);
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000);
+        PrecompiledCache.execute(BLAKE2B, contract, third, 1000);
+        assertEquals(2, PrecompiledCache.size());
+
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000);
+        PrecompiledCache.execute(BLAKE2B, contract, other, 1000);
+        verify(contract, times(4)).execute(any(), anyLong());
+    }
+
+    @Test
+    public void testCachedOutputCopied() {
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000);
+        PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000).getReturnData()[0] = 0;
+        TransactionResult result = PrecompiledCache.execute(BLAKE2B, contract, INPUT, 1000);
+        assertArrayEquals(OUTPUT, result.getReturnData());
+    }
+
+    @Test
+    public void testDisabled() {
+        PrecompiledCache.disable();
+        assertFalse(PrecompiledCache.isEnabled());
+        TransactionResult result = new FastVmTransactionResult(FastVmResultCode.SUCCESS, 0);
+        PrecompiledContract stub = mock(PrecompiledContract.class);
+        when(stub.execute(INPUT, 1000)).thenReturn(result);
+
+        assertSame(result, PrecompiledCache.execute(BLAKE2B, stub, INPUT, 1000));
+        assertSame(result, PrecompiledCache.execute(BLAKE2B, stub, INPUT, 1000));
+        verify(stub, times(2)).execute(INPUT, 1000);
+        assertEquals(0, PrecompiledCache.getMisses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnableWithoutEntries() {
+        PrecompiledCache.enable(0);
+    }
+
+    private static Address lowAddress(int value) {
+        byte[] bytes = new byte[Address.SIZE];
+        bytes[bytes.length - 1] = (byte) value;
+        return Address.wrap(bytes);
+    }
+}
@@ -0,0 +1,47 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.aion.types.Address;
+import org.aion.util.conversions.Hex;
+import org.junit.Test;
+
+public class PrecompiledRegistryUnitTest {
+
+    @Test
+    public void testMayBePrecompiled() {
+        // the blake2b hash and token bridge contracts
+        assertTrue(PrecompiledRegistry.mayBePrecompiled(lowAddress(0x11)));
+        assertTrue(PrecompiledRegistry.mayBePrecompiled(lowAddress(0x200)));
+        assertTrue(PrecompiledRegistry.mayBePrecompiled(lowAddress(0xFFFF)));
+
+        assertFalse(PrecompiledRegistry.mayBePrecompiled(lowAddress(0x10000)));
+        assertFalse(
+                PrecompiledRegistry.mayBePrecompiled(
+                        Address.wrap(
+                                Hex.decode(
+                                        "a0d6dec327f522f9c8d342921148a6c4"
+                                                + "2f40a3ce45c1f56baa7bfa752200d9e5"))));
+        assertFalse(PrecompiledRegistry.mayBePrecompiled(null));
+    }
+
+    @Test
+    public void testIsPure() {
+        // the ed25519 verification and blake2b hash contracts, but not the transaction hash one
+        assertTrue(PrecompiledRegistry.isPure(lowAddress(0x10)));
+        assertTrue(PrecompiledRegistry.isPure(lowAddress(0x11)));
+        assertFalse(PrecompiledRegistry.isPure(lowAddress(0x12)));
+        assertFalse(PrecompiledRegistry.isPure(lowAddress(0x111)));
+        assertFalse(PrecompiledRegistry.isPure(lowAddress(0x10011)));
+        assertFalse(PrecompiledRegistry.isPure(null));
+    }
+
+    private static Address lowAddress(int value) {
+        byte[] bytes = new byte[Address.SIZE];
+        for (int i = 0; i < 4; i++) {
+            bytes[bytes.length - 1 - i] = (byte) (value >>> (8 * i));
+        }
+        return Address.wrap(bytes);
+    }
+}
@@ -0,0 +1,90 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+import org.aion.types.Address;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Test;
+
+public class RecordedBlockUnitTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Address coinbase = Address.wrap(RandomUtils.nextBytes(Address.SIZE));
+        Address contract = Address.wrap(RandomUtils.nextBytes(Address.SIZE));
+        Address missing = Address.wrap(RandomUtils.nextBytes(Address.SIZE));
+        byte[] tx = RandomUtils.nextBytes(100);
+        byte[] code = RandomUtils.nextBytes(50);
+        byte[] key = RandomUtils.nextBytes(16);
+        byte[] value = RandomUtils.nextBytes(16);
+
+        RecordedBlock block =
+                new RecordedBlock(
+                        coinbase,
+                        12,
+                        1_500_000_000L,
+                        10_000_000L,
+                        0x100000000L,
+                        Collections.singletonList(tx),
+                        Arrays.asList(
+                                new RecordedBlock.Account(
+                                        contract,
+                                        true,
+                                        BigInteger.TEN.pow(30),
+                                        BigInteger.valueOf(3),
+                                        code),
+                                new RecordedBlock.Account(missing, false, null, null, null)),
+                        Arrays.asList(
+                                new RecordedBlock.StorageEntry(contract, key, value),
+                                new RecordedBlock.StorageEntry(contract, value, null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        block.writeTo(out);
+        RecordedBlock read = RecordedBlock.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(coinbase, read.coinbase);
+        assertEquals(12, read.number);
+        assertEquals(1_500_000_000L, read.timestamp);
+        assertEquals(10_000_000L, read.energyLimit);
+        assertEquals(0x100000000L, read.difficulty);
+        assertEquals(1, read.getTransactions().size());
+        assertArrayEquals(tx, read.getTransactions().get(0));
+
+        assertEquals(2, read.getAccounts().size());
+        RecordedBlock.Account account = read.getAccounts().get(0);
+        assertEquals(contract, account.address);
+        assertTrue(account.exists);
+        assertEquals(BigInteger.TEN.pow(30), account.balance);
+        assertEquals(BigInteger.valueOf(3), account.nonce);
+        assertArrayEquals(code, account.code);
+        account = read.getAccounts().get(1);
+        assertFalse(account.exists);
+        assertEquals(BigInteger.ZERO, account.balance);
+        assertEquals(0, account.code.length);
+
+        assertEquals(2, read.getStorage().size());
+        assertArrayEquals(key, read.getStorage().get(0).key);
+        assertArrayEquals(value, read.getStorage().get(0).value);
+        assertNull(read.getStorage().get(1).value);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBadMagic() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(new byte[8]);
+        }
+        RecordedBlock.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,62 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.aion.interfaces.tx.Transaction;
+import org.aion.types.Address;
+import org.aion.vm.api.interfaces.KernelInterface;
+import org.aion.vm.api.interfaces.TransactionContext;
+import org.aion.vm.api.interfaces.TransactionResult;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests how {@link TransactionExecutor} handles the value of a transaction. */
+public class TransactionExecutorValueUnitTest {
+    private KernelInterface kernel;
+    private KernelInterface child;
+    private KernelInterface grandChild;
+    private Transaction transaction;
+
+    @Before
+    public void setup() {
+        kernel = mock(KernelInterface.class);
+        child = mock(KernelInterface.class);
+        grandChild = mock(KernelInterface.class);
+        when(kernel.makeChildKernelInterface()).thenReturn(child);
+        when(child.makeChildKernelInterface()).thenReturn(grandChild);
+        when(child.isValidEnergyLimitForNonCreate(any(Long.class))).thenReturn(true);
+        when(child.accountNonceEquals(any(), any())).thenReturn(true);
+        when(child.accountBalanceIsAtLeast(any(), any())).thenReturn(true);
+
+        transaction = mock(Transaction.class);
+        when(transaction.getSenderAddress())
+                .thenReturn(new Address(RandomUtils.nextBytes(Address.SIZE)));
+        when(transaction.getDestinationAddress())
+                .thenReturn(new Address(RandomUtils.nextBytes(Address.SIZE)));
+        when(transaction.getNonce()).thenReturn(new byte[0]);
+        when(transaction.getEnergyLimit()).thenReturn(100_000L);
+        when(transaction.getTransactionCost()).thenReturn(21_000L);
+    }
+
+    @Test
+    public void testValueWiderThan128BitsIsRejected() {
+        byte[] value = new byte[Word128.BYTES + 1];
+        value[0] = 1;
+        when(transaction.getValue()).thenReturn(value);
+
+        TransactionResult result =
+                new TransactionExecutor(transaction, mock(TransactionContext.class), kernel)
+                        .execute();
+
+        assertEquals(FastVmResultCode.INSUFFICIENT_BALANCE, result.getResultCode());
+        assertEquals(0, result.getEnergyRemaining());
+        verify(grandChild, never()).adjustBalance(any(), any());
+        verify(child, never()).commit();
+    }
+}
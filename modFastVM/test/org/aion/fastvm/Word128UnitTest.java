@@ -0,0 +1,107 @@
+package org.aion.fastvm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import org.aion.mcf.vm.types.DataWordImpl;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Test;
+
+public class Word128UnitTest {
+    private static final BigInteger MAX = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+    @Test
+    public void testBytesRoundTrip() {
+        for (int i = 0; i < 100; i++) {
+            byte[] bytes = RandomUtils.nextBytes(Word128.BYTES);
+            Word128 word = Word128.fromBytes(bytes);
+            assertArrayEquals(bytes, word.toBytes());
+            assertEquals(new BigInteger(1, bytes), word.toBigInteger());
+            assertEquals(word, Word128.fromBigInteger(new BigInteger(1, bytes)));
+        }
+    }
+
+    @Test
+    public void testFromShortAndLongBytes() {
+        assertEquals(
+                BigInteger.valueOf(0x0102), Word128.fromBytes(new byte[] {1, 2}).toBigInteger());
+        assertTrue(Word128.fromBytes(new byte[0]).isZero());
+        assertTrue(Word128.fromBytes(null).isZero());
+
+        byte[] padded = new byte[20];
+        padded[19] = 7;
+        assertEquals(Word128.of(7), Word128.fromBytes(padded));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testFromBytesTooLarge() {
+        byte[] bytes = new byte[17];
+        bytes[0] = 1;
+        Word128.fromBytes(bytes);
+    }
+
+    @Test
+    public void testBalanceEncodingMatchesDataWord() {
+        BigInteger balance = new BigInteger(1, RandomUtils.nextBytes(Word128.BYTES));
+        assertArrayEquals(
+                new DataWordImpl(balance).getData(), Word128.fromBigInteger(balance).toBytes());
+    }
+
+    @Test
+    public void testMultiply() {
+        long a = Long.MAX_VALUE;
+        long b = 10_000_000_000L;
+        assertEquals(
+                BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)),
+                Word128.multiply(a, b).toBigInteger());
+        assertTrue(Word128.multiply(0, b).isZero());
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testMultiplyNegative() {
+        Word128.multiply(-1, 1);
+    }
+
+    @Test
+    public void testAddAndSubtract() {
+        for (int i = 0; i < 100; i++) {
+            BigInteger x = new BigInteger(1, RandomUtils.nextBytes(15));
+            BigInteger y = new BigInteger(1, RandomUtils.nextBytes(15));
+            Word128 wx = Word128.fromBigInteger(x);
+            Word128 wy = Word128.fromBigInteger(y);
+            assertEquals(x.add(y), wx.add(wy).toBigInteger());
+            Word128 difference = x.compareTo(y) >= 0 ? wx.subtract(wy) : wy.subtract(wx);
+            assertEquals(x.max(y).subtract(x.min(y)), difference.toBigInteger());
+            assertEquals(x.compareTo(y), wx.compareTo(wy));
+        }
+
+        // carry from the low into the high long
+        Word128 lowMax =
+                Word128.fromBigInteger(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE));
+        assertEquals(BigInteger.ONE.shiftLeft(64), lowMax.add(Word128.of(1)).toBigInteger());
+        assertEquals(lowMax, lowMax.add(Word128.of(1)).subtract(Word128.of(1)));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testAddOverflow() {
+        Word128.fromBigInteger(MAX).add(Word128.of(1));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testSubtractUnderflow() {
+        Word128.of(1).subtract(Word128.of(2));
+    }
+
+    @Test
+    public void testIsZero() {
+        assertTrue(Word128.isZero(new byte[Word128.BYTES]));
+        byte[] bytes = new byte[Word128.BYTES];
+        bytes[0] = 1;
+        assertFalse(Word128.isZero(bytes));
+        assertFalse(Word128.fromBytes(bytes).isZero());
+        assertFalse(Word128.fromBytes(bytes).fitsInLong());
+    }
+}
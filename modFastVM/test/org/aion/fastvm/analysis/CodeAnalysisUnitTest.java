@@ -0,0 +1,133 @@
+package org.aion.fastvm.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.aion.util.conversions.Hex;
+import org.junit.Test;
+
+public class CodeAnalysisUnitTest {
+
+    /**
+     * PUSH1 0 | JUMPDEST, PUSH1 1, ADD, DUP1, PUSH1 10, GT, PUSH1 2, JUMPI | STOP | ADD (dead) |
+     * JUMPDEST, JUMP
+     */
+    private static final byte[] LOOP = Hex.decode("60005b60010180600a1160025700015b56");
+
+    @Test
+    public void testBlocks() {
+        CodeAnalysis analysis = CodeAnalysis.analyze(LOOP);
+        List<BasicBlock> blocks = analysis.getBlocks();
+        assertEquals(4, blocks.size());
+
+        BasicBlock entry = blocks.get(0);
+        assertEquals(0, entry.getStartOffset());
+        assertEquals(2, entry.getEndOffset());
+        assertEquals(BasicBlock.Exit.FALL_THROUGH, entry.getExit());
+        assertEquals(Collections.singletonList(1), entry.getSuccessors());
+
+        BasicBlock loop = blocks.get(1);
+        assertEquals(2, loop.getStartOffset());
+        assertEquals(13, loop.getEndOffset());
+        assertEquals(8, loop.getInstructionCount());
+        assertEquals(8, loop.getStaticEnergy());
+        assertEquals(1, loop.getStackRequired());
+        assertEquals(0, loop.getStackChange());
+        assertEquals(2, loop.getStackMaxGrowth());
+        assertEquals(BasicBlock.Exit.JUMPI, loop.getExit());
+        assertEquals(2, loop.getJumpTarget());
+        assertEquals(Arrays.asList(1, 2), loop.getSuccessors());
+
+        assertEquals(BasicBlock.Exit.HALT, blocks.get(2).getExit());
+        assertTrue(blocks.get(2).getSuccessors().isEmpty());
+
+        BasicBlock dynamic = blocks.get(3);
+        assertEquals(15, dynamic.getStartOffset());
+        assertTrue(dynamic.hasDynamicJump());
+        assertTrue(analysis.hasDynamicJumps());
+    }
+
+    @Test
+    public void testBlockAt() {
+        CodeAnalysis analysis = CodeAnalysis.analyze(LOOP);
+        assertEquals(0, analysis.blockAt(1).getIndex());
+        assertEquals(1, analysis.blockAt(12).getIndex());
+        assertNull(analysis.blockAt(14));
+        assertEquals(3, analysis.blockAt(16).getIndex());
+        assertNull(analysis.blockAt(17));
+        assertNull(analysis.blockAt(-1));
+    }
+
+    @Test
+    public void testLoopHeaders() {
+        CodeAnalysis analysis = CodeAnalysis.analyze(LOOP);
+        assertEquals(
+                Collections.singletonList(analysis.getBlocks().get(1)),
+                analysis.getLoopHeaders());
+    }
+
+    @Test
+    public void testJumpDests() {
+        // PUSH1 0x5b, JUMPDEST
+        CodeAnalysis analysis = CodeAnalysis.analyze(Hex.decode("605b5b"));
+        assertFalse(analysis.isJumpDest(0));
+        assertFalse(analysis.isJumpDest(1));
+        assertTrue(analysis.isJumpDest(2));
+        assertFalse(analysis.isJumpDest(3));
+    }
+
+    @Test
+    public void testInvalidJumpTarget() {
+        // PUSH1 3, JUMP | STOP (dead)
+        BasicBlock block = CodeAnalysis.analyze(Hex.decode("60035600")).getBlocks().get(0);
+        assertEquals(BasicBlock.INVALID_TARGET, block.getJumpTarget());
+        assertFalse(block.hasDynamicJump());
+        assertTrue(block.getSuccessors().isEmpty());
+    }
+
+    @Test
+    public void testUndefinedInstruction() {
+        // PUSH1 1, undefined 0x0c, JUMPDEST, STOP
+        List<BasicBlock> blocks = CodeAnalysis.analyze(Hex.decode("60010c5b00")).getBlocks();
+        assertEquals(2, blocks.size());
+        assertEquals(BasicBlock.Exit.INVALID, blocks.get(0).getExit());
+        assertTrue(blocks.get(0).getSuccessors().isEmpty());
+    }
+
+    @Test
+    public void testStepCost() {
+        // PUSH1 0, SLOAD, PUSH1 0, PUSH1 0, PUSH1 0, LOG1
+        CodeAnalysis analysis = CodeAnalysis.analyze(Hex.decode("600054600060006000a1"));
+        assertEquals(1 + 1000 + 1 + 1 + 1 + 1000, analysis.getBlocks().get(0).getStaticEnergy());
+    }
+
+    @Test
+    public void testMinimumEnergy() {
+        // the entry block, then the loop block once and the STOP block
+        assertEquals(1 + 8 + 0, CodeAnalysis.analyze(LOOP).getMinimumEnergy());
+        assertEquals(0, CodeAnalysis.analyze(new byte[0]).getMinimumEnergy());
+
+        // PUSH1 3, JUMP | STOP (dead): the jump fails
+        CodeAnalysis failing = CodeAnalysis.analyze(Hex.decode("60035600"));
+        assertEquals(Long.MAX_VALUE, failing.getMinimumEnergy());
+
+        // PUSH1 0, CALLDATALOAD, JUMP | JUMPDEST, SLOAD, STOP | JUMPDEST, STOP
+        CodeAnalysis dynamic = CodeAnalysis.analyze(Hex.decode("600035565b54005b00"));
+        assertEquals(1 + 1 + 1 + 1 + 0, dynamic.getMinimumEnergy());
+    }
+
+    @Test
+    public void testCache() {
+        CodeAnalysis analysis = CodeAnalysis.of(LOOP);
+        assertSame(analysis, CodeAnalysis.of(LOOP.clone()));
+        assertNotSame(analysis, CodeAnalysis.analyze(LOOP));
+        assertTrue(CodeAnalysis.of(new byte[0]).getBlocks().isEmpty());
+    }
+}
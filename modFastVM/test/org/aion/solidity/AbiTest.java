@@ -1,13 +1,33 @@
 package org.aion.solidity;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.aion.contract.ContractUtils;
+import org.aion.mcf.vm.types.Log;
 import org.aion.solidity.Compiler.Options;
+import org.aion.solidity.SolidityType.IntType;
+import org.aion.types.Address;
 import org.junit.Test;
 
 public class AbiTest {
+    private static final String INDEXED_ABI =
+            "[{\"type\":\"function\",\"name\":\"f\",\"constant\":false,\"payable\":false,"
+                    + "\"inputs\":[{\"name\":\"x\",\"type\":\"uint128\"}],\"outputs\":[]},"
+                    + "{\"type\":\"function\",\"name\":\"g\",\"constant\":false,"
+                    + "\"payable\":false,\"inputs\":[],\"outputs\":[]},"
+                    + "{\"type\":\"event\",\"name\":\"E\",\"anonymous\":false,\"inputs\":["
+                    + "{\"name\":\"a\",\"type\":\"uint128\",\"indexed\":true},"
+                    + "{\"name\":\"b\",\"type\":\"uint128\",\"indexed\":false}]},"
+                    + "{\"type\":\"event\",\"name\":\"A\",\"anonymous\":true,\"inputs\":[]}]";
 
     @Test
     public void testFromJSON() throws IOException {
@@ -35,4 +55,81 @@ public class AbiTest {
         assertFalse(result.contracts.isEmpty());
         Abi.fromJSON(result.contracts.values().iterator().next().abi);
     }
+
+    @Test
+    public void testFindBySelectorAndTopic() {
+        Abi abi = Abi.fromJSON(INDEXED_ABI);
+        Abi.Function f = abi.findFunction(fn -> fn.name.equals("f"));
+        Abi.Function g = abi.findFunction(fn -> fn.name.equals("g"));
+        Abi.Event e = abi.findEvent(ev -> ev.name.equals("E"));
+        Abi.Event anonymous = abi.findEvent(ev -> ev.name.equals("A"));
+
+        assertSame(f, abi.findFunctionBySelector(f.encode(1)));
+        assertSame(g, abi.findFunctionBySelector(g.encodeSignature()));
+        assertNull(abi.findFunctionBySelector(new byte[] {1, 2, 3, 4}));
+        assertNull(abi.findFunctionBySelector(new byte[] {1}));
+
+        assertSame(e, abi.findEventByTopic(e.fingerprintSignature()));
+        assertNull(abi.findEventByTopic(anonymous.fingerprintSignature()));
+        assertNull(abi.findEventByTopic(new byte[32]));
+    }
+
+    @Test
+    public void testBatchDecode() {
+        Abi abi = Abi.fromJSON(INDEXED_ABI);
+        Abi.Function f = abi.findFunction(fn -> fn.name.equals("f"));
+        Abi.Event e = abi.findEvent(ev -> ev.name.equals("E"));
+
+        List<List<?>> calls = abi.decodeCalls(Arrays.asList(f.encode(3), new byte[] {9, 9, 9, 9}));
+        assertEquals(Collections.singletonList(BigInteger.valueOf(3)), calls.get(0));
+        assertNull(calls.get(1));
+
+        Address source = Address.wrap(new byte[Address.SIZE]);
+        List<Log> logs =
+                Arrays.asList(
+                        new Log(
+                                source,
+                                Arrays.asList(e.fingerprintSignature(), IntType.encodeInt(5)),
+                                IntType.encodeInt(6)),
+                        new Log(source, Collections.emptyList(), new byte[0]));
+        List<List<?>> decoded = abi.decodeLogs(logs);
+        assertEquals(Arrays.asList(BigInteger.valueOf(5), BigInteger.valueOf(6)), decoded.get(0));
+        assertNull(decoded.get(1));
+    }
+
+    @Test
+    public void testTypesAreInterned() {
+        assertSame(SolidityType.getType("uint128[][2]"), SolidityType.getType("uint128[][2]"));
+        SolidityType.ArrayType array = (SolidityType.ArrayType) SolidityType.getType("bool[]");
+        assertSame(SolidityType.getType("bool"), array.getElementType());
+    }
+
+    @Test
+    public void testFromJSONCached() {
+        Abi abi = Abi.fromJSONCached(INDEXED_ABI);
+        assertNotSame(abi, Abi.fromJSONCached(new String(INDEXED_ABI)));
+        assertEquals(Abi.fromJSON(INDEXED_ABI).toJSON(), abi.toJSON());
+        assertEquals(
+                Abi.fromJSON(INDEXED_ABI).toJSON(),
+                Abi.fromJSONCached(new String(INDEXED_ABI)).toJSON());
+    }
+
+    @Test
+    public void testCachedEntriesAreNotShared() {
+        Abi abi = Abi.fromJSONCached(INDEXED_ABI);
+        Abi.Entry entry = abi.getEntries()[0];
+        entry.inputs.get(0).name = "changed";
+        entry.inputs.clear();
+
+        Abi other = Abi.fromJSONCached(INDEXED_ABI);
+        assertEquals(Abi.fromJSON(INDEXED_ABI).toJSON(), other.toJSON());
+        assertNotSame(entry, other.getEntries()[0]);
+    }
+
+    @Test
+    public void testCachedIndexesPointAtOwnEntries() {
+        Abi abi = Abi.fromJSONCached(INDEXED_ABI);
+        Abi.Event event = abi.findEvent(e -> true);
+        assertSame(event, abi.findEventByTopic(event.encodeSignature()));
+    }
 }
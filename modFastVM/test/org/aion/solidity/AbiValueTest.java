@@ -0,0 +1,111 @@
+package org.aion.solidity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.aion.util.conversions.Hex;
+import org.junit.Test;
+
+public class AbiValueTest {
+    private static final String ABI =
+            "[{\"type\":\"function\",\"name\":\"f\",\"constant\":false,\"payable\":false,"
+                    + "\"inputs\":["
+                    + "{\"name\":\"a\",\"type\":\"uint128\"},"
+                    + "{\"name\":\"b\",\"type\":\"int64\"},"
+                    + "{\"name\":\"c\",\"type\":\"bool\"},"
+                    + "{\"name\":\"d\",\"type\":\"address\"},"
+                    + "{\"name\":\"e\",\"type\":\"bytes\"},"
+                    + "{\"name\":\"g\",\"type\":\"string\"},"
+                    + "{\"name\":\"h\",\"type\":\"uint128[]\"},"
+                    + "{\"name\":\"i\",\"type\":\"bytes16\"},"
+                    + "{\"name\":\"j\",\"type\":\"uint64[2]\"}],"
+                    + "\"outputs\":[]}]";
+
+    private static final byte[] ADDRESS =
+            Hex.decode("a011111111111111111111111111111111111111111111111111111111111111");
+
+    private final Abi.Function function = Abi.fromJSON(ABI).findFunction(f -> true);
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testMatchesEagerDecoding() {
+        BigInteger large = BigInteger.ONE.shiftLeft(100);
+        byte[] callData =
+                function.encode(
+                        large,
+                        -5L,
+                        true,
+                        ADDRESS,
+                        new byte[] {1, 2, 3},
+                        "hello",
+                        new long[] {10, 20, 30},
+                        "abc",
+                        Arrays.asList(7, 8));
+        List<?> expected = function.decode(callData);
+
+        ByteBuffer buffer = ByteBuffer.allocate(callData.length + 5);
+        buffer.position(5);
+        buffer.put(callData);
+        buffer.position(5);
+        List<AbiValue> values = function.decodeValues(buffer);
+        assertEquals(5, buffer.position());
+
+        assertFalse(values.get(0).fitsInLong());
+        assertEquals(expected.get(0), values.get(0).bigIntegerValue());
+        assertEquals(-5L, values.get(1).longValue());
+        assertEquals(expected.get(1), values.get(1).bigIntegerValue());
+        assertTrue(values.get(2).booleanValue());
+        assertArrayEquals((byte[]) expected.get(3), toArray(values.get(3).bytesValue()));
+        assertArrayEquals((byte[]) expected.get(4), toArray(values.get(4).bytesValue()));
+        assertEquals("hello", values.get(5).stringValue());
+
+        Object[] h = (Object[]) expected.get(6);
+        AbiValue array = values.get(6);
+        assertEquals(h.length, array.size());
+        Iterator<AbiValue> elements = array.elements();
+        for (Object element : h) {
+            assertEquals(element, elements.next().bigIntegerValue());
+        }
+        assertFalse(elements.hasNext());
+
+        assertArrayEquals((byte[]) expected.get(7), toArray(values.get(7).bytesValue()));
+        assertEquals(2, values.get(8).size());
+        assertEquals(8, values.get(8).get(1).longValue());
+    }
+
+    @Test
+    public void testBytesAreSlicesOfTheBuffer() {
+        byte[] callData =
+                function.encode(
+                        1, 2, false, ADDRESS, new byte[] {4}, "", new long[0], "", new int[2]);
+        List<AbiValue> values = function.decodeValues(ByteBuffer.wrap(callData));
+
+        assertTrue(values.get(4).bytesValue().isReadOnly());
+        assertEquals(0, values.get(5).bytesValue().remaining());
+        assertEquals(0, values.get(6).size());
+
+        // the value is read when it is asked for: the data of e follows the selector, the 176
+        // bytes of the head and its length word
+        callData[4 + 176 + 16] = 9;
+        assertArrayEquals(new byte[] {9}, toArray(values.get(4).bytesValue()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWrongType() {
+        byte[] callData =
+                function.encode(1, 2, false, ADDRESS, new byte[0], "", new long[0], "", new int[2]);
+        function.decodeValues(ByteBuffer.wrap(callData)).get(0).stringValue();
+    }
+}
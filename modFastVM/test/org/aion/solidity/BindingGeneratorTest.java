@@ -0,0 +1,211 @@
+package org.aion.solidity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.Test;
+
+public class BindingGeneratorTest {
+    private static final String ABI =
+            "[{\"type\":\"function\",\"name\":\"transfer\",\"constant\":false,\"payable\":false,"
+                    + "\"inputs\":[{\"name\":\"to\",\"type\":\"address\"},"
+                    + "{\"name\":\"value\",\"type\":\"uint128\"}],"
+                    + "\"outputs\":[{\"name\":\"\",\"type\":\"bool\"}]},"
+                    + "{\"type\":\"function\",\"name\":\"setName\",\"constant\":false,"
+                    + "\"payable\":false,\"inputs\":[{\"name\":\"name\",\"type\":\"string\"},"
+                    + "{\"name\":\"n\",\"type\":\"int64\"},{\"name\":\"data\",\"type\":\"bytes\"}],"
+                    + "\"outputs\":[{\"name\":\"a\",\"type\":\"uint32\"},"
+                    + "{\"name\":\"b\",\"type\":\"string\"}]},"
+                    + "{\"type\":\"function\",\"name\":\"sum\",\"constant\":true,\"payable\":false,"
+                    + "\"inputs\":[{\"name\":\"xs\",\"type\":\"uint128[]\"}],\"outputs\":[]}]";
+
+    /** Overloaded events, a string next to a parameter named as its local, and CR line breaks. */
+    private static final String EDGE_ABI =
+            "[{\"type\":\"function\",\"name\":\"rename\",\"constant\":false,\"payable\":false,"
+                    + "\"inputs\":[{\"name\":\"name\",\"type\":\"string\"},"
+                    + "{\"name\":\"nameBytes\",\"type\":\"bytes\"}],\"outputs\":[]},\r\n"
+                    + "{\"type\":\"event\",\"name\":\"Transfer\",\"anonymous\":false,"
+                    + "\"inputs\":[{\"name\":\"to\",\"type\":\"address\",\"indexed\":true}]},\r\n"
+                    + "{\"type\":\"event\",\"name\":\"Transfer\",\"anonymous\":false,"
+                    + "\"inputs\":[{\"name\":\"to\",\"type\":\"address\",\"indexed\":true},"
+                    + "{\"name\":\"value\",\"type\":\"uint128\",\"indexed\":false}]}]";
+
+    private final Abi abi = Abi.fromJSON(ABI);
+
+    @Test
+    public void testGeneratedSource() {
+        String source = BindingGenerator.generate("org.example", "Token", ABI);
+        Abi.Function transfer = abi.findFunction(f -> f.name.equals("transfer"));
+        int selector = ByteBuffer.wrap(transfer.encodeSignature()).getInt();
+
+        assertTrue(source.contains("package org.example;"));
+        assertTrue(
+                source.contains(
+                        "public static final int TRANSFER = 0x"
+                                + String.format("%08x", selector)
+                                + ";"));
+        assertTrue(source.contains("static byte[] encodeTransfer(byte[] to, BigInteger value)"));
+        assertTrue(source.contains("BindingSupport.putBigInteger(call, 36, value);"));
+        assertTrue(source.contains("public static boolean decodeTransferResult(byte[] data)"));
+        // data is a local of the generated code
+        assertTrue(source.contains("encodeSetName(String name, long n, byte[] data_)"));
+        assertTrue(source.contains("public static final class SetNameResult"));
+        // arrays go through the embedded ABI
+        assertTrue(source.contains("public static byte[] encodeSum(Object xs)"));
+        assertTrue(source.contains("Abi.fromJSONCached(ABI)"));
+    }
+
+    @Test
+    public void testGeneratedSourceWithoutFallback() {
+        String source =
+                BindingGenerator.generate(
+                        "org.example",
+                        "Token",
+                        "[{\"type\":\"function\",\"name\":\"f\",\"constant\":false,"
+                                + "\"payable\":false,\"inputs\":[],\"outputs\":[]}]");
+        assertFalse(source.contains("import org.aion.solidity.Abi;"));
+        assertFalse(source.contains("BigInteger"));
+    }
+
+    @Test
+    public void testClassName() {
+        assertEquals("Token", BindingGenerator.className("contracts/Token.sol:Token"));
+        assertEquals("Wallet", BindingGenerator.className("<stdin>:wallet"));
+    }
+
+    /** Encodes setName as its generated binding does, and as the ABI does. */
+    @Test
+    public void testSupportMatchesAbiEncoding() {
+        byte[] name = BindingSupport.utf8("hello");
+        byte[] data = new byte[20];
+        int selector =
+                ByteBuffer.wrap(abi.findFunction(f -> f.name.equals("setName")).encodeSignature())
+                        .getInt();
+        int tailSize = BindingSupport.tailSize(name) + BindingSupport.tailSize(data);
+        byte[] call = BindingSupport.call(selector, 48, tailSize);
+        int tail = 48;
+        tail = BindingSupport.putBytes(call, 4, 0, tail, name);
+        BindingSupport.putLong(call, 20, -2);
+        tail = BindingSupport.putBytes(call, 4, 32, tail, data);
+
+        assertEquals(call.length - 4, tail);
+        assertArrayEquals(
+                abi.findFunction(f -> f.name.equals("setName")).encode("hello", -2L, data), call);
+    }
+
+    @Test
+    public void testSupportRoundTrip() {
+        byte[] word = new byte[16];
+        BigInteger max = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+        BindingSupport.putBigInteger(word, 0, max);
+        assertEquals(-1, BindingSupport.getLong(word, 0));
+
+        BindingSupport.putBigInteger(word, 0, BigInteger.valueOf(-300));
+        assertEquals(-300, BindingSupport.getLong(word, 0));
+        assertEquals(BigInteger.valueOf(-300), BindingSupport.getBigInteger(word, 0));
+
+        BindingSupport.putBigInteger(word, 0, BigInteger.ONE.shiftLeft(100));
+        assertEquals(BigInteger.ONE.shiftLeft(100), BindingSupport.getBigInteger(word, 0));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testGetLongOverflow() {
+        byte[] word = new byte[16];
+        BindingSupport.putBigInteger(word, 0, BigInteger.ONE.shiftLeft(64));
+        BindingSupport.getLong(word, 0);
+    }
+
+    @Test
+    public void testGeneratedSourceCompilesAndEncodes() throws Exception {
+        Path dir = Files.createTempDirectory("bindings");
+        try (URLClassLoader loader =
+                compile(
+                        dir,
+                        BindingGenerator.generate("org.example", "Token", ABI),
+                        BindingGenerator.generate("org.example", "Edge", EDGE_ABI))) {
+            Class<?> token = loader.loadClass("org.example.Token");
+            byte[] to = new byte[32];
+            to[0] = (byte) 0xa0;
+            byte[] call =
+                    (byte[])
+                            token.getMethod("encodeTransfer", byte[].class, BigInteger.class)
+                                    .invoke(null, to, BigInteger.TEN);
+            assertArrayEquals(function(abi, "transfer").encode(to, BigInteger.TEN), call);
+            byte[] result = new byte[16];
+            result[15] = 1;
+            assertEquals(
+                    true,
+                    token.getMethod("decodeTransferResult", byte[].class).invoke(null, result));
+
+            // through the embedded ABI
+            List<BigInteger> xs = Arrays.asList(BigInteger.ONE, BigInteger.TWO);
+            assertArrayEquals(
+                    function(abi, "sum").encode(xs),
+                    (byte[]) token.getMethod("encodeSum", Object.class).invoke(null, xs));
+
+            Class<?> edge = loader.loadClass("org.example.Edge");
+            byte[] data = {1, 2, 3};
+            assertArrayEquals(
+                    function(Abi.fromJSON(EDGE_ABI), "rename").encode("hi", data),
+                    (byte[])
+                            edge.getMethod("encodeRename", String.class, byte[].class)
+                                    .invoke(null, "hi", data));
+            List<String> topics =
+                    Arrays.stream(edge.getFields())
+                            .map(f -> f.getName())
+                            .filter(n -> n.endsWith("_TOPIC"))
+                            .collect(Collectors.toList());
+            assertEquals(2, topics.size());
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static Abi.Function function(Abi abi, String name) {
+        return abi.findFunction(f -> f.name.equals(name));
+    }
+
+    /** Compiles generated sources into dir and returns a loader of their classes. */
+    private static URLClassLoader compile(Path dir, String... sources) throws IOException {
+        String[] args = new String[sources.length + 4];
+        args[0] = "-d";
+        args[1] = dir.toString();
+        args[2] = "-cp";
+        args[3] = System.getProperty("java.class.path");
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            args[3] += File.pathSeparator + modulePath;
+        }
+        for (int i = 0; i < sources.length; i++) {
+            String className = sources[i].split("public final class ")[1].split(" ")[0];
+            Path file = dir.resolve(className + ".java");
+            Files.write(file, sources[i].getBytes(StandardCharsets.UTF_8));
+            args[4 + i] = file.toString();
+        }
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, javac.run(null, null, null, args));
+        return new URLClassLoader(
+                new URL[] {dir.toUri().toURL()}, BindingGeneratorTest.class.getClassLoader());
+    }
+}
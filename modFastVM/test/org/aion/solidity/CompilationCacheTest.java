@@ -0,0 +1,148 @@
+package org.aion.solidity;
+
+import static org.apache.commons.lang3.StringUtils.repeat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.aion.solidity.Compiler.Options;
+import org.aion.solidity.Compiler.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompilationCacheTest {
+    private Path dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("solc-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testKeyDependsOnEverything() {
+        byte[] source = "contract A {}".getBytes();
+        boolean[] flags = {false, true};
+        Options[] options = {Options.ABI, Options.BIN};
+        String key = CompilationCache.key(source, "v1", flags, options);
+
+        assertEquals(key, CompilationCache.key(source.clone(), "v1", flags.clone(), options));
+        byte[] other = "contract B {}".getBytes();
+        assertNotEquals(key, CompilationCache.key(other, "v1", flags, options));
+        assertNotEquals(key, CompilationCache.key(source, "v2", flags, options));
+        boolean[] optimized = {true, true};
+        assertNotEquals(key, CompilationCache.key(source, "v1", optimized, options));
+        assertNotEquals(
+                key, CompilationCache.key(source, "v1", flags, new Options[] {Options.ABI}));
+    }
+
+    @Test
+    public void testImportsOtherFiles() {
+        byte[] plain = "contract A {}".getBytes();
+        byte[] imports = "import \"./lib/Base.sol\";\ncontract A is Base {}".getBytes();
+        byte[] importsSymbols = "import {Base} from 'Base.sol';\ncontract A {}".getBytes();
+        byte[] base = "contract Base {}".getBytes();
+
+        assertFalse(CompilationCache.importsOtherFiles(Map.of("A.sol", plain)));
+        assertTrue(CompilationCache.importsOtherFiles(Map.of("A.sol", imports)));
+        assertTrue(CompilationCache.importsOtherFiles(Map.of("A.sol", importsSymbols)));
+
+        // imports passed along are covered by the key
+        assertFalse(
+                CompilationCache.importsOtherFiles(
+                        Map.of("A.sol", imports, "lib/Base.sol", base)));
+        assertFalse(
+                CompilationCache.importsOtherFiles(
+                        Map.of("A.sol", importsSymbols, "Base.sol", base)));
+        assertTrue(
+                CompilationCache.importsOtherFiles(Map.of("A.sol", imports, "Base.sol", base)));
+    }
+
+    @Test
+    public void testMemoryLru() {
+        CompilationCache cache = CompilationCache.inMemory(2);
+        cache.put("a", new Result("", "A"));
+        cache.put("b", new Result("", "B"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", new Result("", "C"));
+
+        assertEquals("A", cache.get("a").output);
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c").output);
+    }
+
+    @Test
+    public void testGetReturnsCopy() {
+        CompilationCache cache = CompilationCache.inMemory(2);
+        cache.put("a", new Result("", "A"));
+        cache.get("a").output = "changed";
+        assertEquals("A", cache.get("a").output);
+    }
+
+    @Test
+    public void testSharedOnDisk() throws IOException {
+        new CompilationCache(dir, 1 << 20, 4).put("a", new Result("Warning", "A"));
+
+        Result result = new CompilationCache(dir, 1 << 20, 4).get("a");
+        assertEquals("Warning", result.errors);
+        assertEquals("A", result.output);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void testFailureDecidedBySeverityIsKept() throws IOException {
+        CompilationCache cache = new CompilationCache(dir, 1 << 20, 4);
+        cache.put("failed", Result.ofStandardJson("", "", true));
+        cache.put("warned", Result.ofStandardJson("Error-prone pattern", "A", false));
+        assertTrue(cache.get("failed").isFailed());
+        assertFalse(cache.get("warned").isFailed());
+
+        CompilationCache reopened = new CompilationCache(dir, 1 << 20, 4);
+        assertTrue(reopened.get("failed").isFailed());
+        assertFalse(reopened.get("warned").isFailed());
+    }
+
+    @Test
+    public void testDiskEvictsLeastRecentlyUsed() throws IOException {
+        String output = repeat("x", 1000);
+        CompilationCache cache = new CompilationCache(dir, 2500, 0);
+        cache.put("a", new Result("", output));
+        cache.put("b", new Result("", output));
+        Files.setLastModifiedTime(dir.resolve("a.result"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(dir.resolve("b.result"), FileTime.fromMillis(2000));
+        cache.put("c", new Result("", output));
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testCorruptFileIsMiss() throws IOException {
+        Files.write(dir.resolve("a.result"), new byte[] {1, 2, 3});
+        CompilationCache cache = new CompilationCache(dir, 1 << 20, 4);
+        assertNull(cache.get("a"));
+
+        cache.put("a", new Result("", "A"));
+        assertEquals("A", new CompilationCache(dir, 1 << 20, 4).get("a").output);
+    }
+}
@@ -1,9 +1,17 @@
 package org.aion.solidity;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.aion.contract.ContractUtils;
 import org.aion.solidity.Compiler.Options;
 import org.junit.Test;
 
@@ -51,4 +59,52 @@ public class CompilationResultTest {
             System.out.println(result.contracts.get(name).bin);
         }
     }
+
+    @Test
+    public void testStreamingParse() throws IOException {
+        String json =
+                "{\"contracts\":{"
+                        + "\"<stdin>:A\":{\"abi\":\"[{\\\"type\\\":\\\"fallback\\\"}]\","
+                        + "\"bin\":\"6000\",\"srcmap\":\"1:2:3\",\"extra\":{\"x\":[1,\"]\"]}},"
+                        + "\"<stdin>:B\":{\"abi\":[{\"type\":\"fallback\"}],\"metadata\":null}},"
+                        + "\"sourceList\":[\"<stdin>\"],\"version\":\"0.4.15\"}\n";
+
+        List<String> names = new ArrayList<>();
+        String version =
+                CompilationResult.parse(
+                        new StringReader(json), (name, contract) -> names.add(name));
+        assertEquals("0.4.15", version);
+        assertEquals(List.of("A", "B"), names);
+
+        CompilationResult result = CompilationResult.parse(json);
+        assertEquals("[{\"type\":\"fallback\"}]", result.contracts.get("A").abi);
+        assertEquals("6000", result.contracts.get("A").bin);
+        assertEquals("[{\"type\":\"fallback\"}]", result.contracts.get("B").abi);
+        assertNull(result.contracts.get("B").metadata);
+
+        CompilationResult empty = CompilationResult.parse("");
+        assertTrue(empty.contracts.isEmpty());
+        assertEquals("", empty.version);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStreamingParseMalformed() {
+        CompilationResult.parse("{\"contracts\":{\"A\":{\"bin\":\"60");
+    }
+
+    @Test
+    public void testCompileStreaming() throws IOException {
+        byte[] source = ContractUtils.readContract("Ticker.sol");
+        CompilationResult expected =
+                CompilationResult.parse(
+                        Compiler.getInstance().compile(source, Options.ABI, Options.BIN).output);
+
+        Map<String, CompilationResult.Contract> contracts = new HashMap<>();
+        Compiler.Result r =
+                Compiler.getInstance()
+                        .compile(source, false, contracts::put, Options.ABI, Options.BIN);
+        assertFalse(r.isFailed());
+        assertEquals(expected.contracts.keySet(), contracts.keySet());
+        assertEquals(expected.contracts.get("Ticker").bin, contracts.get("Ticker").bin);
+    }
 }
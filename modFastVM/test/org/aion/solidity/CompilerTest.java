@@ -1,5 +1,8 @@
 package org.aion.solidity;
 
+import static org.aion.solidity.Compiler.Options.ABI;
+import static org.aion.solidity.Compiler.Options.BIN;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -9,6 +12,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.aion.contract.ContractUtils;
 import org.aion.solidity.Compiler.Options;
 import org.aion.solidity.Compiler.Result;
@@ -101,4 +113,69 @@ public class CompilerTest {
 
         assertFalse(r.isFailed());
     }
+
+    @Test
+    public void testPoolMatchesProcess() throws Exception {
+        byte[] source = ContractUtils.readContract("Ticker.sol");
+        CompilationResult expected =
+                CompilationResult.parse(
+                        Compiler.getInstance().compile(source, Options.ABI, Options.BIN).output);
+
+        try (SolcPool pool = Compiler.getInstance().newPool(2, 60_000, 3)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Result>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> pool.compile(source, false, ABI, BIN)));
+            }
+            for (Future<Result> future : results) {
+                Result r = future.get();
+                assertFalse(r.isFailed());
+                CompilationResult cr = CompilationResult.parse(r.output);
+                // the bytecode ends with a hash of metadata that differs between the modes
+                assertFalse(cr.contracts.get("Ticker").bin.isEmpty());
+                assertEquals(
+                        Abi.fromJSON(expected.contracts.get("Ticker").abi).getEntries().length,
+                        Abi.fromJSON(cr.contracts.get("Ticker").abi).getEntries().length);
+            }
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPoolReportsErrors() throws IOException {
+        try (SolcPool pool = Compiler.getInstance().newPool(1, 60_000, 10)) {
+            Result r = pool.compile("contract {".getBytes(), false, Options.ABI, Options.BIN);
+            assertTrue(r.isFailed());
+        }
+    }
+
+    @Test
+    public void testCompileAll() throws Exception {
+        Map<String, byte[]> imports =
+                Collections.singletonMap(
+                        "Base.sol",
+                        "pragma solidity ^0.4.0;\ncontract Base { uint x; }".getBytes());
+        byte[] derived =
+                ("pragma solidity ^0.4.0;\nimport \"Base.sol\";\n"
+                                + "contract Derived is Base { function f() public {} }")
+                        .getBytes();
+        List<Compiler.Source> sources =
+                Arrays.asList(
+                        new Compiler.Source("Derived.sol", derived, imports),
+                        new Compiler.Source("Broken.sol", "contract {".getBytes()),
+                        new Compiler.Source("Derived.sol", derived, imports));
+
+        List<CompletableFuture<Result>> results =
+                Compiler.getInstance().compileAll(sources, ABI, BIN);
+        assertEquals(3, results.size());
+
+        Result first = results.get(0).get();
+        assertFalse(first.isFailed());
+        CompilationResult cr = CompilationResult.parse(first.output);
+        assertFalse(cr.contracts.get("Derived.sol:Derived").bin.isEmpty());
+        // compiled together with Broken.sol, but only with its own contracts
+        assertEquals(2, cr.contracts.size());
+        assertTrue(results.get(1).get().isFailed());
+        assertEquals(first.output, results.get(2).get().output);
+    }
 }
@@ -0,0 +1,124 @@
+package org.aion.solidity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.aion.util.bytes.ByteUtil;
+import org.aion.util.conversions.Hex;
+import org.junit.Test;
+
+public class FunctionCodecTest {
+    private static final String ABI =
+            "[{\"type\":\"function\",\"name\":\"f\",\"constant\":false,\"payable\":false,"
+                    + "\"inputs\":["
+                    + "{\"name\":\"a\",\"type\":\"uint128\"},"
+                    + "{\"name\":\"b\",\"type\":\"int64\"},"
+                    + "{\"name\":\"c\",\"type\":\"bool\"},"
+                    + "{\"name\":\"d\",\"type\":\"address\"},"
+                    + "{\"name\":\"e\",\"type\":\"bytes\"},"
+                    + "{\"name\":\"g\",\"type\":\"string\"},"
+                    + "{\"name\":\"h\",\"type\":\"bytes16\"}],"
+                    + "\"outputs\":[]}]";
+
+    private static final byte[] ADDRESS =
+            Hex.decode("a011111111111111111111111111111111111111111111111111111111111111");
+
+    private final Abi.Function function = Abi.fromJSON(ABI).findFunction(f -> true);
+
+    /** Encodes as Abi.Function did before it had a codec. */
+    private byte[] reference(Object... args) {
+        int staticSize = 0;
+        int dynamicCount = 0;
+        for (int i = 0; i < args.length; i++) {
+            SolidityType type = function.inputs.get(i).type;
+            dynamicCount += type.isDynamicType() ? 1 : 0;
+            staticSize += type.getFixedSize();
+        }
+        byte[][] parts = new byte[args.length + dynamicCount + 1][];
+        parts[0] = function.encodeSignature();
+        int pointer = staticSize;
+        int tail = args.length + 1;
+        for (int i = 0; i < args.length; i++) {
+            SolidityType type = function.inputs.get(i).type;
+            if (type.isDynamicType()) {
+                byte[] encoded = type.encode(args[i]);
+                parts[i + 1] = SolidityType.IntType.encodeInt(pointer);
+                parts[tail++] = encoded;
+                pointer += encoded.length;
+            } else {
+                parts[i + 1] = type.encode(args[i]);
+            }
+        }
+        return ByteUtil.merge(parts);
+    }
+
+    @Test
+    public void testMatchesReferenceEncoding() {
+        Object[][] calls = {
+            {1L, -1, true, ADDRESS, new byte[] {1, 2, 3}, "hello", new byte[16]},
+            {BigInteger.ONE.shiftLeft(100), Long.MIN_VALUE, false, ADDRESS, new byte[40], "", "x"},
+            {"0x10", (short) 5, true, ADDRESS},
+            {}
+        };
+        for (Object[] args : calls) {
+            assertArrayEquals(reference(args), function.encode(args));
+        }
+    }
+
+    @Test
+    public void testEncodeIntoArrayAndBuffer() {
+        Object[] args = {7, 8L, true, ADDRESS, new byte[] {9}, "s", new byte[] {1}};
+        byte[] expected = reference(args);
+
+        byte[] dest = new byte[expected.length + 10];
+        Arrays.fill(dest, (byte) 0x55);
+        assertEquals(expected.length, function.codec().encodeInto(dest, 5, args));
+        assertArrayEquals(expected, Arrays.copyOfRange(dest, 5, 5 + expected.length));
+        assertEquals(0x55, dest[4]);
+        assertEquals(0x55, dest[5 + expected.length]);
+
+        for (ByteBuffer buffer :
+                new ByteBuffer[] {
+                    ByteBuffer.allocate(expected.length + 3),
+                    ByteBuffer.allocateDirect(expected.length + 3)
+                }) {
+            buffer.position(3);
+            function.codec().encodeInto(buffer, args);
+            assertEquals(expected.length + 3, buffer.position());
+            byte[] written = new byte[expected.length];
+            buffer.position(3);
+            buffer.get(written);
+            assertArrayEquals(expected, written);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testArrayTooSmall() {
+        function.codec().encodeInto(new byte[10], 0, 1);
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testBufferTooSmall() {
+        function.codec().encodeInto(ByteBuffer.allocate(10), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArgumentLargerThanItsSlot() {
+        // a string of more than 16 bytes encodes to 32, which does not fit a bytes16
+        function.codec()
+                .encode(1, 2, true, ADDRESS, new byte[0], "", "more than sixteen bytes");
+    }
+
+    @Test
+    public void testCodecAndSelectorAreCached() {
+        assertSame(function.codec(), function.codec());
+        assertArrayEquals(function.encodeSignature(), function.codec().getSelector());
+        assertEquals(
+                "f(uint128,int64,bool,address,bytes,string,bytes16)", function.formatSignature());
+    }
+}
@@ -0,0 +1,65 @@
+package org.aion.solidity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the modes of {@link SolcPool} against a solc stand-in which echoes its input. */
+public class SolcPoolTest {
+    private Path dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("solc");
+    }
+
+    @After
+    public void teardown() throws IOException {
+        for (File file : dir.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(dir);
+    }
+
+    /** Writes a solc whose help lists the given options, and which echoes what it reads. */
+    private File fakeSolc(String options) throws IOException {
+        Path solc = dir.resolve("solc");
+        String script =
+                "#!/bin/sh\n"
+                        + "if [ \"$1\" = --help ]; then echo \""
+                        + options
+                        + "\"; else cat; fi\n";
+        Files.write(solc, script.getBytes(StandardCharsets.UTF_8));
+        Files.setPosixFilePermissions(solc, PosixFilePermissions.fromString("rwx------"));
+        return solc.toFile();
+    }
+
+    @Test
+    public void testProcessPerRequestWithoutServerMode() throws IOException {
+        try (SolcPool pool = new SolcPool(fakeSolc("--standard-json"), 1, 60_000, 10)) {
+            assertFalse(pool.isServerMode());
+            assertEquals("{\"a\":1}", pool.compileStandardJson("{\"a\":1}"));
+            assertEquals("{\"b\":2}", pool.compileStandardJson("{\"b\":2}"));
+        }
+    }
+
+    @Test
+    public void testServerMode() throws IOException {
+        String options = "--standard-json --standard-json-server";
+        try (SolcPool pool = new SolcPool(fakeSolc(options), 1, 60_000, 10)) {
+            assertTrue(pool.isServerMode());
+            assertEquals("{\"a\":1}", pool.compileStandardJson("{\"a\":1}"));
+            assertEquals("{\"b\":2}", pool.compileStandardJson("{\"b\":2}"));
+        }
+    }
+}
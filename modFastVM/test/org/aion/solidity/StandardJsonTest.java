@@ -0,0 +1,90 @@
+package org.aion.solidity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import org.aion.solidity.Compiler.Options;
+import org.aion.solidity.Compiler.Result;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class StandardJsonTest {
+    private static final Options[] OPTIONS = {Options.ABI, Options.BIN};
+
+    private static JSONObject message(String severity, String text) {
+        return new JSONObject().put("severity", severity).put("formattedMessage", text);
+    }
+
+    private static String output(JSONObject... messages) {
+        JSONObject contract =
+                new JSONObject()
+                        .put("abi", new JSONArray())
+                        .put(
+                                "evm",
+                                new JSONObject()
+                                        .put("bytecode", new JSONObject().put("object", "6060")));
+        return new JSONObject()
+                .put("errors", new JSONArray(messages))
+                .put("contracts", new JSONObject().put("<stdin>", new JSONObject().put("A", contract)))
+                .toString();
+    }
+
+    @Test
+    public void testWarningMentioningErrorDoesNotFail() {
+        Result r =
+                StandardJson.toResult(
+                        output(message("warning", "A.sol:3:5: Warning: Unused local Error.")),
+                        OPTIONS);
+        assertFalse(r.isFailed());
+        assertTrue(r.errors.contains("Unused local Error."));
+
+        CompilationResult cr = CompilationResult.parse(r.output);
+        assertEquals("6060", cr.contracts.get("A").bin);
+    }
+
+    @Test
+    public void testErrorSeverityFails() {
+        Result r =
+                StandardJson.toResult(
+                        output(
+                                message("warning", "A.sol:1:1: Warning: Source file has no pragma."),
+                                message("error", "A.sol:3:5: TypeError: Undeclared identifier.")),
+                        OPTIONS);
+        assertTrue(r.isFailed());
+    }
+
+    @Test
+    public void testNoMessages() {
+        Result r = StandardJson.toResult(output(), OPTIONS);
+        assertFalse(r.isFailed());
+        assertEquals("", r.errors);
+    }
+
+    @Test
+    public void testResultOfSomeSources() {
+        JSONObject json = new JSONObject(output());
+        JSONObject contracts = json.getJSONObject("contracts");
+        JSONObject contract = contracts.getJSONObject("<stdin>").getJSONObject("A");
+        contracts.put("B.sol", new JSONObject().put("B", contract));
+        JSONObject error =
+                message("error", "B.sol:1:1: ParserError: Expected identifier.")
+                        .put("sourceLocation", new JSONObject().put("file", "B.sol"));
+        JSONObject warning = message("warning", "Warning: This is a pre-release compiler.");
+        json.put("errors", new JSONArray().put(error).put(warning));
+
+        Result a =
+                StandardJson.toResult(json, OPTIONS, new HashSet<>(Arrays.asList("<stdin>")));
+        assertFalse(a.isFailed());
+        assertTrue(a.errors.contains("pre-release"));
+        assertEquals(1, CompilationResult.parse(a.output).contracts.size());
+
+        Result b = StandardJson.toResult(json, OPTIONS, new HashSet<>(Arrays.asList("B.sol")));
+        assertTrue(b.isFailed());
+        assertTrue(b.errors.contains("pre-release"));
+        assertEquals("6060", CompilationResult.parse(b.output).contracts.get("B.sol:B").bin);
+    }
+}
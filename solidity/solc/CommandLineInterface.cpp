@@ -112,6 +112,7 @@ static string const g_strSourceList = "sourceList";
 static string const g_strSrcMap = "srcmap";
 static string const g_strSrcMapRuntime = "srcmap-runtime";
 static string const g_strStandardJSON = "standard-json";
+static string const g_strStandardJSONServer = "standard-json-server";
 static string const g_strVersion = "version";
 
 static string const g_argAbi = g_strAbi;
@@ -146,6 +147,7 @@ static string const g_argOptimizeRuns = g_strOptimizeRuns;
 static string const g_argOutputDir = g_strOutputDir;
 static string const g_argSignatureHashes = g_strSignatureHashes;
 static string const g_argStandardJSON = g_strStandardJSON;
+static string const g_argStandardJSONServer = g_strStandardJSONServer;
 static string const g_argVersion = g_strVersion;
 static string const g_stdinFileName = g_stdinFileNameStr;
 
@@ -564,6 +566,11 @@ Allowed options)",
 			"Switch to Standard JSON input / output mode, ignoring all options. "
 			"It reads from standard input and provides the result on the standard output."
 		)
+		(
+			g_argStandardJSONServer.c_str(),
+			"Like --standard-json, but reads any number of inputs from standard input, "
+			"each terminated by a NUL byte, and writes each result followed by a NUL byte."
+		)
 		(
 			g_argAssemble.c_str(),
 			"Switch to assembly mode, ignoring all options except --machine and assumes input is assembly."
@@ -725,6 +732,17 @@ bool CommandLineInterface::processInput()
 		return true;
 	}
 
+	if (m_args.count(g_argStandardJSONServer))
+	{
+		string input;
+		while (getline(cin, input, '\0'))
+		{
+			StandardCompiler compiler(fileReader);
+			cout << compiler.compile(input) << '\0' << flush;
+		}
+		return true;
+	}
+
 	readInputFilesAndConfigureRemappings();
 
 	if (m_args.count(g_argLibraries))
@@ -982,7 +1000,7 @@ void CommandLineInterface::handleAst(string const& _argStr)
 
 bool CommandLineInterface::actOnInput()
 {
-	if (m_args.count(g_argStandardJSON) || m_onlyAssemble)
+	if (m_args.count(g_argStandardJSON) || m_args.count(g_argStandardJSONServer) || m_onlyAssemble)
 		// Already done in "processInput" phase.
 		return true;
 	else if (m_onlyLink)